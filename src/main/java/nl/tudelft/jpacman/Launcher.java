@@ -7,13 +7,19 @@ import java.util.List;
 
 import nl.tudelft.jpacman.board.BoardFactory;
 import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
 import nl.tudelft.jpacman.game.Game;
 import nl.tudelft.jpacman.game.GameFactory;
+import nl.tudelft.jpacman.level.ChunkTemplate;
+import nl.tudelft.jpacman.level.DetailBands;
+import nl.tudelft.jpacman.level.GhostPlanner;
 import nl.tudelft.jpacman.level.Level;
 import nl.tudelft.jpacman.level.LevelFactory;
 import nl.tudelft.jpacman.level.MapParser;
 import nl.tudelft.jpacman.level.Player;
 import nl.tudelft.jpacman.level.PlayerFactory;
+import nl.tudelft.jpacman.level.Swarm;
+import nl.tudelft.jpacman.level.WorldStreamer;
 import nl.tudelft.jpacman.npc.ghost.GhostFactory;
 import nl.tudelft.jpacman.sprite.PacManSprites;
 import nl.tudelft.jpacman.ui.Action;
@@ -34,6 +40,12 @@ public class Launcher {
 	 */
 	private static final PacManSprites SPRITE_STORE = new PacManSprites();
 
+	/**
+	 * The time between two reports of the timings of a swarm, in
+	 * milliseconds.
+	 */
+	private static final long SWARM_REPORT_PERIOD = 5000;
+
 	/**
 	 * L'instance du launcher
 	 */
@@ -77,7 +89,7 @@ public class Launcher {
 	 */
 	public Game makeGame() {
 		final GameFactory gf = getGameFactory();
-		final String[] board = {"Jeu normal", "Map infinie", "Jeu avec fruits", "Cheat Mode"};
+		final String[] board = {"Jeu normal", "Map infinie", "Jeu avec fruits", "Cheat Mode", "Essaim de fantomes"};
 		String nom = (String) JOptionPane.showInputDialog(null,
 				"Veuillez choisir un mode de jeu !",
 				"PACMAN GAME !",
@@ -91,6 +103,8 @@ public class Launcher {
 			boardToUse = "/boardExtendedBase.txt";
 			level = makeLevel();
 			level.infiniteMode = true;
+			level.setDetailBands(new DetailBands());
+			level.setWorldStreamer(new WorldStreamer(level));
 			return gf.createSinglePlayerGame(level);
 		}
 		else if(nom.equals(board[2])){
@@ -102,6 +116,14 @@ public class Launcher {
 			level.cheatMode = true;
 			return gf.createSinglePlayerGame(level);
 		}
+		else if(nom.equals(board[4])){
+			boardToUse = "/boardExtendedBase.txt";
+			level = makeLevel();
+			GhostPlanner planner = Swarm.configure(level, Swarm.DEFAULT_GHOSTS,
+					System.nanoTime());
+			Swarm.report(planner, SWARM_REPORT_PERIOD, System.out);
+			return gf.createSinglePlayerGame(level);
+		}
 		else{
 			boardToUse = "/board.txt";
 		}
@@ -126,6 +148,23 @@ public class Launcher {
 		}
 	}
 
+	/**
+	 * Creates the squares of a chunk of an infinite board from the template
+	 * of a map, using the factories from {@link #getLevelFactory()} and
+	 * {@link #getBoardFactory()}. Unlike {@link #makeLevel()}, the map is
+	 * only parsed once and the board to use is left unchanged.
+	 *
+	 * @param resource
+	 *            The map on the class path, e.g.
+	 *            <code>/boardExtendedAdd1.txt</code>.
+	 * @return The squares with squares[x][y] being the square at column x,
+	 *         row y.
+	 */
+	public Square[][] makeChunk(String resource) {
+		return ChunkTemplate.forResource(resource).stamp(getBoardFactory(),
+				getLevelFactory());
+	}
+
 	/**
 	 * @return A new map parser object using the factories from
 	 *         {@link #getLevelFactory()} and {@link #getBoardFactory()}.
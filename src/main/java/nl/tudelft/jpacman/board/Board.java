@@ -1,20 +1,34 @@
 package nl.tudelft.jpacman.board;
 
 import nl.tudelft.jpacman.Launcher;
-import nl.tudelft.jpacman.level.Level;
+import java.util.Collection;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 /**
  * A top-down view of a matrix of {@link Square}s.
+ * <p>
+ * The layout of a board changes while holding its lock, so code that reads
+ * several squares by their coordinates can synchronise on the board to see
+ * a single layout.
+ * </p>
  *
  * @author Jeroen Roosen
  */
 public class Board {
 
 	/**
-	 * The grid of squares with board[x][y] being the square at column x, row y.
+	 * Le nombre de maps qui peuvent agrandir le board.
 	 */
-	private Square[][] board;
+	private static final int EXTENSION_MAPS = 3;
+
+	/**
+	 * The places of the chunks holding the squares of this board, from which
+	 * squares are looked up by their coordinates.
+	 */
+	private volatile ChunkLayout layout;
 
 	/**
 	 * The width of one map.
@@ -31,6 +45,35 @@ public class Board {
 	 */
 	private Random random = new Random();
 
+	/**
+	 * The revision of the layout of this board, which changes whenever the
+	 * board grows or its grid of squares is replaced.
+	 */
+	private volatile int revision;
+
+	/**
+	 * The flat view on the current layout, or <code>null</code> if it has
+	 * not been built since the grid was last replaced. Once built, it grows
+	 * along with the board.
+	 */
+	private volatile BoardGraph graph;
+
+	/**
+	 * The index of the units on this board.
+	 */
+	private final SpatialIndex units;
+
+	/**
+	 * The chunks holding the squares of the current grid, which the board
+	 * grows by in infinite mode.
+	 */
+	private ChunkedWorld world;
+
+	/**
+	 * The objects observing the layout of this board.
+	 */
+	private final List<BoardObserver> observers = new CopyOnWriteArrayList<>();
+
 	/**
 	 * Creates a new board.
 	 *
@@ -39,11 +82,14 @@ public class Board {
 	 */
 	Board(Square[][] grid) {
 		assert grid != null;
-		this.board = grid;
+		assert hasNoNullSquares(grid) : "Initial grid cannot contain null squares";
 		this.widthOfOneMap = grid.length;
 		this.heightOfOneMap = grid[0].length;
-		assert invariant() : "Initial grid cannot contain null squares";
-		this.setPositions(grid);
+		this.world = ChunkedWorld.of(this, grid, widthOfOneMap, heightOfOneMap);
+		this.layout = world.layout();
+		this.layout.share(grid);
+		world.takeTouched();
+		this.units = new SpatialIndex(layout);
 	}
 
 	/**
@@ -52,9 +98,17 @@ public class Board {
 	 * @return false if any square on the board is null.
 	 */
 	public boolean invariant() {
-		for (int x = 0; x < board.length; x++) {
-			for (int y = 0; y < board[x].length; y++) {
-				if (board[x][y] == null) {
+		return layout.isComplete();
+	}
+
+	/**
+	 * @param grid A grid of squares.
+	 * @return false if any square of the grid is null.
+	 */
+	private static boolean hasNoNullSquares(Square[][] grid) {
+		for (Square[] column : grid) {
+			for (Square square : column) {
+				if (square == null) {
 					return false;
 				}
 			}
@@ -68,7 +122,7 @@ public class Board {
 	 * @return The width of this board.
 	 */
 	public int getWidth() {
-		return board.length;
+		return layout.getWidth();
 	}
 
 	/**
@@ -77,7 +131,7 @@ public class Board {
 	 * @return The height of this board.
 	 */
 	public int getHeight() {
-		return board[0].length;
+		return layout.getHeight();
 	}
 
 	/**
@@ -106,8 +160,10 @@ public class Board {
 	 * @return The square at the given <code>x,y</code> position (never null).
 	 */
 	public Square squareAt(int x, int y) {
-		assert withinBorders(x, y);
-		Square result = board[x][y];
+		ChunkLayout current = layout;
+		assert x >= 0 && x < current.getWidth() && y >= 0
+				&& y < current.getHeight();
+		Square result = current.squareAt(x, y);
 		assert result != null : "Follows from invariant.";
 		return result;
 	}
@@ -124,69 +180,107 @@ public class Board {
 	}
 
 	/**
-	 * Option de création du nouveau Level
+	 * Tire une map au hasard pour agrandir le board, à partir de son modèle
+	 * déjà lu, sans créer de level. Peut être appelé depuis n'importe quel
+	 * thread, pour préparer les maps avant d'en avoir besoin.
 	 *
-	 * @return Le nouveau level
+	 * @return Les squares de la map, qui ne sont encore sur aucun chunk de
+	 *         ce board.
 	 */
-	private Level setOptions() {
-		final Launcher launcher = Launcher.getLauncher();
-		final int nbr = random.nextInt(3);
-		launcher.setBoardToUse("/boardExtendedAdd" + (nbr + 1) + ".txt");
-		return launcher.makeLevel();
+	public Square[][] drawMap() {
+		final int nbr = random.nextInt(EXTENSION_MAPS);
+		return Launcher.getLauncher().makeChunk("/boardExtendedAdd" + (nbr + 1) + ".txt");
 	}
 
 	/**
-	 * Agrandi le board du jeu
+	 * Retourne le nombre de maps nécessaires pour agrandir le board, soit
+	 * autant qu'il en contient déjà puisque l'agrandissement double sa
+	 * largeur ou sa hauteur, quelle que soit la direction.
+	 *
+	 * @return Le nombre de maps.
+	 */
+	public synchronized int mapsToExtend() {
+		return world.size();
+	}
+
+	/**
+	 * Agrandi le board du jeu, en doublant sa largeur ou sa hauteur avec des
+	 * maps tirées au hasard. Chaque map est ajoutée comme un chunk, dont
+	 * seuls les bords sont reliés aux chunks voisins ; la nouvelle bande est
+	 * refermée sur elle-même en travers, comme avant.
 	 *
 	 * @param direction La direction dans laquelle le board doit s'agrandir.
 	 */
 	public void extend(Direction direction) {
+		this.extend(direction, this::drawMap);
+	}
+
+	/**
+	 * Agrandi le board du jeu avec des maps déjà préparées, par exemple sur
+	 * un autre thread. Le nouveau board est publié d'un coup : tant que
+	 * l'agrandissement n'est pas fini, le board garde son ancienne grille.
+	 * Seuls les nouveaux chunks et ceux dont les liens ont changé sont
+	 * indexés et remis dans le graphe ; le reste est gardé tel quel.
+	 *
+	 * @param direction La direction dans laquelle le board doit s'agrandir.
+	 * @param maps      Les maps à ajouter, voir {@link #drawMap()}.
+	 */
+	public synchronized void extend(Direction direction, Supplier<Square[][]> maps) {
+		assert world.getChunkWidth() == widthOfOneMap
+				&& world.getChunkHeight() == heightOfOneMap;
+		final int columns = world.getRight() - world.getLeft() + 1;
+		final int rows = world.getBottom() - world.getTop() + 1;
 		switch (direction) {
 			case EAST:
-				this.setLink(this.setSquare(this.boardCopy(
-						new Square[this.getWidth() + Math.abs(direction.getDeltaX() * this.getWidth())]
-								[this.getHeight() + Math.abs(direction.getDeltaY() * this.getWidth())], 0, 0),
-						this.getWidth(), 0, this.getWidth(), this.getHeight()), this.getWidth() - 1,
-						0, this.getWidth(), this.getHeight());
+				this.addChunks(world.getRight() + 1, world.getTop(), columns, rows, maps);
+				world.wrapColumns(world.getRight() - columns + 1, world.getRight());
 				break;
 			case NORTH:
-				this.setLink(this.setSquare(this.boardCopy(
-						new Square[this.getWidth() + Math.abs(direction.getDeltaX() * this.getHeight())]
-								[this.getHeight() + Math.abs(direction.getDeltaY() * this.getHeight())], 0,
-						this.getHeight()), 0, 0, this.getWidth(), this.getHeight()), 0, 0, this.getWidth(),
-						this.getHeight() + 1);
+				this.addChunks(world.getLeft(), world.getTop() - rows, columns, rows, maps);
+				world.wrapRows(world.getTop(), world.getTop() + rows - 1);
+				world.wrapEdge(Direction.NORTH);
 				break;
 			case SOUTH:
-				this.setLink(this.setSquare(this.boardCopy(
-						new Square[this.getWidth() + Math.abs(direction.getDeltaX() * this.getHeight())]
-								[this.getHeight() + Math.abs(direction.getDeltaY() * this.getHeight())], 0, 0),
-						0, this.getHeight(), this.getWidth(), this.getHeight()), 0, this.getHeight() - 1,
-						this.getWidth(), this.getHeight());
+				this.addChunks(world.getLeft(), world.getBottom() + 1, columns, rows, maps);
+				world.wrapRows(world.getBottom() - rows + 1, world.getBottom());
 				break;
 			case WEST:
-				this.setLink(this.setSquare(this.boardCopy(
-						new Square[this.getWidth() + Math.abs(direction.getDeltaX() * this.getWidth())]
-								[this.getHeight() + Math.abs(direction.getDeltaY() * this.getWidth())], this.getWidth(),
-						0), 0, 0, this.getWidth(), this.getHeight()), 0, 0, this.getWidth() + 1, this.getHeight());
+				this.addChunks(world.getLeft() - columns, world.getTop(), columns, rows, maps);
+				world.wrapColumns(world.getLeft(), world.getLeft() + columns - 1);
+				world.wrapEdge(Direction.WEST);
 				break;
 			default:
-				break;
+				return;
 		}
+		world.place();
+		ChunkLayout next = world.layout();
+		units.grow(next);
+		this.revision++;
+		BoardGraph current = graph;
+		Collection<SquareStore> touched = world.takeTouched();
+		if (current != null) {
+			this.graph = current.grow(next, touched, revision);
+		}
+		this.layout = next;
+		this.notifyObservers();
 	}
 
 	/**
-	 * Permet de copier l'ancien board dans le nouveau plus grand.
+	 * Ajoute un rectangle de chunks, chacun rempli par une nouvelle map.
 	 *
-	 * @param newBoard Le nouveau board
-	 * @param startX   L'abscisse de depart
-	 * @param startY   L'ordonnee de depart
-	 * @return Le nouveau board
-	 */
-	private Square[][] boardCopy(Square[][] newBoard, int startX, int startY) {
-		for (int i = 0; i < this.getWidth(); i++) {
-			System.arraycopy(this.board[i], 0, newBoard[i + startX], startY, this.getHeight());
+	 * @param left    La colonne du premier chunk
+	 * @param top     La ligne du premier chunk
+	 * @param columns Le nombre de colonnes de chunks
+	 * @param rows    Le nombre de lignes de chunks
+	 * @param maps    Les maps à ajouter
+	 */
+	private void addChunks(int left, int top, int columns, int rows,
+			Supplier<Square[][]> maps) {
+		for (int i = 0; i < columns; i++) {
+			for (int j = 0; j < rows; j++) {
+				world.add(left + i, top + j, maps.get());
+			}
 		}
-		return newBoard;
 	}
 
 	/**
@@ -202,70 +296,6 @@ public class Board {
 		}
 	}
 
-	/**
-	 * Permet de définir quels square et ou ils doivent être
-	 * placer dans le board
-	 * @param grid    La grille de square
-	 * @param startX  Abscisse de début
-	 * @param startY  Ordonnee de debut
-	 * @param lengthX Longueur sur x
-	 * @param lengthY Longueur sur y
-	 * @return La nouvelle grille de square
-	 */
-	private Square[][] setSquare(Square[][] grid, int startX, int startY, int lengthX, int lengthY) {
-		for (int i = 0; i < lengthX / this.widthOfOneMap; i++) {
-			for (int j = 0; j < lengthY / this.heightOfOneMap; j++) {
-				this.putSquare(grid, startX, startY, i, j);
-			}
-		}
-		return grid;
-	}
-
-	/**
-	 * Permet de placer les squares du nouveau level dans le board à afficher.
-	 * @param grid   La grille de square
-	 * @param startX Abscisse de debut
-	 * @param startY Ordonnee de debut
-	 * @param posX   Abscisse du square dans grid a remplacer
-	 * @param posY   Ordonnee du square dans grid a remplacer
-	 */
-	private void putSquare(Square[][] grid, int startX, int startY, int posX, int posY) {
-		final Level l = this.setOptions();
-		final Square[][] newGrid = l.getBoard().getBoard();
-		for (int i = 0; i < newGrid.length; i++) {
-			System.arraycopy(newGrid[i], 0, grid[startX + (posX * this.widthOfOneMap) + i],
-					startY + (posY * this.heightOfOneMap), newGrid[i].length);
-		}
-	}
-
-	/**
-	 * Mets les liens entre les nouveaux square du board
-	 * @param grid    La grille de square
-	 * @param startX  L'abscisse de debut
-	 * @param startY  L'ordonnee de début
-	 * @param lenghtX La longueur sur x
-	 * @param lenghtY La longueur sur y
-	 */
-	private void setLink(Square[][] grid, int startX, int startY, int lenghtX, int lenghtY) {
-		Square sq1;
-		Square sq2;
-		int x;
-		int y;
-		for (int i = startX; i < startX + lenghtX; i++) {
-			for (int j = startY; j < startY + lenghtY; j++) {
-				sq1 = grid[i][j];
-				for (Direction direction : Direction.values()) {
-					x = (grid.length + i + direction.getDeltaX()) % grid.length;
-					y = (grid[0].length + j + direction.getDeltaY()) % grid[0].length;
-					sq2 = grid[x][y];
-					sq1.link(sq2, direction);
-				}
-			}
-		}
-		this.setPositions(grid);
-		this.setBoard(grid);
-	}
-
 	/**
 	 * Determine the square on the middle of the Board.
 	 *
@@ -274,28 +304,36 @@ public class Board {
 	public Square getMiddleOfTheMap() {
 		Square result = null;
 		if (((getHeight() / 2) % 2 != 0) && ((getWidth() / 2) % 2 != 0)) {
-			result = board[getWidth()/2][getHeight()/2];
+			result = squareAt(getWidth()/2, getHeight()/2);
 		}
 		if (((getHeight() / 2) % 2 == 0) && ((getWidth() / 2) % 2 != 0)) {
-			result = board[getWidth()/2][getHeight()/2 - 1];
+			result = squareAt(getWidth()/2, getHeight()/2 - 1);
 		}
 		if (((getHeight() / 2) % 2 != 0) && ((getWidth() / 2) % 2 == 0)) {
-			result = board[getWidth()/2 - 1][getHeight()/2];
+			result = squareAt(getWidth()/2 - 1, getHeight()/2);
 		}
 		if (((getHeight() / 2) % 2 == 0) && ((getWidth() / 2) % 2 == 0)) {
-			result = board[getWidth()/2 - 1][getHeight()/2 - 1];
+			result = squareAt(getWidth()/2 - 1, getHeight()/2 - 1);
 		}
 		assert result != null : "Follows from invariant.";
 		return result;
 	}
 
 	/**
-	 * Retourne le board actuel
+	 * Retourne le board actuel. La grille n'est construite qu'à la première
+	 * demande après chaque agrandissement, et ne doit pas être modifiée.
 	 *
 	 * @return Le board du jeu
 	 */
 	public Square[][] getBoard() {
-		return board;
+		return layout.toGrid();
+	}
+
+	/**
+	 * @return The places of the chunks holding the squares of this board.
+	 */
+	ChunkLayout getLayout() {
+		return layout;
 	}
 
 	/**
@@ -303,7 +341,99 @@ public class Board {
 	 *
 	 * @param board le nouveau board.
 	 */
-	public void setBoard(Square[][] board) {
-		this.board = board;
+	public synchronized void setBoard(Square[][] board) {
+		this.world = ChunkedWorld.of(this, board, widthOfOneMap, heightOfOneMap);
+		ChunkLayout next = world.layout();
+		next.share(board);
+		world.takeTouched();
+		units.rebuild(next);
+		this.revision++;
+		this.graph = null;
+		this.layout = next;
+		this.notifyObservers();
+	}
+
+	/**
+	 * Lets the observers know that the layout of this board changed.
+	 */
+	private void notifyObservers() {
+		for (BoardObserver observer : observers) {
+			observer.layoutChanged(this);
+		}
+	}
+
+	/**
+	 * Adds an observer that will be notified when the layout of this board
+	 * changes. Adding an observer twice has no effect.
+	 *
+	 * @param observer The observer that will be notified.
+	 */
+	public void addObserver(BoardObserver observer) {
+		if (!observers.contains(observer)) {
+			observers.add(observer);
+		}
+	}
+
+	/**
+	 * Removes an observer of this board.
+	 *
+	 * @param observer The observer that will no longer be notified.
+	 */
+	public void removeObserver(BoardObserver observer) {
+		observers.remove(observer);
+	}
+
+	/**
+	 * Returns the revision of the layout of this board. The revision changes
+	 * every time the grid of squares is replaced, e.g. when the board is
+	 * extended.
+	 *
+	 * @return The revision of the layout of this board.
+	 */
+	public int getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Returns the index of the units on this board, which is kept up to date
+	 * as units occupy and leave its squares.
+	 *
+	 * @return The index of the units on this board.
+	 */
+	public SpatialIndex getSpatialIndex() {
+		return units;
+	}
+
+	/**
+	 * Returns the geometry of this board, with which terrain-free distances
+	 * and paths follow from the coordinates of squares.
+	 *
+	 * @return The geometry of the current layout, or <code>null</code> if
+	 *         not every square is linked to its wrap-around neighbours, as
+	 *         happens when the board has been extended.
+	 */
+	public TorusGeometry getTorusGeometry() {
+		return getGraph().getTorusGeometry();
+	}
+
+	/**
+	 * Returns a flat view on the squares of this board and the links between
+	 * them. The view is built the first time it is asked for, after which it
+	 * grows along with the board, chunk by chunk.
+	 *
+	 * @return A graph of the current layout of this board.
+	 */
+	public BoardGraph getGraph() {
+		BoardGraph result = graph;
+		if (result == null) {
+			synchronized (this) {
+				result = graph;
+				if (result == null) {
+					result = BoardGraph.of(layout, revision);
+					graph = result;
+				}
+			}
+		}
+		return result;
 	}
 }
\ No newline at end of file
@@ -89,6 +89,7 @@ public class BoardFactory {
 		 * @param sprite The background for the square.
 		 */
 		private Wall(Sprite sprite) {
+			super(SquareStore.CLOSED);
 			this.background = sprite;
 		}
 
@@ -98,7 +99,7 @@ public class BoardFactory {
 		 */
 		@Override
 		public boolean isAccessibleTo(Unit unit) {
-			return false;
+			return isOpen();
 		}
 
 		/**
@@ -129,6 +130,7 @@ public class BoardFactory {
 		 *        The background for the square.
 		 */
 		private Ground(Sprite sprite) {
+			super(SquareStore.OPEN);
 			this.background = sprite;
 		}
 
@@ -138,7 +140,7 @@ public class BoardFactory {
 		 */
 		@Override
 		public boolean isAccessibleTo(Unit unit) {
-			return true;
+			return isOpen();
 		}
 
 		/**
@@ -0,0 +1,647 @@
+package nl.tudelft.jpacman.board;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * A flat, index based snapshot of the squares of a {@link Board} and the links
+ * between them. The squares are kept per chunk of the board, in pages: the
+ * square at index <code>i</code> of the chunk in slot <code>s</code> (see
+ * {@link ChunkLayout}) is stored at index <code>s * area + i</code>, where
+ * <code>area</code> is the amount of squares of a chunk. The neighbour of
+ * square <code>i</code> in direction <code>d</code> is kept at
+ * <code>i * 4 + d.ordinal()</code> of its page.
+ * <p>
+ * A graph is immutable and describes the board as it was at the time the
+ * graph was built. When the board grows, the graph of the new layout shares
+ * the pages of the chunks whose links did not change, so that only the pages
+ * of the new chunks and those along the seams are built again.
+ * </p>
+ */
+public final class BoardGraph {
+
+	/**
+	 * The amount of directions, i.e. the amount of neighbours of every square.
+	 */
+	public static final int DIRECTIONS = 4;
+
+	/**
+	 * All directions, indexed by their ordinal.
+	 */
+	private static final Direction[] DIRECTION_VALUES = Direction.values();
+
+	/**
+	 * The places of the chunks.
+	 */
+	private final ChunkLayout layout;
+
+	/**
+	 * The amount of columns of a chunk.
+	 */
+	private final int chunkWidth;
+
+	/**
+	 * The amount of rows of a chunk.
+	 */
+	private final int chunkHeight;
+
+	/**
+	 * The amount of squares of a chunk.
+	 */
+	private final int area;
+
+	/**
+	 * The revision of the board this graph was built from.
+	 */
+	private final int revision;
+
+	/**
+	 * The pages of the chunks, by slot.
+	 */
+	private final Page[] pages;
+
+	/**
+	 * Whether every square is linked to its wrap-around neighbours.
+	 */
+	private final boolean torus;
+
+	/**
+	 * The geometry of the board if it is a torus, or <code>null</code>.
+	 */
+	private final TorusGeometry geometry;
+
+	/**
+	 * Whether every link between squares that are not next to each other
+	 * joins two squares on the edges of their chunks. Set once the pages
+	 * have been built.
+	 */
+	private boolean jumpsAtChunkEdges;
+
+	/**
+	 * Creates a graph with room for the pages of a layout.
+	 *
+	 * @param layout The places of the chunks.
+	 * @param revision The revision of the board the layout belongs to.
+	 */
+	private BoardGraph(ChunkLayout layout, int revision, boolean torus) {
+		this.layout = layout;
+		this.chunkWidth = layout.getChunkWidth();
+		this.chunkHeight = layout.getChunkHeight();
+		this.area = chunkWidth * chunkHeight;
+		this.revision = revision;
+		this.pages = new Page[layout.size()];
+		this.torus = torus;
+		this.geometry = torus ? new TorusGeometry(getWidth(), getHeight())
+				: null;
+	}
+
+	/**
+	 * Builds the graph of all chunks of a layout.
+	 *
+	 * @param layout The places of the chunks.
+	 * @param revision The revision of the board the layout belongs to.
+	 * @return The graph.
+	 */
+	static BoardGraph of(ChunkLayout layout, int revision) {
+		BoardGraph probe = new BoardGraph(layout, revision, false);
+		BitSet all = new BitSet();
+		all.set(0, layout.size());
+		probe.build(all, null);
+		if (!probe.wrapsAround()) {
+			return probe;
+		}
+		BoardGraph result = new BoardGraph(layout, revision, true);
+		System.arraycopy(probe.pages, 0, result.pages, 0, probe.pages.length);
+		result.jumpsAtChunkEdges = probe.jumpsAtChunkEdges;
+		return result;
+	}
+
+	/**
+	 * Builds the graph of a layout that has grown from the layout of this
+	 * graph, reusing the pages of the chunks that were not touched. Takes
+	 * time in proportion to the amount of chunks plus the amount of squares
+	 * of the touched chunks and of the chunks they link to.
+	 * <p>
+	 * A grown board is never a torus: the squares along its old edges keep
+	 * their links across the old board, while their wrap-around neighbours
+	 * are now on the chunks that were added.
+	 * </p>
+	 *
+	 * @param next The places of the chunks, including those of this graph in
+	 *            the same slots.
+	 * @param touched The chunks that were added or whose links changed.
+	 * @param nextRevision The revision of the board the layout belongs to.
+	 * @return The graph of the grown layout.
+	 */
+	BoardGraph grow(ChunkLayout next, Collection<SquareStore> touched,
+			int nextRevision) {
+		assert next.size() >= pages.length;
+		BoardGraph result = new BoardGraph(next, nextRevision, false);
+		System.arraycopy(pages, 0, result.pages, 0, pages.length);
+		BitSet changed = new BitSet();
+		changed.set(pages.length, next.size());
+		for (SquareStore chunk : touched) {
+			changed.set(chunk.getSlot());
+		}
+		for (int slot = 0; slot < pages.length; slot++) {
+			if (pages[slot].fallback) {
+				changed.set(slot);
+			}
+		}
+		result.build(changed, this);
+		return result;
+	}
+
+	/**
+	 * Builds the pages of chunks whose links changed, and the incoming links
+	 * of the chunks they link to or used to link to.
+	 *
+	 * @param changed The slots of the chunks whose links changed.
+	 * @param previous The graph whose pages this graph started from, or
+	 *            <code>null</code>.
+	 */
+	private void build(BitSet changed, BoardGraph previous) {
+		BitSet affected = new BitSet();
+		int[][] outgoing = new int[pages.length][];
+		boolean[] fallback = new boolean[pages.length];
+		boolean[] edgeJumps = new boolean[pages.length];
+		for (int slot = changed.nextSetBit(0); slot >= 0;
+				slot = changed.nextSetBit(slot + 1)) {
+			if (pages[slot] != null) {
+				addTargets(pages[slot].neighbours, affected);
+			}
+			outgoing[slot] = new int[area * DIRECTIONS];
+			fallback[slot] = link(slot, outgoing[slot]);
+			edgeJumps[slot] = jumpsAtEdges(slot, outgoing[slot]);
+			addTargets(outgoing[slot], affected);
+		}
+		affected.or(changed);
+		int[][] sources = new int[pages.length][];
+		for (int slot = affected.nextSetBit(0); slot >= 0;
+				slot = affected.nextSetBit(slot + 1)) {
+			sources[slot] = sources(slot, changed, outgoing, previous);
+		}
+		for (int slot = affected.nextSetBit(0); slot >= 0;
+				slot = affected.nextSetBit(slot + 1)) {
+			Page old = pages[slot];
+			int[] neighbours = outgoing[slot] != null ? outgoing[slot]
+					: old.neighbours;
+			boolean usedFallback = outgoing[slot] != null ? fallback[slot]
+					: old.fallback;
+			boolean pageJumps = outgoing[slot] != null ? edgeJumps[slot]
+					: old.edgeJumps;
+			pages[slot] = incoming(new Page(layout.chunk(slot), neighbours,
+					usedFallback, pageJumps, sources[slot]), slot, outgoing);
+		}
+		jumpsAtChunkEdges = true;
+		for (Page page : pages) {
+			jumpsAtChunkEdges &= page.edgeJumps;
+		}
+	}
+
+	/**
+	 * Checks the links of a chunk between squares that are not next to each
+	 * other, such as the links wrapping around the board or skipping over
+	 * the squares added to it. Whether squares are next to each other, and
+	 * on the edges of their chunks, does not change when the board grows.
+	 *
+	 * @param slot The slot of the chunk.
+	 * @param neighbours The neighbours of the squares of the chunk.
+	 * @return <code>true</code> iff every such link joins two squares on
+	 *         the edges of their chunks.
+	 */
+	private boolean jumpsAtEdges(int slot, int[] neighbours) {
+		for (int link = 0; link < neighbours.length; link++) {
+			int from = slot * area + link / DIRECTIONS;
+			Direction direction = DIRECTION_VALUES[link % DIRECTIONS];
+			int to = neighbours[link];
+			boolean next = getX(to) == getX(from) + direction.getDeltaX()
+					&& getY(to) == getY(from) + direction.getDeltaY();
+			if (!next && (chunkEdgeDistance(from) != 0
+					|| chunkEdgeDistance(to) != 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determines the neighbours of the squares of a chunk.
+	 *
+	 * @param slot The slot of the chunk.
+	 * @param neighbours The array to fill with the index of the neighbour of
+	 *            every square in every direction.
+	 * @return <code>true</code> iff a square has a neighbour that is not on
+	 *         the board, and which was replaced by the square next to it.
+	 */
+	private boolean link(int slot, int[] neighbours) {
+		SquareStore chunk = layout.chunk(slot);
+		boolean fallback = false;
+		for (int i = 0; i < area; i++) {
+			for (int d = 0; d < DIRECTIONS; d++) {
+				Square neighbour = chunk.neighbour(i, d);
+				int linked = neighbour == null ? -1 : indexOf(neighbour);
+				if (linked < 0) {
+					linked = wrappedIndex(slot * area + i, d);
+					fallback = true;
+				}
+				neighbours[i * DIRECTIONS + d] = linked;
+			}
+		}
+		return fallback;
+	}
+
+	/**
+	 * Collects the slots of the chunks the squares of a page link to.
+	 *
+	 * @param neighbours The neighbours of the squares of a page.
+	 * @param slots The slots to add to.
+	 */
+	private void addTargets(int[] neighbours, BitSet slots) {
+		int last = -1;
+		for (int neighbour : neighbours) {
+			int slot = neighbour / area;
+			if (slot != last) {
+				slots.set(slot);
+				last = slot;
+			}
+		}
+	}
+
+	/**
+	 * Determines the chunks with squares that link to a chunk.
+	 *
+	 * @param slot The slot of the chunk.
+	 * @param changed The slots of the chunks whose links changed.
+	 * @param outgoing The new neighbours of the changed chunks, by slot.
+	 * @param previous The graph this graph started from, or
+	 *            <code>null</code>.
+	 * @return The slots of the chunks linking to the chunk, in order.
+	 */
+	private int[] sources(int slot, BitSet changed, int[][] outgoing,
+			BoardGraph previous) {
+		BitSet result = new BitSet();
+		if (previous != null && slot < previous.pages.length) {
+			for (int source : previous.pages[slot].sources) {
+				if (!changed.get(source)) {
+					result.set(source);
+				}
+			}
+		}
+		for (int source = changed.nextSetBit(0); source >= 0;
+				source = changed.nextSetBit(source + 1)) {
+			if (linksTo(outgoing[source], slot)) {
+				result.set(source);
+			}
+		}
+		return result.stream().toArray();
+	}
+
+	/**
+	 * @param neighbours The neighbours of the squares of a page.
+	 * @param slot The slot of a chunk.
+	 * @return <code>true</code> iff a square of the page links to the chunk.
+	 */
+	private boolean linksTo(int[] neighbours, int slot) {
+		for (int neighbour : neighbours) {
+			if (neighbour / area == slot) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collects the links towards the squares of a page from the pages of
+	 * its sources.
+	 *
+	 * @param page The page, without incoming links.
+	 * @param slot The slot of the page.
+	 * @param outgoing The new neighbours of the changed chunks, by slot.
+	 * @return The page with its incoming links.
+	 */
+	private Page incoming(Page page, int slot, int[][] outgoing) {
+		int first = slot * area;
+		int[] start = new int[area + 1];
+		for (int source : page.sources) {
+			int[] links = source == slot ? page.neighbours
+					: outgoing[source] != null ? outgoing[source]
+							: pages[source].neighbours;
+			for (int neighbour : links) {
+				if (neighbour / area == slot) {
+					start[neighbour - first + 1]++;
+				}
+			}
+		}
+		for (int i = 0; i < area; i++) {
+			start[i + 1] += start[i];
+		}
+		int[] links = new int[start[area]];
+		int[] fill = new int[area];
+		for (int source : page.sources) {
+			int[] neighbours = source == slot ? page.neighbours
+					: outgoing[source] != null ? outgoing[source]
+							: pages[source].neighbours;
+			for (int link = 0; link < neighbours.length; link++) {
+				int target = neighbours[link] - first;
+				if (target >= 0 && target < area) {
+					links[start[target] + fill[target]++] =
+							source * area * DIRECTIONS + link;
+				}
+			}
+		}
+		return new Page(page.store, page.neighbours, page.fallback,
+				page.edgeJumps, page.sources, start, links);
+	}
+
+	/**
+	 * @return <code>true</code> iff every square is linked to the squares
+	 *         next to it, wrapping around at the edges.
+	 */
+	private boolean wrapsAround() {
+		for (int slot = 0; slot < pages.length; slot++) {
+			int[] neighbours = pages[slot].neighbours;
+			for (int i = 0; i < area; i++) {
+				for (int d = 0; d < DIRECTIONS; d++) {
+					if (neighbours[i * DIRECTIONS + d]
+							!= wrappedIndex(slot * area + i, d)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param i The index of a square.
+	 * @param d The ordinal of a direction.
+	 * @return The index of the square next to it in that direction when the
+	 *         board wraps around at its edges.
+	 */
+	private int wrappedIndex(int i, int d) {
+		Direction direction = DIRECTION_VALUES[d];
+		int nx = Math.floorMod(getX(i) + direction.getDeltaX(), getWidth());
+		int ny = Math.floorMod(getY(i) + direction.getDeltaY(), getHeight());
+		return index(nx, ny);
+	}
+
+	/**
+	 * @return The width of the board, i.e. the amount of columns.
+	 */
+	public int getWidth() {
+		return layout.getWidth();
+	}
+
+	/**
+	 * @return The height of the board, i.e. the amount of rows.
+	 */
+	public int getHeight() {
+		return layout.getHeight();
+	}
+
+	/**
+	 * @return The amount of squares in this graph.
+	 */
+	public int size() {
+		return pages.length * area;
+	}
+
+	/**
+	 * @return The revision of the board this graph was built from.
+	 */
+	public int getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Returns the index of the square at the given position.
+	 *
+	 * @param x The column of the square.
+	 * @param y The row of the square.
+	 * @return The index of the square at <code>x,y</code>.
+	 */
+	public int index(int x, int y) {
+		int slot = layout.slotAt(x / chunkWidth, y / chunkHeight);
+		return slot * area + y % chunkHeight * chunkWidth + x % chunkWidth;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The column of the square with the given index.
+	 */
+	public int getX(int index) {
+		int slot = index / area;
+		return layout.columnOf(slot) * chunkWidth
+				+ (index - slot * area) % chunkWidth;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The row of the square with the given index.
+	 */
+	public int getY(int index) {
+		int slot = index / area;
+		return layout.rowOf(slot) * chunkHeight
+				+ (index - slot * area) / chunkWidth;
+	}
+
+	/**
+	 * Returns the index of a square in this graph.
+	 *
+	 * @param square The square to look up.
+	 * @return The index of the square, or <code>-1</code> if the square is not
+	 *         part of this graph.
+	 */
+	public int indexOf(Square square) {
+		int slot = layout.slotOf(square);
+		if (slot < 0) {
+			return -1;
+		}
+		return slot * area + square.index();
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The square with the given index.
+	 */
+	public Square squareAt(int index) {
+		int slot = index / area;
+		return pages[slot].store.view(index - slot * area);
+	}
+
+	/**
+	 * Returns the index of the neighbour of a square.
+	 *
+	 * @param index The index of the square.
+	 * @param direction The ordinal of the direction of the neighbour.
+	 * @return The index of the neighbour in the given direction.
+	 */
+	public int neighbour(int index, int direction) {
+		int slot = index / area;
+		return pages[slot].neighbours[(index - slot * area) * DIRECTIONS
+				+ direction];
+	}
+
+	/**
+	 * Returns the amount of links towards a square. Usually these are the
+	 * four neighbours of the square, but along the seam of an extended board
+	 * a square may be linked to from a square it does not link back to.
+	 *
+	 * @param index The index of a square.
+	 * @return The amount of links towards it.
+	 */
+	public int incomingCount(int index) {
+		int slot = index / area;
+		int local = index - slot * area;
+		int[] start = pages[slot].incomingStart;
+		return start[local + 1] - start[local];
+	}
+
+	/**
+	 * Returns a link towards a square.
+	 *
+	 * @param index The index of a square.
+	 * @param k The number of the link, from 0 up to
+	 *            {@link #incomingCount(int)}.
+	 * @return The link, encoded as <code>source * 4 + direction</code>: the
+	 *         index of the square it starts at times {@link #DIRECTIONS},
+	 *         plus the ordinal of its direction.
+	 */
+	public int incomingLink(int index, int k) {
+		int slot = index / area;
+		Page page = pages[slot];
+		return page.incoming[page.incomingStart[index - slot * area] + k];
+	}
+
+	/**
+	 * @return <code>true</code> iff every square is linked to the squares
+	 *         next to it, wrapping around at the edges of the board. This does
+	 *         not hold for boards that have been extended, whose seams skip
+	 *         over the squares that were added.
+	 */
+	public boolean isTorus() {
+		return torus;
+	}
+
+	/**
+	 * Tells whether every link between squares that are not next to each
+	 * other, such as the links wrapping around the board or skipping over the
+	 * squares added to it, joins two squares on the edges of their chunks.
+	 * A path between two squares is then at least as long as the Manhattan
+	 * distance between them, or else as their
+	 * {@link #chunkEdgeDistance(int) distances to the edges of their chunks}
+	 * plus one.
+	 *
+	 * @return <code>true</code> iff every such link is on the edges of
+	 *         chunks.
+	 */
+	public boolean jumpsAtChunkEdges() {
+		return jumpsAtChunkEdges;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The amount of steps from the square to the nearest square on
+	 *         the edges of its chunk.
+	 */
+	public int chunkEdgeDistance(int index) {
+		int local = index % area;
+		int x = local % chunkWidth;
+		int y = local / chunkWidth;
+		return Math.min(Math.min(x, chunkWidth - 1 - x),
+				Math.min(y, chunkHeight - 1 - y));
+	}
+
+	/**
+	 * @return The geometry of the board, or <code>null</code> if it is not a
+	 *         torus.
+	 */
+	TorusGeometry getTorusGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Returns the ordinal of the direction opposite to the given one. This
+	 * relies on the order in which {@link Direction} declares its values.
+	 *
+	 * @param direction The ordinal of a direction.
+	 * @return The ordinal of the opposite direction.
+	 */
+	public static int opposite(int direction) {
+		return direction ^ 1;
+	}
+
+	/**
+	 * @param ordinal The ordinal of a direction.
+	 * @return The direction with the given ordinal.
+	 */
+	public static Direction direction(int ordinal) {
+		return DIRECTION_VALUES[ordinal];
+	}
+
+	/**
+	 * The links from and towards the squares of one chunk. Pages are never
+	 * changed, so that graphs can share them.
+	 */
+	private static final class Page {
+
+		/**
+		 * The squares of the chunk.
+		 */
+		private final SquareStore store;
+
+		/**
+		 * The index of the neighbour of every square in every direction.
+		 */
+		private final int[] neighbours;
+
+		/**
+		 * Whether a square has a neighbour that is not on the board, and
+		 * which was replaced by the square next to it. Such neighbours depend
+		 * on the size of the board, so the page is built again when it grows.
+		 */
+		private final boolean fallback;
+
+		/**
+		 * Whether every link between squares that are not next to each other
+		 * joins two squares on the edges of their chunks.
+		 */
+		private final boolean edgeJumps;
+
+		/**
+		 * The slots of the chunks with squares that link to this chunk.
+		 */
+		private final int[] sources;
+
+		/**
+		 * The position in {@link #incoming} of the first link towards every
+		 * square, with one extra entry marking the end of the last square.
+		 */
+		private final int[] incomingStart;
+
+		/**
+		 * The links towards every square, each encoded as
+		 * <code>source * 4 + direction</code>.
+		 */
+		private final int[] incoming;
+
+		private Page(SquareStore store, int[] neighbours, boolean fallback,
+				boolean edgeJumps, int[] sources) {
+			this(store, neighbours, fallback, edgeJumps, sources, null, null);
+		}
+
+		private Page(SquareStore store, int[] neighbours, boolean fallback,
+				boolean edgeJumps, int[] sources, int[] incomingStart,
+				int[] incoming) {
+			this.store = store;
+			this.neighbours = neighbours;
+			this.fallback = fallback;
+			this.edgeJumps = edgeJumps;
+			this.sources = sources;
+			this.incomingStart = incomingStart;
+			this.incoming = incoming;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package nl.tudelft.jpacman.board;
+
+/**
+ * An observer that will be notified when the layout of a board changes.
+ */
+public interface BoardObserver {
+
+	/**
+	 * The grid of squares of the board has been replaced, e.g. because the
+	 * board was extended. Anything derived from the previous layout should
+	 * be discarded when this event is received.
+	 *
+	 * @param board The board that changed.
+	 */
+	void layoutChanged(Board board);
+}
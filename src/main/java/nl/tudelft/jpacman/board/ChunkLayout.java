@@ -0,0 +1,249 @@
+package nl.tudelft.jpacman.board;
+
+import java.util.Arrays;
+
+/**
+ * The layout of the chunks of a {@link ChunkedWorld} at one point in time:
+ * which chunk is at which column and row, counting from the chunk at the
+ * top left. A layout is immutable and takes time and memory in proportion
+ * to the amount of chunks, not to the amount of squares, so that a board
+ * can publish a new one every time it grows.
+ * <p>
+ * Every chunk also has a slot, the number of chunks that were added to the
+ * world before it. Slots never change while chunks are added, so that
+ * anything kept per chunk can be kept by slot and only needs to be extended
+ * when the world grows.
+ * </p>
+ */
+final class ChunkLayout {
+
+	/**
+	 * The amount of columns of a chunk.
+	 */
+	private final int chunkWidth;
+
+	/**
+	 * The amount of rows of a chunk.
+	 */
+	private final int chunkHeight;
+
+	/**
+	 * The amount of columns of chunks.
+	 */
+	private final int columns;
+
+	/**
+	 * The amount of rows of chunks.
+	 */
+	private final int rows;
+
+	/**
+	 * The slot of the chunk at every column and row, at
+	 * <code>column * rows + row</code>, or -1 where there is none.
+	 */
+	private final int[] slotAt;
+
+	/**
+	 * The chunks by their slot.
+	 */
+	private final SquareStore[] chunks;
+
+	/**
+	 * The column of every chunk, by slot.
+	 */
+	private final int[] columnOf;
+
+	/**
+	 * The row of every chunk, by slot.
+	 */
+	private final int[] rowOf;
+
+	/**
+	 * The grid of all squares, or <code>null</code> if it has not been asked
+	 * for yet.
+	 */
+	private volatile Square[][] grid;
+
+	/**
+	 * Creates a layout.
+	 *
+	 * @param chunkWidth The amount of columns of a chunk.
+	 * @param chunkHeight The amount of rows of a chunk.
+	 * @param columns The amount of columns of chunks.
+	 * @param rows The amount of rows of chunks.
+	 * @param chunks The chunks by their slot.
+	 * @param columnOf The column of every chunk, by slot.
+	 * @param rowOf The row of every chunk, by slot.
+	 */
+	ChunkLayout(int chunkWidth, int chunkHeight, int columns, int rows,
+			SquareStore[] chunks, int[] columnOf, int[] rowOf) {
+		this.chunkWidth = chunkWidth;
+		this.chunkHeight = chunkHeight;
+		this.columns = columns;
+		this.rows = rows;
+		this.chunks = chunks;
+		this.columnOf = columnOf;
+		this.rowOf = rowOf;
+		this.slotAt = new int[columns * rows];
+		Arrays.fill(slotAt, -1);
+		for (int slot = 0; slot < chunks.length; slot++) {
+			slotAt[columnOf[slot] * rows + rowOf[slot]] = slot;
+		}
+	}
+
+	/**
+	 * @return The amount of columns of a chunk.
+	 */
+	int getChunkWidth() {
+		return chunkWidth;
+	}
+
+	/**
+	 * @return The amount of rows of a chunk.
+	 */
+	int getChunkHeight() {
+		return chunkHeight;
+	}
+
+	/**
+	 * @return The amount of columns of chunks.
+	 */
+	int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return The amount of rows of chunks.
+	 */
+	int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return The amount of columns of squares.
+	 */
+	int getWidth() {
+		return columns * chunkWidth;
+	}
+
+	/**
+	 * @return The amount of rows of squares.
+	 */
+	int getHeight() {
+		return rows * chunkHeight;
+	}
+
+	/**
+	 * @return The amount of chunks, i.e. the first slot that is not used.
+	 */
+	int size() {
+		return chunks.length;
+	}
+
+	/**
+	 * @param slot The slot of a chunk.
+	 * @return The chunk.
+	 */
+	SquareStore chunk(int slot) {
+		return chunks[slot];
+	}
+
+	/**
+	 * @param slot The slot of a chunk.
+	 * @return The column of the chunk.
+	 */
+	int columnOf(int slot) {
+		return columnOf[slot];
+	}
+
+	/**
+	 * @param slot The slot of a chunk.
+	 * @return The row of the chunk.
+	 */
+	int rowOf(int slot) {
+		return rowOf[slot];
+	}
+
+	/**
+	 * @param column A column of chunks.
+	 * @param row A row of chunks.
+	 * @return The slot of the chunk there, or -1 if there is none.
+	 */
+	int slotAt(int column, int row) {
+		return slotAt[column * rows + row];
+	}
+
+	/**
+	 * @param square A square.
+	 * @return The slot of the chunk of the square, or -1 if it is not part
+	 *         of this layout.
+	 */
+	int slotOf(Square square) {
+		int slot = square.store().getSlot();
+		if (slot < 0 || slot >= chunks.length
+				|| chunks[slot] != square.store()) {
+			return -1;
+		}
+		return slot;
+	}
+
+	/**
+	 * @return <code>true</code> iff there is a chunk at every column and
+	 *         row.
+	 */
+	boolean isComplete() {
+		for (int slot : slotAt) {
+			if (slot < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param x The column of a square, within the layout.
+	 * @param y The row of a square, within the layout.
+	 * @return The square.
+	 */
+	Square squareAt(int x, int y) {
+		SquareStore chunk = chunks[slotAt(x / chunkWidth, y / chunkHeight)];
+		return chunk.view(y % chunkHeight * chunkWidth + x % chunkWidth);
+	}
+
+	/**
+	 * Shares a grid that was already laid out from the squares of this
+	 * layout, so that it does not have to be laid out again.
+	 *
+	 * @param squares The grid of squares with squares[x][y] being the square
+	 *            at column x, row y.
+	 */
+	void share(Square[][] squares) {
+		assert squares.length == getWidth()
+				&& squares[0].length == getHeight();
+		grid = squares;
+	}
+
+	/**
+	 * Lays out all squares in a grid. The grid is made the first time it is
+	 * asked for and shared after that, so it must not be changed.
+	 *
+	 * @return The grid of squares with grid[x][y] being the square at column
+	 *         x, row y.
+	 */
+	Square[][] toGrid() {
+		Square[][] result = grid;
+		if (result == null) {
+			result = new Square[getWidth()][getHeight()];
+			for (int slot = 0; slot < chunks.length; slot++) {
+				int startX = columnOf[slot] * chunkWidth;
+				int startY = rowOf[slot] * chunkHeight;
+				for (int i = 0; i < chunkWidth * chunkHeight; i++) {
+					result[startX + i % chunkWidth][startY + i / chunkWidth] =
+							chunks[slot].view(i);
+				}
+			}
+			grid = result;
+		}
+		return result;
+	}
+}
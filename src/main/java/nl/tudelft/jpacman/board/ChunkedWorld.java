@@ -0,0 +1,440 @@
+package nl.tudelft.jpacman.board;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The squares of a board kept as chunks of a fixed size, each with a
+ * {@link SquareStore} of its own, in a map keyed by the column and row of
+ * the chunk. Adding a chunk takes time in proportion to its size: its
+ * squares are attached to a new store and only the squares along its edges
+ * are linked to the chunks next to it, while the chunks already present
+ * are left alone apart from the squares on the seams.
+ * <p>
+ * Chunks may be added on any side, also at negative columns and rows. The
+ * coordinates of the squares count from the chunk at the top left, so that
+ * adding chunks on the left or top only moves the origins of the stores.
+ * </p>
+ * <p>
+ * The world keeps track of the chunks whose links changed since they were
+ * last {@link #takeTouched() taken}, so that whatever the board derives
+ * from the links only needs to be redone for those chunks.
+ * </p>
+ */
+final class ChunkedWorld {
+
+	/**
+	 * The board the squares are on.
+	 */
+	private final Board board;
+
+	/**
+	 * The amount of columns of a chunk.
+	 */
+	private final int chunkWidth;
+
+	/**
+	 * The amount of rows of a chunk.
+	 */
+	private final int chunkHeight;
+
+	/**
+	 * The chunks by their column and row, see {@link #key(int, int)}.
+	 */
+	private final Map<Long, SquareStore> chunks = new HashMap<>();
+
+	/**
+	 * The chunks in the order in which they were added, i.e. by slot.
+	 */
+	private final List<SquareStore> slots = new ArrayList<>();
+
+	/**
+	 * The column of every chunk, by slot.
+	 */
+	private final List<Integer> columns = new ArrayList<>();
+
+	/**
+	 * The row of every chunk, by slot.
+	 */
+	private final List<Integer> rows = new ArrayList<>();
+
+	/**
+	 * The chunks that were added or whose links changed since they were
+	 * last taken.
+	 */
+	private final Set<SquareStore> touched = new LinkedHashSet<>();
+
+	/**
+	 * The leftmost column of chunks.
+	 */
+	private int left = Integer.MAX_VALUE;
+
+	/**
+	 * The topmost row of chunks.
+	 */
+	private int top = Integer.MAX_VALUE;
+
+	/**
+	 * The rightmost column of chunks.
+	 */
+	private int right = Integer.MIN_VALUE;
+
+	/**
+	 * The bottom row of chunks.
+	 */
+	private int bottom = Integer.MIN_VALUE;
+
+	/**
+	 * Creates a world without chunks.
+	 *
+	 * @param board The board the squares are on.
+	 * @param chunkWidth The amount of columns of a chunk.
+	 * @param chunkHeight The amount of rows of a chunk.
+	 */
+	ChunkedWorld(Board board, int chunkWidth, int chunkHeight) {
+		assert chunkWidth > 0 && chunkHeight > 0;
+		this.board = board;
+		this.chunkWidth = chunkWidth;
+		this.chunkHeight = chunkHeight;
+	}
+
+	/**
+	 * Cuts a grid of squares into chunks. Links between the squares are
+	 * kept as they are, also across chunks. A grid that cannot be cut into
+	 * chunks of the given size becomes a single chunk.
+	 *
+	 * @param board The board the squares are on.
+	 * @param grid The grid of squares with grid[x][y] being the square at
+	 *            column x, row y.
+	 * @param chunkWidth The amount of columns of a chunk.
+	 * @param chunkHeight The amount of rows of a chunk.
+	 * @return The world of the squares of the grid.
+	 */
+	static ChunkedWorld of(Board board, Square[][] grid, int chunkWidth,
+			int chunkHeight) {
+		int width = grid.length;
+		int height = grid[0].length;
+		ChunkedWorld world;
+		if (width % chunkWidth == 0 && height % chunkHeight == 0) {
+			world = new ChunkedWorld(board, chunkWidth, chunkHeight);
+		} else {
+			world = new ChunkedWorld(board, width, height);
+		}
+		for (int cx = 0; cx < width / world.chunkWidth; cx++) {
+			for (int cy = 0; cy < height / world.chunkHeight; cy++) {
+				Square[][] chunk = new Square[world.chunkWidth][];
+				for (int x = 0; x < world.chunkWidth; x++) {
+					chunk[x] = new Square[world.chunkHeight];
+					System.arraycopy(grid[cx * world.chunkWidth + x],
+							cy * world.chunkHeight, chunk[x], 0,
+							world.chunkHeight);
+				}
+				world.put(cx, cy, SquareStore.attach(board, chunk));
+			}
+		}
+		world.place();
+		return world;
+	}
+
+	/**
+	 * Adds a chunk and links the squares along its edges to those of the
+	 * chunks next to it, both ways. The squares of the chunk are first
+	 * linked to each other as a grid that wraps around at its edges,
+	 * whatever links they had, so squares on edges without a chunk next to
+	 * them wrap around within the chunk unless the world is wrapped around
+	 * afterwards. Call {@link #place()} once all chunks have been added to
+	 * give the squares their coordinates.
+	 *
+	 * @param column The column of the chunk.
+	 * @param row The row of the chunk.
+	 * @param squares The squares of the chunk with squares[x][y] being the
+	 *            square at column x, row y of the chunk.
+	 */
+	void add(int column, int row, Square[][] squares) {
+		SquareStore chunk = put(column, row, SquareStore.layOut(board, squares));
+		for (Direction direction : Direction.values()) {
+			SquareStore next = chunks.get(key(column + direction.getDeltaX(),
+					row + direction.getDeltaY()));
+			if (next != null) {
+				stitch(chunk, next, direction, true);
+			}
+		}
+	}
+
+	/**
+	 * Links the squares on the bottom edge of columns of chunks to those on
+	 * their top edge and back, so that the columns wrap around. Only the
+	 * squares along the edges are visited.
+	 *
+	 * @param from The first column.
+	 * @param to The last column.
+	 */
+	void wrapColumns(int from, int to) {
+		for (int column = from; column <= to; column++) {
+			stitch(chunk(column, bottom), chunk(column, top), Direction.SOUTH,
+					true);
+		}
+	}
+
+	/**
+	 * Links the squares on the right edge of rows of chunks to those on
+	 * their left edge and back, so that the rows wrap around. Only the
+	 * squares along the edges are visited.
+	 *
+	 * @param from The first row.
+	 * @param to The last row.
+	 */
+	void wrapRows(int from, int to) {
+		for (int row = from; row <= to; row++) {
+			stitch(chunk(right, row), chunk(left, row), Direction.EAST, true);
+		}
+	}
+
+	/**
+	 * Links the squares on an outer edge of the world to those on the
+	 * opposite edge, without linking them back.
+	 *
+	 * @param side The edge.
+	 */
+	void wrapEdge(Direction side) {
+		if (side.getDeltaX() != 0) {
+			int from = side.getDeltaX() < 0 ? left : right;
+			int to = side.getDeltaX() < 0 ? right : left;
+			for (int row = top; row <= bottom; row++) {
+				stitch(chunk(from, row), chunk(to, row), side, false);
+			}
+		} else {
+			int from = side.getDeltaY() < 0 ? top : bottom;
+			int to = side.getDeltaY() < 0 ? bottom : top;
+			for (int column = left; column <= right; column++) {
+				stitch(chunk(column, from), chunk(column, to), side, false);
+			}
+		}
+	}
+
+	/**
+	 * Gives every square the coordinates of its place in the world, by
+	 * moving the origins of the stores of the chunks.
+	 */
+	void place() {
+		for (Map.Entry<Long, SquareStore> entry : chunks.entrySet()) {
+			long key = entry.getKey();
+			int column = (int) (key >> Integer.SIZE);
+			int row = (int) key;
+			entry.getValue().moveTo((column - left) * chunkWidth,
+					(row - top) * chunkHeight);
+		}
+	}
+
+	/**
+	 * @param x The column of a square, counting from the left of the world.
+	 * @param y The row of a square, counting from the top of the world.
+	 * @return The square, or <code>null</code> if there is no chunk there.
+	 */
+	Square squareAt(int x, int y) {
+		SquareStore chunk = chunks.get(key(left + Math.floorDiv(x, chunkWidth),
+				top + Math.floorDiv(y, chunkHeight)));
+		if (chunk == null) {
+			return null;
+		}
+		return chunk.view(Math.floorMod(y, chunkHeight) * chunkWidth
+				+ Math.floorMod(x, chunkWidth));
+	}
+
+	/**
+	 * Takes a snapshot of the places of the chunks. The world must be
+	 * rectangular, i.e. have a chunk at every column and row within its
+	 * edges. This takes time in proportion to the amount of chunks.
+	 *
+	 * @return The layout of the chunks, counting from the top left.
+	 */
+	ChunkLayout layout() {
+		int[] columnOf = new int[slots.size()];
+		int[] rowOf = new int[slots.size()];
+		for (int slot = 0; slot < columnOf.length; slot++) {
+			columnOf[slot] = columns.get(slot) - left;
+			rowOf[slot] = rows.get(slot) - top;
+		}
+		ChunkLayout layout = new ChunkLayout(chunkWidth, chunkHeight,
+				right - left + 1, bottom - top + 1,
+				slots.toArray(new SquareStore[slots.size()]), columnOf, rowOf);
+		assert layout.isComplete() : "World is not rectangular";
+		return layout;
+	}
+
+	/**
+	 * Returns the chunks that were added, or whose links changed, since the
+	 * last time they were taken, and starts keeping track anew.
+	 *
+	 * @return The chunks, in the order in which they were first touched.
+	 */
+	Collection<SquareStore> takeTouched() {
+		List<SquareStore> result = new ArrayList<>(touched);
+		touched.clear();
+		return result;
+	}
+
+	/**
+	 * @return The leftmost column of chunks.
+	 */
+	int getLeft() {
+		return left;
+	}
+
+	/**
+	 * @return The topmost row of chunks.
+	 */
+	int getTop() {
+		return top;
+	}
+
+	/**
+	 * @return The rightmost column of chunks.
+	 */
+	int getRight() {
+		return right;
+	}
+
+	/**
+	 * @return The bottom row of chunks.
+	 */
+	int getBottom() {
+		return bottom;
+	}
+
+	/**
+	 * @return The amount of columns of a chunk.
+	 */
+	int getChunkWidth() {
+		return chunkWidth;
+	}
+
+	/**
+	 * @return The amount of rows of a chunk.
+	 */
+	int getChunkHeight() {
+		return chunkHeight;
+	}
+
+	/**
+	 * @return The amount of columns of squares between the outer edges.
+	 */
+	int getWidth() {
+		return (right - left + 1) * chunkWidth;
+	}
+
+	/**
+	 * @return The amount of rows of squares between the outer edges.
+	 */
+	int getHeight() {
+		return (bottom - top + 1) * chunkHeight;
+	}
+
+	/**
+	 * @return The amount of chunks.
+	 */
+	int size() {
+		return chunks.size();
+	}
+
+	/**
+	 * Stores a chunk without linking it to other chunks.
+	 *
+	 * @param column The column of the chunk.
+	 * @param row The row of the chunk.
+	 * @param chunk The store of the squares of the chunk.
+	 * @return The store of the chunk.
+	 */
+	private SquareStore put(int column, int row, SquareStore chunk) {
+		assert chunk.getWidth() == chunkWidth
+				&& chunk.getHeight() == chunkHeight;
+		assert !chunks.containsKey(key(column, row)) : "Chunk already present";
+		chunks.put(key(column, row), chunk);
+		chunk.setSlot(slots.size());
+		slots.add(chunk);
+		columns.add(column);
+		rows.add(row);
+		touched.add(chunk);
+		left = Math.min(left, column);
+		top = Math.min(top, row);
+		right = Math.max(right, column);
+		bottom = Math.max(bottom, row);
+		return chunk;
+	}
+
+	/**
+	 * Links the squares along the edge of a chunk to those along the
+	 * opposite edge of another chunk.
+	 *
+	 * @param from The chunk.
+	 * @param to The other chunk.
+	 * @param direction The side of the first chunk the other chunk is on.
+	 * @param mutual Whether to link the squares of the other chunk back.
+	 */
+	private void stitch(SquareStore from, SquareStore to, Direction direction,
+			boolean mutual) {
+		Direction back = opposite(direction);
+		touched.add(from);
+		if (mutual) {
+			touched.add(to);
+		}
+		boolean across = direction.getDeltaX() != 0;
+		int length = across ? chunkHeight : chunkWidth;
+		for (int i = 0; i < length; i++) {
+			int source;
+			int target;
+			if (across) {
+				int edge = direction.getDeltaX() > 0 ? chunkWidth - 1 : 0;
+				source = i * chunkWidth + edge;
+				target = i * chunkWidth + chunkWidth - 1 - edge;
+			} else {
+				int edge = direction.getDeltaY() > 0 ? chunkHeight - 1 : 0;
+				source = edge * chunkWidth + i;
+				target = (chunkHeight - 1 - edge) * chunkWidth + i;
+			}
+			from.link(source, direction.ordinal(), to.view(target));
+			if (mutual) {
+				to.link(target, back.ordinal(), from.view(source));
+			}
+		}
+	}
+
+	/**
+	 * @param column The column of a chunk.
+	 * @param row The row of a chunk.
+	 * @return The chunk, which must be present.
+	 */
+	private SquareStore chunk(int column, int row) {
+		SquareStore chunk = chunks.get(key(column, row));
+		assert chunk != null : "World is not rectangular";
+		return chunk;
+	}
+
+	/**
+	 * @param direction A direction.
+	 * @return The opposite direction.
+	 */
+	private static Direction opposite(Direction direction) {
+		for (Direction d : Direction.values()) {
+			if (d.getDeltaX() == -direction.getDeltaX()
+					&& d.getDeltaY() == -direction.getDeltaY()) {
+				return d;
+			}
+		}
+		throw new IllegalArgumentException(direction.name());
+	}
+
+	/**
+	 * @param column The column of a chunk.
+	 * @param row The row of a chunk.
+	 * @return The key of the chunk in the map.
+	 */
+	private static long key(int column, int row) {
+		return ((long) column << Integer.SIZE) | (row & 0xffffffffL);
+	}
+}
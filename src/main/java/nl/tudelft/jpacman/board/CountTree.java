@@ -0,0 +1,120 @@
+package nl.tudelft.jpacman.board;
+
+/**
+ * A two-dimensional Fenwick tree of the amount of units of one type on
+ * every square of a chunk. Adding a unit to or removing it from a square and
+ * counting the units in a rectangle of squares both take a number of steps
+ * proportional to the logarithms of the width and height of the chunk, and
+ * the amount on the whole chunk is kept at hand.
+ */
+final class CountTree {
+
+	/**
+	 * The width of the chunk.
+	 */
+	private final int width;
+
+	/**
+	 * The height of the chunk.
+	 */
+	private final int height;
+
+	/**
+	 * The partial sums, with tree[x][y] covering a range of columns ending
+	 * at column x - 1 and a range of rows ending at row y - 1.
+	 */
+	private final int[][] tree;
+
+	/**
+	 * The amount of units on the whole chunk.
+	 */
+	private int total;
+
+	/**
+	 * Creates a tree of the units of a type on a chunk of squares.
+	 *
+	 * @param chunk The squares of the chunk, row by row.
+	 * @param type The type of unit to count, including its subtypes.
+	 */
+	CountTree(SquareStore chunk, Class<?> type) {
+		width = chunk.getWidth();
+		height = chunk.getHeight();
+		tree = new int[width + 1][height + 1];
+		for (int i = 0; i < width * height; i++) {
+			for (Unit unit : chunk.occupants(i)) {
+				if (type.isInstance(unit)) {
+					tree[i % width + 1][i / width + 1]++;
+					total++;
+				}
+			}
+		}
+		for (int[] column : tree) {
+			for (int y = 1; y <= height; y++) {
+				int parent = y + (y & -y);
+				if (parent <= height) {
+					column[parent] += column[y];
+				}
+			}
+		}
+		for (int x = 1; x <= width; x++) {
+			int parent = x + (x & -x);
+			if (parent <= width) {
+				for (int y = 1; y <= height; y++) {
+					tree[parent][y] += tree[x][y];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Changes the amount of units on a square.
+	 *
+	 * @param x The column of the square.
+	 * @param y The row of the square.
+	 * @param delta The amount of units added, or removed if negative.
+	 */
+	void add(int x, int y, int delta) {
+		for (int i = x + 1; i <= width; i += i & -i) {
+			for (int j = y + 1; j <= height; j += j & -j) {
+				tree[i][j] += delta;
+			}
+		}
+		total += delta;
+	}
+
+	/**
+	 * Counts the units in a rectangle of squares within the chunk.
+	 *
+	 * @param left The first column of the rectangle.
+	 * @param top The first row of the rectangle.
+	 * @param right The column just right of the rectangle.
+	 * @param bottom The row just below the rectangle.
+	 * @return The amount of units in the rectangle.
+	 */
+	int count(int left, int top, int right, int bottom) {
+		return prefix(right, bottom) - prefix(left, bottom)
+				- prefix(right, top) + prefix(left, top);
+	}
+
+	/**
+	 * @return The amount of units on the whole chunk.
+	 */
+	int total() {
+		return total;
+	}
+
+	/**
+	 * @param x A column.
+	 * @param y A row.
+	 * @return The amount of units left of the column and above the row.
+	 */
+	private int prefix(int x, int y) {
+		int sum = 0;
+		for (int i = x; i > 0; i -= i & -i) {
+			for (int j = y; j > 0; j -= j & -j) {
+				sum += tree[i][j];
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,707 @@
+package nl.tudelft.jpacman.board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the units on a board, kept up to date as units occupy and
+ * leave squares. Every chunk of the board is divided into cells of a few
+ * squares wide and every type of unit has its own list per cell, so that
+ * questions about units of one type only look at the cells around the
+ * squares of interest instead of at every square of the board.
+ * <p>
+ * Distances are counted in steps, regardless of terrain, taking into account
+ * that the edges of the board wrap around. A query for a type also finds
+ * units of its subtypes. The index is obtained from
+ * {@link Board#getSpatialIndex()} and is safe to use from several threads.
+ * </p>
+ * <p>
+ * Types that are counted often, such as pellets, can be tallied, after
+ * which a {@link CountTree} of them is kept per chunk as well, so that
+ * counting them in a rectangle or on the whole board no longer depends on
+ * the size of the rectangle, only on the amount of chunks it covers.
+ * </p>
+ * <p>
+ * Units are kept by the chunk of their square rather than by coordinates,
+ * so when the board grows only the units on the chunks that were added are
+ * indexed, and the tally is carried over.
+ * </p>
+ */
+public final class SpatialIndex {
+
+	/**
+	 * The largest width and height of a cell.
+	 */
+	private static final int CELL_SIZE = 8;
+
+	/**
+	 * The ids of the concrete types of unit that have been on the board.
+	 */
+	private final Map<Class<?>, Integer> typeIds = new LinkedHashMap<>();
+
+	/**
+	 * The concrete types of unit that have been on the board, by id.
+	 */
+	private final List<Class<?>> types = new ArrayList<>();
+
+	/**
+	 * The amount of units of every concrete type, by id.
+	 */
+	private int[] sizes = new int[0];
+
+	/**
+	 * The tallied types of unit, which include their subtypes.
+	 */
+	private final List<Class<?>> tallied = new ArrayList<>();
+
+	/**
+	 * The amount of units of every tallied type, in the order of
+	 * {@link #tallied}.
+	 */
+	private int[] totals = new int[0];
+
+	/**
+	 * The units on every chunk, by slot.
+	 */
+	private final List<Region> regions = new ArrayList<>();
+
+	/**
+	 * The places of the chunks.
+	 */
+	private ChunkLayout layout;
+
+	/**
+	 * The width of the board.
+	 */
+	private int width;
+
+	/**
+	 * The height of the board.
+	 */
+	private int height;
+
+	/**
+	 * The width of a chunk.
+	 */
+	private int chunkWidth;
+
+	/**
+	 * The height of a chunk.
+	 */
+	private int chunkHeight;
+
+	/**
+	 * The amount of columns of cells of a chunk.
+	 */
+	private int across;
+
+	/**
+	 * The amount of rows of cells of a chunk.
+	 */
+	private int down;
+
+	/**
+	 * The amount of columns of cells of the board.
+	 */
+	private int columns;
+
+	/**
+	 * The amount of rows of cells of the board.
+	 */
+	private int rows;
+
+	/**
+	 * The smallest width or height of a cell.
+	 */
+	private int cellSide;
+
+	/**
+	 * The amount of times a unit occupied or left a square so far.
+	 */
+	private long moves;
+
+	/**
+	 * Creates an index of the units on the chunks of a board.
+	 *
+	 * @param layout The places of the chunks.
+	 */
+	SpatialIndex(ChunkLayout layout) {
+		rebuild(layout);
+	}
+
+	/**
+	 * Forgets every unit and indexes the units on new chunks.
+	 *
+	 * @param next The places of the chunks.
+	 */
+	synchronized void rebuild(ChunkLayout next) {
+		regions.clear();
+		Arrays.fill(sizes, 0);
+		Arrays.fill(totals, 0);
+		grow(next);
+	}
+
+	/**
+	 * Indexes the units on the chunks that were added to the board. The
+	 * chunks already indexed keep their slots, so their units stay where
+	 * they are.
+	 *
+	 * @param next The places of the chunks, including those already indexed.
+	 */
+	synchronized void grow(ChunkLayout next) {
+		layout = next;
+		chunkWidth = next.getChunkWidth();
+		chunkHeight = next.getChunkHeight();
+		width = next.getWidth();
+		height = next.getHeight();
+		across = (chunkWidth + CELL_SIZE - 1) / CELL_SIZE;
+		down = (chunkHeight + CELL_SIZE - 1) / CELL_SIZE;
+		columns = next.getColumns() * across;
+		rows = next.getRows() * down;
+		cellSide = Math.min(chunkWidth / across, chunkHeight / down);
+		for (int slot = regions.size(); slot < next.size(); slot++) {
+			SquareStore chunk = next.chunk(slot);
+			Region region = new Region(chunk);
+			regions.add(region);
+			for (int t = 0; t < tallied.size(); t++) {
+				CountTree tree = new CountTree(chunk, tallied.get(t));
+				region.tallies.add(tree);
+				totals[t] += tree.total();
+			}
+			for (int i = 0; i < chunkWidth * chunkHeight; i++) {
+				for (Unit unit : chunk.occupants(i)) {
+					int id = typeId(unit.getClass());
+					region.bucket(id, across * down).add(cellOf(i), unit);
+					sizes[id]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps a count of the units of a type, so that counting them takes
+	 * a number of steps proportional to the logarithm of the size of a
+	 * chunk for every chunk counted in. Tallying a type twice has no effect.
+	 *
+	 * @param type The type of unit to count, including its subtypes.
+	 */
+	public synchronized void tally(Class<? extends Unit> type) {
+		if (tallied.contains(type)) {
+			return;
+		}
+		tallied.add(type);
+		totals = Arrays.copyOf(totals, tallied.size());
+		for (Region region : regions) {
+			CountTree tree = new CountTree(region.chunk, type);
+			region.tallies.add(tree);
+			totals[totals.length - 1] += tree.total();
+		}
+	}
+
+	/**
+	 * Registers a unit on a square.
+	 *
+	 * @param unit The unit.
+	 * @param square The square it occupies.
+	 */
+	synchronized void add(Unit unit, Square square) {
+		Region region = regionOf(square);
+		if (region == null) {
+			return;
+		}
+		int id = typeId(unit.getClass());
+		region.bucket(id, across * down).add(cellOf(square.index()), unit);
+		sizes[id]++;
+		moves++;
+		updateTallies(region, unit, square, 1);
+	}
+
+	/**
+	 * Unregisters a unit from a square.
+	 *
+	 * @param unit The unit.
+	 * @param square The square it occupied.
+	 */
+	synchronized void remove(Unit unit, Square square) {
+		Region region = regionOf(square);
+		Integer id = typeIds.get(unit.getClass());
+		if (region == null || id == null) {
+			return;
+		}
+		Bucket bucket = region.bucket(id);
+		if (bucket != null && bucket.remove(cellOf(square.index()), unit)) {
+			sizes[id]--;
+			moves++;
+			updateTallies(region, unit, square, -1);
+		}
+	}
+
+	/**
+	 * Returns the amount of times a unit occupied or left a square of the
+	 * board so far. Nothing on the board moved while this stays the same,
+	 * so anything derived from the squares of units can be kept until it
+	 * changes.
+	 *
+	 * @return The amount of moves of units so far.
+	 */
+	public synchronized long getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Updates the tallies of the types of a unit.
+	 *
+	 * @param region The units on the chunk of the square.
+	 * @param unit The unit.
+	 * @param square The square it occupies or occupied.
+	 * @param delta 1 if the unit arrived, -1 if it left.
+	 */
+	private void updateTallies(Region region, Unit unit, Square square,
+			int delta) {
+		for (int t = 0; t < tallied.size(); t++) {
+			if (tallied.get(t).isInstance(unit)) {
+				int index = square.index();
+				region.tallies.get(t).add(index % chunkWidth,
+						index / chunkWidth, delta);
+				totals[t] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Finds the unit of a type that is the fewest steps away from a square.
+	 *
+	 * @param <T> The type of unit.
+	 * @param type The type of unit to search for.
+	 * @param from The square to search from.
+	 * @return The nearest unit of the given type, or <code>null</code> if the
+	 *         board has none.
+	 */
+	public synchronized <T extends Unit> T nearest(Class<T> type,
+			Square from) {
+		int[] matching = matching(type);
+		if (matching.length == 0) {
+			return null;
+		}
+		int x = from.getCoordX();
+		int y = from.getCoordY();
+		int cx = cellColumn(x);
+		int cy = cellRow(y);
+		int rings = Math.max(columns, rows) / 2 + 1;
+		Unit best = null;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int ring = 0; ring <= rings; ring++) {
+			// Cells in this ring are at least ring - 1 cells away along one
+			// axis, each at least cellSide squares wide.
+			if (best != null && bestDistance <= (ring - 1) * cellSide) {
+				break;
+			}
+			for (int dx = -ring; dx <= ring; dx++) {
+				boolean edge = dx == -ring || dx == ring;
+				for (int dy = -ring; dy <= ring; dy += edge ? 1 : 2 * ring) {
+					int column = Math.floorMod(cx + dx, columns);
+					int row = Math.floorMod(cy + dy, rows);
+					Region region = regionAt(column, row);
+					int cell = localCell(column, row);
+					for (int id : matching) {
+						List<Unit> units = region.units(id, cell);
+						if (units == null) {
+							continue;
+						}
+						for (Unit unit : units) {
+							int distance = distance(unit, x, y);
+							if (distance < bestDistance) {
+								bestDistance = distance;
+								best = unit;
+							}
+						}
+					}
+				}
+			}
+		}
+		return type.cast(best);
+	}
+
+	/**
+	 * Finds all units of a type that are at most a number of steps away from
+	 * a square.
+	 *
+	 * @param <T> The type of unit.
+	 * @param type The type of unit to search for.
+	 * @param center The square to search around.
+	 * @param radius The largest amount of steps a unit may be away.
+	 * @return The units of the given type within the radius.
+	 */
+	public synchronized <T extends Unit> List<T> within(Class<T> type,
+			Square center, int radius) {
+		int[] matching = matching(type);
+		if (matching.length == 0) {
+			return Collections.emptyList();
+		}
+		int x = center.getCoordX();
+		int y = center.getCoordY();
+		int reach = radius / cellSide + 1;
+		int firstColumn = cellColumn(x) - reach;
+		int spanColumns = Math.min(2 * reach + 1, columns);
+		if (spanColumns == columns) {
+			firstColumn = 0;
+		}
+		int firstRow = cellRow(y) - reach;
+		int spanRows = Math.min(2 * reach + 1, rows);
+		if (spanRows == rows) {
+			firstRow = 0;
+		}
+		List<T> result = new ArrayList<>();
+		for (int i = 0; i < spanColumns; i++) {
+			int column = Math.floorMod(firstColumn + i, columns);
+			for (int j = 0; j < spanRows; j++) {
+				int row = Math.floorMod(firstRow + j, rows);
+				Region region = regionAt(column, row);
+				int cell = localCell(column, row);
+				for (int id : matching) {
+					List<Unit> units = region.units(id, cell);
+					if (units == null) {
+						continue;
+					}
+					for (Unit unit : units) {
+						if (distance(unit, x, y) <= radius) {
+							result.add(type.cast(unit));
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the units of a type on the whole board.
+	 *
+	 * @param type The type of unit to count.
+	 * @return The amount of units of the given type on the board.
+	 */
+	public synchronized int count(Class<? extends Unit> type) {
+		int tally = tallied.indexOf(type);
+		if (tally >= 0) {
+			return totals[tally];
+		}
+		int result = 0;
+		for (int id : matching(type)) {
+			result += sizes[id];
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the units of a type in a rectangle of squares. The part of the
+	 * rectangle outside the board is ignored. For tallied types this takes a
+	 * number of steps proportional to the logarithm of the size of a chunk
+	 * for every chunk the rectangle partly covers; otherwise to the amount
+	 * of cells the rectangle covers.
+	 *
+	 * @param type The type of unit to count.
+	 * @param x The column of the upper left square of the rectangle.
+	 * @param y The row of the upper left square of the rectangle.
+	 * @param rectangleWidth The amount of columns of the rectangle.
+	 * @param rectangleHeight The amount of rows of the rectangle.
+	 * @return The amount of units of the given type in the rectangle.
+	 */
+	public synchronized int count(Class<? extends Unit> type, int x, int y,
+			int rectangleWidth, int rectangleHeight) {
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + rectangleWidth, width) - 1;
+		int bottom = Math.min(y + rectangleHeight, height) - 1;
+		if (left > right || top > bottom) {
+			return 0;
+		}
+		int tally = tallied.indexOf(type);
+		if (tally >= 0) {
+			return countTallied(tally, left, top, right, bottom);
+		}
+		int[] matching = matching(type);
+		int result = 0;
+		for (int column = cellColumn(left); column <= cellColumn(right);
+				column++) {
+			boolean inside = cellLeft(column) >= left
+					&& cellLeft(column + 1) - 1 <= right;
+			for (int row = cellRow(top); row <= cellRow(bottom); row++) {
+				boolean whole = inside && cellTop(row) >= top
+						&& cellTop(row + 1) - 1 <= bottom;
+				Region region = regionAt(column, row);
+				int cell = localCell(column, row);
+				for (int id : matching) {
+					List<Unit> units = region.units(id, cell);
+					if (units == null) {
+						continue;
+					} else if (whole) {
+						result += units.size();
+						continue;
+					}
+					for (Unit unit : units) {
+						Square square = unit.getSquare();
+						if (square != null && square.getCoordX() >= left
+								&& square.getCoordX() <= right
+								&& square.getCoordY() >= top
+								&& square.getCoordY() <= bottom) {
+							result++;
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the units of a tallied type in a rectangle within the board,
+	 * chunk by chunk.
+	 *
+	 * @param tally The number of the tallied type.
+	 * @param left The first column of the rectangle.
+	 * @param top The first row of the rectangle.
+	 * @param right The last column of the rectangle.
+	 * @param bottom The last row of the rectangle.
+	 * @return The amount of units of the type in the rectangle.
+	 */
+	private int countTallied(int tally, int left, int top, int right,
+			int bottom) {
+		int result = 0;
+		for (int column = left / chunkWidth; column <= right / chunkWidth;
+				column++) {
+			int x0 = Math.max(left - column * chunkWidth, 0);
+			int x1 = Math.min(right - column * chunkWidth + 1, chunkWidth);
+			for (int row = top / chunkHeight; row <= bottom / chunkHeight;
+					row++) {
+				int y0 = Math.max(top - row * chunkHeight, 0);
+				int y1 = Math.min(bottom - row * chunkHeight + 1, chunkHeight);
+				CountTree tree = regions.get(layout.slotAt(column, row))
+						.tallies.get(tally);
+				if (x0 == 0 && y0 == 0 && x1 == chunkWidth
+						&& y1 == chunkHeight) {
+					result += tree.total();
+				} else {
+					result += tree.count(x0, y0, x1, y1);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param type A type of unit.
+	 * @return The ids of the concrete types on the board that are the type
+	 *         or one of its subtypes.
+	 */
+	private int[] matching(Class<?> type) {
+		int[] result = new int[types.size()];
+		int count = 0;
+		for (int id = 0; id < types.size(); id++) {
+			if (sizes[id] > 0 && type.isAssignableFrom(types.get(id))) {
+				result[count++] = id;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * @param type A concrete type of unit.
+	 * @return The id of the type, which is given to it if it has none yet.
+	 */
+	private int typeId(Class<?> type) {
+		Integer id = typeIds.get(type);
+		if (id == null) {
+			id = types.size();
+			typeIds.put(type, id);
+			types.add(type);
+			sizes = Arrays.copyOf(sizes, types.size());
+		}
+		return id;
+	}
+
+	/**
+	 * @param square A square.
+	 * @return The units on the chunk of the square, or <code>null</code> if
+	 *         it is not on a chunk that has been indexed.
+	 */
+	private Region regionOf(Square square) {
+		int slot = layout.slotOf(square);
+		if (slot < 0 || slot >= regions.size()) {
+			return null;
+		}
+		return regions.get(slot);
+	}
+
+	/**
+	 * @param column A column of cells of the board.
+	 * @param row A row of cells of the board.
+	 * @return The units on the chunk of the cell.
+	 */
+	private Region regionAt(int column, int row) {
+		return regions.get(layout.slotAt(column / across, row / down));
+	}
+
+	/**
+	 * @param column A column of cells of the board.
+	 * @param row A row of cells of the board.
+	 * @return The index of the cell within its chunk.
+	 */
+	private int localCell(int column, int row) {
+		return column % across * down + row % down;
+	}
+
+	/**
+	 * @param index The index of a square within its chunk.
+	 * @return The index of the cell of the square within its chunk.
+	 */
+	private int cellOf(int index) {
+		int x = index % chunkWidth;
+		int y = index / chunkWidth;
+		return part(x, across, chunkWidth) * down + part(y, down, chunkHeight);
+	}
+
+	/**
+	 * @param x A column of the board.
+	 * @return The column of cells it is in.
+	 */
+	private int cellColumn(int x) {
+		return x / chunkWidth * across
+				+ part(x % chunkWidth, across, chunkWidth);
+	}
+
+	/**
+	 * @param y A row of the board.
+	 * @return The row of cells it is in.
+	 */
+	private int cellRow(int y) {
+		return y / chunkHeight * down
+				+ part(y % chunkHeight, down, chunkHeight);
+	}
+
+	/**
+	 * @param column A column of cells, or the amount of columns of cells.
+	 * @return The first column of the board in it.
+	 */
+	private int cellLeft(int column) {
+		return column / across * chunkWidth + column % across * chunkWidth
+				/ across;
+	}
+
+	/**
+	 * @param row A row of cells, or the amount of rows of cells.
+	 * @return The first row of the board in it.
+	 */
+	private int cellTop(int row) {
+		return row / down * chunkHeight + row % down * chunkHeight / down;
+	}
+
+	/**
+	 * Determines in which of a number of nearly equal parts a position
+	 * falls, part <code>i</code> starting at <code>i * size / parts</code>.
+	 *
+	 * @param position A position, from 0 up to the size.
+	 * @param parts The amount of parts.
+	 * @param size The size that is divided into parts.
+	 * @return The part the position is in.
+	 */
+	private static int part(int position, int parts, int size) {
+		return ((position + 1) * parts - 1) / size;
+	}
+
+	/**
+	 * @param unit A unit on the board.
+	 * @param x A column.
+	 * @param y A row.
+	 * @return The amount of steps from the given position to the unit, or
+	 *         {@link Integer#MAX_VALUE} if the unit is no longer on a square.
+	 */
+	private int distance(Unit unit, int x, int y) {
+		Square square = unit.getSquare();
+		if (square == null) {
+			return Integer.MAX_VALUE;
+		}
+		int dx = Math.abs(square.getCoordX() - x);
+		int dy = Math.abs(square.getCoordY() - y);
+		return Math.min(dx, width - dx) + Math.min(dy, height - dy);
+	}
+
+	/**
+	 * The units on one chunk.
+	 */
+	private static final class Region {
+
+		/**
+		 * The squares of the chunk.
+		 */
+		private final SquareStore chunk;
+
+		/**
+		 * The units of every concrete type, by id, or <code>null</code> for
+		 * types that have never been on the chunk.
+		 */
+		private final List<Bucket> buckets = new ArrayList<>();
+
+		/**
+		 * The counts of the tallied types, in the order in which they were
+		 * tallied.
+		 */
+		private final List<CountTree> tallies = new ArrayList<>();
+
+		private Region(SquareStore chunk) {
+			this.chunk = chunk;
+		}
+
+		private Bucket bucket(int id) {
+			return id < buckets.size() ? buckets.get(id) : null;
+		}
+
+		private Bucket bucket(int id, int cellCount) {
+			while (buckets.size() <= id) {
+				buckets.add(null);
+			}
+			Bucket bucket = buckets.get(id);
+			if (bucket == null) {
+				bucket = new Bucket(cellCount);
+				buckets.set(id, bucket);
+			}
+			return bucket;
+		}
+
+		private List<Unit> units(int id, int cell) {
+			Bucket bucket = bucket(id);
+			return bucket == null ? null : bucket.cells[cell];
+		}
+	}
+
+	/**
+	 * The units of one concrete type on one chunk, per cell.
+	 */
+	private static final class Bucket {
+
+		/**
+		 * The units in every cell, or <code>null</code> for cells that
+		 * never had one.
+		 */
+		private final List<Unit>[] cells;
+
+		@SuppressWarnings("unchecked")
+		private Bucket(int cellCount) {
+			cells = (List<Unit>[]) new List<?>[cellCount];
+		}
+
+		private void add(int cell, Unit unit) {
+			if (cells[cell] == null) {
+				cells[cell] = new ArrayList<>();
+			}
+			cells[cell].add(unit);
+		}
+
+		private boolean remove(int cell, Unit unit) {
+			return cells[cell] != null && cells[cell].remove(unit);
+		}
+	}
+}
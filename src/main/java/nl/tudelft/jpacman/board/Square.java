@@ -1,45 +1,50 @@
 package nl.tudelft.jpacman.board;
 
-import java.util.*;
-
-import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.function.Consumer;
 
 import nl.tudelft.jpacman.sprite.Sprite;
 
 /**
  * A square on a {@link Board}, which can (or cannot, depending on the type) be
  * occupied by units.
+ * <p>
+ * The state of a square, i.e. its terrain, neighbours, occupants and
+ * coordinates, is kept in the {@link SquareStore} of its board, of which a
+ * square is a view. A square that is not on a board only gets a store of its
+ * own once it is linked, occupied or moved.
+ * </p>
  * 
  * @author Jeroen Roosen 
  */
 public abstract class Square {
 
 	/**
-	 * The units occupying this square, in order of appearance.
-	 */
-	private final List<Unit> occupants;
-
-	/**
-	 * The collection of squares adjacent to this square.
+	 * The store holding the state of this square.
 	 */
-	private final Map<Direction, Square> neighbours;
+	private SquareStore store;
 
 	/**
-	 * La position x du square
+	 * The index of this square in its store.
 	 */
-	private int coordX;
+	private int index;
 
 	/**
-	 * La position y du square
+	 * Creates a new, empty square without terrain.
 	 */
-	private int coordY;
+	protected Square() {
+		this(SquareStore.CUSTOM);
+	}
 
 	/**
 	 * Creates a new, empty square.
+	 *
+	 * @param terrain
+	 *            The terrain of the square.
 	 */
-	protected Square() {
-		this.occupants = new ArrayList<>();
-		this.neighbours = new EnumMap<>(Direction.class);
+	Square(byte terrain) {
+		this.store = SquareStore.detached(terrain);
+		this.index = 0;
 	}
 
 	/**
@@ -50,7 +55,7 @@ public abstract class Square {
 	 * @return The adjacent square in the given direction.
 	 */
 	public Square getSquareAt(Direction direction) {
-		return neighbours.get(direction);
+		return store.neighbour(index, direction.ordinal());
 	}
 
 	/**
@@ -60,18 +65,43 @@ public abstract class Square {
 	 * @param direction The direction the new neighbour is in, as seen from this cell.
 	 */
 	public void link(Square neighbour, Direction direction) {
-		neighbours.put(direction, neighbour);
+		own().link(index, direction.ordinal(), neighbour);
 	}
 
 	/**
 	 * Returns an immutable list of units occupying this square, in the order in
-	 * which they occupied this square (i.e. oldest first.)
+	 * which they occupied this square (i.e. oldest first.) The list is a
+	 * snapshot that does not change when units arrive or leave.
 	 * 
 	 * @return An immutable list of units occupying this square, in the order in
 	 *         which they occupied this square (i.e. oldest first.)
 	 */
 	public List<Unit> getOccupants() {
-		return ImmutableList.copyOf(occupants);
+		return store.occupants(index);
+	}
+
+	/**
+	 * Passes every unit occupying this square to an action, oldest first.
+	 *
+	 * @param action
+	 *            The action to perform on each occupant.
+	 */
+	public void forEachOccupant(Consumer<? super Unit> action) {
+		store.forEachOccupant(index, action);
+	}
+
+	/**
+	 * Returns the unit of a type that occupied this square first.
+	 *
+	 * @param type
+	 *            The type of unit to look for, including its subtypes.
+	 * @param <T>
+	 *            The type of unit.
+	 * @return The oldest occupant of the given type, or <code>null</code> if
+	 *         no unit of the type occupies this square.
+	 */
+	public <T extends Unit> T firstOccupant(Class<T> type) {
+		return store.firstOccupant(index, type);
 	}
 
 	/**
@@ -84,11 +114,7 @@ public abstract class Square {
 	 */
 	public boolean put(Unit occupant) {
 		assert occupant != null;
-		if (!occupants.contains(occupant)) {
-			occupants.add(occupant);
-			return true;
-		}
-		return false;
+		return own().put(index, occupant);
 	}
 
 	/**
@@ -99,7 +125,7 @@ public abstract class Square {
 	 */
 	public void remove(Unit occupant) {
 		assert occupant != null;
-		occupants.remove(occupant);
+		store.remove(index, occupant);
 	}
 
 	/**
@@ -110,7 +136,7 @@ public abstract class Square {
 	 *         square listed as the square they are currently occupying.
 	 */
 	protected boolean invariant() {
-		for (Unit occupant : occupants) {
+		for (Unit occupant : getOccupants()) {
 			if (occupant.getSquare() != this) {
 				return false;
 			}
@@ -123,7 +149,7 @@ public abstract class Square {
 	 * @return La position x du square
      */
 	public int getCoordX() {
-		return coordX;
+		return store.x(index);
 	}
 
 	/**
@@ -131,17 +157,88 @@ public abstract class Square {
 	 * @return La position y du square
 	 */
 	public int getCoordY() {
-		return coordY;
+		return store.y(index);
 	}
 
 	/**
-	 * Permet de mettre a jour les coordonées des square
+	 * Permet de mettre a jour les coordonées d'un square qui n'est sur aucun
+	 * board. Sur un board, c'est le board qui place les squares.
 	 * @param x L'abscisse
 	 * @param y L'ordonnée
      */
 	public void setCoord(int x, int y) {
-		this.coordX = x;
-		this.coordY = y;
+		own().setCoord(index, x, y);
+	}
+
+	/**
+	 * Returns the board this square is placed on.
+	 *
+	 * @return The board this square is placed on, or <code>null</code> if the
+	 *         square has not been placed on a board yet.
+	 */
+	public Board getBoard() {
+		return store.getBoard();
+	}
+
+	/**
+	 * Makes this square a view on a new store, which already holds its
+	 * state.
+	 *
+	 * @param owner The store.
+	 * @param position The index of this square in the store.
+	 */
+	void attach(SquareStore owner, int position) {
+		this.store = owner;
+		this.index = position;
+	}
+
+	/**
+	 * @param owner A store.
+	 * @return <code>true</code> iff this square is a view on the store.
+	 */
+	boolean isViewOn(SquareStore owner) {
+		return store == owner;
+	}
+
+	/**
+	 * @return The store this square is a view on.
+	 */
+	SquareStore store() {
+		return store;
+	}
+
+	/**
+	 * @return The index of this square in its store.
+	 */
+	int index() {
+		return index;
+	}
+
+	/**
+	 * @return The store of this square, which is made for it if it shares
+	 *         the store of detached squares.
+	 */
+	private SquareStore own() {
+		if (store.isDetached()) {
+			store = new SquareStore(this, terrain());
+			index = 0;
+		}
+		return store;
+	}
+
+	/**
+	 * @return The terrain of this square.
+	 */
+	byte terrain() {
+		return store.terrain(index);
+	}
+
+	/**
+	 * @return <code>true</code> iff the terrain of this square lets anyone
+	 *         occupy it.
+	 */
+	boolean isOpen() {
+		return store.terrain(index) == SquareStore.OPEN;
 	}
 
 	/**
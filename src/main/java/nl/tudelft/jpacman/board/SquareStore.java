@@ -0,0 +1,491 @@
+package nl.tudelft.jpacman.board;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The state of the squares of a board, kept in flat arrays indexed by
+ * <code>y * width + x</code>: a terrain byte per square, the index of the
+ * neighbour of every square in every direction and the occupants of every
+ * square. A {@link Square} is a light view on a single index of a store, so
+ * that the squares of a board take little more memory than the arrays, and
+ * walking from square to square does not chase maps and lists.
+ * <p>
+ * Squares that are not on a board share one of the {@link #detached(byte)}
+ * stores, which only hold a terrain, until they are linked, occupied or
+ * moved, after which they get a store of their own. When a board is
+ * created or its grid replaced, a store for the whole grid is filled from
+ * the squares as they are, after which every square becomes a view on it.
+ * Links to squares outside the store, which only exist while a board is
+ * being extended, are kept aside.
+ * </p>
+ */
+final class SquareStore {
+
+	/**
+	 * The terrain of squares that decide for themselves who may occupy
+	 * them.
+	 */
+	static final byte CUSTOM = 0;
+
+	/**
+	 * The terrain of squares anyone may occupy.
+	 */
+	static final byte OPEN = 1;
+
+	/**
+	 * The terrain of squares nobody may occupy.
+	 */
+	static final byte CLOSED = 2;
+
+	/**
+	 * The neighbour of a square that has not been linked.
+	 */
+	static final int NONE = -1;
+
+	/**
+	 * The neighbour of a square linked to a square in another store.
+	 */
+	private static final int FAR = -2;
+
+	/**
+	 * The amount of directions.
+	 */
+	private static final int DIRECTIONS = BoardGraph.DIRECTIONS;
+
+	/**
+	 * An empty list of occupants, shared by all empty squares.
+	 */
+	private static final ImmutableList<Unit> EMPTY = ImmutableList.of();
+
+	/**
+	 * The stores of the squares that are not on a board and have no state
+	 * yet besides their terrain, by terrain: no neighbours, no occupants and
+	 * the coordinates 0,0. They are never changed.
+	 */
+	private static final SquareStore[] DETACHED = {
+			new SquareStore(null, CUSTOM), new SquareStore(null, OPEN),
+			new SquareStore(null, CLOSED) };
+
+	/**
+	 * The board the squares are on, or <code>null</code>.
+	 */
+	private final Board board;
+
+	/**
+	 * The amount of columns.
+	 */
+	private final int width;
+
+	/**
+	 * The amount of rows.
+	 */
+	private final int height;
+
+	/**
+	 * The views on the squares.
+	 */
+	private final Square[] views;
+
+	/**
+	 * The terrain of every square.
+	 */
+	private final byte[] terrain;
+
+	/**
+	 * The index of the neighbour of every square in every direction, at
+	 * <code>index * 4 + direction.ordinal()</code>.
+	 */
+	private final int[] neighbours;
+
+	/**
+	 * The neighbours in other stores, in the same layout as
+	 * {@link #neighbours}, or <code>null</code> if there are none.
+	 */
+	private Square[] far;
+
+	/**
+	 * The occupants of every square, in order of appearance. The lists are
+	 * never changed but replaced on every arrival and departure, so that
+	 * readers get a consistent snapshot without copying or locking.
+	 */
+	private final AtomicReferenceArray<ImmutableList<Unit>> occupants;
+
+	/**
+	 * The column of the first square.
+	 */
+	private int originX;
+
+	/**
+	 * The row of the first square.
+	 */
+	private int originY;
+
+	/**
+	 * The slot of this store in the world of its board, or -1 if it is not
+	 * a chunk of a world.
+	 */
+	private int slot = -1;
+
+	/**
+	 * Creates the store of a single square that is not on a board.
+	 *
+	 * @param square The square, or <code>null</code>.
+	 * @param kind The terrain of the square.
+	 */
+	SquareStore(Square square, byte kind) {
+		this(null, 1, 1);
+		views[0] = square;
+		terrain[0] = kind;
+	}
+
+	/**
+	 * Creates an empty store.
+	 *
+	 * @param board The board, or <code>null</code>.
+	 * @param width The amount of columns.
+	 * @param height The amount of rows.
+	 */
+	private SquareStore(Board board, int width, int height) {
+		this.board = board;
+		this.width = width;
+		this.height = height;
+		int size = width * height;
+		this.views = new Square[size];
+		this.terrain = new byte[size];
+		this.neighbours = new int[size * DIRECTIONS];
+		this.occupants = new AtomicReferenceArray<>(size);
+		Arrays.fill(neighbours, NONE);
+		for (int i = 0; i < size; i++) {
+			occupants.lazySet(i, EMPTY);
+		}
+	}
+
+	/**
+	 * Creates a store for the grid of a board from its squares as they are,
+	 * and makes every square a view on it.
+	 *
+	 * @param board The board.
+	 * @param grid The grid of squares with grid[x][y] being the square at
+	 *            column x, row y.
+	 * @return The store of the board.
+	 */
+	static SquareStore attach(Board board, Square[][] grid) {
+		SquareStore store = new SquareStore(board, grid.length, grid[0].length);
+		Square[] links = new Square[store.neighbours.length];
+		Direction[] directions = Direction.values();
+		for (int x = 0; x < store.width; x++) {
+			for (int y = 0; y < store.height; y++) {
+				int index = y * store.width + x;
+				for (Direction d : directions) {
+					links[index * DIRECTIONS + d.ordinal()] = grid[x][y]
+							.getSquareAt(d);
+				}
+			}
+		}
+		store.fill(grid);
+		for (int link = 0; link < links.length; link++) {
+			if (links[link] != null) {
+				store.link(link / DIRECTIONS, link % DIRECTIONS, links[link]);
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Creates a store for a grid of squares whose links do not matter, and
+	 * makes every square a view on it. The squares are linked to each other
+	 * as a grid that wraps around at its edges.
+	 *
+	 * @param board The board.
+	 * @param grid The grid of squares with grid[x][y] being the square at
+	 *            column x, row y.
+	 * @return The store of the squares.
+	 */
+	static SquareStore layOut(Board board, Square[][] grid) {
+		SquareStore store = new SquareStore(board, grid.length, grid[0].length);
+		store.fill(grid);
+		Direction[] directions = Direction.values();
+		for (int x = 0; x < store.width; x++) {
+			for (int y = 0; y < store.height; y++) {
+				int link = (y * store.width + x) * DIRECTIONS;
+				for (Direction d : directions) {
+					int nx = (x + d.getDeltaX() + store.width) % store.width;
+					int ny = (y + d.getDeltaY() + store.height) % store.height;
+					store.neighbours[link + d.ordinal()] = ny * store.width + nx;
+				}
+			}
+		}
+		return store;
+	}
+
+	/**
+	 * Takes over the occupants of a grid of squares and makes every square a
+	 * view on this store.
+	 *
+	 * @param grid The grid of squares with grid[x][y] being the square at
+	 *            column x, row y.
+	 */
+	private void fill(Square[][] grid) {
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				int index = y * width + x;
+				Square square = grid[x][y];
+				views[index] = square;
+				terrain[index] = square.terrain();
+				List<Unit> units = square.getOccupants();
+				if (!units.isEmpty()) {
+					occupants.set(index, ImmutableList.copyOf(units));
+				}
+			}
+		}
+		for (int index = 0; index < views.length; index++) {
+			views[index].attach(this, index);
+		}
+	}
+
+	/**
+	 * @param kind A terrain.
+	 * @return The store shared by the squares of the terrain that are not on
+	 *         a board and have no other state.
+	 */
+	static SquareStore detached(byte kind) {
+		return DETACHED[kind];
+	}
+
+	/**
+	 * @return <code>true</code> iff this store is shared by squares that are
+	 *         not on a board, and may not be changed.
+	 */
+	boolean isDetached() {
+		return this == DETACHED[terrain[0]];
+	}
+
+	/**
+	 * @return The board of the squares, or <code>null</code>.
+	 */
+	Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * @return The slot of this store in the world of its board, or -1 if it
+	 *         is not a chunk of a world.
+	 */
+	int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * @param slot The slot of this store in the world of its board.
+	 */
+	void setSlot(int slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * @return The amount of columns.
+	 */
+	int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The amount of rows.
+	 */
+	int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The square.
+	 */
+	Square view(int index) {
+		return views[index];
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The terrain of the square.
+	 */
+	byte terrain(int index) {
+		return terrain[index];
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @param direction The ordinal of a direction.
+	 * @return The index of the neighbour of the square in the direction, or
+	 *         {@link #NONE} if it has none in this store.
+	 */
+	int neighbourIndex(int index, int direction) {
+		int neighbour = neighbours[index * DIRECTIONS + direction];
+		return neighbour < 0 ? NONE : neighbour;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @param direction The ordinal of a direction.
+	 * @return The neighbour of the square in the direction, or
+	 *         <code>null</code>.
+	 */
+	Square neighbour(int index, int direction) {
+		int link = index * DIRECTIONS + direction;
+		int neighbour = neighbours[link];
+		if (neighbour >= 0) {
+			return views[neighbour];
+		}
+		return neighbour == FAR ? far[link] : null;
+	}
+
+	/**
+	 * Links a square to a neighbour.
+	 *
+	 * @param index The index of the square.
+	 * @param direction The ordinal of the direction of the neighbour.
+	 * @param neighbour The neighbour.
+	 */
+	void link(int index, int direction, Square neighbour) {
+		int link = index * DIRECTIONS + direction;
+		if (neighbour.isViewOn(this)) {
+			neighbours[link] = neighbour.index();
+			return;
+		}
+		if (far == null) {
+			far = new Square[neighbours.length];
+		}
+		far[link] = neighbour;
+		neighbours[link] = FAR;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The occupants of the square, in order of appearance.
+	 */
+	List<Unit> occupants(int index) {
+		return occupants.get(index);
+	}
+
+	/**
+	 * Passes every occupant of a square to an action, in order of
+	 * appearance.
+	 *
+	 * @param index The index of the square.
+	 * @param action The action.
+	 */
+	void forEachOccupant(int index, Consumer<? super Unit> action) {
+		ImmutableList<Unit> units = occupants.get(index);
+		for (int i = 0; i < units.size(); i++) {
+			action.accept(units.get(i));
+		}
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @param type The type of occupant to look for, including its subtypes.
+	 * @param <T> The type of occupant.
+	 * @return The occupant of the square of the type that arrived first, or
+	 *         <code>null</code> if there is none.
+	 */
+	<T> T firstOccupant(int index, Class<T> type) {
+		ImmutableList<Unit> units = occupants.get(index);
+		for (int i = 0; i < units.size(); i++) {
+			Unit unit = units.get(i);
+			if (type.isInstance(unit)) {
+				return type.cast(unit);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds an occupant to a square, unless it is already there.
+	 *
+	 * @param index The index of the square.
+	 * @param occupant The occupant.
+	 * @return <code>true</code> iff the occupant was added.
+	 */
+	boolean put(int index, Unit occupant) {
+		ImmutableList<Unit> units;
+		ImmutableList<Unit> grown;
+		do {
+			units = occupants.get(index);
+			if (units.contains(occupant)) {
+				return false;
+			}
+			grown = ImmutableList.<Unit>builder().addAll(units).add(occupant)
+					.build();
+		} while (!occupants.compareAndSet(index, units, grown));
+		return true;
+	}
+
+	/**
+	 * Removes an occupant from a square if it is there.
+	 *
+	 * @param index The index of the square.
+	 * @param occupant The occupant.
+	 */
+	void remove(int index, Unit occupant) {
+		ImmutableList<Unit> units;
+		ImmutableList<Unit> shrunk;
+		do {
+			units = occupants.get(index);
+			int position = units.indexOf(occupant);
+			if (position < 0) {
+				return;
+			}
+			shrunk = units.size() == 1 ? EMPTY : ImmutableList.<Unit>builder()
+					.addAll(units.subList(0, position))
+					.addAll(units.subList(position + 1, units.size())).build();
+		} while (!occupants.compareAndSet(index, units, shrunk));
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The column of the square.
+	 */
+	int x(int index) {
+		return originX + index % width;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The row of the square.
+	 */
+	int y(int index) {
+		return originY + index / width;
+	}
+
+	/**
+	 * Gives a square the given coordinates by moving those of all squares.
+	 * This is only meant for placing a square of its own: a square on a
+	 * board may only be given the coordinates it already has, since the
+	 * board places its squares through {@link #moveTo(int, int)}.
+	 *
+	 * @param index The index of the square.
+	 * @param x The new column of the square.
+	 * @param y The new row of the square.
+	 */
+	void setCoord(int index, int x, int y) {
+		assert views.length == 1 || (x == x(index) && y == y(index))
+				: "Squares on a board are placed by the board";
+		moveTo(x - index % width, y - index / width);
+	}
+
+	/**
+	 * Moves the coordinates of all squares so that the first square gets the
+	 * given ones.
+	 *
+	 * @param x The new column of the first square.
+	 * @param y The new row of the first square.
+	 */
+	void moveTo(int x, int y) {
+		originX = x;
+		originY = y;
+	}
+}
@@ -0,0 +1,170 @@
+package nl.tudelft.jpacman.board;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * The geometry of a board whose edges wrap around, regardless of terrain.
+ * On such a board the shortest path between two squares is a number of
+ * vertical steps followed by a number of horizontal steps, each taken the
+ * short way around, so distances and paths follow directly from the
+ * coordinates of the squares without searching the board. Paths are the
+ * same as those found by a breadth first search that tries the directions
+ * in the order in which they are declared: the vertical steps come first,
+ * and when both ways around are equally short the path goes north or west.
+ * <p>
+ * A geometry is obtained from {@link Board#getTorusGeometry()}, which only
+ * offers one while every square of the board is linked to its wrap-around
+ * neighbours.
+ * </p>
+ */
+public final class TorusGeometry {
+
+	/**
+	 * The width of the board.
+	 */
+	private final int width;
+
+	/**
+	 * The height of the board.
+	 */
+	private final int height;
+
+	/**
+	 * Creates the geometry of a board of the given size.
+	 *
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 */
+	TorusGeometry(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * @return The width of the board.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The height of the board.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the length of the shortest path between two squares, ignoring
+	 * terrain.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @return The amount of steps from one square to the other.
+	 */
+	public int distance(Square from, Square to) {
+		return Math.abs(offset(from.getCoordX(), to.getCoordX(), width))
+				+ Math.abs(offset(from.getCoordY(), to.getCoordY(), height));
+	}
+
+	/**
+	 * Returns the shortest path between two squares, ignoring terrain. The
+	 * path is a view computed from the coordinates of the squares; it cannot
+	 * be modified.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @return The vertical steps of the path followed by its horizontal
+	 *         steps.
+	 */
+	public List<Direction> path(Square from, Square to) {
+		int dx = offset(from.getCoordX(), to.getCoordX(), width);
+		int dy = offset(from.getCoordY(), to.getCoordY(), height);
+		return new Path(dy < 0 ? Direction.NORTH : Direction.SOUTH,
+				Math.abs(dy), dx < 0 ? Direction.WEST : Direction.EAST,
+				Math.abs(dx));
+	}
+
+
+	/**
+	 * Returns the first step of the shortest path between two squares,
+	 * ignoring terrain, without building the path.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @return The first direction of {@link #path(Square, Square)}, or
+	 *         <code>null</code> if both squares are at the same place.
+	 */
+	public Direction firstStep(Square from, Square to) {
+		int dy = offset(from.getCoordY(), to.getCoordY(), height);
+		if (dy != 0) {
+			return dy < 0 ? Direction.NORTH : Direction.SOUTH;
+		}
+		int dx = offset(from.getCoordX(), to.getCoordX(), width);
+		if (dx != 0) {
+			return dx < 0 ? Direction.WEST : Direction.EAST;
+		}
+		return null;
+	}
+
+	/**
+	 * @param from A coordinate.
+	 * @param to Another coordinate.
+	 * @param size The amount of coordinates after which they wrap around.
+	 * @return The signed amount of steps from one coordinate to the other,
+	 *         the short way around, going backwards when both ways are
+	 *         equally short.
+	 */
+	private static int offset(int from, int to, int size) {
+		int forward = Math.floorMod(to - from, size);
+		if (forward * 2 >= size && forward > 0) {
+			return forward - size;
+		}
+		return forward;
+	}
+
+	/**
+	 * A path of steps in one direction followed by steps in another.
+	 */
+	private static final class Path extends AbstractList<Direction> {
+
+		private final Direction first;
+
+		private final int firstSteps;
+
+		private final Direction second;
+
+		private final int steps;
+
+		private Path(Direction first, int firstSteps, Direction second,
+				int secondSteps) {
+			this.first = first;
+			this.firstSteps = firstSteps;
+			this.second = second;
+			this.steps = firstSteps + secondSteps;
+		}
+
+		@Override
+		public Direction get(int index) {
+			if (index < 0 || index >= steps) {
+				throw new IndexOutOfBoundsException("Index: " + index);
+			}
+			if (index < firstSteps) {
+				return first;
+			}
+			return second;
+		}
+
+		@Override
+		public int size() {
+			return steps;
+		}
+	}
+}
@@ -87,9 +87,14 @@ public abstract class Unit {
 		
 		if (square != null) {
 			square.remove(this);
+			unindex(square);
 		}
 		square = target;
 		target.put(this);
+		Board board = target.getBoard();
+		if (board != null) {
+			board.getSpatialIndex().add(this, target);
+		}
 		assert invariant();
 	}
 	
@@ -99,10 +104,23 @@ public abstract class Unit {
 	public void leaveSquare() {
 		if (square != null) {
 			square.remove(this);
+			unindex(square);
 			square = null;
 		}
 	}
 
+	/**
+	 * Removes this unit from the index of the board of a square it left.
+	 *
+	 * @param left The square this unit left.
+	 */
+	private void unindex(Square left) {
+		Board board = left.getBoard();
+		if (board != null) {
+			board.getSpatialIndex().remove(this, left);
+		}
+	}
+
 	/**
 	 * Tests whether the square this unit is occupying has this unit listed as
 	 * one of its occupiers.
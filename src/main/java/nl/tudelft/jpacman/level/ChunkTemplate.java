@@ -0,0 +1,237 @@
+package nl.tudelft.jpacman.level;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.tudelft.jpacman.PacmanConfigurationException;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.Square;
+
+/**
+ * A map that is parsed once and then stamped out as the squares of a chunk
+ * of an infinite board as many times as needed. Stamping goes over the
+ * squares of the map in a single pass, without parsing text or creating a
+ * {@link Level}, so that it has no effect on the
+ * {@link nl.tudelft.jpacman.Launcher} or on the ghosts.
+ * <p>
+ * Templates are immutable and can be stamped from any thread. Since a chunk
+ * has no level of its own, a template only supports the squares and units
+ * that do not need one: ' ' (space) for an empty square, '#' for a wall,
+ * '.' for a pellet and 'o' for a super pellet, as described in
+ * {@link MapParser}.
+ * </p>
+ */
+public final class ChunkTemplate {
+
+	/**
+	 * An empty square.
+	 */
+	private static final byte GROUND = 0;
+
+	/**
+	 * A wall.
+	 */
+	private static final byte WALL = 1;
+
+	/**
+	 * A square with a pellet.
+	 */
+	private static final byte PELLET = 2;
+
+	/**
+	 * A square with a super pellet.
+	 */
+	private static final byte SUPER_PELLET = 3;
+
+	/**
+	 * The templates parsed so far, by the name of their resource.
+	 */
+	private static final Map<String, ChunkTemplate> RESOURCES =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * The amount of columns.
+	 */
+	private final int width;
+
+	/**
+	 * The amount of rows.
+	 */
+	private final int height;
+
+	/**
+	 * The kind of every square, at <code>y * width + x</code>.
+	 */
+	private final byte[] cells;
+
+	/**
+	 * Creates a template.
+	 *
+	 * @param width The amount of columns.
+	 * @param height The amount of rows.
+	 * @param cells The kind of every square, at <code>y * width + x</code>.
+	 */
+	private ChunkTemplate(int width, int height, byte[] cells) {
+		this.width = width;
+		this.height = height;
+		this.cells = cells;
+	}
+
+	/**
+	 * Returns the template of a map on the class path, which is parsed the
+	 * first time it is asked for.
+	 *
+	 * @param resource
+	 *            The name of the resource, e.g.
+	 *            <code>/boardExtendedAdd1.txt</code>.
+	 * @return The template of the map.
+	 * @throws PacmanConfigurationException
+	 *             if the resource cannot be read or is not a valid template.
+	 */
+	public static ChunkTemplate forResource(String resource) {
+		return RESOURCES.computeIfAbsent(resource, ChunkTemplate::read);
+	}
+
+	/**
+	 * Parses the first section of the text representation of a map.
+	 *
+	 * @param text
+	 *            The lines of the map, all of the same width, the first line
+	 *            being the top row. Lines after a line starting with '-' are
+	 *            ignored.
+	 * @return The template of the map.
+	 * @throws PacmanConfigurationException
+	 *             if the map is empty, the lines differ in width or a
+	 *             character is not supported.
+	 */
+	public static ChunkTemplate parse(List<String> text) {
+		int height = 0;
+		while (height < text.size() && !text.get(height).startsWith("-")) {
+			height++;
+		}
+		if (height == 0 || text.get(0).isEmpty()) {
+			throw new PacmanConfigurationException(
+					"A chunk template must have at least one square.");
+		}
+		int width = text.get(0).length();
+		byte[] cells = new byte[width * height];
+		for (int y = 0; y < height; y++) {
+			String line = text.get(y);
+			if (line.length() != width) {
+				throw new PacmanConfigurationException(
+						"Input text lines are not of equal width.");
+			}
+			for (int x = 0; x < width; x++) {
+				cells[y * width + x] = kind(line.charAt(x), x, y);
+			}
+		}
+		return new ChunkTemplate(width, height, cells);
+	}
+
+	/**
+	 * Creates the squares of a new chunk, with their pellets. The squares
+	 * are not linked to each other; the board links them when the chunk is
+	 * added.
+	 *
+	 * @param squares
+	 *            The factory of the squares.
+	 * @param units
+	 *            The factory of the pellets.
+	 * @return The squares with squares[x][y] being the square at column x,
+	 *         row y.
+	 */
+	public Square[][] stamp(BoardFactory squares, LevelFactory units) {
+		Square[][] grid = new Square[width][height];
+		for (int i = 0; i < cells.length; i++) {
+			Square square;
+			switch (cells[i]) {
+				case WALL:
+					square = squares.createWall();
+					break;
+				case PELLET:
+					square = squares.createGround();
+					units.createPellet().occupy(square);
+					break;
+				case SUPER_PELLET:
+					square = squares.createGround();
+					units.createSuperPellet().occupy(square);
+					Pellet.superPelletLeft++;
+					break;
+				default:
+					square = squares.createGround();
+					break;
+			}
+			grid[i % width][i / width] = square;
+		}
+		return grid;
+	}
+
+	/**
+	 * @return The amount of columns.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The amount of rows.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Reads and parses a map on the class path.
+	 *
+	 * @param resource The name of the resource.
+	 * @return The template of the map.
+	 */
+	private static ChunkTemplate read(String resource) {
+		try (InputStream source = ChunkTemplate.class
+				.getResourceAsStream(resource)) {
+			if (source == null) {
+				throw new PacmanConfigurationException("Unable to load "
+						+ resource + ", resource does not exist.");
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					source, "UTF-8"));
+			List<String> lines = new ArrayList<>();
+			for (String line = reader.readLine(); line != null; line = reader
+					.readLine()) {
+				lines.add(line);
+			}
+			return parse(lines);
+		} catch (IOException e) {
+			throw new PacmanConfigurationException("Unable to read "
+					+ resource, e);
+		}
+	}
+
+	/**
+	 * @param c A character of a map.
+	 * @param x The column of the character.
+	 * @param y The row of the character.
+	 * @return The kind of square it stands for.
+	 */
+	private static byte kind(char c, int x, int y) {
+		switch (c) {
+			case ' ':
+				return GROUND;
+			case '#':
+				return WALL;
+			case '.':
+				return PELLET;
+			case 'o':
+				return SUPER_PELLET;
+			default:
+				throw new PacmanConfigurationException("Invalid character at "
+						+ x + "," + y + ": " + c);
+		}
+	}
+}
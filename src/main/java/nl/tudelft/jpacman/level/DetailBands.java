@@ -0,0 +1,341 @@
+package nl.tudelft.jpacman.level;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.TorusGeometry;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.npc.ghost.Ghost;
+
+/**
+ * Levels of detail for the decisions of ghosts, by their distance to the
+ * nearest player. On an infinite board most ghosts are far outside the part
+ * of the board that is drawn, where nobody sees whether they chase the
+ * player cleverly. Ghosts in the nearest band move at their own pace and
+ * search for their paths as usual; ghosts further away move less often and,
+ * in the furthest bands, head for the player without searching, with
+ * {@link Ghost#roughMove(Square)}. A ghost is promoted back to full detail
+ * as soon as a player comes near, since its band is determined anew on
+ * every move.
+ * <p>
+ * Every band keeps track of the time its ghosts spent deciding and of the
+ * moves it saved, from which the time saved compared to full detail is
+ * estimated.
+ * </p>
+ */
+public final class DetailBands {
+
+	/**
+	 * The distance up to which ghosts are in view of the player, as drawn
+	 * on an infinite board.
+	 */
+	public static final int VIEW_DISTANCE = 20;
+
+	/**
+	 * The distance up to which ghosts still search for their paths.
+	 */
+	public static final int NEAR_DISTANCE = 60;
+
+	/**
+	 * The bands, ordered by the distance they reach.
+	 */
+	private final List<Band> bands;
+
+	/**
+	 * Creates the default bands: full detail in view of the player, half the
+	 * rate up to {@link #NEAR_DISTANCE}, and a quarter of the rate without
+	 * searching beyond.
+	 */
+	public DetailBands() {
+		this(new Band(VIEW_DISTANCE, 1, true),
+				new Band(NEAR_DISTANCE, 2, true),
+				new Band(Integer.MAX_VALUE, 4, false));
+	}
+
+	/**
+	 * Creates levels of detail.
+	 *
+	 * @param bands
+	 *            The bands, ordered by the distance they reach. The last one
+	 *            must reach {@link Integer#MAX_VALUE}.
+	 */
+	public DetailBands(Band... bands) {
+		assert bands.length > 0;
+		assert bands[bands.length - 1].reach == Integer.MAX_VALUE;
+		for (int i = 1; i < bands.length; i++) {
+			assert bands[i - 1].reach < bands[i].reach;
+		}
+		this.bands = Collections.unmodifiableList(
+				new ArrayList<>(Arrays.asList(bands)));
+	}
+
+	/**
+	 * @return The bands, ordered by the distance they reach.
+	 */
+	public List<Band> getBands() {
+		return bands;
+	}
+
+	/**
+	 * Returns the band of a square.
+	 *
+	 * @param square
+	 *            The square.
+	 * @param players
+	 *            The players on the board.
+	 * @return The band of the distance from the square to the nearest
+	 *         player.
+	 */
+	public Band bandOf(Square square, Collection<? extends Unit> players) {
+		return bandAt(distance(square, nearest(square, players)));
+	}
+
+	/**
+	 * Returns the amount of time the ghosts in a band saved by their lower
+	 * level of detail, estimated from the time a decision takes in the
+	 * first band: every move a ghost skipped would have taken a decision at
+	 * full detail, and every decision made without searching saved the
+	 * difference with a decision at full detail.
+	 *
+	 * @param band
+	 *            One of the bands.
+	 * @return The estimated time saved, in nanoseconds.
+	 */
+	public long savedNanos(Band band) {
+		Band full = bands.get(0);
+		long decisions = full.getDecisions();
+		if (decisions == 0 || band == full) {
+			return 0;
+		}
+		double perDecision = (double) full.getNanos() / decisions;
+		double saved = band.getSkipped() * perDecision;
+		if (!band.searches && full.searches) {
+			saved += band.getDecisions() * perDecision - band.getNanos();
+		}
+		return Math.max(0, Math.round(saved));
+	}
+
+	/**
+	 * @return A line per band with its decisions, skipped moves and the
+	 *         estimated time it saved.
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for (Band band : bands) {
+			report.append(String.format(
+					"%s: %d decisions in %.1f ms, %d moves skipped,"
+					+ " %.1f ms saved%n", band, band.getDecisions(),
+					band.getNanos() / 1e6, band.getSkipped(),
+					savedNanos(band) / 1e6));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Lets a ghost decide on its next move at the level of detail of its
+	 * band.
+	 *
+	 * @param ghost The ghost.
+	 * @param players The players on the board.
+	 * @param search Decides on the move of the ghost at full detail.
+	 * @return The next move of the ghost, or <code>null</code>.
+	 */
+	Direction decide(Ghost ghost, Collection<? extends Unit> players,
+			Supplier<Direction> search) {
+		Square square = ghost.getSquare();
+		if (square == null) {
+			return search.get();
+		}
+		Square player = nearest(square, players);
+		Band band = bandAt(distance(square, player));
+		long start = System.nanoTime();
+		Direction move = band.searches ? search.get()
+				: ghost.roughMove(player);
+		band.decisions.incrementAndGet();
+		band.nanos.addAndGet(System.nanoTime() - start);
+		return move;
+	}
+
+	/**
+	 * Returns the time until the next move of a ghost, at the rate of its
+	 * band.
+	 *
+	 * @param ghost The ghost.
+	 * @param players The players on the board.
+	 * @return The interval of the ghost, times the slowdown of its band.
+	 */
+	long interval(Ghost ghost, Collection<? extends Unit> players) {
+		Square square = ghost.getSquare();
+		if (square == null) {
+			return ghost.getInterval();
+		}
+		Band band = bandOf(square, players);
+		band.skipped.addAndGet(band.slowdown - 1);
+		return ghost.getInterval() * band.slowdown;
+	}
+
+	/**
+	 * @param distance A distance to the nearest player.
+	 * @return The band that reaches that distance.
+	 */
+	private Band bandAt(int distance) {
+		for (Band band : bands) {
+			if (distance <= band.reach) {
+				return band;
+			}
+		}
+		return bands.get(bands.size() - 1);
+	}
+
+	/**
+	 * @param square A square.
+	 * @param players The players on the board.
+	 * @return The square of the player nearest to the square, or
+	 *         <code>null</code> if no player is on the board.
+	 */
+	static Square nearest(Square square,
+			Collection<? extends Unit> players) {
+		Square nearest = null;
+		int distance = Integer.MAX_VALUE;
+		for (Unit player : players) {
+			Square location = player.getSquare();
+			if (location == null) {
+				continue;
+			}
+			int d = distance(square, location);
+			if (d < distance) {
+				nearest = location;
+				distance = d;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * @param from A square.
+	 * @param to Another square, or <code>null</code>.
+	 * @return The distance between the squares regardless of terrain, or
+	 *         {@link Integer#MAX_VALUE} if there is no other square.
+	 */
+	private static int distance(Square from, Square to) {
+		if (to == null) {
+			return Integer.MAX_VALUE;
+		}
+		Board board = from.getBoard();
+		TorusGeometry torus = board == null ? null : board.getTorusGeometry();
+		if (torus != null) {
+			return torus.distance(from, to);
+		}
+		return Math.abs(from.getCoordX() - to.getCoordX())
+				+ Math.abs(from.getCoordY() - to.getCoordY());
+	}
+
+	/**
+	 * A range of distances to the nearest player, with the level of detail
+	 * of the ghosts in it.
+	 */
+	public static final class Band {
+
+		/**
+		 * The largest distance in this band.
+		 */
+		private final int reach;
+
+		/**
+		 * The factor by which the intervals of ghosts in this band grow.
+		 */
+		private final int slowdown;
+
+		/**
+		 * Whether ghosts in this band search for their paths.
+		 */
+		private final boolean searches;
+
+		private final AtomicLong decisions = new AtomicLong();
+
+		private final AtomicLong nanos = new AtomicLong();
+
+		private final AtomicLong skipped = new AtomicLong();
+
+		/**
+		 * Creates a band.
+		 *
+		 * @param reach
+		 *            The largest distance to the nearest player in the band.
+		 * @param slowdown
+		 *            The factor by which the intervals of ghosts in the band
+		 *            grow.
+		 * @param searches
+		 *            Whether ghosts in the band search for their paths, or
+		 *            head for the player without searching.
+		 */
+		public Band(int reach, int slowdown, boolean searches) {
+			assert reach >= 0;
+			assert slowdown >= 1;
+			this.reach = reach;
+			this.slowdown = slowdown;
+			this.searches = searches;
+		}
+
+		/**
+		 * @return The largest distance to the nearest player in this band.
+		 */
+		public int getReach() {
+			return reach;
+		}
+
+		/**
+		 * @return The factor by which the intervals of ghosts in this band
+		 *         grow.
+		 */
+		public int getSlowdown() {
+			return slowdown;
+		}
+
+		/**
+		 * @return Whether ghosts in this band search for their paths.
+		 */
+		public boolean searches() {
+			return searches;
+		}
+
+		/**
+		 * @return The amount of decisions made by ghosts in this band.
+		 */
+		public long getDecisions() {
+			return decisions.get();
+		}
+
+		/**
+		 * @return The time spent on the decisions in this band, in
+		 *         nanoseconds.
+		 */
+		public long getNanos() {
+			return nanos.get();
+		}
+
+		/**
+		 * @return The amount of moves ghosts in this band skipped by moving
+		 *         less often.
+		 */
+		public long getSkipped() {
+			return skipped.get();
+		}
+
+		@Override
+		public String toString() {
+			String range = reach == Integer.MAX_VALUE ? "any distance"
+					: "up to " + reach;
+			return range + " (x" + slowdown
+					+ (searches ? "" : ", no search") + ")";
+		}
+	}
+}
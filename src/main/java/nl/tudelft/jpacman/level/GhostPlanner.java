@@ -0,0 +1,440 @@
+package nl.tudelft.jpacman.level;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.npc.ghost.CooperativePlanner;
+import nl.tudelft.jpacman.npc.ghost.Ghost;
+
+/**
+ * Moves the ghosts of a level in ticks instead of on a thread per ghost.
+ * Every tick the ghosts whose move is due decide on their next move in
+ * parallel on a {@link ForkJoinPool}, while no unit on the level can move,
+ * after which the moves are applied one by one through
+ * {@link Level#move(nl.tudelft.jpacman.board.Unit, Direction)} in the order
+ * the ghosts were added to the level.
+ * <p>
+ * Since every ghost decides against the same state of the board and draws
+ * its random moves from a source of its own, the decisions of a tick do not
+ * depend on the order in which they are made: after {@link #seed(long)}
+ * they are the same as those of planning one ghost after the other.
+ * </p>
+ * <p>
+ * The search budget of the level, if any, is shared evenly among the ghosts
+ * of a tick. If that would leave every ghost less than
+ * {@link #MINIMUM_SHARE} squares, too little for a useful search, only as
+ * many ghosts as the budget allows search, taking turns from one tick to the
+ * next, and the others move towards the nearest player without searching.
+ * The flow fields towards the players are shared by all ghosts, so they
+ * are worked on before the ghosts decide, with up to half of the budget,
+ * and the ghosts share what is left. A field larger than that takes several
+ * ticks, during which the ghosts follow the last complete field or move at
+ * random at crossroads. Either way a tick expands no more squares than the
+ * budget, however large the board.
+ * </p>
+ * <p>
+ * With a {@link CooperativePlanner} the ghosts of a tick are instead planned
+ * together, so that they share their searches and avoid each other.
+ * </p>
+ * <p>
+ * The planner times every tick, so that the cost of a tick can be followed
+ * as the amount of ghosts grows.
+ * </p>
+ */
+public final class GhostPlanner {
+
+	/**
+	 * The time between two ticks, in milliseconds.
+	 */
+	public static final long TICK = 16;
+
+	/**
+	 * The largest amount of ghosts a single task plans for.
+	 */
+	private static final int GHOSTS_PER_TASK = 4;
+
+	/**
+	 * The smallest amount of squares a ghost may expand when the search
+	 * budget of a tick is shared among many ghosts.
+	 */
+	private static final int MINIMUM_SHARE = 64;
+
+	/**
+	 * The flow fields may take up to one in this many squares of the search
+	 * budget of a tick.
+	 */
+	private static final int FIELD_SHARE = 2;
+
+	/**
+	 * The position among the ghosts of a tick of the first ghost that may
+	 * search, if the budget does not suffice for all of them.
+	 */
+	private int turn;
+
+	/**
+	 * The level whose ghosts are moved.
+	 */
+	private final Level level;
+
+	/**
+	 * The pool the decisions are made on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The planner that plans all ghosts of a tick together, or
+	 * <code>null</code> if they decide independently.
+	 */
+	private volatile CooperativePlanner cooperative;
+
+	/**
+	 * The time at which every ghost should move next.
+	 */
+	private final Map<Ghost, Long> due = new HashMap<>();
+
+	/**
+	 * The amount of ticks so far.
+	 */
+	private long ticks;
+
+	/**
+	 * The amount of moves decided on so far.
+	 */
+	private long decisions;
+
+	/**
+	 * The time all ticks took, in nanoseconds.
+	 */
+	private long tickNanos;
+
+	/**
+	 * The time the longest tick took, in nanoseconds.
+	 */
+	private long longestTick;
+
+	/**
+	 * The amount of ticks that took longer than {@link #TICK}.
+	 */
+	private long overruns;
+
+	/**
+	 * Creates a planner that decides on the common pool.
+	 *
+	 * @param level
+	 *            The level whose ghosts are moved.
+	 */
+	public GhostPlanner(Level level) {
+		this(level, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a planner.
+	 *
+	 * @param level
+	 *            The level whose ghosts are moved.
+	 * @param pool
+	 *            The pool the decisions are made on.
+	 */
+	public GhostPlanner(Level level, ForkJoinPool pool) {
+		assert level != null;
+		assert pool != null;
+		this.level = level;
+		this.pool = pool;
+	}
+
+	/**
+	 * Seeds the random moves of the ghosts currently on the level, in the
+	 * order they were added to it.
+	 *
+	 * @param seed
+	 *            The seed from which the seed of every ghost is drawn.
+	 */
+	public void seed(long seed) {
+		Random seeds = new Random(seed);
+		for (Ghost ghost : ghosts()) {
+			ghost.setSeed(seeds.nextLong());
+		}
+	}
+
+	/**
+	 * Lets the ghosts of a tick be planned together, one after the other,
+	 * instead of deciding independently in parallel.
+	 *
+	 * @param planner
+	 *            The cooperative planner, or <code>null</code> to let the
+	 *            ghosts decide independently again.
+	 */
+	public void setCooperativePlanner(CooperativePlanner planner) {
+		this.cooperative = planner;
+	}
+
+	/**
+	 * Moves the ghosts whose move is due, and times how long that takes. A
+	 * ghost that is seen for the first time is due after its interval.
+	 *
+	 * @param now
+	 *            The current time, in milliseconds.
+	 * @return The amount of ghosts that decided on a move.
+	 */
+	public synchronized int tick(long now) {
+		long start = System.nanoTime();
+		int moved = move(now);
+		long spent = System.nanoTime() - start;
+		ticks++;
+		decisions += moved;
+		tickNanos += spent;
+		longestTick = Math.max(longestTick, spent);
+		if (spent > TimeUnit.MILLISECONDS.toNanos(TICK)) {
+			overruns++;
+		}
+		return moved;
+	}
+
+	/**
+	 * Moves the ghosts whose move is due at the current time. An exception
+	 * is printed rather than thrown, since it would cancel the schedule the
+	 * ticks run on and no ghost would move again.
+	 */
+	public void tickNow() {
+		try {
+			tick(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return The amount of ticks so far.
+	 */
+	public synchronized long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * @return The average time a tick took, in nanoseconds.
+	 */
+	public synchronized long getMeanTickNanos() {
+		return ticks == 0 ? 0 : tickNanos / ticks;
+	}
+
+	/**
+	 * @return The time the longest tick took, in nanoseconds.
+	 */
+	public synchronized long getLongestTickNanos() {
+		return longestTick;
+	}
+
+	/**
+	 * @return The amount of ticks that took longer than {@link #TICK}.
+	 */
+	public synchronized long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return A line with the amount of ghosts, the ticks so far and their
+	 *         timings.
+	 */
+	public synchronized String report() {
+		return String.format("%d ghosts, %d ticks, %.1f moves per tick,"
+				+ " mean %.3f ms, longest %.3f ms, %d over %d ms",
+				level.getGhosts().size(), ticks,
+				ticks == 0 ? 0.0 : (double) decisions / ticks,
+				getMeanTickNanos() / 1e6, longestTick / 1e6, overruns, TICK);
+	}
+
+	/**
+	 * Forgets the timings of the ticks so far.
+	 */
+	public synchronized void resetTimings() {
+		ticks = 0;
+		decisions = 0;
+		tickNanos = 0;
+		longestTick = 0;
+		overruns = 0;
+	}
+
+	/**
+	 * Moves the ghosts whose move is due.
+	 *
+	 * @param now The current time, in milliseconds.
+	 * @return The amount of ghosts that decided on a move.
+	 */
+	private int move(long now) {
+		List<Ghost> ghosts = ghosts();
+		due.keySet().retainAll(ghosts);
+		List<Ghost> moving = new ArrayList<>();
+		for (Ghost ghost : ghosts) {
+			Long time = due.get(ghost);
+			if (time == null) {
+				due.put(ghost, now + level.interval(ghost));
+			} else if (time <= now) {
+				moving.add(ghost);
+			}
+		}
+		if (moving.isEmpty()) {
+			return 0;
+		}
+		CooperativePlanner planner = cooperative;
+		Direction[] moves = level.withoutMoves(() -> planner == null
+				? plan(moving) : planner.plan(moving));
+		for (int i = 0; i < moves.length; i++) {
+			Ghost ghost = moving.get(i);
+			if (moves[i] != null) {
+				level.move(ghost, moves[i]);
+			}
+			due.put(ghost, now + level.interval(ghost));
+		}
+		return moving.size();
+	}
+
+	/**
+	 * Lets ghosts decide on their next move in parallel.
+	 *
+	 * @param ghosts
+	 *            The ghosts that move.
+	 * @return The move of every ghost, or <code>null</code> for ghosts that
+	 *         do not move or are not on the board.
+	 */
+	public Direction[] plan(List<Ghost> ghosts) {
+		Direction[] moves = new Direction[ghosts.size()];
+		int spent = prepare(ghosts);
+		pool.invoke(new Planning(ghosts, moves, 0, moves.length,
+				shares(ghosts.size(), spent)));
+		return moves;
+	}
+
+	/**
+	 * Lets ghosts decide on their next move one after the other on the
+	 * current thread.
+	 *
+	 * @param ghosts
+	 *            The ghosts that move.
+	 * @return The move of every ghost, or <code>null</code> for ghosts that
+	 *         do not move or are not on the board.
+	 */
+	public Direction[] planSequentially(List<Ghost> ghosts) {
+		Direction[] moves = new Direction[ghosts.size()];
+		int[] shares = shares(moves.length, prepare(ghosts));
+		for (int i = 0; i < moves.length; i++) {
+			moves[i] = decide(ghosts.get(i), shares[i]);
+		}
+		return moves;
+	}
+
+	/**
+	 * @return The ghosts of the level, in the order they were added.
+	 */
+	private List<Ghost> ghosts() {
+		return level.copyGhosts();
+	}
+
+	/**
+	 * Works on the flow fields of the level before ghosts with a search
+	 * budget decide, since the budget of a single ghost may not cover them.
+	 *
+	 * @param ghosts The ghosts that move.
+	 * @return The amount of squares of the budget of the tick spent.
+	 */
+	private int prepare(List<Ghost> ghosts) {
+		int budget = level.getSearchBudget();
+		if (budget <= 0 || ghosts.isEmpty()) {
+			return 0;
+		}
+		return level.prepareFlowFields(ghosts.get(0), budget / FIELD_SHARE);
+	}
+
+	/**
+	 * Shares the search budget of the level among the ghosts of a tick. If
+	 * the budget does not give every ghost {@link #MINIMUM_SHARE} squares,
+	 * the next ghosts in turn share it and the others may not search.
+	 *
+	 * @param ghosts The amount of ghosts that move in a tick.
+	 * @param spent The amount of squares of the budget already spent.
+	 * @return The amount of squares every ghost may expand, 0 if the
+	 *         searches are not limited or {@link Level#NO_SEARCH}.
+	 */
+	private synchronized int[] shares(int ghosts, int spent) {
+		int[] shares = new int[ghosts];
+		int budget = level.getSearchBudget();
+		if (budget <= 0 || ghosts == 0) {
+			return shares;
+		}
+		budget -= spent;
+		if (budget / ghosts >= MINIMUM_SHARE) {
+			Arrays.fill(shares, budget / ghosts);
+			return shares;
+		}
+		int searching = Math.max(budget / MINIMUM_SHARE, 1);
+		int first = turn % ghosts;
+		Arrays.fill(shares, Level.NO_SEARCH);
+		for (int i = 0; i < searching; i++) {
+			shares[(first + i) % ghosts] = budget / searching;
+		}
+		turn = (first + searching) % ghosts;
+		return shares;
+	}
+
+	/**
+	 * @param ghost A ghost.
+	 * @param squares The amount of squares its searches may expand, 0 or
+	 *            {@link Level#NO_SEARCH}.
+	 * @return The next move of the ghost, or <code>null</code> if it is not
+	 *         on the board.
+	 */
+	private Direction decide(Ghost ghost, int squares) {
+		if (ghost.getSquare() == null) {
+			return null;
+		}
+		return level.decide(ghost, squares);
+	}
+
+	/**
+	 * Decides on the moves of a range of ghosts, splitting the range until
+	 * it is small.
+	 */
+	private final class Planning extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient List<Ghost> ghosts;
+
+		private final Direction[] moves;
+
+		private final int from;
+
+		private final int to;
+
+		private final int[] shares;
+
+		private Planning(List<Ghost> ghosts, Direction[] moves, int from,
+				int to, int[] shares) {
+			this.ghosts = ghosts;
+			this.moves = moves;
+			this.from = from;
+			this.to = to;
+			this.shares = shares;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GHOSTS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					moves[i] = decide(ghosts.get(i), shares[i]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Planning(ghosts, moves, from, middle, shares),
+					new Planning(ghosts, moves, middle, to, shares));
+		}
+	}
+}
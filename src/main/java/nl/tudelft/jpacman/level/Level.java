@@ -5,18 +5,28 @@ import java.util.Map.Entry;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import nl.tudelft.jpacman.board.Board;
 import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.SpatialIndex;
 import nl.tudelft.jpacman.board.Square;
 import nl.tudelft.jpacman.board.Unit;
 import nl.tudelft.jpacman.fruit.Fruit;
 import nl.tudelft.jpacman.fruit.FruitFactory;
 import nl.tudelft.jpacman.npc.Bullet;
 import nl.tudelft.jpacman.npc.NPC;
+import nl.tudelft.jpacman.npc.ghost.ChunkGraph;
+import nl.tudelft.jpacman.npc.ghost.DangerMap;
+import nl.tudelft.jpacman.npc.ghost.DistanceTable;
+import nl.tudelft.jpacman.npc.ghost.FlowField;
 import nl.tudelft.jpacman.npc.ghost.Ghost;
 import nl.tudelft.jpacman.npc.ghost.GhostFactory;
+import nl.tudelft.jpacman.npc.ghost.JunctionGraph;
 import nl.tudelft.jpacman.npc.ghost.Navigation;
+import nl.tudelft.jpacman.npc.ghost.PathCache;
+import nl.tudelft.jpacman.npc.ghost.SearchBudget;
 import nl.tudelft.jpacman.sprite.PacManSprites;
 
 /**
@@ -27,6 +37,25 @@ import nl.tudelft.jpacman.sprite.PacManSprites;
  */
 public class Level {
 
+	/**
+	 * The amount of ghosts up to which ghosts are added in infinite mode, unless
+	 * specified otherwise.
+	 */
+	public static final int DEFAULT_GHOST_CAP = 10;
+
+	/**
+	 * The least amount of steps between a spawned ghost and the squares
+	 * players start on.
+	 */
+	private static final int SPAWN_DISTANCE = 5;
+
+	/**
+	 * The search budget of a ghost that is left without a share of the
+	 * budget of a tick, and moves towards the nearest player without
+	 * searching.
+	 */
+	static final int NO_SEARCH = -1;
+
 	/**
 	 * The board of this level.
 	 */
@@ -144,11 +173,61 @@ public class Level {
 	 */
 	private static Level level;
 
+	/**
+	 * The paths towards the players, shared by all ghosts.
+	 */
+	private final FlowField flowField = new FlowField();
+
+	/**
+	 * The distance from every square to the nearest ghost, shared by all
+	 * readers.
+	 */
+	private final DangerMap dangerMap = new DangerMap(this::liveGhosts);
+
+	/**
+	 * The paths planned by the ghosts, shared by all of them.
+	 */
+	private final PathCache pathCache = new PathCache();
+
 	/**
 	 * To generate random number
 	 */
 	private Random random;
 
+	/**
+	 * The planner that moves the ghosts in ticks, or <code>null</code> if
+	 * every ghost moves on a thread of its own.
+	 */
+	private GhostPlanner ghostPlanner;
+
+	/**
+	 * The streamer that grows the board in infinite mode, or
+	 * <code>null</code> if the board does not grow.
+	 */
+	private WorldStreamer worldStreamer;
+
+	/**
+	 * The amount of squares the searches of the ghosts may expand per tick,
+	 * or 0 if they are not limited.
+	 */
+	private volatile int searchBudget;
+
+	/**
+	 * The amount of decisions of ghosts whose searches ran out of budget.
+	 */
+	private final AtomicLong budgetHits = new AtomicLong();
+
+	/**
+	 * The levels of detail of the ghosts by their distance to the players,
+	 * or <code>null</code> if all ghosts decide at full detail.
+	 */
+	private volatile DetailBands detailBands;
+
+	/**
+	 * The amount of ghosts up to which ghosts are added in infinite mode.
+	 */
+	private volatile int ghostCap = DEFAULT_GHOST_CAP;
+
 	/**
 	 * Creates a new level for the board.
 	 * @param b The board for the level.
@@ -165,9 +244,10 @@ public class Level {
 		this.fruitFactory = new FruitFactory(SPRITE_STORE, this);
 		this.board = b;
 		this.inProgress = false;
-		this.ghosts = new HashMap<>();
+		this.ghosts = Collections.synchronizedMap(new LinkedHashMap<>());
 		for (NPC g : ghosts) {
 			Ghost ghost = (Ghost) g;
+			ghost.setLevel(this);
 			this.ghosts.put(ghost, null);
 			Ghost.ghostLeft++;
 		}
@@ -263,6 +343,164 @@ public class Level {
 		}
 	}
 
+	/**
+	 * Runs an operation while no unit on this level can move, so that it
+	 * sees a board that does not change.
+	 *
+	 * @param operation The operation to run.
+	 * @param <T> The type of the result of the operation.
+	 * @return The result of the operation.
+	 */
+	<T> T withoutMoves(Supplier<T> operation) {
+		synchronized (moveLock) {
+			return operation.get();
+		}
+	}
+
+	/**
+	 * Lets a planner move the ghosts of this level in ticks, instead of
+	 * every ghost on a thread of its own. Takes effect when the characters
+	 * are started.
+	 *
+	 * @param planner The planner, or <code>null</code> to give every ghost
+	 *            a thread of its own.
+	 */
+	public void setGhostPlanner(GhostPlanner planner) {
+		this.ghostPlanner = planner;
+	}
+
+	/**
+	 * Lets a streamer grow the board of this level while it is in progress.
+	 * Takes effect when the level is started.
+	 *
+	 * @param streamer The streamer, or <code>null</code> if the board does
+	 *            not grow.
+	 */
+	public void setWorldStreamer(WorldStreamer streamer) {
+		this.worldStreamer = streamer;
+	}
+
+	/**
+	 * @return The streamer that grows the board of this level, or
+	 *         <code>null</code> if the board does not grow.
+	 */
+	public WorldStreamer getWorldStreamer() {
+		return worldStreamer;
+	}
+
+	/**
+	 * Limits the amount of squares the searches of the ghosts may expand per
+	 * tick. A ghost moving on a thread of its own gets the whole budget for
+	 * each decision; a {@link GhostPlanner} shares it among the ghosts that
+	 * move in the same tick. Searches that run out of budget return the best
+	 * they found so far or let the ghost move at random, so the time a tick
+	 * takes is bounded regardless of the size of the board.
+	 *
+	 * @param squares The amount of squares per tick, or 0 for no limit.
+	 */
+	public void setSearchBudget(int squares) {
+		assert squares >= 0;
+		this.searchBudget = squares;
+	}
+
+	/**
+	 * @return The amount of squares the searches of the ghosts may expand
+	 *         per tick, or 0 if they are not limited.
+	 */
+	public int getSearchBudget() {
+		return searchBudget;
+	}
+
+	/**
+	 * @return The amount of decisions of ghosts whose searches ran out of
+	 *         budget, or that got no budget at all, so far.
+	 */
+	public long getBudgetHits() {
+		return budgetHits.get();
+	}
+
+	/**
+	 * Lets ghosts far from the players move less often and without
+	 * searching, as is done on an infinite board where most ghosts are out
+	 * of view.
+	 *
+	 * @param bands The levels of detail by distance to the nearest player,
+	 *            or <code>null</code> to let all ghosts decide at full
+	 *            detail.
+	 */
+	public void setDetailBands(DetailBands bands) {
+		this.detailBands = bands;
+	}
+
+	/**
+	 * @return The levels of detail of the ghosts, or <code>null</code> if
+	 *         all ghosts decide at full detail.
+	 */
+	public DetailBands getDetailBands() {
+		return detailBands;
+	}
+
+	/**
+	 * Lets a character decide on its next move. The searches of ghosts are
+	 * limited to the given budget, and ghosts far from the players decide at
+	 * the level of detail of their band, if any.
+	 *
+	 * @param character The character that moves.
+	 * @param squares The amount of squares the searches of a ghost may
+	 *            expand, 0 for no limit or {@link #NO_SEARCH} to let a ghost
+	 *            fall back without searching.
+	 * @return The next move of the character, or <code>null</code>.
+	 */
+	Direction decide(MovableCharacter character, int squares) {
+		DetailBands bands = detailBands;
+		if (bands != null && character instanceof Ghost) {
+			return bands.decide((Ghost) character, players.keySet(),
+					() -> search(character, squares));
+		}
+		return search(character, squares);
+	}
+
+	/**
+	 * Returns the time until the next move of a character, which is longer
+	 * for ghosts in the bands far from the players.
+	 *
+	 * @param character The character that moved.
+	 * @return The time until its next move, in milliseconds.
+	 */
+	long interval(MovableCharacter character) {
+		DetailBands bands = detailBands;
+		if (bands != null && character instanceof Ghost) {
+			return bands.interval((Ghost) character, players.keySet());
+		}
+		return character.getInterval();
+	}
+
+	/**
+	 * Lets a character decide on its next move at full detail.
+	 *
+	 * @param character The character that moves.
+	 * @param squares The amount of squares the searches of a ghost may
+	 *            expand, 0 for no limit or {@link #NO_SEARCH}.
+	 * @return The next move of the character, or <code>null</code>.
+	 */
+	private Direction search(MovableCharacter character, int squares) {
+		if (squares == NO_SEARCH && character instanceof Ghost) {
+			Ghost ghost = (Ghost) character;
+			budgetHits.incrementAndGet();
+			return ghost.roughMove(DetailBands.nearest(ghost.getSquare(),
+					players.keySet()));
+		}
+		if (squares <= 0 || !(character instanceof Ghost)) {
+			return character.nextMove();
+		}
+		SearchBudget budget = new SearchBudget(squares);
+		Direction move = budget.run(character::nextMove);
+		if (budget.isExhausted()) {
+			budgetHits.incrementAndGet();
+		}
+		return move;
+	}
+
 	/**
 	 * Starts or resumes this level, allowing movement and (re)starting the
 	 * NPCs.
@@ -272,8 +510,12 @@ public class Level {
 			if (isInProgress()) {
 				return;
 			}
+			installNavigation();
 			startCharacters();
 			inProgress = true;
+			if (worldStreamer != null) {
+				worldStreamer.start();
+			}
 			updateObservers();
 		}
 		int nbr = random.nextInt(11);
@@ -290,6 +532,31 @@ public class Level {
 		addFruitTask.schedule(tks.createAddFruitTask(), (nbr+10)*1000);
 	}
 
+	/**
+	 * Prepares the navigation models of the board for the ghosts: the paths
+	 * between all squares of a small board are precomputed, a graph of the
+	 * junctions of the board is built so that searches only branch at
+	 * crossroads, and the entrances between the maps of the board are
+	 * connected so that long searches on an infinite board only visit the
+	 * maps along the way. The board itself keeps all of them up to date when
+	 * it is extended.
+	 */
+	private void installNavigation() {
+		if (ghosts.isEmpty()) {
+			return;
+		}
+		Ghost representative = ghosts.keySet().iterator().next();
+		if (DistanceTable.forBoard(board) == null) {
+			DistanceTable.install(board, representative, Ghost.class);
+		}
+		if (JunctionGraph.forBoard(board) == null) {
+			JunctionGraph.install(board, representative, Ghost.class);
+		}
+		if (ChunkGraph.forBoard(board) == null) {
+			ChunkGraph.install(board, representative, Ghost.class);
+		}
+	}
+
 	/**
 	 * Stops or pauses this level, no longer allowing any movement on the board
 	 * and stopping all NPCs.
@@ -300,6 +567,9 @@ public class Level {
 				return;
 			}
 			stopCharacters();
+			if (worldStreamer != null) {
+				worldStreamer.stop();
+			}
 			addGhostTask.cancel();
 			addFruitTask.cancel();
 			speedUpTask.cancel();
@@ -313,13 +583,24 @@ public class Level {
 	public void startCharacters() {
 		MovableCharacter mc;
 		ScheduledExecutorService service;
-		for (Ghost ghost : ghosts.keySet()) {
-			mc = ghost;
-			service = Executors
-					.newSingleThreadScheduledExecutor();
-			service.schedule(tks.createCharacterMoveTask(service, mc),
-					mc.getInterval() , TimeUnit.MILLISECONDS);
-			ghosts.put(ghost, service);
+		if (ghostPlanner != null) {
+			GhostPlanner planner = ghostPlanner;
+			service = Executors.newSingleThreadScheduledExecutor();
+			service.scheduleAtFixedRate(planner::tickNow,
+					GhostPlanner.TICK, GhostPlanner.TICK,
+					TimeUnit.MILLISECONDS);
+			for (Ghost ghost : ghosts.keySet()) {
+				ghosts.put(ghost, service);
+			}
+		} else {
+			for (Ghost ghost : ghosts.keySet()) {
+				mc = ghost;
+				service = Executors
+						.newSingleThreadScheduledExecutor();
+				service.schedule(tks.createCharacterMoveTask(service, mc),
+						mc.getInterval() , TimeUnit.MILLISECONDS);
+				ghosts.put(ghost, service);
+			}
 		}
 		for (Player player : players.keySet()) {
 			mc = player;
@@ -360,7 +641,7 @@ public class Level {
 	 */
 	public void addGhostTask()
 	{
-		if(this.ghosts.size() < 10) {
+		if(this.ghosts.size() < ghostCap) {
 			ScheduledExecutorService service = Executors
 					.newSingleThreadScheduledExecutor();
 			final GhostFactory ghostFact = new GhostFactory(SPRITE_STORE);
@@ -370,6 +651,7 @@ public class Level {
 			addGhostTask = new Timer();
 			addGhostTask.schedule(tks.createAddGhostTask(), ((nbr + 4) + this.ghosts.size()) * 1000);
 			Ghost g = Ghost.addGhost(ghostFact, ghostIndex);
+			g.setLevel(this);
 			ghosts.put(g, service);
 			Square squareGhost = null;
 			while(squareGhost  == null) {
@@ -388,6 +670,65 @@ public class Level {
 		}
 	}
 
+	/**
+	 * Sets the amount of ghosts up to which ghosts are added over time in
+	 * infinite mode.
+	 *
+	 * @param cap The largest amount of ghosts.
+	 */
+	public void setGhostCap(int cap) {
+		assert cap >= 0;
+		this.ghostCap = cap;
+	}
+
+	/**
+	 * @return The amount of ghosts up to which ghosts are added over time in
+	 *         infinite mode.
+	 */
+	public int getGhostCap() {
+		return ghostCap;
+	}
+
+	/**
+	 * Puts ghosts of every kind on random squares of the whole board, away
+	 * from the squares the players start on. The ghosts start moving when
+	 * the characters are (re)started.
+	 *
+	 * @param count The amount of ghosts to add.
+	 * @param seed The seed of the kinds and squares of the ghosts.
+	 */
+	public void spawnGhosts(int count, long seed) {
+		Random spawn = new Random(seed);
+		GhostFactory ghostFact = new GhostFactory(SPRITE_STORE);
+		for (int i = 0; i < count; i++) {
+			Ghost g = Ghost.addGhost(ghostFact, spawn.nextInt(4));
+			Square square;
+			do {
+				square = board.squareAt(spawn.nextInt(board.getWidth()),
+						spawn.nextInt(board.getHeight()));
+			} while (!square.isAccessibleTo(g) || nearStart(square));
+			g.occupy(square);
+			g.setLevel(this);
+			ghosts.put(g, null);
+		}
+	}
+
+	/**
+	 * @param square A square.
+	 * @return <code>true</code> iff the square is within
+	 *         {@link #SPAWN_DISTANCE} steps of a square players start on.
+	 */
+	private boolean nearStart(Square square) {
+		for (Square start : startSquares) {
+			if (Math.abs(start.getCoordX() - square.getCoordX())
+					+ Math.abs(start.getCoordY() - square.getCoordY())
+					< SPAWN_DISTANCE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Permet d'ajouter des fruits dans le jeu
 	 */
@@ -405,7 +746,8 @@ public class Level {
 		Square posPlayer = p.getSquare();
 		while(squareFruit == null) {
 			squareFruit = addUnitOnSquare(board.getWidthOfOneMap()-2, board.getHeightOfOneMap()-2);
-			if (Navigation.shortestPath(posPlayer, squareFruit, p) != null) {
+			if (Navigation.distance(posPlayer, squareFruit, p)
+					!= Navigation.UNREACHABLE) {
 				fruit.occupy(squareFruit);
 				timerTask = new TimerTask() {
 					public void run() {
@@ -505,6 +847,17 @@ public class Level {
 		}
 	}
 
+	/**
+	 * @return The player that was registered first, or <code>null</code> if
+	 *         there is none.
+	 */
+	Player firstPlayer() {
+		for (Player p : players.keySet()) {
+			return p;
+		}
+		return null;
+	}
+
 	/**
 	 * Returns <code>true</code> iff at least one of the players in this level
 	 * is alive.
@@ -584,11 +937,11 @@ public class Level {
 		}
 		for (int x = 0; x < b.getWidth(); x++) {
 			for (int y = 0; y < b.getHeight(); y++) {
-				for (Unit u : b.squareAt(x, y).getOccupants()) {
+				b.squareAt(x, y).forEachOccupant(u -> {
 					if (u instanceof Ghost) {
 						((Ghost) u).startFearedMode();
 					}
-				}
+				});
 			}
 		}
 		for (Player p : players.keySet()) {
@@ -611,11 +964,11 @@ public class Level {
 		}
 		for (int x = 0; x < b.getWidth(); x++) {
 			for (int y = 0; y < b.getHeight(); y++) {
-				for (Unit u : b.squareAt(x, y).getOccupants()) {
+				b.squareAt(x, y).forEachOccupant(u -> {
 					if (u instanceof Ghost) {
 						((Ghost) u).stopFearedMode();
 					}
-				}
+				});
 			}
 		}
 	}
@@ -629,11 +982,11 @@ public class Level {
 		Ghost.count++;
 		for (int x = 0; x < b.getWidth(); x++) {
 			for (int y = 0; y < b.getHeight(); y++) {
-				for (Unit u : b.squareAt(x, y).getOccupants()) {
+				b.squareAt(x, y).forEachOccupant(u -> {
 					if (u instanceof Ghost) {
 						((Ghost) u).warningMode();
 					}
-				}
+				});
 			}
 		}
 	}
@@ -664,18 +1017,32 @@ public class Level {
 	 * @return The amount of pellets remaining on the board.
 	 */
 	public int remainingPellets() {
-		Board b = getBoard();
-		int pellets = 0;
-		for (int x = 0; x < b.getWidth(); x++) {
-			for (int y = 0; y < b.getHeight(); y++) {
-				for (Unit u : b.squareAt(x, y).getOccupants()) {
-					if (u instanceof Pellet) {
-						pellets++;
-					}
-				}
-			}
-		}
-		return pellets;
+		return pelletIndex().count(Pellet.class);
+	}
+
+	/**
+	 * Counts the pellets remaining in a rectangle of squares. The part of
+	 * the rectangle outside the board is ignored.
+	 *
+	 * @param x The column of the upper left square of the rectangle.
+	 * @param y The row of the upper left square of the rectangle.
+	 * @param width The amount of columns of the rectangle.
+	 * @param height The amount of rows of the rectangle.
+	 * @return The amount of pellets remaining in the rectangle.
+	 */
+	public int remainingPellets(int x, int y, int width, int height) {
+		return pelletIndex().count(Pellet.class, x, y, width, height);
+	}
+
+	/**
+	 * @return The index of the units on the board, which keeps a tally of
+	 *         the pellets so that they are counted without looking at every
+	 *         square.
+	 */
+	private SpatialIndex pelletIndex() {
+		SpatialIndex index = board.getSpatialIndex();
+		index.tally(Pellet.class);
+		return index;
 	}
 
 	/**
@@ -686,6 +1053,86 @@ public class Level {
 		return ghosts;
 	}
 
+	/**
+	 * Copies the ghosts of this level while no ghost can be added, so that
+	 * the copy can be read on any thread.
+	 *
+	 * @return The ghosts of this level, in the order they were added.
+	 */
+	List<Ghost> copyGhosts() {
+		synchronized (ghosts) {
+			return new ArrayList<>(ghosts.keySet());
+		}
+	}
+
+	/**
+	 * Returns the flow fields towards the units on this level. Ghosts read
+	 * their next step towards a player from it instead of each searching a
+	 * path of their own.
+	 *
+	 * @return The flow fields of this level.
+	 */
+	public FlowField getFlowField() {
+		return flowField;
+	}
+
+	/**
+	 * Works on the flow fields towards the players for at most a given
+	 * amount of squares. A field covers the whole board and is shared by all
+	 * ghosts, so a single ghost may not have the budget to build it.
+	 *
+	 * @param traveller The ghost whose access rules apply to the fields.
+	 * @param squares The amount of squares that may be expanded.
+	 * @return The amount of squares expanded.
+	 */
+	int prepareFlowFields(Ghost traveller, int squares) {
+		int spent = 0;
+		for (Player player : players.keySet()) {
+			if (spent >= squares) {
+				break;
+			}
+			spent += flowField.prepare(player, traveller, squares - spent);
+		}
+		return spent;
+	}
+
+	/**
+	 * Returns the distance from every square to the nearest ghost on this
+	 * level, and which ghost that is. The map is brought up to date at most
+	 * once per move of the units on the board, however often it is read.
+	 *
+	 * @return The danger map of this level.
+	 */
+	public DangerMap getDangerMap() {
+		return dangerMap;
+	}
+
+	/**
+	 * @return The ghosts of this level that are on the board, in the order
+	 *         they were added.
+	 */
+	private List<Ghost> liveGhosts() {
+		List<Ghost> live = new ArrayList<>();
+		synchronized (ghosts) {
+			for (Ghost ghost : ghosts.keySet()) {
+				if (ghost.getSquare() != null) {
+					live.add(ghost);
+				}
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * Returns the cache of paths planned on this level. Ghosts follow a
+	 * cached path for a few steps instead of planning on every move.
+	 *
+	 * @return The path cache of this level.
+	 */
+	public PathCache getPathCache() {
+		return pathCache;
+	}
+
 	/**
 	 * Return the level
 	 * @return The level
@@ -0,0 +1,97 @@
+package nl.tudelft.jpacman.level;
+
+import java.io.PrintStream;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ForkJoinPool;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.Direction;
+
+/**
+ * Sets up a level as a swarm: a large infinite board crowded with ghosts,
+ * to put the engine under stress, which a {@link WorldStreamer} keeps
+ * growing. Ghosts do not get a thread each, but are
+ * moved in ticks by a single {@link GhostPlanner} on one core, with a
+ * bounded search budget per tick and lower {@link DetailBands} for ghosts
+ * far from the player, so that the time a tick takes stays within
+ * {@link GhostPlanner#TICK} however many ghosts there are.
+ */
+public final class Swarm {
+
+	/**
+	 * The amount of ghosts of a swarm, unless specified otherwise.
+	 */
+	public static final int DEFAULT_GHOSTS = 1000;
+
+	/**
+	 * The amount of times the board is doubled in width and height.
+	 */
+	public static final int GROWTH = 2;
+
+	/**
+	 * The amount of squares the searches of all ghosts may expand per tick.
+	 */
+	public static final int SEARCH_BUDGET = 4096;
+
+	private Swarm() {
+	}
+
+	/**
+	 * Turns a level that has not been started into a swarm. Its board is
+	 * grown with maps drawn by the {@link nl.tudelft.jpacman.Launcher}, the
+	 * ghosts are spread over it and a planner on a single thread is set up
+	 * to move them once the level starts.
+	 *
+	 * @param level
+	 *            The level, on an infinite board.
+	 * @param ghosts
+	 *            The amount of ghosts to add.
+	 * @param seed
+	 *            The seed of the squares and moves of the ghosts.
+	 * @return The planner that moves the ghosts.
+	 */
+	public static GhostPlanner configure(Level level, int ghosts, long seed) {
+		assert !level.isInProgress();
+		Board board = level.getBoard();
+		for (int i = 0; i < GROWTH; i++) {
+			board.extend(Direction.EAST);
+			board.extend(Direction.SOUTH);
+		}
+		level.infiniteMode = true;
+		level.spawnGhosts(ghosts, seed);
+		level.setGhostCap(level.getGhosts().size());
+		level.setSearchBudget(SEARCH_BUDGET);
+		level.setDetailBands(new DetailBands());
+		GhostPlanner planner = new GhostPlanner(level, new ForkJoinPool(1));
+		planner.seed(seed);
+		level.setGhostPlanner(planner);
+		level.setWorldStreamer(new WorldStreamer(level));
+		return planner;
+	}
+
+	/**
+	 * Prints the timings of the ticks of a planner at a fixed rate, each
+	 * time covering the ticks since the previous report.
+	 *
+	 * @param planner
+	 *            The planner.
+	 * @param period
+	 *            The time between two reports, in milliseconds.
+	 * @param out
+	 *            The stream to print to.
+	 * @return The timer printing the reports, which can be cancelled.
+	 */
+	public static Timer report(GhostPlanner planner, long period,
+			PrintStream out) {
+		Timer timer = new Timer("swarm report", true);
+		timer.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				out.println(planner.report());
+				planner.resetTimings();
+			}
+		}, period, period);
+		return timer;
+	}
+}
@@ -71,13 +71,14 @@ public class TimerTasks {
 
         @Override
         public void run() {
-            Direction nextMove = character.nextMove();
             Level level = Level.getLevel();
+            Direction nextMove = level.decide(character,
+                    level.getSearchBudget());
             long interval;
             if (nextMove != null) {
                 level.move(character, nextMove);
             }
-            interval = character.getInterval();
+            interval = level.interval(character);
             service.schedule(this, interval, TimeUnit.MILLISECONDS);
         }
     }
@@ -0,0 +1,234 @@
+package nl.tudelft.jpacman.level;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+
+/**
+ * Grows the board of a level in infinite mode on a thread of its own, so
+ * that the user interface only paints. Every tick the streamer looks at
+ * where the player is and where it is heading, and draws the maps the
+ * board will need on the nearest edges before the player gets there. Once
+ * the player comes within {@link #margin(Direction) sight} of an edge, the
+ * board is extended with the prepared maps in one go, while no unit on the
+ * level can move.
+ */
+public final class WorldStreamer {
+
+	/**
+	 * The distance to an edge, beyond the margin of that edge, at which the
+	 * maps for it are prepared.
+	 */
+	public static final int LOOKAHEAD = 10;
+
+	/**
+	 * The distance to the edge the player is heading for, beyond the margin
+	 * of that edge, at which the maps for it are prepared.
+	 */
+	public static final int HEADING_LOOKAHEAD = 2 * LOOKAHEAD;
+
+	/**
+	 * The distances to the edges below which the board is extended, which
+	 * follow from the part of the board around the player that is painted.
+	 */
+	private static final Map<Direction, Integer> MARGINS = new EnumMap<>(
+			Direction.class);
+
+	static {
+		MARGINS.put(Direction.NORTH, 18);
+		MARGINS.put(Direction.SOUTH, 11);
+		MARGINS.put(Direction.WEST, 13);
+		MARGINS.put(Direction.EAST, 12);
+	}
+
+	/**
+	 * The level whose board is grown.
+	 */
+	private final Level level;
+
+	/**
+	 * The maps that have been drawn but not added to the board yet. Only
+	 * used on the thread of the streamer.
+	 */
+	private final Deque<Square[][]> ready = new ArrayDeque<>();
+
+	/**
+	 * The thread of the streamer, or <code>null</code> if it is stopped.
+	 */
+	private ScheduledExecutorService service;
+
+	/**
+	 * The amount of times the board has been extended.
+	 */
+	private volatile int extensions;
+
+	/**
+	 * The amount of maps that had to be drawn while extending the board,
+	 * because they had not been prepared in time.
+	 */
+	private volatile int misses;
+
+	/**
+	 * Creates a streamer for the board of a level.
+	 *
+	 * @param level The level, in infinite mode.
+	 */
+	public WorldStreamer(Level level) {
+		assert level != null;
+		this.level = level;
+	}
+
+	/**
+	 * Starts growing the board, once every {@link GhostPlanner#TICK}.
+	 */
+	public synchronized void start() {
+		if (service != null) {
+			return;
+		}
+		service = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "world streamer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		service.scheduleWithFixedDelay(this::step, GhostPlanner.TICK,
+				GhostPlanner.TICK, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops growing the board. The maps prepared so far are kept.
+	 */
+	public synchronized void stop() {
+		if (service != null) {
+			service.shutdown();
+			service = null;
+		}
+	}
+
+	/**
+	 * Looks at the position of the player once: extends the board if the
+	 * player is near an edge, or else prepares a map for an edge the player
+	 * is getting near. An exception is printed rather than thrown, since it
+	 * would cancel the schedule and the board would stop growing for good.
+	 */
+	void step() {
+		try {
+			look();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Looks at the position of the player once.
+	 *
+	 * @see #step()
+	 */
+	private void look() {
+		Player player = level.firstPlayer();
+		if (!level.isInProgress() || player == null
+				|| player.getSquare() == null) {
+			return;
+		}
+		Board board = level.getBoard();
+		Square square = player.getSquare();
+		int wanted = 0;
+		for (Direction direction : Direction.values()) {
+			int distance = distance(board, square, direction);
+			if (distance < margin(direction)) {
+				extend(board, direction);
+				return;
+			}
+			int lookahead = direction == player.getDirection()
+					? HEADING_LOOKAHEAD : LOOKAHEAD;
+			if (distance < margin(direction) + lookahead) {
+				wanted += board.mapsToExtend();
+			}
+		}
+		if (ready.size() < wanted) {
+			ready.add(board.drawMap());
+		}
+	}
+
+	/**
+	 * Extends the board with the prepared maps, while no unit can move.
+	 *
+	 * @param board The board.
+	 * @param direction The side to extend the board on.
+	 */
+	private void extend(Board board, Direction direction) {
+		level.withoutMoves(() -> {
+			board.extend(direction, () -> {
+				Square[][] map = ready.poll();
+				if (map == null) {
+					misses++;
+					return board.drawMap();
+				}
+				return map;
+			});
+			return null;
+		});
+		extensions++;
+	}
+
+	/**
+	 * @return The amount of times the board has been extended.
+	 */
+	public int getExtensions() {
+		return extensions;
+	}
+
+	/**
+	 * @return The amount of maps that had to be drawn while extending the
+	 *         board, because they had not been prepared in time.
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return The amount of maps that have been prepared but not added to
+	 *         the board yet.
+	 */
+	int prepared() {
+		return ready.size();
+	}
+
+	/**
+	 * @param direction An edge of the board.
+	 * @return The distance from the player to the edge below which the board
+	 *         is extended on that edge.
+	 */
+	public static int margin(Direction direction) {
+		return MARGINS.get(direction);
+	}
+
+	/**
+	 * @param board The board.
+	 * @param square A square on the board.
+	 * @param direction An edge of the board.
+	 * @return The amount of squares between the square and the edge.
+	 */
+	private static int distance(Board board, Square square,
+			Direction direction) {
+		switch (direction) {
+			case NORTH:
+				return square.getCoordY();
+			case SOUTH:
+				return board.getHeight() - 1 - square.getCoordY();
+			case WEST:
+				return square.getCoordX();
+			case EAST:
+				return board.getWidth() - 1 - square.getCoordX();
+			default:
+				throw new IllegalArgumentException(direction.name());
+		}
+	}
+}
@@ -0,0 +1,426 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * An A* search over the {@link BoardGraph} of a board. The heuristic is the
+ * Manhattan distance on a board whose edges wrap around, which never
+ * overestimates the distance on boards linked by
+ * {@link nl.tudelft.jpacman.board.BoardFactory}, so the paths found are
+ * exactly as long as the ones found by a breadth first search. Boards that
+ * have been extended are not linked that way: their seams skip over the
+ * squares that were added. Those links only join squares on the edges of
+ * chunks though, so there the heuristic is the plain Manhattan distance, or
+ * the way to the edges of the chunks and back if that is shorter. Only on
+ * boards with links elsewhere is the heuristic dropped, and does the search
+ * expand squares in the same order as Dijkstra's algorithm.
+ * <p>
+ * Like {@link BreadthFirstSearch}, all bookkeeping is kept in arrays that are
+ * reused between searches. Instances are not thread safe; {@link Navigation}
+ * keeps one per thread.
+ * </p>
+ */
+final class AStarSearch {
+
+	/**
+	 * The initial capacity of the open set.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The amount of bits the f-score is shifted in a heap key.
+	 */
+	private static final int SCORE_SHIFT = 32;
+
+	/**
+	 * The mask of the tie breaker in a heap key.
+	 */
+	private static final long TIE_MASK = 0xFFFFFFFFL;
+
+	/**
+	 * The graph the buffers are currently prepared for.
+	 */
+	private BoardGraph graph;
+
+	/**
+	 * The generation in which every square was last reached.
+	 */
+	private int[] reached = new int[0];
+
+	/**
+	 * The generation in which every square was last expanded.
+	 */
+	private int[] closed = new int[0];
+
+	/**
+	 * The length of the shortest known path to every reached square.
+	 */
+	private int[] costs = new int[0];
+
+	/**
+	 * The ordinal of the direction in which every reached square was entered.
+	 */
+	private byte[] parents = new byte[0];
+
+	/**
+	 * The index of the square every visited square was entered from. This
+	 * cannot be derived from the parent direction, since the squares along
+	 * the seam of an extended board are not always linked back.
+	 */
+	private int[] predecessors = new int[0];
+
+	/**
+	 * The squares of the open set, ordered as a binary heap.
+	 */
+	private int[] heapSquares = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The keys of the open set: the f-score in the high bits and a tie
+	 * breaker favouring deeper squares in the low bits.
+	 */
+	private long[] heapKeys = new long[INITIAL_CAPACITY];
+
+	/**
+	 * The amount of entries in the open set.
+	 */
+	private int heapSize;
+
+	/**
+	 * The generation of the current search.
+	 */
+	private int generation;
+
+	/**
+	 * The amount of squares the last search expanded.
+	 */
+	private int expanded;
+
+	/**
+	 * The expanded square closest to the destination if the last search was
+	 * stopped by the {@link SearchBudget}, or -1.
+	 */
+	private int stoppedAt = -1;
+
+	/**
+	 * Calculates the shortest path between two squares, with the same
+	 * semantics as {@link Navigation#shortestPath}.
+	 *
+	 * @param graph
+	 *            The graph of the board both squares are on.
+	 * @param from
+	 *            The index of the starting square.
+	 * @param to
+	 *            The index of the destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The shortest path to the destination or <code>null</code> if no
+	 *         such path could be found. When the search is stopped by the
+	 *         {@link SearchBudget}, the path to the expanded square closest
+	 *         to the destination is returned instead.
+	 */
+	List<Direction> shortestPath(BoardGraph graph, int from, int to,
+			Unit traveller) {
+		int end = to;
+		if (!search(graph, from, to, traveller)) {
+			if (stoppedAt < 0 || stoppedAt == from) {
+				return null;
+			}
+			end = stoppedAt;
+		}
+		int length = costs[end];
+		Direction[] path = new Direction[length];
+		int i = end;
+		while (i != from) {
+			path[--length] = BoardGraph.direction(parents[i]);
+			i = parentOf(i);
+		}
+		return Arrays.asList(path);
+	}
+
+	/**
+	 * Calculates the length of the shortest path between two squares
+	 * without building the path.
+	 *
+	 * @param graph
+	 *            The graph of the board both squares are on.
+	 * @param from
+	 *            The index of the starting square.
+	 * @param to
+	 *            The index of the destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The length of the shortest path, or <code>-1</code> if no such
+	 *         path could be found.
+	 */
+	int distance(BoardGraph graph, int from, int to, Unit traveller) {
+		if (!search(graph, from, to, traveller)) {
+			return -1;
+		}
+		return costs[to];
+	}
+
+	/**
+	 * Calculates the first step of the shortest path between two different
+	 * squares without building the path.
+	 *
+	 * @param graph
+	 *            The graph of the board both squares are on.
+	 * @param from
+	 *            The index of the starting square.
+	 * @param to
+	 *            The index of the destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The ordinal of the direction of the first step, or
+	 *         <code>-1</code> if no path could be found. When the search is
+	 *         stopped by the {@link SearchBudget}, this is the first step
+	 *         towards the expanded square closest to the destination.
+	 */
+	int firstStep(BoardGraph graph, int from, int to, Unit traveller) {
+		assert from != to;
+		int i = to;
+		if (!search(graph, from, to, traveller)) {
+			if (stoppedAt < 0 || stoppedAt == from) {
+				return -1;
+			}
+			i = stoppedAt;
+		}
+		while (parentOf(i) != from) {
+			i = parentOf(i);
+		}
+		return parents[i];
+	}
+
+	/**
+	 * @return The amount of squares expanded by the last search.
+	 */
+	int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * Runs the search until the destination is expanded, the open set is
+	 * exhausted or the {@link SearchBudget} of the current thread is spent.
+	 *
+	 * @param g The graph to search.
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 * @param traveller The traveller, or <code>null</code> to ignore terrain.
+	 * @return <code>true</code> iff the destination was reached.
+	 */
+	private boolean search(BoardGraph g, int from, int to, Unit traveller) {
+		prepare(g);
+		int stamp = nextGeneration();
+		heapSize = 0;
+		expanded = 0;
+		stoppedAt = -1;
+		int limit = SearchBudget.remaining();
+		int closest = from;
+		int closestEstimate = proximity(g, from, to);
+		reached[from] = stamp;
+		costs[from] = 0;
+		push(from, heuristic(g, from, to), 0);
+		while (heapSize > 0) {
+			int current = pop();
+			if (closed[current] == stamp) {
+				continue;
+			}
+			closed[current] = stamp;
+			expanded++;
+			if (current == to) {
+				SearchBudget.spend(expanded, false);
+				return true;
+			}
+			if (limit != Integer.MAX_VALUE) {
+				int estimate = proximity(g, current, to);
+				if (estimate < closestEstimate) {
+					closest = current;
+					closestEstimate = estimate;
+				}
+				if (expanded >= limit) {
+					stoppedAt = closest;
+					SearchBudget.spend(expanded, true);
+					return false;
+				}
+			}
+			int cost = costs[current] + 1;
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				int next = g.neighbour(current, d);
+				if (closed[next] == stamp
+						|| (reached[next] == stamp && costs[next] <= cost)) {
+					continue;
+				}
+				if (traveller != null
+						&& !g.squareAt(next).isAccessibleTo(traveller)) {
+					continue;
+				}
+				reached[next] = stamp;
+				costs[next] = cost;
+				parents[next] = (byte) d;
+				predecessors[next] = current;
+				push(next, cost + heuristic(g, next, to), cost);
+			}
+		}
+		SearchBudget.spend(expanded, false);
+		return false;
+	}
+
+	/**
+	 * Measures how close a square is to the destination when a search is
+	 * stopped, as the Manhattan distance between their coordinates, wrapping
+	 * around at the edges of the board when it is linked that way. Unlike
+	 * {@link #heuristic(BoardGraph, int, int)} this need not be a lower
+	 * bound.
+	 *
+	 * @param g The graph of the board.
+	 * @param from The index of the square.
+	 * @param to The index of the destination.
+	 * @return The Manhattan distance between the squares.
+	 */
+	private static int proximity(BoardGraph g, int from, int to) {
+		if (g.isTorus()) {
+			return heuristic(g, from, to);
+		}
+		return Math.abs(g.getX(from) - g.getX(to))
+				+ Math.abs(g.getY(from) - g.getY(to));
+	}
+
+	/**
+	 * Estimates the distance between two squares as the Manhattan distance
+	 * on a board that wraps around at its edges. On other boards whose
+	 * {@link BoardGraph#jumpsAtChunkEdges() links only jump at the edges of
+	 * chunks}, a path either steps from square to square all the way, or
+	 * goes to the edge of a chunk, jumps and comes back from the edge of a
+	 * chunk; the estimate is the shorter of the two. On any other board it
+	 * is zero. The estimate changes by at most one along any link, so it is
+	 * consistent in both directions as well as admissible.
+	 *
+	 * @param g The graph of the board.
+	 * @param from The index of the first square.
+	 * @param to The index of the second square.
+	 * @return A lower bound of the distance between the squares.
+	 */
+	static int heuristic(BoardGraph g, int from, int to) {
+		int dx = Math.abs(g.getX(from) - g.getX(to));
+		int dy = Math.abs(g.getY(from) - g.getY(to));
+		if (g.isTorus()) {
+			return Math.min(dx, g.getWidth() - dx)
+					+ Math.min(dy, g.getHeight() - dy);
+		}
+		if (!g.jumpsAtChunkEdges()) {
+			return 0;
+		}
+		return Math.min(dx + dy,
+				g.chunkEdgeDistance(from) + 1 + g.chunkEdgeDistance(to));
+	}
+
+	/**
+	 * @param index The index of a square reached by the last search.
+	 * @return The index of the square it was entered from.
+	 */
+	private int parentOf(int index) {
+		return predecessors[index];
+	}
+
+	/**
+	 * Adds a square to the open set.
+	 *
+	 * @param square The index of the square.
+	 * @param score The estimated length of a path through the square.
+	 * @param cost The length of the path to the square.
+	 */
+	private void push(int square, int score, int cost) {
+		if (heapSize == heapSquares.length) {
+			heapSquares = Arrays.copyOf(heapSquares, heapSize * 2);
+			heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+		}
+		long key = ((long) score << SCORE_SHIFT) | (~cost & TIE_MASK);
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heapKeys[parent] <= key) {
+				break;
+			}
+			heapSquares[i] = heapSquares[parent];
+			heapKeys[i] = heapKeys[parent];
+			i = parent;
+		}
+		heapSquares[i] = square;
+		heapKeys[i] = key;
+	}
+
+	/**
+	 * Removes the square with the lowest key from the open set.
+	 *
+	 * @return The index of the removed square.
+	 */
+	private int pop() {
+		int result = heapSquares[0];
+		int lastSquare = heapSquares[--heapSize];
+		long lastKey = heapKeys[heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+				child++;
+			}
+			if (heapKeys[child] >= lastKey) {
+				break;
+			}
+			heapSquares[i] = heapSquares[child];
+			heapKeys[i] = heapKeys[child];
+			i = child;
+		}
+		heapSquares[i] = lastSquare;
+		heapKeys[i] = lastKey;
+		return result;
+	}
+
+	/**
+	 * Makes sure the buffers can hold every square of the graph. Stamps are
+	 * cleared when a different graph is searched.
+	 *
+	 * @param g The graph that is about to be searched.
+	 */
+	private void prepare(BoardGraph g) {
+		if (g == graph) {
+			return;
+		}
+		int size = g.size();
+		if (reached.length < size) {
+			reached = new int[size];
+			closed = new int[size];
+			costs = new int[size];
+			parents = new byte[size];
+			predecessors = new int[size];
+		} else {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+		}
+		generation = 0;
+		graph = g;
+	}
+
+	/**
+	 * @return A generation that no square has been stamped with yet.
+	 */
+	private int nextGeneration() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			generation = 0;
+		}
+		return ++generation;
+	}
+}
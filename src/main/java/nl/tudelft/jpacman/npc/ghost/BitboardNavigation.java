@@ -0,0 +1,350 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * BitboardNavigation computes whole-board distance maps with a bit-parallel
+ * breadth first search. Every row of the board is stored as a lane of 64-bit
+ * words, one bit per square, so that a single step of the search expands a
+ * whole row of the frontier with a few shift, OR and AND operations.
+ * <p>
+ * The search assumes the squares of the board are linked the way
+ * {@link nl.tudelft.jpacman.board.BoardFactory#createBoard(Square[][])} links
+ * them: to their direct neighbours, wrapping around at the edges of the board.
+ * It therefore yields the same distances as a breadth first search with
+ * {@link Navigation}. Boards that have been extended are not linked that way;
+ * their distances are computed with a regular breadth first search instead.
+ * </p>
+ * <p>
+ * Walkability is treated as static terrain: the mask of squares a traveller
+ * may occupy is computed once and reused for consecutive searches by the same
+ * traveller on the same {@link BoardGraph}. Call {@link #invalidate()} when
+ * the accessibility of squares changes without the board being rebuilt.
+ * </p>
+ */
+public final class BitboardNavigation {
+
+	/**
+	 * The amount of bits in a word.
+	 */
+	private static final int WORD_SIZE = 64;
+
+	/**
+	 * The amount of bits to shift an index to find its word.
+	 */
+	private static final int WORD_SHIFT = 6;
+
+	/**
+	 * The distance of squares that cannot be reached.
+	 */
+	public static final int UNREACHABLE = -1;
+
+	/**
+	 * The buffers of every thread that navigates.
+	 */
+	private static final ThreadLocal<BitboardNavigation> ENGINE =
+			ThreadLocal.withInitial(BitboardNavigation::new);
+
+	/**
+	 * The width of the board the buffers are prepared for.
+	 */
+	private int width;
+
+	/**
+	 * The height of the board the buffers are prepared for.
+	 */
+	private int height;
+
+	/**
+	 * The amount of words in a row.
+	 */
+	private int words;
+
+	/**
+	 * The mask of valid bits in the last word of every row.
+	 */
+	private long lastWordMask;
+
+	/**
+	 * The squares the traveller may occupy.
+	 */
+	private long[] walkable = new long[0];
+
+	/**
+	 * The graph the walkable squares were computed for.
+	 */
+	private BoardGraph walkableGraph;
+
+	/**
+	 * The traveller the walkable squares were computed for.
+	 */
+	private Unit walkableTraveller;
+
+	/**
+	 * The squares that have been reached.
+	 */
+	private long[] visited = new long[0];
+
+	/**
+	 * The squares reached in the last step.
+	 */
+	private long[] frontier = new long[0];
+
+	/**
+	 * The squares reached in the current step.
+	 */
+	private long[] next = new long[0];
+
+	/**
+	 * Whether the row of the frontier with the same index has any bit set.
+	 */
+	private boolean[] activeRows = new boolean[0];
+
+	/**
+	 * Whether the row of the next frontier with the same index has any bit set.
+	 */
+	private boolean[] nextActiveRows = new boolean[0];
+
+	/**
+	 * The search used for boards that do not wrap around at their edges.
+	 */
+	private final BreadthFirstSearch fallback = new BreadthFirstSearch();
+
+	private BitboardNavigation() {
+	}
+
+	/**
+	 * Calculates the distance from a square to every square of its board.
+	 * This search ensures the traveller is allowed to occupy the squares on
+	 * the way, or ignores terrain if no traveller is specified.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param traveller
+	 *            The traveller, or <code>null</code> to ignore terrain.
+	 * @return The distance to every square of the board, indexed like the
+	 *         {@link BoardGraph} of the board, with {@link #UNREACHABLE} for
+	 *         squares that cannot be reached. Returns <code>null</code> if the
+	 *         square is not on a board, or if the {@link SearchBudget} of the
+	 *         current thread stopped the search before every reachable square
+	 *         had a distance.
+	 */
+	public static int[] distances(Square from, Unit traveller) {
+		Board board = from.getBoard();
+		if (board == null) {
+			return null;
+		}
+		BoardGraph graph = board.getGraph();
+		int source = graph.indexOf(from);
+		if (source < 0) {
+			return null;
+		}
+		int[] result = new int[graph.size()];
+		if (!distances(graph, source, traveller, result)) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Discards the walkable squares cached by the calling thread.
+	 */
+	public static void invalidate() {
+		ENGINE.get().walkableGraph = null;
+	}
+
+	/**
+	 * Calculates the distance from a square to every square of a graph.
+	 *
+	 * @param graph
+	 *            The graph to search.
+	 * @param source
+	 *            The index of the starting square.
+	 * @param traveller
+	 *            The traveller, or <code>null</code> to ignore terrain.
+	 * @param distances
+	 *            The array to fill with the distances, indexed like the graph.
+	 * @return <code>true</code> iff the distances are complete, i.e. the
+	 *         search was not stopped by the {@link SearchBudget}.
+	 */
+	static boolean distances(BoardGraph graph, int source, Unit traveller,
+			int[] distances) {
+		return ENGINE.get().search(graph, source, traveller, distances);
+	}
+
+	/**
+	 * Runs the bit-parallel search.
+	 *
+	 * @param graph The graph to search.
+	 * @param source The index of the starting square.
+	 * @param traveller The traveller, or <code>null</code> to ignore terrain.
+	 * @param distances The array to fill with the distances.
+	 * @return <code>true</code> iff the distances are complete.
+	 */
+	private boolean search(BoardGraph graph, int source, Unit traveller,
+			int[] distances) {
+		if (!graph.isTorus()) {
+			return fallback.distances(graph, source, traveller, distances);
+		}
+		prepare(graph.getWidth(), graph.getHeight());
+		if (graph != walkableGraph || traveller != walkableTraveller) {
+			fillWalkable(graph, traveller);
+			walkableGraph = graph;
+			walkableTraveller = traveller;
+		}
+		Arrays.fill(distances, 0, graph.size(), UNREACHABLE);
+		Arrays.fill(visited, 0L);
+		Arrays.fill(frontier, 0L);
+		Arrays.fill(activeRows, false);
+
+		int sx = graph.getX(source);
+		int sy = graph.getY(source);
+		long bit = 1L << (sx & (WORD_SIZE - 1));
+		visited[sy * words + (sx >>> WORD_SHIFT)] |= bit;
+		frontier[sy * words + (sx >>> WORD_SHIFT)] |= bit;
+		activeRows[sy] = true;
+		distances[source] = 0;
+
+		int distance = 0;
+		boolean active = true;
+		while (active) {
+			distance++;
+			active = false;
+			for (int y = 0; y < height; y++) {
+				nextActiveRows[y] = expandRow(y);
+				if (nextActiveRows[y]) {
+					active = true;
+					record(y, distance, distances);
+				}
+			}
+			long[] swap = frontier;
+			frontier = next;
+			next = swap;
+			boolean[] swapRows = activeRows;
+			activeRows = nextActiveRows;
+			nextActiveRows = swapRows;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the squares of a row that are reached in the next step, i.e.
+	 * the walkable, unvisited squares next to the frontier, and marks them as
+	 * visited.
+	 *
+	 * @param y The row to expand.
+	 * @return <code>true</code> iff any square of the row was reached.
+	 */
+	private boolean expandRow(int y) {
+		int above = (y + height - 1) % height;
+		int below = (y + 1) % height;
+		int row = y * words;
+		if (!activeRows[y] && !activeRows[above] && !activeRows[below]) {
+			Arrays.fill(next, row, row + words, 0L);
+			return false;
+		}
+		int rowAbove = above * words;
+		int rowBelow = below * words;
+		long firstBit = frontier[row] & 1L;
+		long lastBit = (frontier[row + words - 1]
+				>>> ((width - 1) & (WORD_SIZE - 1))) & 1L;
+		boolean any = false;
+		for (int w = 0; w < words; w++) {
+			long current = frontier[row + w];
+			long east = current << 1;
+			long west = current >>> 1;
+			if (w > 0) {
+				east |= frontier[row + w - 1] >>> (WORD_SIZE - 1);
+			} else {
+				east |= lastBit;
+			}
+			if (w < words - 1) {
+				west |= frontier[row + w + 1] << (WORD_SIZE - 1);
+			}
+			long reached = (east | west | frontier[rowAbove + w]
+					| frontier[rowBelow + w])
+					& walkable[row + w] & ~visited[row + w];
+			next[row + w] = reached;
+			visited[row + w] |= reached;
+			any |= reached != 0L;
+		}
+		if (firstBit != 0L) {
+			int last = row + words - 1;
+			long wrapped = (1L << ((width - 1) & (WORD_SIZE - 1)))
+					& walkable[last] & ~visited[last];
+			next[last] |= wrapped;
+			visited[last] |= wrapped;
+			any |= wrapped != 0L;
+		}
+		next[row + words - 1] &= lastWordMask;
+		return any;
+	}
+
+	/**
+	 * Writes the distance of every square reached in a row.
+	 *
+	 * @param y The row.
+	 * @param distance The distance of the squares reached in this step.
+	 * @param distances The distance map to write to.
+	 */
+	private void record(int y, int distance, int[] distances) {
+		int row = y * words;
+		for (int w = 0; w < words; w++) {
+			long bits = next[row + w];
+			while (bits != 0L) {
+				int x = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+				distances[y * width + x] = distance;
+				bits &= bits - 1;
+			}
+		}
+	}
+
+	/**
+	 * Builds the mask of squares the traveller may occupy.
+	 *
+	 * @param graph The graph of the board.
+	 * @param traveller The traveller, or <code>null</code> to ignore terrain.
+	 */
+	private void fillWalkable(BoardGraph graph, Unit traveller) {
+		Arrays.fill(walkable, 0L);
+		for (int y = 0; y < height; y++) {
+			int row = y * words;
+			for (int x = 0; x < width; x++) {
+				if (traveller == null || graph.squareAt(graph.index(x, y))
+						.isAccessibleTo(traveller)) {
+					walkable[row + (x >>> WORD_SHIFT)] |= 1L << (x & (WORD_SIZE - 1));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes sure the buffers fit a board of the given size.
+	 *
+	 * @param w The width of the board.
+	 * @param h The height of the board.
+	 */
+	private void prepare(int w, int h) {
+		if (w == width && h == height) {
+			return;
+		}
+		width = w;
+		height = h;
+		walkableGraph = null;
+		words = (w + WORD_SIZE - 1) >>> WORD_SHIFT;
+		int bits = w & (WORD_SIZE - 1);
+		lastWordMask = bits == 0 ? -1L : (1L << bits) - 1;
+		int size = words * h;
+		walkable = new long[size];
+		visited = new long[size];
+		frontier = new long[size];
+		next = new long[size];
+		activeRows = new boolean[h];
+		nextActiveRows = new boolean[h];
+	}
+}
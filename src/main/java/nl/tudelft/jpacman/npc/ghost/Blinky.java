@@ -1,11 +1,11 @@
 package nl.tudelft.jpacman.npc.ghost;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 import nl.tudelft.jpacman.board.Direction;
 import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
 import nl.tudelft.jpacman.level.Player;
 import nl.tudelft.jpacman.sprite.AnimatedSprite;
 import nl.tudelft.jpacman.sprite.Sprite;
@@ -107,17 +107,43 @@ public class Blinky extends Ghost {
 			return randomMoveAtCrossroads();
 		}
 
-		Square target = Navigation.findNearest(Player.class, getSquare())
-				.getSquare();
-		if (target == null) {
+		Direction corridor = corridorMove();
+		if (corridor != null) {
+			return corridor;
+		}
+
+		Unit player = Navigation.findNearest(Player.class, getSquare());
+		if (player == null) {
 			return randomMove();
 		}
-		
-		List<Direction> path = Navigation.shortestPath(getSquare(), target,
-				this);
-		if (path != null && !path.isEmpty()) {
-			return path.get(0);
+
+		Direction step = getLevel().getFlowField().step(player,
+				getSquare(), this);
+		if (step == null) {
+			step = Navigation.firstStep(getSquare(), player.getSquare(), this);
+		}
+		if (step != null) {
+			return step;
+		}
+		return fallbackMove();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>
+	 * Blinky heads for the square of Pac-Man, unless he is feared.
+	 * </p>
+	 */
+	@Override
+	protected Square chaseTarget() {
+		if (this.getFearedMode()) {
+			return null;
+		}
+		Unit player = Navigation.findNearest(Player.class, getSquare());
+		if (player == null) {
+			return null;
 		}
-		return randomMove();
+		return player.getSquare();
 	}
 }
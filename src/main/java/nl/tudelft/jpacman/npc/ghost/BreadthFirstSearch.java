@@ -0,0 +1,249 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * A breadth first search over the {@link BoardGraph} of a board. All
+ * bookkeeping is done on integer square indices in arrays that are kept
+ * between searches: a ring buffer as the queue, a generation stamp per square
+ * to mark it visited and the direction in which every square was entered.
+ * Once the arrays have grown to the size of the board, a search allocates
+ * nothing but its result.
+ * <p>
+ * Instances are not thread safe; {@link Navigation} keeps one per thread.
+ * </p>
+ */
+final class BreadthFirstSearch {
+
+	/**
+	 * The graph the buffers are currently prepared for.
+	 */
+	private BoardGraph graph;
+
+	/**
+	 * The ring buffer holding the indices of the squares still to expand.
+	 */
+	private int[] queue = new int[0];
+
+	/**
+	 * The generation in which every square was last visited.
+	 */
+	private int[] visited = new int[0];
+
+	/**
+	 * The ordinal of the direction in which every visited square was entered.
+	 */
+	private byte[] parents = new byte[0];
+
+	/**
+	 * The index of the square every visited square was entered from. This
+	 * cannot be derived from the parent direction, since the squares along
+	 * the seam of an extended board are not always linked back.
+	 */
+	private int[] predecessors = new int[0];
+
+	/**
+	 * The generation of the current search.
+	 */
+	private int generation;
+
+	/**
+	 * The amount of squares the last search put in the queue.
+	 */
+	private int reached;
+
+	/**
+	 * The amount of squares the last search took from the queue.
+	 */
+	private int expanded;
+
+	/**
+	 * Whether the last search was stopped by the {@link SearchBudget}.
+	 */
+	private boolean stopped;
+
+	/**
+	 * Calculates the shortest path between two squares, with the same
+	 * semantics as {@link Navigation#shortestPath(Square, Square, Unit)}.
+	 *
+	 * @param graph
+	 *            The graph of the board both squares are on.
+	 * @param from
+	 *            The index of the starting square.
+	 * @param to
+	 *            The index of the destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The shortest path to the destination or <code>null</code> if no
+	 *         such path could be found.
+	 */
+	List<Direction> shortestPath(BoardGraph graph, int from, int to,
+			Unit traveller) {
+		if (!search(graph, from, to, traveller)) {
+			return null;
+		}
+		return path(from, to);
+	}
+
+	/**
+	 * Calculates the distance from a square to every square of the graph.
+	 *
+	 * @param graph
+	 *            The graph of the board to search.
+	 * @param from
+	 *            The index of the starting square.
+	 * @param traveller
+	 *            The traveller, or <code>null</code> to ignore terrain.
+	 * @param distances
+	 *            The array to fill with the distance to every square, indexed
+	 *            like the graph, with <code>-1</code> for squares that cannot
+	 *            be reached.
+	 * @return <code>true</code> iff all reachable squares were expanded. If
+	 *         the {@link SearchBudget} stopped the search, the distances only
+	 *         cover the squares reached so far and must not be used as a
+	 *         complete map.
+	 */
+	boolean distances(BoardGraph graph, int from, Unit traveller,
+			int[] distances) {
+		assert distances.length >= graph.size();
+		Arrays.fill(distances, 0, graph.size(), -1);
+		distances[from] = 0;
+		search(graph, from, -1, traveller);
+		for (int i = 1; i < reached; i++) {
+			int square = queue[i];
+			distances[square] = distances[parentOf(square)] + 1;
+		}
+		return !stopped;
+	}
+
+	/**
+	 * @return The amount of squares expanded by the last search.
+	 */
+	int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * Runs the search from a square until the destination is dequeued, all
+	 * reachable squares have been expanded or the {@link SearchBudget} of the
+	 * current thread is spent.
+	 *
+	 * @param g The graph to search.
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 * @param traveller The traveller, or <code>null</code> to ignore terrain.
+	 * @return <code>true</code> iff the destination was reached.
+	 */
+	private boolean search(BoardGraph g, int from, int to, Unit traveller) {
+		prepare(g);
+		int stamp = nextGeneration();
+		int capacity = queue.length;
+		int head = 0;
+		int tail = 0;
+		visited[from] = stamp;
+		queue[tail++] = from;
+		reached = 1;
+		expanded = 0;
+		stopped = false;
+		int limit = SearchBudget.remaining();
+		while (head != tail) {
+			int current = queue[head];
+			head = (head + 1) % capacity;
+			expanded++;
+			if (current == to) {
+				SearchBudget.spend(expanded, false);
+				return true;
+			}
+			if (expanded >= limit) {
+				stopped = true;
+				SearchBudget.spend(expanded, true);
+				return false;
+			}
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				int next = g.neighbour(current, d);
+				if (visited[next] != stamp && (traveller == null
+						|| g.squareAt(next).isAccessibleTo(traveller))) {
+					visited[next] = stamp;
+					parents[next] = (byte) d;
+					predecessors[next] = current;
+					queue[tail] = next;
+					tail = (tail + 1) % capacity;
+					reached++;
+				}
+			}
+		}
+		SearchBudget.spend(expanded, false);
+		return false;
+	}
+
+	/**
+	 * Walks the parent directions back from the destination to reconstruct
+	 * the path found by the last search.
+	 *
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 * @return The directions from the start to the destination.
+	 */
+	private List<Direction> path(int from, int to) {
+		int length = 0;
+		for (int i = to; i != from; i = parentOf(i)) {
+			length++;
+		}
+		Direction[] path = new Direction[length];
+		int i = to;
+		while (i != from) {
+			path[--length] = BoardGraph.direction(parents[i]);
+			i = parentOf(i);
+		}
+		return Arrays.asList(path);
+	}
+
+	/**
+	 * @param index The index of a square visited by the last search.
+	 * @return The index of the square it was entered from.
+	 */
+	private int parentOf(int index) {
+		return predecessors[index];
+	}
+
+	/**
+	 * Makes sure the buffers can hold every square of the graph. Stamps are
+	 * cleared when a different graph is searched.
+	 *
+	 * @param g The graph that is about to be searched.
+	 */
+	private void prepare(BoardGraph g) {
+		if (g == graph) {
+			return;
+		}
+		int size = g.size();
+		if (visited.length < size) {
+			queue = new int[size];
+			visited = new int[size];
+			parents = new byte[size];
+			predecessors = new int[size];
+		} else {
+			Arrays.fill(visited, 0);
+		}
+		generation = 0;
+		graph = g;
+	}
+
+	/**
+	 * @return A generation that no square has been stamped with yet.
+	 */
+	private int nextGeneration() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(visited, 0);
+			generation = 0;
+		}
+		return ++generation;
+	}
+}
@@ -0,0 +1,701 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.BoardObserver;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * An abstract model of a board for hierarchical path finding. The board is
+ * cut into chunks the size of a single map, which is how an infinite board
+ * grows. Where a row of open squares crosses the border between two chunks,
+ * a single pair of squares on either side is chosen as an entrance, or two
+ * pairs if the row is long. The squares of these entrances are the nodes of
+ * the model. They are connected by the link across the border and by the
+ * length of the shortest path within every chunk between all entrances of
+ * that chunk.
+ * <p>
+ * A search over this model only looks at the entrances near the path, so it
+ * costs about the same no matter how large the board has grown. The paths
+ * it finds stay within a few squares of the shortest ones.
+ * </p>
+ * <p>
+ * A model is installed for a board with {@link #install(Board, Unit, Class)}.
+ * When the board is extended, the paths within chunks whose squares and
+ * entrances did not change are carried over from the previous model.
+ * </p>
+ */
+public final class ChunkGraph implements BoardObserver {
+
+	/**
+	 * The length from which a row of open squares along a border gets an
+	 * entrance at either end instead of one in the middle.
+	 */
+	private static final int LONG_ENTRANCE = 6;
+
+	/**
+	 * The length of paths that do not exist.
+	 */
+	static final int UNREACHABLE = -1;
+
+	/**
+	 * The models installed for each board.
+	 */
+	private static final Map<Board, ChunkGraph> GRAPHS =
+			Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * The graph of the board this model was built for.
+	 */
+	private final BoardGraph graph;
+
+	/**
+	 * The unit whose access to squares this model was built for.
+	 */
+	private final Unit representative;
+
+	/**
+	 * The type of travellers this model applies to.
+	 */
+	private final Class<? extends Unit> travellerType;
+
+	/**
+	 * The width of a chunk.
+	 */
+	private final int chunkWidth;
+
+	/**
+	 * The height of a chunk.
+	 */
+	private final int chunkHeight;
+
+	/**
+	 * The amount of chunks in a row.
+	 */
+	private final int chunksX;
+
+	/**
+	 * Whether the representative may occupy every square.
+	 */
+	private final boolean[] accessible;
+
+	/**
+	 * The node of every square, or -1 if it is not an entrance.
+	 */
+	private final int[] nodeOf;
+
+	/**
+	 * The square of every node.
+	 */
+	private int[] squares;
+
+	/**
+	 * The position of the first node of every chunk in the node order; the
+	 * nodes of a chunk are numbered consecutively.
+	 */
+	private final int[] chunkStart;
+
+	/**
+	 * The position of the first edge of every node in the edge arrays.
+	 */
+	private int[] edgeStart;
+
+	/**
+	 * The node every edge leads to.
+	 */
+	private int[] edgeTarget;
+
+	/**
+	 * The length of every edge.
+	 */
+	private int[] edgeCost;
+
+	/**
+	 * The lengths of the paths between the nodes of every chunk.
+	 */
+	private final int[][] chunkCosts;
+
+	/**
+	 * The amount of chunks whose paths were carried over from the previous
+	 * model.
+	 */
+	private int reused;
+
+	/**
+	 * Builds the model of a board, reusing what is still valid of the model
+	 * of its previous layout.
+	 *
+	 * @param graph The graph of the board.
+	 * @param traveller The unit whose access to squares the model is built for.
+	 * @param type The type of travellers the model applies to.
+	 * @param width The width of a chunk.
+	 * @param height The height of a chunk.
+	 * @param previous The model of the previous layout, or <code>null</code>.
+	 */
+	ChunkGraph(BoardGraph graph, Unit traveller, Class<? extends Unit> type,
+			int width, int height, ChunkGraph previous) {
+		this.graph = graph;
+		this.representative = traveller;
+		this.travellerType = type;
+		this.chunkWidth = width;
+		this.chunkHeight = height;
+		this.chunksX = (graph.getWidth() + width - 1) / width;
+		int chunks = chunksX * ((graph.getHeight() + height - 1) / height);
+		int size = graph.size();
+		this.accessible = new boolean[size];
+		this.nodeOf = new int[size];
+		this.chunkStart = new int[chunks + 1];
+		this.chunkCosts = new int[chunks][];
+		for (int i = 0; i < size; i++) {
+			accessible[i] = graph.squareAt(i).isAccessibleTo(traveller);
+		}
+		Arrays.fill(nodeOf, -1);
+
+		int[] crossings = findEntrances(chunks);
+		numberNodes(chunks);
+		Map<Square, Integer> origins = new IdentityHashMap<>();
+		if (previous != null) {
+			for (int c = 0; c < previous.chunkCosts.length; c++) {
+				origins.put(previous.graph.squareAt(previous.corner(c)), c);
+			}
+		}
+		int[] buffer = new int[width * height];
+		for (int c = 0; c < chunks; c++) {
+			Integer origin = origins.get(graph.squareAt(corner(c)));
+			if (origin != null && sameEntrances(c, previous, origin)) {
+				chunkCosts[c] = previous.chunkCosts[origin];
+				reused++;
+			} else {
+				chunkCosts[c] = connect(c, buffer);
+			}
+		}
+		buildEdges(crossings);
+	}
+
+	/**
+	 * Finds the entrances along the borders of all chunks and marks their
+	 * squares as nodes.
+	 *
+	 * @param chunks The amount of chunks.
+	 * @return Pairs of squares linked across a border, from the inside to
+	 *         the outside of a chunk.
+	 */
+	private int[] findEntrances(int chunks) {
+		int[] crossings = new int[chunks * BoardGraph.DIRECTIONS
+				* (chunkWidth + chunkHeight + 2)];
+		int count = 0;
+		for (int c = 0; c < chunks; c++) {
+			int x0 = chunkX(c) * chunkWidth;
+			int y0 = chunkY(c) * chunkHeight;
+			int x1 = Math.min(x0 + chunkWidth, graph.getWidth());
+			int y1 = Math.min(y0 + chunkHeight, graph.getHeight());
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				Direction direction = BoardGraph.direction(d);
+				boolean horizontal = direction.getDeltaY() != 0;
+				int length = horizontal ? x1 - x0 : y1 - y0;
+				int fixed;
+				if (horizontal) {
+					fixed = direction.getDeltaY() < 0 ? y0 : y1 - 1;
+				} else {
+					fixed = direction.getDeltaX() < 0 ? x0 : x1 - 1;
+				}
+				int runStart = 0;
+				int run = 0;
+				int previousTarget = -1;
+				for (int k = 0; k <= length; k++) {
+					int square = -1;
+					int target = -1;
+					if (k < length) {
+						square = horizontal ? graph.index(x0 + k, fixed)
+								: graph.index(fixed, y0 + k);
+						target = graph.neighbour(square, d);
+						if (!accessible[square] || !accessible[target]) {
+							target = -1;
+						}
+					}
+					if (run > 0 && !continues(previousTarget, target,
+							horizontal)) {
+						count = addEntrance(crossings, count, x0, y0, fixed,
+								horizontal, d, runStart, run);
+						run = 0;
+					}
+					if (target >= 0) {
+						if (run == 0) {
+							runStart = k;
+						}
+						run++;
+					}
+					previousTarget = target;
+				}
+			}
+		}
+		return Arrays.copyOf(crossings, count);
+	}
+
+	/**
+	 * @param previous The square across the border of the previous square
+	 *            along the border, or -1.
+	 * @param target The square across the border of the current square, or
+	 *            -1.
+	 * @param horizontal Whether the border runs horizontally.
+	 * @return <code>true</code> iff both squares are open neighbours in the
+	 *         same chunk, so that they belong to the same entrance.
+	 */
+	private boolean continues(int previous, int target, boolean horizontal) {
+		if (previous < 0 || target < 0
+				|| chunkOf(previous) != chunkOf(target)) {
+			return false;
+		}
+		if (horizontal) {
+			return graph.getY(previous) == graph.getY(target)
+					&& graph.getX(previous) + 1 == graph.getX(target);
+		}
+		return graph.getX(previous) == graph.getX(target)
+				&& graph.getY(previous) + 1 == graph.getY(target);
+	}
+
+	private int addEntrance(int[] crossings, int count, int x0, int y0,
+			int fixed, boolean horizontal, int direction, int runStart,
+			int run) {
+		int result = count;
+		int[] positions;
+		if (run >= LONG_ENTRANCE) {
+			positions = new int[] {runStart, runStart + run - 1};
+		} else {
+			positions = new int[] {runStart + run / 2};
+		}
+		for (int k : positions) {
+			int square = horizontal ? graph.index(x0 + k, fixed)
+					: graph.index(fixed, y0 + k);
+			int target = graph.neighbour(square, direction);
+			nodeOf[square] = 0;
+			nodeOf[target] = 0;
+			crossings[result++] = square;
+			crossings[result++] = target;
+		}
+		return result;
+	}
+
+	/**
+	 * Numbers the marked squares chunk by chunk.
+	 *
+	 * @param chunks The amount of chunks.
+	 */
+	private void numberNodes(int chunks) {
+		int nodes = 0;
+		squares = new int[Math.max(1, graph.size() / 4)];
+		for (int c = 0; c < chunks; c++) {
+			chunkStart[c] = nodes;
+			int x0 = chunkX(c) * chunkWidth;
+			int y0 = chunkY(c) * chunkHeight;
+			int x1 = Math.min(x0 + chunkWidth, graph.getWidth());
+			int y1 = Math.min(y0 + chunkHeight, graph.getHeight());
+			for (int y = y0; y < y1; y++) {
+				for (int x = x0; x < x1; x++) {
+					int square = graph.index(x, y);
+					if (nodeOf[square] < 0) {
+						continue;
+					}
+					if (nodes == squares.length) {
+						squares = Arrays.copyOf(squares, nodes * 2);
+					}
+					nodeOf[square] = nodes;
+					squares[nodes++] = square;
+				}
+			}
+		}
+		chunkStart[chunks] = nodes;
+		squares = Arrays.copyOf(squares, nodes);
+	}
+
+	/**
+	 * @param chunk A chunk of this model.
+	 * @param previous The previous model.
+	 * @param origin The chunk of the previous model with the same corner.
+	 * @return <code>true</code> iff both chunks have the same entrances, so
+	 *         that the paths between them can be carried over.
+	 */
+	private boolean sameEntrances(int chunk, ChunkGraph previous, int origin) {
+		int count = chunkStart[chunk + 1] - chunkStart[chunk];
+		if (count != previous.chunkStart[origin + 1]
+				- previous.chunkStart[origin]) {
+			return false;
+		}
+		for (int k = 0; k < count; k++) {
+			if (graph.squareAt(squares[chunkStart[chunk] + k])
+					!= previous.graph.squareAt(
+							previous.squares[previous.chunkStart[origin] + k])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the lengths of the paths between all entrances of a chunk.
+	 *
+	 * @param chunk The chunk.
+	 * @param buffer The distances within the chunk, reused between calls.
+	 * @return The lengths as a matrix in row order.
+	 */
+	private int[] connect(int chunk, int[] buffer) {
+		int first = chunkStart[chunk];
+		int count = chunkStart[chunk + 1] - first;
+		int[] costs = new int[count * count];
+		int[] queue = new int[buffer.length];
+		for (int a = 0; a < count; a++) {
+			localDistances(squares[first + a], buffer, queue, false);
+			for (int b = 0; b < count; b++) {
+				costs[a * count + b] = buffer[local(squares[first + b])];
+			}
+		}
+		return costs;
+	}
+
+	/**
+	 * Computes the distances within the chunk of a square, to or from that
+	 * square.
+	 *
+	 * @param origin The index of the square.
+	 * @param distances The distance of every square of the chunk, indexed by
+	 *            {@link #local(int)}, or {@link #UNREACHABLE}.
+	 * @param queue A buffer at least as large as a chunk.
+	 * @param reverse Whether to compute distances to the square instead of
+	 *            from it.
+	 */
+	void localDistances(int origin, int[] distances, int[] queue,
+			boolean reverse) {
+		Arrays.fill(distances, UNREACHABLE);
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = origin;
+		distances[local(origin)] = 0;
+		while (head < tail) {
+			int current = queue[head++];
+			int distance = distances[local(current)] + 1;
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				int next = reverse ? localPredecessor(current, d)
+						: localNeighbour(current, d);
+				if (next < 0 || distances[local(next)] != UNREACHABLE
+						|| (!reverse && !accessible[next])) {
+					continue;
+				}
+				distances[local(next)] = distance;
+				queue[tail++] = next;
+			}
+		}
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @param direction The ordinal of a direction.
+	 * @return The neighbour in that direction if it is linked to the square
+	 *         and in the same chunk on the same side, or -1.
+	 */
+	int localNeighbour(int index, int direction) {
+		Direction d = BoardGraph.direction(direction);
+		int x = graph.getX(index) + d.getDeltaX();
+		int y = graph.getY(index) + d.getDeltaY();
+		if (!withinChunk(chunkOf(index), x, y)) {
+			return -1;
+		}
+		int next = graph.index(x, y);
+		return graph.neighbour(index, direction) == next ? next : -1;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @param direction The ordinal of a direction.
+	 * @return The neighbour opposite to that direction if it is linked to
+	 *         the square and in the same chunk, or -1.
+	 */
+	private int localPredecessor(int index, int direction) {
+		Direction d = BoardGraph.direction(direction);
+		int x = graph.getX(index) - d.getDeltaX();
+		int y = graph.getY(index) - d.getDeltaY();
+		if (!withinChunk(chunkOf(index), x, y)) {
+			return -1;
+		}
+		int previous = graph.index(x, y);
+		if (graph.neighbour(previous, direction) != index
+				|| !accessible[previous]) {
+			return -1;
+		}
+		return previous;
+	}
+
+	private boolean withinChunk(int chunk, int x, int y) {
+		int x0 = chunkX(chunk) * chunkWidth;
+		int y0 = chunkY(chunk) * chunkHeight;
+		return x >= x0 && x < x0 + chunkWidth && x < graph.getWidth()
+				&& y >= y0 && y < y0 + chunkHeight && y < graph.getHeight();
+	}
+
+	/**
+	 * Builds the edges of all nodes: the links across borders and the paths
+	 * within chunks.
+	 *
+	 * @param crossings Pairs of squares linked across a border.
+	 */
+	private void buildEdges(int[] crossings) {
+		int nodes = squares.length;
+		edgeStart = new int[nodes + 1];
+		for (int k = 0; k < crossings.length; k += 2) {
+			edgeStart[nodeOf[crossings[k]] + 1]++;
+		}
+		for (int c = 0; c < chunkCosts.length; c++) {
+			int count = chunkStart[c + 1] - chunkStart[c];
+			for (int a = 0; a < count; a++) {
+				for (int b = 0; b < count; b++) {
+					if (a != b && chunkCosts[c][a * count + b] > 0) {
+						edgeStart[chunkStart[c] + a + 1]++;
+					}
+				}
+			}
+		}
+		for (int i = 0; i < nodes; i++) {
+			edgeStart[i + 1] += edgeStart[i];
+		}
+		edgeTarget = new int[edgeStart[nodes]];
+		edgeCost = new int[edgeStart[nodes]];
+		int[] fill = Arrays.copyOf(edgeStart, nodes);
+		for (int k = 0; k < crossings.length; k += 2) {
+			int from = nodeOf[crossings[k]];
+			edgeTarget[fill[from]] = nodeOf[crossings[k + 1]];
+			edgeCost[fill[from]++] = 1;
+		}
+		for (int c = 0; c < chunkCosts.length; c++) {
+			int first = chunkStart[c];
+			int count = chunkStart[c + 1] - first;
+			for (int a = 0; a < count; a++) {
+				for (int b = 0; b < count; b++) {
+					int cost = chunkCosts[c][a * count + b];
+					if (a != b && cost > 0) {
+						edgeTarget[fill[first + a]] = first + b;
+						edgeCost[fill[first + a]++] = cost;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the model of a board and installs it, so that {@link Navigation}
+	 * will use it for the given type of travellers.
+	 *
+	 * @param board
+	 *            The board to model.
+	 * @param traveller
+	 *            A unit whose access to squares is representative for all
+	 *            travellers of the given type.
+	 * @param type
+	 *            The type of travellers the model applies to.
+	 * @return The installed model, or <code>null</code> if the board cannot
+	 *         be navigated.
+	 */
+	public static ChunkGraph install(Board board, Unit traveller,
+			Class<? extends Unit> type) {
+		assert type.isInstance(traveller);
+		BoardGraph graph = board.getGraph();
+		if (graph == null) {
+			return null;
+		}
+		ChunkGraph model = new ChunkGraph(graph, traveller, type,
+				board.getWidthOfOneMap(), board.getHeightOfOneMap(), null);
+		ChunkGraph previous = GRAPHS.put(board, model);
+		if (previous != null) {
+			board.removeObserver(previous);
+		}
+		board.addObserver(model);
+		return model;
+	}
+
+	/**
+	 * Returns the model installed for a board.
+	 *
+	 * @param board The board.
+	 * @return The model of the current layout of the board, or
+	 *         <code>null</code> if none has been installed.
+	 */
+	public static ChunkGraph forBoard(Board board) {
+		ChunkGraph model = GRAPHS.get(board);
+		if (model == null || model.graph.getRevision() != board.getRevision()) {
+			return null;
+		}
+		return model;
+	}
+
+	/**
+	 * Removes the model installed for a board, if any.
+	 *
+	 * @param board The board that should no longer be modelled.
+	 */
+	public static void uninstall(Board board) {
+		ChunkGraph model = GRAPHS.remove(board);
+		if (model != null) {
+			board.removeObserver(model);
+		}
+	}
+
+	/**
+	 * Replaces this model by one of the new layout of the board, carrying
+	 * over the chunks that did not change.
+	 */
+	@Override
+	public void layoutChanged(Board board) {
+		ChunkGraph next = new ChunkGraph(board.getGraph(), representative,
+				travellerType, chunkWidth, chunkHeight, this);
+		board.removeObserver(this);
+		if (GRAPHS.replace(board, this, next)) {
+			board.addObserver(next);
+		}
+	}
+
+	/**
+	 * @param traveller A traveller, or <code>null</code>.
+	 * @return <code>true</code> iff this model describes the paths of the
+	 *         traveller.
+	 */
+	public boolean appliesTo(Unit traveller) {
+		return travellerType.isInstance(traveller);
+	}
+
+	/**
+	 * @return The graph of the board this model was built for.
+	 */
+	public BoardGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return The amount of entrance squares.
+	 */
+	public int getNodeCount() {
+		return squares.length;
+	}
+
+	/**
+	 * @return The amount of chunks.
+	 */
+	public int getChunkCount() {
+		return chunkCosts.length;
+	}
+
+	/**
+	 * @return The amount of chunks whose paths were carried over from the
+	 *         model of the previous layout.
+	 */
+	public int getReusedChunks() {
+		return reused;
+	}
+
+	/**
+	 * @return The amount of squares in a chunk.
+	 */
+	int chunkSize() {
+		return chunkWidth * chunkHeight;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The chunk the square is part of.
+	 */
+	int chunkOf(int index) {
+		return graph.getY(index) / chunkHeight * chunksX
+				+ graph.getX(index) / chunkWidth;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The position of the square within its chunk.
+	 */
+	int local(int index) {
+		return graph.getY(index) % chunkHeight * chunkWidth
+				+ graph.getX(index) % chunkWidth;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return <code>true</code> iff the traveller may occupy the square.
+	 */
+	boolean isAccessible(int index) {
+		return accessible[index];
+	}
+
+	/**
+	 * @param chunk A chunk.
+	 * @return The first node of the chunk.
+	 */
+	int firstNode(int chunk) {
+		return chunkStart[chunk];
+	}
+
+	/**
+	 * @param chunk A chunk.
+	 * @return The node after the last node of the chunk.
+	 */
+	int lastNode(int chunk) {
+		return chunkStart[chunk + 1];
+	}
+
+	/**
+	 * @param node A node.
+	 * @return The index of its square.
+	 */
+	int squareOf(int node) {
+		return squares[node];
+	}
+
+	/**
+	 * @param node A node.
+	 * @return The position of its first edge.
+	 */
+	int firstEdge(int node) {
+		return edgeStart[node];
+	}
+
+	/**
+	 * @param node A node.
+	 * @return The position after its last edge.
+	 */
+	int lastEdge(int node) {
+		return edgeStart[node + 1];
+	}
+
+	/**
+	 * @param edge The position of an edge.
+	 * @return The node the edge leads to.
+	 */
+	int target(int edge) {
+		return edgeTarget[edge];
+	}
+
+	/**
+	 * @param edge The position of an edge.
+	 * @return The length of the edge.
+	 */
+	int cost(int edge) {
+		return edgeCost[edge];
+	}
+
+	private int chunkX(int chunk) {
+		return chunk % chunksX;
+	}
+
+	private int chunkY(int chunk) {
+		return chunk / chunksX;
+	}
+
+	private int corner(int chunk) {
+		return graph.index(chunkX(chunk) * chunkWidth,
+				chunkY(chunk) * chunkHeight);
+	}
+}
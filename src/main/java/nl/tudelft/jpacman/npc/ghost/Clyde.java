@@ -1,12 +1,11 @@
 package nl.tudelft.jpacman.npc.ghost;
 
 import java.util.EnumMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
 import nl.tudelft.jpacman.board.Direction;
-import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
 import nl.tudelft.jpacman.level.Player;
 import nl.tudelft.jpacman.sprite.AnimatedSprite;
 import nl.tudelft.jpacman.sprite.Sprite;
@@ -123,21 +122,24 @@ public class Clyde extends Ghost {
 			return randomMoveAtCrossroads();
 		}
 
-		Square target = Navigation.findNearest(Player.class, getSquare())
-				.getSquare();
-		if (target == null) {
+		Direction corridor = corridorMove();
+		if (corridor != null) {
+			return corridor;
+		}
+
+		Unit player = Navigation.findNearest(Player.class, getSquare());
+		if (player == null) {
 			return randomMove();
 		}
 
-		List<Direction> path = Navigation.shortestPath(getSquare(), target,
-				this);
-		if (path != null && !path.isEmpty()) {
-			Direction d = path.get(0);
-			if (path.size() <= SHYNESS) {
-				return OPPOSITES.get(d);
+		FlowField.Step step = getLevel().getFlowField().lookup(player,
+				getSquare(), this);
+		if (step != null) {
+			if (step.getDistance() <= SHYNESS) {
+				return OPPOSITES.get(step.getDirection());
 			}
-			return d;
+			return step.getDirection();
 		}
-		return randomMove();
+		return fallbackMove();
 	}
 }
\ No newline at end of file
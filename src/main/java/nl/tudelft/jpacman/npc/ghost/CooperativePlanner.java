@@ -0,0 +1,342 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+
+/**
+ * Plans the moves of many ghosts together, so that they neither repeat each
+ * other's searches nor pile onto the same squares.
+ * <p>
+ * Every ghost names the square it heads for with {@link Ghost#chaseTarget()}.
+ * The distance from every square to a target is computed once, with a single
+ * reverse breadth first search, and shared by all ghosts heading for it.
+ * The ghosts are then planned one after the other with a search over space
+ * and time that looks a few steps ahead, using that distance as its
+ * estimate. Every planned path is entered in a reservation table, which the
+ * ghosts planned later route around, waiting or taking another way where an
+ * earlier ghost will be.
+ * </p>
+ * <p>
+ * Ghosts that have no target, e.g. because they are feared, or cannot reach
+ * it decide on their own with {@link Ghost#nextMove()}, but still reserve
+ * the square they move to.
+ * </p>
+ */
+public final class CooperativePlanner {
+
+	/**
+	 * The amount of steps ahead a ghost is planned, unless specified
+	 * otherwise.
+	 */
+	public static final int DEFAULT_WINDOW = 8;
+
+	/**
+	 * The largest amount of distance fields kept; beyond that all of them
+	 * are dropped.
+	 */
+	private static final int MAXIMUM_FIELDS = 64;
+
+	/**
+	 * The distance of squares from which a target cannot be reached.
+	 */
+	private static final int UNREACHABLE = -1;
+
+	/**
+	 * The amount of steps ahead a ghost is planned.
+	 */
+	private final int window;
+
+	/**
+	 * The distance from every square to every target, by index of the
+	 * target.
+	 */
+	private final Map<Integer, int[]> fields = new HashMap<>();
+
+	/**
+	 * The squares taken by the ghosts planned so far, at every step ahead.
+	 */
+	private final Set<Long> reserved = new HashSet<>();
+
+	/**
+	 * The squares of the ghosts that have not been planned yet, which no
+	 * other ghost may step onto first, as these ghosts might have to wait.
+	 */
+	private final Set<Integer> held = new HashSet<>();
+
+	/**
+	 * The graph the distance fields cover.
+	 */
+	private BoardGraph graph;
+
+	/**
+	 * The amount of squares expanded so far, by both kinds of search.
+	 */
+	private long expanded;
+
+	/**
+	 * The amount of distance fields computed so far.
+	 */
+	private long fieldSearches;
+
+	/**
+	 * Creates a planner that looks {@link #DEFAULT_WINDOW} steps ahead.
+	 */
+	public CooperativePlanner() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Creates a planner.
+	 *
+	 * @param window
+	 *            The amount of steps ahead a ghost is planned.
+	 */
+	public CooperativePlanner(int window) {
+		assert window > 0;
+		this.window = window;
+	}
+
+	/**
+	 * Plans the next move of ghosts, in the given order. Ghosts planned
+	 * earlier have right of way.
+	 *
+	 * @param ghosts
+	 *            The ghosts that move.
+	 * @return The move of every ghost, or <code>null</code> for ghosts that
+	 *         wait or are not on the board.
+	 */
+	public synchronized Direction[] plan(List<Ghost> ghosts) {
+		Direction[] moves = new Direction[ghosts.size()];
+		reserved.clear();
+		held.clear();
+		for (Ghost ghost : ghosts) {
+			Square square = ghost.getSquare();
+			if (square != null && square.getBoard() != null) {
+				held.add(square.getBoard().getGraph().indexOf(square));
+			}
+		}
+		for (int i = 0; i < moves.length; i++) {
+			Ghost ghost = ghosts.get(i);
+			Square square = ghost.getSquare();
+			if (square == null || square.getBoard() == null) {
+				continue;
+			}
+			BoardGraph current = square.getBoard().getGraph();
+			if (current != graph) {
+				fields.clear();
+				graph = current;
+			}
+			int source = graph.indexOf(square);
+			held.remove(source);
+			Square target = ghost.chaseTarget();
+			int destination = target == null ? -1 : graph.indexOf(target);
+			if (source < 0) {
+				continue;
+			}
+			int[] field = destination < 0 ? null : fieldOf(ghost, destination);
+			if (field == null || field[source] == UNREACHABLE) {
+				moves[i] = reserveStep(source, ghost.nextMove());
+				continue;
+			}
+			moves[i] = planPath(field, source, destination);
+		}
+		return moves;
+	}
+
+	/**
+	 * @return The amount of squares expanded so far, by the searches of the
+	 *         distance fields and by the searches of the ghosts.
+	 */
+	public synchronized long getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * @return The amount of distance fields computed so far.
+	 */
+	public synchronized long getFieldSearches() {
+		return fieldSearches;
+	}
+
+	/**
+	 * Plans the path of a ghost around the reservations of the ghosts
+	 * planned before it, and reserves it.
+	 *
+	 * @param field The distance from every square to the target.
+	 * @param source The index of the square of the ghost.
+	 * @param destination The index of the target.
+	 * @return The first step of the path, or <code>null</code> if the ghost
+	 *         waits.
+	 */
+	private Direction planPath(int[] field, int source, int destination) {
+		PriorityQueue<Step> open = new PriorityQueue<>();
+		Set<Long> closed = new HashSet<>();
+		open.add(new Step(source, 0, field[source], -1, null));
+		Step best = null;
+		while (!open.isEmpty()) {
+			Step step = open.poll();
+			if (!closed.add(key(step.square, step.time))) {
+				continue;
+			}
+			expanded++;
+			if (step.time == window || step.square == destination) {
+				best = step;
+				break;
+			}
+			int time = step.time + 1;
+			for (int d = 0; d <= BoardGraph.DIRECTIONS; d++) {
+				int next = d == BoardGraph.DIRECTIONS ? step.square
+						: graph.neighbour(step.square, d);
+				if (field[next] == UNREACHABLE
+						|| time == 1 && next != step.square
+								&& held.contains(next)
+						|| reserved.contains(key(next, time))
+						|| closed.contains(key(next, time))) {
+					continue;
+				}
+				open.add(new Step(next, time, time + field[next],
+						d == BoardGraph.DIRECTIONS ? -1 : d, step));
+			}
+		}
+		if (best == null) {
+			reserved.add(key(source, 1));
+			return null;
+		}
+		for (int t = best.time + 1; t <= window; t++) {
+			reserved.add(key(best.square, t));
+		}
+		Step first = best;
+		while (first.previous != null) {
+			reserved.add(key(first.square, first.time));
+			if (first.previous.previous == null) {
+				break;
+			}
+			first = first.previous;
+		}
+		if (first.direction < 0) {
+			return null;
+		}
+		return BoardGraph.direction(first.direction);
+	}
+
+	/**
+	 * Reserves the square a ghost that decided on its own moves to, or its
+	 * own square if another ghost will be there.
+	 *
+	 * @param source The index of the square of the ghost.
+	 * @param move The move of the ghost, or <code>null</code>.
+	 * @return The move of the ghost, or <code>null</code> if it waits.
+	 */
+	private Direction reserveStep(int source, Direction move) {
+		int next = move == null ? source
+				: graph.neighbour(source, move.ordinal());
+		if (next != source && (held.contains(next)
+				|| reserved.contains(key(next, 1)))) {
+			next = source;
+			move = null;
+		}
+		reserved.add(key(next, 1));
+		return move;
+	}
+
+	/**
+	 * Returns the distance from every square to a target, computing it the
+	 * first time the target is asked for.
+	 *
+	 * @param ghost A ghost heading for the target, whose access rules apply.
+	 * @param destination The index of the target.
+	 * @return The distance from every square to the target, or
+	 *         {@link #UNREACHABLE}.
+	 */
+	private int[] fieldOf(Ghost ghost, int destination) {
+		int[] field = fields.get(destination);
+		if (field != null) {
+			return field;
+		}
+		if (fields.size() >= MAXIMUM_FIELDS) {
+			fields.clear();
+		}
+		field = new int[graph.size()];
+		Arrays.fill(field, UNREACHABLE);
+		fieldSearches++;
+		fields.put(destination, field);
+		if (!graph.squareAt(destination).isAccessibleTo(ghost)) {
+			return field;
+		}
+		int[] queue = new int[graph.size()];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = destination;
+		field[destination] = 0;
+		while (head < tail) {
+			int current = queue[head++];
+			expanded++;
+			int last = graph.incomingCount(current);
+			for (int k = 0; k < last; k++) {
+				int next = graph.incomingLink(current, k)
+						/ BoardGraph.DIRECTIONS;
+				if (field[next] == UNREACHABLE
+						&& graph.squareAt(next).isAccessibleTo(ghost)) {
+					field[next] = field[current] + 1;
+					queue[tail++] = next;
+				}
+			}
+		}
+		return field;
+	}
+
+	/**
+	 * @param square The index of a square.
+	 * @param time The amount of steps ahead.
+	 * @return The key of the square at that time in the reservation table.
+	 */
+	private long key(int square, int time) {
+		return (long) time * graph.size() + square;
+	}
+
+	/**
+	 * A square reached at a step ahead, on the way to a target.
+	 */
+	private static final class Step implements Comparable<Step> {
+
+		private final int square;
+
+		private final int time;
+
+		private final int estimate;
+
+		private final int direction;
+
+		private final Step previous;
+
+		private Step(int square, int time, int estimate, int direction,
+				Step previous) {
+			this.square = square;
+			this.time = time;
+			this.estimate = estimate;
+			this.direction = direction;
+			this.previous = previous;
+		}
+
+		/**
+		 * Orders steps by their estimated length, preferring those further
+		 * ahead.
+		 */
+		@Override
+		public int compareTo(Step other) {
+			if (estimate != other.estimate) {
+				return Integer.compare(estimate, other.estimate);
+			}
+			return Integer.compare(other.time, time);
+		}
+	}
+}
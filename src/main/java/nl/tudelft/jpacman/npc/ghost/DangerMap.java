@@ -0,0 +1,464 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.SpatialIndex;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * A danger map tells every square of the board how far the nearest ghost
+ * is, and which ghost that is, so that the board is partitioned into the
+ * regions every ghost reaches first. It is computed with a single breadth
+ * first search from the squares of all ghosts at once, after which fruit
+ * placement, fleeing and other callers can look up any square in constant
+ * time instead of each searching on their own.
+ * <p>
+ * The map is brought up to date the first time it is read after a unit
+ * moved on the board, as counted by
+ * {@link nl.tudelft.jpacman.board.SpatialIndex#getMoves()}, so there is at
+ * most one update per tick no matter how many squares are read, and reading
+ * a map that is up to date neither asks for the ghosts nor allocates. When
+ * every ghost that moved took a single step, only the region of each of
+ * those ghosts is searched again, starting from the squares around it;
+ * otherwise, and when the layout of the board changes, the map is computed
+ * from scratch.
+ * </p>
+ * <p>
+ * When two ghosts are equally far from a square, the one that was seen
+ * first is taken as the nearest, so that the map does not depend on the
+ * order in which it was updated. The access rules of the first ghost apply
+ * to all of them.
+ * </p>
+ */
+public final class DangerMap {
+
+	/**
+	 * The distance of squares no ghost can reach.
+	 */
+	public static final int UNREACHABLE = -1;
+
+	/**
+	 * The distance of squares that have not been reached.
+	 */
+	private static final int INFINITE = Integer.MAX_VALUE;
+
+	/**
+	 * The owner of squares that have not been reached.
+	 */
+	private static final int NONE = Integer.MAX_VALUE;
+
+	/**
+	 * The position of ghosts that are not on the board.
+	 */
+	private static final int NOWHERE = -1;
+
+	/**
+	 * The ghosts on the board, in a stable order.
+	 */
+	private final Supplier<? extends Collection<? extends Unit>> sources;
+
+	/**
+	 * The number of every ghost that was seen so far.
+	 */
+	private final Map<Unit, Integer> ids = new HashMap<>();
+
+	/**
+	 * The ghosts that were seen so far, by number.
+	 */
+	private final List<Unit> units = new ArrayList<>();
+
+	/**
+	 * The index of the square of every ghost in the map, by number.
+	 */
+	private int[] positions = new int[0];
+
+	/**
+	 * The array the new positions of the ghosts are collected in, kept
+	 * between updates.
+	 */
+	private int[] scratch = new int[0];
+
+	/**
+	 * The index of the units on the board the map covers, or
+	 * <code>null</code>.
+	 */
+	private SpatialIndex index;
+
+	/**
+	 * The amount of moves of units on the board when the map was last
+	 * brought up to date.
+	 */
+	private long moves;
+
+	/**
+	 * The graph the map covers, or <code>null</code>.
+	 */
+	private BoardGraph graph;
+
+	/**
+	 * The ghost whose access rules apply to all ghosts, or <code>null</code>.
+	 */
+	private Unit representative;
+
+	/**
+	 * Whether the ghosts may occupy every square.
+	 */
+	private boolean[] accessible;
+
+	/**
+	 * The distance from every square to the nearest ghost.
+	 */
+	private int[] distances;
+
+	/**
+	 * The number of the nearest ghost of every square.
+	 */
+	private int[] owners;
+
+	/**
+	 * The queue of the searches.
+	 */
+	private int[] queue;
+
+	/**
+	 * The stamp of the search that marked every square as part of the
+	 * region being searched again.
+	 */
+	private int[] marks;
+
+	/**
+	 * The stamp of the search that last put every square in the queue.
+	 */
+	private int[] queued;
+
+	/**
+	 * The stamp of the current search.
+	 */
+	private int stamp;
+
+	/**
+	 * The amount of times the map was computed from scratch.
+	 */
+	private long rebuilds;
+
+	/**
+	 * The amount of single steps of ghosts the map was updated for.
+	 */
+	private long updates;
+
+	/**
+	 * Creates a map of the ghosts provided by a source.
+	 *
+	 * @param sources
+	 *            Provides the ghosts on the board, always in the same order.
+	 */
+	public DangerMap(Supplier<? extends Collection<? extends Unit>> sources) {
+		assert sources != null;
+		this.sources = sources;
+	}
+
+	/**
+	 * Returns the distance from the nearest ghost to a square.
+	 *
+	 * @param square
+	 *            The square.
+	 * @return The length of the shortest path from the nearest ghost to the
+	 *         square, or {@link #UNREACHABLE} if no ghost can reach it.
+	 */
+	public synchronized int distance(Square square) {
+		int index = refresh(square);
+		if (index < 0 || distances[index] == INFINITE) {
+			return UNREACHABLE;
+		}
+		return distances[index];
+	}
+
+	/**
+	 * Returns the ghost nearest to a square.
+	 *
+	 * @param square
+	 *            The square.
+	 * @return The ghost that reaches the square first, or <code>null</code>
+	 *         if no ghost can reach it.
+	 */
+	public synchronized Unit nearest(Square square) {
+		int index = refresh(square);
+		if (index < 0 || owners[index] == NONE) {
+			return null;
+		}
+		return units.get(owners[index]);
+	}
+
+	/**
+	 * @return The amount of times the map was computed from scratch.
+	 */
+	public synchronized long getRebuilds() {
+		return rebuilds;
+	}
+
+	/**
+	 * @return The amount of single steps of ghosts the map was updated for
+	 *         without computing it from scratch.
+	 */
+	public synchronized long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * Brings the map up to date with the ghosts and the board of a square.
+	 *
+	 * @param square A square on the board.
+	 * @return The index of the square in the map, or <code>-1</code> if it
+	 *         is not on a board.
+	 */
+	private int refresh(Square square) {
+		Board board = square.getBoard();
+		if (board == null) {
+			return -1;
+		}
+		BoardGraph current = board.getGraph();
+		SpatialIndex occupants = board.getSpatialIndex();
+		long seen = occupants.getMoves();
+		if (current == graph && occupants == index && seen == moves) {
+			return current.indexOf(square);
+		}
+		List<Unit> live = new ArrayList<>(sources.get());
+		for (Unit unit : live) {
+			if (!ids.containsKey(unit)) {
+				ids.put(unit, units.size());
+				units.add(unit);
+			}
+		}
+		if (scratch.length != units.size()) {
+			scratch = new int[units.size()];
+		}
+		int[] moved = scratch;
+		Arrays.fill(moved, NOWHERE);
+		for (Unit unit : live) {
+			Square location = unit.getSquare();
+			if (location != null) {
+				moved[ids.get(unit)] = current.indexOf(location);
+			}
+		}
+		int[] previous = positions;
+		if (current != graph || positions.length != moved.length) {
+			rebuild(current, moved, live);
+		} else {
+			update(moved);
+		}
+		if (positions == moved) {
+			scratch = previous;
+		}
+		index = occupants;
+		moves = seen;
+		return current.indexOf(square);
+	}
+
+	/**
+	 * Updates the map for the ghosts that took a single step, or computes it
+	 * from scratch if a ghost did anything else.
+	 *
+	 * @param moved The new index of the square of every ghost.
+	 */
+	private void update(int[] moved) {
+		for (int id = 0; id < moved.length; id++) {
+			int from = positions[id];
+			int to = moved[id];
+			if (from != to && (from == NOWHERE || to == NOWHERE
+					|| !adjacent(from, to))) {
+				rebuild(graph, moved, null);
+				return;
+			}
+		}
+		for (int id = 0; id < moved.length; id++) {
+			if (positions[id] != moved[id]) {
+				step(id, moved[id]);
+				updates++;
+			}
+		}
+	}
+
+	/**
+	 * @param from The index of a square.
+	 * @param to The index of another square.
+	 * @return <code>true</code> iff a ghost can step from one to the other.
+	 */
+	private boolean adjacent(int from, int to) {
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			if (graph.neighbour(from, d) == to) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Computes the map from scratch.
+	 *
+	 * @param current The graph of the board.
+	 * @param moved The index of the square of every ghost.
+	 * @param live The ghosts on the board, or <code>null</code> to keep the
+	 *            access rules of the current map.
+	 */
+	private void rebuild(BoardGraph current, int[] moved, List<Unit> live) {
+		int size = current.size();
+		if (current != graph || representative == null && live != null
+				&& !live.isEmpty()) {
+			representative = live == null || live.isEmpty() ? null
+					: live.get(0);
+			accessible = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				accessible[i] = representative != null && current.squareAt(i)
+						.isAccessibleTo(representative);
+			}
+			distances = new int[size];
+			owners = new int[size];
+			queue = new int[size];
+			marks = new int[size];
+			queued = new int[size];
+			stamp = 0;
+			graph = current;
+		}
+		positions = moved;
+		Arrays.fill(distances, INFINITE);
+		Arrays.fill(owners, NONE);
+		stamp++;
+		int tail = 0;
+		for (int id = 0; id < positions.length; id++) {
+			int position = positions[id];
+			if (position != NOWHERE && accessible[position]
+					&& distances[position] == INFINITE) {
+				distances[position] = 0;
+				owners[position] = id;
+				queued[position] = stamp;
+				queue[tail++] = position;
+			}
+		}
+		propagate(tail, new long[0], 0);
+		rebuilds++;
+	}
+
+	/**
+	 * Updates the map for a ghost that took a single step. The region the
+	 * ghost was nearest to is cleared and searched again from the squares
+	 * around it, from the new square of the ghost and from the squares of
+	 * other ghosts in the region. The search goes on beyond the region
+	 * wherever the ghost is now nearer than before.
+	 *
+	 * @param id The number of the ghost.
+	 * @param to The index of its new square.
+	 */
+	private void step(int id, int to) {
+		int from = positions[id];
+		positions[id] = to;
+		stamp++;
+		int regionSize = 0;
+		if (owners[from] == id) {
+			marks[from] = stamp;
+			queue[regionSize++] = from;
+			for (int head = 0; head < regionSize; head++) {
+				int current = queue[head];
+				for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+					int next = graph.neighbour(current, d);
+					if (marks[next] != stamp && owners[next] == id
+							&& distances[next] == distances[current] + 1) {
+						marks[next] = stamp;
+						queue[regionSize++] = next;
+					}
+				}
+			}
+		}
+
+		long[] seeds = new long[regionSize * BoardGraph.DIRECTIONS
+				+ positions.length];
+		int seedCount = 0;
+		for (int i = 0; i < regionSize; i++) {
+			int square = queue[i];
+			distances[square] = INFINITE;
+			owners[square] = NONE;
+			int last = graph.incomingCount(square);
+			for (int k = 0; k < last; k++) {
+				int source = graph.incomingLink(square, k)
+						/ BoardGraph.DIRECTIONS;
+				if (marks[source] != stamp && distances[source] != INFINITE) {
+					seeds[seedCount++] = seed(source);
+				}
+			}
+		}
+		for (int other = 0; other < positions.length; other++) {
+			int position = positions[other];
+			if (position != NOWHERE && accessible[position]
+					&& (other == id || marks[position] == stamp)
+					&& (distances[position] > 0 || owners[position] > other)) {
+				distances[position] = 0;
+				owners[position] = other;
+				seeds[seedCount++] = seed(position);
+			}
+		}
+		Arrays.sort(seeds, 0, seedCount);
+		propagate(0, seeds, seedCount);
+	}
+
+	/**
+	 * @param square The index of a square that has been reached.
+	 * @return The square as a seed of a search, ordered by its distance.
+	 */
+	private long seed(int square) {
+		return (long) distances[square] << Integer.SIZE | square;
+	}
+
+	/**
+	 * Continues a breadth first search from the squares in the queue and
+	 * from seeds. Both are taken in order of their distance, so that every
+	 * square is expanded only after all squares closer to a ghost. A square
+	 * that is reached by two ghosts at the same distance is given to the one
+	 * with the lowest number, and is expanded again if it changes hands, so
+	 * that the squares behind it follow.
+	 *
+	 * @param tail The amount of squares in the queue.
+	 * @param seeds The seeds, ordered by distance.
+	 * @param seedCount The amount of seeds.
+	 */
+	private void propagate(int tail, long[] seeds, int seedCount) {
+		int head = 0;
+		int next = 0;
+		int end = tail;
+		while (head < end || next < seedCount) {
+			int current;
+			if (next < seedCount && (head == end
+					|| (int) (seeds[next] >>> Integer.SIZE)
+							<= distances[queue[head]])) {
+				current = (int) seeds[next++];
+			} else {
+				current = queue[head++];
+			}
+			int distance = distances[current] + 1;
+			int owner = owners[current];
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				int neighbour = graph.neighbour(current, d);
+				if (!accessible[neighbour]) {
+					continue;
+				}
+				if (distance < distances[neighbour]
+						|| distance == distances[neighbour]
+								&& owner < owners[neighbour]) {
+					distances[neighbour] = distance;
+					owners[neighbour] = owner;
+					if (queued[neighbour] != stamp) {
+						queued[neighbour] = stamp;
+						queue[end++] = neighbour;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,299 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.BoardObserver;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * A precomputed table with, for every pair of squares on a board, the length
+ * of the shortest path between them and the first step of that path. Once
+ * built, finding the next move towards any square is a single lookup.
+ * <p>
+ * The table is meant for the small, static mazes of the regular game: it
+ * takes <code>n * n</code> entries of two bits for the direction and a short
+ * for the distance, so it is only built for boards of at most
+ * {@link #MAX_SQUARES} squares. A table is installed for a board with
+ * {@link #install(Board, Unit, Class)} and is discarded as soon as the layout
+ * of the board changes, e.g. when it is extended.
+ * </p>
+ */
+public final class DistanceTable implements BoardObserver {
+
+	/**
+	 * The largest amount of squares for which a table will be built.
+	 */
+	public static final int MAX_SQUARES = 2048;
+
+	/**
+	 * The distance between squares that cannot reach each other.
+	 */
+	public static final int UNREACHABLE = -1;
+
+	/**
+	 * The amount of entries packed in a word of directions.
+	 */
+	private static final int ENTRIES_PER_WORD = 32;
+
+	/**
+	 * The amount of bits to shift an entry to find its word of directions.
+	 */
+	private static final int WORD_SHIFT = 5;
+
+	/**
+	 * The mask of a single packed direction.
+	 */
+	private static final long DIRECTION_MASK = 3L;
+
+	/**
+	 * The tables installed for each board.
+	 */
+	private static final Map<Board, DistanceTable> TABLES =
+			Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * The graph this table was built for.
+	 */
+	private final BoardGraph graph;
+
+	/**
+	 * The type of travellers this table applies to.
+	 */
+	private final Class<? extends Unit> travellerType;
+
+	/**
+	 * The amount of squares in the graph.
+	 */
+	private final int size;
+
+	/**
+	 * The distance between every pair of squares, at <code>from * size +
+	 * to</code>.
+	 */
+	private final short[] distances;
+
+	/**
+	 * The ordinal of the first step between every pair of squares, packed
+	 * two bits per entry.
+	 */
+	private final long[] directions;
+
+	/**
+	 * <code>true</code> iff the layout of the board has not changed since
+	 * this table was built.
+	 */
+	private volatile boolean valid;
+
+	/**
+	 * Builds a new table.
+	 *
+	 * @param graph The graph of the board.
+	 * @param traveller The unit whose access to squares the table is built for.
+	 * @param type The type of travellers the table applies to.
+	 */
+	private DistanceTable(BoardGraph graph, Unit traveller,
+			Class<? extends Unit> type) {
+		this.graph = graph;
+		this.travellerType = type;
+		this.size = graph.size();
+		this.distances = new short[size * size];
+		this.directions = new long[(size * size + ENTRIES_PER_WORD - 1)
+				>>> WORD_SHIFT];
+		this.valid = true;
+		build(traveller);
+	}
+
+	/**
+	 * Fills the table with a reverse breadth first search from every square,
+	 * following the links towards each square backwards. The first step from
+	 * a square is the direction of the link it was found through. Squares
+	 * the traveller may not occupy can start a path, but are not expanded
+	 * any further.
+	 *
+	 * @param traveller The traveller.
+	 */
+	private void build(Unit traveller) {
+		boolean[] accessible = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			accessible[i] = graph.squareAt(i).isAccessibleTo(traveller);
+		}
+		int[] queue = new int[size];
+		Arrays.fill(distances, (short) UNREACHABLE);
+		for (int to = 0; to < size; to++) {
+			distances[to * size + to] = 0;
+			if (!accessible[to]) {
+				continue;
+			}
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = to;
+			while (head < tail) {
+				int current = queue[head++];
+				short distance = (short) (distances[current * size + to] + 1);
+				int last = graph.incomingCount(current);
+				for (int k = 0; k < last; k++) {
+					int link = graph.incomingLink(current, k);
+					int from = link / BoardGraph.DIRECTIONS;
+					int entry = from * size + to;
+					if (distances[entry] != UNREACHABLE) {
+						continue;
+					}
+					distances[entry] = distance;
+					setDirection(entry, link % BoardGraph.DIRECTIONS);
+					if (accessible[from]) {
+						queue[tail++] = from;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds a table for a board and installs it, so that {@link Navigation}
+	 * will use it for the given type of travellers. Nothing is installed if
+	 * the board is too large.
+	 *
+	 * @param board
+	 *            The board to build the table for.
+	 * @param traveller
+	 *            A unit whose access to squares is representative for all
+	 *            travellers of the given type.
+	 * @param type
+	 *            The type of travellers the table applies to.
+	 * @return The installed table, or <code>null</code> if the board cannot
+	 *         be navigated or has more than {@link #MAX_SQUARES} squares.
+	 */
+	public static DistanceTable install(Board board, Unit traveller,
+			Class<? extends Unit> type) {
+		assert type.isInstance(traveller);
+		BoardGraph graph = board.getGraph();
+		if (graph == null || graph.size() > MAX_SQUARES) {
+			return null;
+		}
+		DistanceTable table = new DistanceTable(graph, traveller, type);
+		DistanceTable previous = TABLES.put(board, table);
+		if (previous != null) {
+			previous.valid = false;
+		}
+		board.addObserver(table);
+		return table;
+	}
+
+	/**
+	 * Returns the table installed for a board.
+	 *
+	 * @param board The board.
+	 * @return The table for the board, or <code>null</code> if no valid table
+	 *         has been installed.
+	 */
+	public static DistanceTable forBoard(Board board) {
+		DistanceTable table = TABLES.get(board);
+		if (table == null || !table.isValid()
+				|| table.graph.getRevision() != board.getRevision()) {
+			return null;
+		}
+		return table;
+	}
+
+	/**
+	 * Discards the table installed for a board, if any.
+	 *
+	 * @param board The board whose table is no longer valid.
+	 */
+	public static void invalidate(Board board) {
+		DistanceTable table = TABLES.remove(board);
+		if (table != null) {
+			table.valid = false;
+			board.removeObserver(table);
+		}
+	}
+
+	@Override
+	public void layoutChanged(Board board) {
+		invalidate(board);
+	}
+
+	/**
+	 * @return <code>true</code> iff the layout of the board has not changed
+	 *         since this table was built.
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * @return The graph this table was built for.
+	 */
+	public BoardGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @param traveller A traveller, or <code>null</code>.
+	 * @return <code>true</code> iff this table describes the paths of the
+	 *         traveller.
+	 */
+	public boolean appliesTo(Unit traveller) {
+		return travellerType.isInstance(traveller);
+	}
+
+	/**
+	 * Returns the length of the shortest path between two squares.
+	 *
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 * @return The length of the shortest path, or {@link #UNREACHABLE}.
+	 */
+	public int distance(int from, int to) {
+		return distances[from * size + to];
+	}
+
+	/**
+	 * Returns the first step of the shortest path between two squares.
+	 *
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 * @return The first step, or <code>null</code> if the destination is the
+	 *         starting square or cannot be reached.
+	 */
+	public Direction firstStep(int from, int to) {
+		int entry = from * size + to;
+		if (distances[entry] <= 0) {
+			return null;
+		}
+		int shift = (entry & (ENTRIES_PER_WORD - 1)) << 1;
+		int ordinal = (int) ((directions[entry >>> WORD_SHIFT] >>> shift)
+				& DIRECTION_MASK);
+		return BoardGraph.direction(ordinal);
+	}
+
+	/**
+	 * Returns the first step of the shortest path between two squares.
+	 *
+	 * @param from The starting square.
+	 * @param to The destination.
+	 * @return The first step, or <code>null</code> if the destination is the
+	 *         starting square, cannot be reached or is not on this table's
+	 *         board.
+	 */
+	public Direction firstStep(Square from, Square to) {
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		return firstStep(source, destination);
+	}
+
+	private void setDirection(int entry, int ordinal) {
+		int shift = (entry & (ENTRIES_PER_WORD - 1)) << 1;
+		directions[entry >>> WORD_SHIFT] |= (long) ordinal << shift;
+	}
+}
@@ -0,0 +1,485 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * A flow field tells every square of the board the distance to a target unit
+ * and the first step towards it. It is computed with a single reverse breadth
+ * first search from the square of the target, after which any number of
+ * ghosts can look up their next move in constant time, instead of each of
+ * them searching a path to the same square.
+ * <p>
+ * The field of a target is computed the first time it is read after the
+ * target moved, so there is at most one search per move of the target no
+ * matter how many ghosts chase it. The field is built with the access rules
+ * of the traveller that triggered the search and shared with all other
+ * travellers; all ghosts may occupy the same squares, so this is safe as
+ * long as only ghosts read it.
+ * </p>
+ * <p>
+ * A field covers the whole board, so a ghost whose {@link SearchBudget}
+ * does not cover the board cannot build it. A planner that limits the
+ * searches of the ghosts should instead {@link #prepare(Unit, Unit, int)}
+ * the fields from its own budget, which spreads a field over as many calls
+ * as its size requires. Until then, ghosts out of budget read the last
+ * complete field of the board, which leads to where the target was when
+ * it was built, or nothing if there is none.
+ * </p>
+ * <p>
+ * Fields are read without locking, so a field is never changed once it is
+ * published: every search fills arrays of its own, and only the queue of
+ * the searches, which no reader sees, is kept between them.
+ * </p>
+ */
+public final class FlowField {
+
+	/**
+	 * The distance of squares from which the target cannot be reached.
+	 */
+	public static final int UNREACHABLE = -1;
+
+	/**
+	 * The value of steps that have not been set.
+	 */
+	private static final byte NO_STEP = -1;
+
+	/**
+	 * The latest field towards every target.
+	 */
+	private final Map<Unit, Field> fields = new ConcurrentHashMap<>();
+
+	/**
+	 * The fields being prepared over several calls, by target. Guarded by
+	 * this object.
+	 */
+	private final Map<Unit, Build> builds = new HashMap<>();
+
+	/**
+	 * The queue of the searches, kept between searches.
+	 */
+	private int[] queue = new int[0];
+
+	/**
+	 * The amount of searches done so far.
+	 */
+	private volatile long searches;
+
+	/**
+	 * Returns the length of the shortest path from a square to a target.
+	 *
+	 * @param target
+	 *            The unit to reach.
+	 * @param from
+	 *            The starting square.
+	 * @param traveller
+	 *            The traveller, or <code>null</code> to ignore terrain.
+	 * @return The length of the shortest path, or {@link #UNREACHABLE} if the
+	 *         target cannot be reached or is not on the same board.
+	 */
+	public int distance(Unit target, Square from, Unit traveller) {
+		Field field = fieldOf(target, from, traveller);
+		if (field == null) {
+			return UNREACHABLE;
+		}
+		int index = field.graph.indexOf(from);
+		if (index < 0) {
+			return UNREACHABLE;
+		}
+		return field.distances[index];
+	}
+
+	/**
+	 * Returns the first step of the shortest path from a square to a target.
+	 *
+	 * @param target
+	 *            The unit to reach.
+	 * @param from
+	 *            The starting square.
+	 * @param traveller
+	 *            The traveller, or <code>null</code> to ignore terrain.
+	 * @return The first step towards the target, or <code>null</code> if the
+	 *         traveller is on the square of the target or cannot reach it.
+	 */
+	public Direction step(Unit target, Square from, Unit traveller) {
+		Field field = fieldOf(target, from, traveller);
+		if (field == null) {
+			return null;
+		}
+		int index = field.graph.indexOf(from);
+		if (index < 0 || field.steps[index] == NO_STEP) {
+			return null;
+		}
+		return BoardGraph.direction(field.steps[index]);
+	}
+
+	/**
+	 * Returns the first step of the shortest path from a square to a target
+	 * together with the length of that path. Both are read from the same
+	 * field, so that they agree even if the target moves in between.
+	 *
+	 * @param target
+	 *            The unit to reach.
+	 * @param from
+	 *            The starting square.
+	 * @param traveller
+	 *            The traveller, or <code>null</code> to ignore terrain.
+	 * @return The first step towards the target and the distance to it, or
+	 *         <code>null</code> if the traveller is on the square of the
+	 *         target or cannot reach it.
+	 */
+	public Step lookup(Unit target, Square from, Unit traveller) {
+		Field field = fieldOf(target, from, traveller);
+		if (field == null) {
+			return null;
+		}
+		int index = field.graph.indexOf(from);
+		if (index < 0 || field.steps[index] == NO_STEP) {
+			return null;
+		}
+		return new Step(BoardGraph.direction(field.steps[index]),
+				field.distances[index]);
+	}
+
+	/**
+	 * Discards the field towards a target, e.g. when it leaves the level.
+	 *
+	 * @param target The target whose field is no longer needed.
+	 */
+	public void remove(Unit target) {
+		synchronized (this) {
+			builds.remove(target);
+		}
+		fields.remove(target);
+	}
+
+	/**
+	 * Works on the field towards a target, expanding at most a given amount
+	 * of squares, so that a field larger than that is built over several
+	 * calls. A field is published once it is complete, even if the target
+	 * moved in the meantime; the next call then starts over from the square
+	 * the target moved to.
+	 *
+	 * @param target
+	 *            The unit to reach.
+	 * @param traveller
+	 *            The traveller whose access rules apply, or
+	 *            <code>null</code> to ignore terrain.
+	 * @param squares
+	 *            The amount of squares that may be expanded.
+	 * @return The amount of squares expanded, 0 if the field is up to date.
+	 */
+	public synchronized int prepare(Unit target, Unit traveller,
+			int squares) {
+		Square goal = target.getSquare();
+		Board board = goal == null ? null : goal.getBoard();
+		Field field = fields.get(target);
+		if (board == null || field != null && field.isFor(board, goal)) {
+			builds.remove(target);
+			return 0;
+		}
+		Build build = builds.get(target);
+		if (build == null || !build.isOn(board)) {
+			BoardGraph graph = board.getGraph();
+			build = new Build(graph, goal, traveller,
+					new int[graph.size()]);
+			builds.put(target, build);
+		}
+		int spent = build.advance(squares);
+		if (build.isDone()) {
+			builds.remove(target);
+			fields.put(target, build.toField());
+			searches++;
+		}
+		return spent;
+	}
+
+	/**
+	 * @return The amount of breadth first searches done by this service.
+	 */
+	public long getSearches() {
+		return searches;
+	}
+
+	/**
+	 * Returns the current field towards a target, computing it if the target
+	 * moved or the board changed since it was last computed. A field is not
+	 * computed if the {@link SearchBudget} of the current thread does not
+	 * cover every square of the board; the last complete field of the board
+	 * is returned instead, if any.
+	 *
+	 * @param target The unit to reach.
+	 * @param from A square on the board the field should cover.
+	 * @param traveller The traveller, or <code>null</code> to ignore terrain.
+	 * @return The field, or <code>null</code> if the target is not on the
+	 *         board or there is no field within the budget.
+	 */
+	private Field fieldOf(Unit target, Square from, Unit traveller) {
+		Board board = from.getBoard();
+		Square goal = target.getSquare();
+		if (board == null || goal == null || goal.getBoard() != board) {
+			return null;
+		}
+		Field field = fields.get(target);
+		if (field != null && field.isFor(board, goal)) {
+			return field;
+		}
+		synchronized (this) {
+			field = fields.get(target);
+			if (field != null && field.isFor(board, goal)) {
+				return field;
+			}
+			BoardGraph graph = board.getGraph();
+			if (SearchBudget.remaining() < graph.size()) {
+				if (field != null && field.isOn(board)) {
+					return field;
+				}
+				SearchBudget.spend(0, true);
+				return null;
+			}
+			if (queue.length < graph.size()) {
+				queue = new int[graph.size()];
+			}
+			Build build = new Build(graph, goal, traveller, queue);
+			build.advance(Integer.MAX_VALUE);
+			field = build.toField();
+			builds.remove(target);
+			fields.put(target, field);
+			searches++;
+			SearchBudget.spend(graph.size(), false);
+		}
+		return field;
+	}
+
+	/**
+	 * The distances and first steps towards a single square.
+	 */
+	private static final class Field {
+
+		/**
+		 * The graph the field covers.
+		 */
+		private final BoardGraph graph;
+
+		/**
+		 * The square the field leads to.
+		 */
+		private final Square goal;
+
+		/**
+		 * The distance from every square to the goal.
+		 */
+		private final int[] distances;
+
+		/**
+		 * The ordinal of the first step from every square to the goal.
+		 */
+		private final byte[] steps;
+
+		private Field(BoardGraph graph, Square goal, int[] distances,
+				byte[] steps) {
+			this.graph = graph;
+			this.goal = goal;
+			this.distances = distances;
+			this.steps = steps;
+		}
+
+		/**
+		 * @param board The board of the traveller.
+		 * @param square The current square of the target.
+		 * @return <code>true</code> iff this field is up to date for the
+		 *         target on that square.
+		 */
+		private boolean isFor(Board board, Square square) {
+			return goal == square && isOn(board);
+		}
+
+		/**
+		 * @param board The board of the traveller.
+		 * @return <code>true</code> iff this field covers the current layout
+		 *         of the board, wherever the target is.
+		 */
+		private boolean isOn(Board board) {
+			return graph.getRevision() == board.getRevision();
+		}
+	}
+
+	/**
+	 * A field under construction: a reverse breadth first search from the
+	 * goal, following the links towards each square backwards, that can be
+	 * interrupted and resumed. The first step from a square is the direction
+	 * of the link it was found through. Squares the traveller may not occupy
+	 * get a distance, since a path may start there, but are not expanded any
+	 * further.
+	 */
+	private static final class Build {
+
+		/**
+		 * The graph the search covers.
+		 */
+		private final BoardGraph graph;
+
+		/**
+		 * The square the search starts from.
+		 */
+		private final Square goal;
+
+		/**
+		 * The traveller whose access rules apply, or <code>null</code>.
+		 */
+		private final Unit traveller;
+
+		/**
+		 * The distance from every square reached so far to the goal.
+		 */
+		private final int[] distances;
+
+		/**
+		 * The ordinal of the first step from every square reached so far.
+		 */
+		private final byte[] steps;
+
+		/**
+		 * The squares to expand, from <code>head</code> up to
+		 * <code>tail</code>.
+		 */
+		private final int[] queue;
+
+		private int head;
+
+		private int tail;
+
+		/**
+		 * Starts a search from the goal.
+		 *
+		 * @param graph The graph of the board.
+		 * @param goal The square to lead to.
+		 * @param traveller The traveller, or <code>null</code> to ignore
+		 *            terrain.
+		 * @param queue The queue of the search, at least as large as the
+		 *            graph.
+		 */
+		private Build(BoardGraph graph, Square goal, Unit traveller,
+				int[] queue) {
+			this.graph = graph;
+			this.goal = goal;
+			this.traveller = traveller;
+			this.queue = queue;
+			int size = graph.size();
+			this.distances = new int[size];
+			this.steps = new byte[size];
+			Arrays.fill(distances, UNREACHABLE);
+			Arrays.fill(steps, NO_STEP);
+
+			int origin = graph.indexOf(goal);
+			if (origin >= 0 && accessible(origin)) {
+				queue[tail++] = origin;
+				distances[origin] = 0;
+			}
+		}
+
+		/**
+		 * Continues the search.
+		 *
+		 * @param squares The amount of squares that may be expanded.
+		 * @return The amount of squares expanded.
+		 */
+		private int advance(int squares) {
+			int expanded = 0;
+			while (head < tail && expanded < squares) {
+				int current = queue[head++];
+				expanded++;
+				int distance = distances[current] + 1;
+				int last = graph.incomingCount(current);
+				for (int k = 0; k < last; k++) {
+					int link = graph.incomingLink(current, k);
+					int next = link / BoardGraph.DIRECTIONS;
+					if (distances[next] != UNREACHABLE) {
+						continue;
+					}
+					distances[next] = distance;
+					steps[next] = (byte) (link % BoardGraph.DIRECTIONS);
+					if (accessible(next)) {
+						queue[tail++] = next;
+					}
+				}
+			}
+			return expanded;
+		}
+
+		/**
+		 * @return <code>true</code> iff every square has been reached.
+		 */
+		private boolean isDone() {
+			return head == tail;
+		}
+
+		/**
+		 * @param board The board of the target.
+		 * @return <code>true</code> iff this search covers the current
+		 *         layout of the board.
+		 */
+		private boolean isOn(Board board) {
+			return graph.getRevision() == board.getRevision();
+		}
+
+		/**
+		 * Hands the arrays of a complete search over to a field. The search
+		 * may not be continued afterwards.
+		 *
+		 * @return The field.
+		 */
+		private Field toField() {
+			return new Field(graph, goal, distances, steps);
+		}
+
+		private boolean accessible(int index) {
+			return traveller == null
+					|| graph.squareAt(index).isAccessibleTo(traveller);
+		}
+	}
+
+	/**
+	 * The first step from a square towards a target and the distance to
+	 * the target, read from the same field.
+	 */
+	public static final class Step {
+
+		/**
+		 * The direction of the step.
+		 */
+		private final Direction direction;
+
+		/**
+		 * The length of the shortest path to the target.
+		 */
+		private final int distance;
+
+		private Step(Direction direction, int distance) {
+			this.direction = direction;
+			this.distance = distance;
+		}
+
+		/**
+		 * @return The direction of the first step towards the target.
+		 */
+		public Direction getDirection() {
+			return direction;
+		}
+
+		/**
+		 * @return The length of the shortest path to the target.
+		 */
+		public int getDistance() {
+			return distance;
+		}
+	}
+}
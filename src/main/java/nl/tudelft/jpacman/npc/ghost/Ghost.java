@@ -7,8 +7,12 @@ import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
 
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
 import nl.tudelft.jpacman.board.Direction;
 import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.TorusGeometry;
+import nl.tudelft.jpacman.level.Level;
 import nl.tudelft.jpacman.npc.NPC;
 import nl.tudelft.jpacman.sprite.AnimatedSprite;
 import nl.tudelft.jpacman.sprite.PacManSprites;
@@ -57,6 +61,17 @@ public abstract class Ghost extends NPC {
 
 	public static int ghostAte = 0;
 
+	/**
+	 * The source of the random moves of this ghost.
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * The level this ghost is on, whose flow field and path cache it shares,
+	 * or <code>null</code> if it has not been put on a level.
+	 */
+	private volatile Level level;
+
 	/**
 	 * Creates a new ghost.
 	 * 
@@ -186,11 +201,114 @@ public abstract class Ghost extends NPC {
 				}
 			}
 		}
-		int i = new Random().nextInt(directions.size());
+		int i = random.nextInt(directions.size());
 		this.lastSquare = getSquare();
 		return directions.get(i);
 	}
 
+	/**
+	 * Determines a move for when the search for a better one failed. When
+	 * the search was stopped because its {@link SearchBudget} was spent, the
+	 * ghost keeps going and only turns at crossroads.
+	 *
+	 * @return A direction in which the ghost can move.
+	 */
+	protected Direction fallbackMove() {
+		if (SearchBudget.isCurrentExhausted()) {
+			return randomMoveAtCrossroads();
+		}
+		return randomMove();
+	}
+
+	/**
+	 * Determines the move of this ghost when it is in a corridor, where it
+	 * can only go on or turn back. The ghost keeps going in its current
+	 * direction, following the bend of the corridor if need be, so that it
+	 * only has to search for a path at junctions. This relies on the
+	 * {@link JunctionGraph} installed for the board.
+	 *
+	 * @return The direction in which the ghost continues, or
+	 *         <code>null</code> if it is at a junction or the board has no
+	 *         junction graph for ghosts.
+	 */
+	protected Direction corridorMove() {
+		Square square = getSquare();
+		Board board = square.getBoard();
+		if (board == null) {
+			return null;
+		}
+		JunctionGraph model = JunctionGraph.forBoard(board);
+		if (model == null || !model.appliesTo(this)) {
+			return null;
+		}
+		int index = model.getGraph().indexOf(square);
+		if (index < 0) {
+			return null;
+		}
+		int exit = model.corridorExit(index, getDirection().ordinal());
+		if (exit < 0) {
+			return null;
+		}
+		this.lastSquare = square;
+		return BoardGraph.direction(exit);
+	}
+
+	/**
+	 * Determines a move towards a square without searching for a path, for
+	 * ghosts too far from the player for their moves to matter much. The
+	 * ghost follows corridors and at junctions takes the way that brings it
+	 * closest to the square regardless of terrain, never turning back
+	 * unless it has to.
+	 *
+	 * @param target
+	 *            The square to head for, or <code>null</code> to move at
+	 *            random.
+	 * @return A direction in which the ghost can move.
+	 */
+	public Direction roughMove(Square target) {
+		if (getFearedMode() || target == null) {
+			return randomMoveAtCrossroads();
+		}
+		Direction corridor = corridorMove();
+		if (corridor != null) {
+			return corridor;
+		}
+		Square square = getSquare();
+		Board board = square.getBoard();
+		TorusGeometry torus = board == null ? null : board.getTorusGeometry();
+		Direction best = null;
+		int closest = Integer.MAX_VALUE;
+		for (Direction d : Direction.values()) {
+			Square next = square.getSquareAt(d);
+			if (!next.isAccessibleTo(this) || next == getLastSquare()) {
+				continue;
+			}
+			int distance = torus != null ? torus.distance(next, target)
+					: Math.abs(next.getCoordX() - target.getCoordX())
+					+ Math.abs(next.getCoordY() - target.getCoordY());
+			if (distance < closest) {
+				best = d;
+				closest = distance;
+			}
+		}
+		if (best == null) {
+			return randomMove();
+		}
+		this.lastSquare = square;
+		return best;
+	}
+
+	/**
+	 * Returns the square this ghost heads for when it is planned together
+	 * with other ghosts by a {@link CooperativePlanner}.
+	 *
+	 * @return The square to head for, or <code>null</code> if this ghost
+	 *         decides on its next move on its own.
+	 */
+	protected Square chaseTarget() {
+		return null;
+	}
+
 	/**
 	 *
 	 * @return the last position of the ghost
@@ -220,11 +338,40 @@ public abstract class Ghost extends NPC {
 				}
 			}
 		}
-		int i = new Random().nextInt(directions.size());
+		int i = random.nextInt(directions.size());
 		this.lastSquare = getSquare();
 		return directions.get(i);
 	}
 
+	/**
+	 * Seeds the random moves of this ghost, so that the same situations lead
+	 * to the same moves.
+	 *
+	 * @param seed The seed of the random moves.
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	/**
+	 * Puts this ghost on a level, whose shared navigation it uses from then
+	 * on, even while another level is the level of the game.
+	 *
+	 * @param level The level this ghost is on.
+	 */
+	public void setLevel(Level level) {
+		this.level = level;
+	}
+
+	/**
+	 * @return The level this ghost is on, or the level of the game if it has
+	 *         not been put on one.
+	 */
+	protected Level getLevel() {
+		Level own = level;
+		return own == null ? Level.getLevel() : own;
+	}
+
 	/**
 	 * Permet d'obtenir la vitesse du ghost
 	 * @return La vitesse du ghost
@@ -0,0 +1,449 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+
+/**
+ * A search over the entrances of a {@link ChunkGraph}. The starting square is
+ * connected to the entrances of its chunk and the destination to those of
+ * its chunk, after which an A* search over the entrances finds the chunks to
+ * cross, with the same heuristic as {@link AStarSearch}. Only the first leg
+ * of that route, up to the first entrance, is turned into directions; a
+ * traveller that asks again after following it gets the next leg.
+ * <p>
+ * All bookkeeping is kept in arrays reused between searches. Instances are
+ * not thread safe; {@link Navigation} keeps one per thread.
+ * </p>
+ */
+final class HierarchicalSearch {
+
+	/**
+	 * The cost of paths that have not been found.
+	 */
+	private static final int INFINITE = Integer.MAX_VALUE;
+
+	/**
+	 * The amount of bits the estimated cost is shifted in a heap key.
+	 */
+	private static final int COST_SHIFT = 32;
+
+	/**
+	 * The mask of the node in a heap key.
+	 */
+	private static final long NODE_MASK = 0xFFFFFFFFL;
+
+	/**
+	 * The initial capacity of the open set.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The model the buffers are currently prepared for.
+	 */
+	private ChunkGraph model;
+
+	/**
+	 * The distances within a chunk.
+	 */
+	private int[] local = new int[0];
+
+	/**
+	 * The queue of the searches within a chunk.
+	 */
+	private int[] queue = new int[0];
+
+	/**
+	 * The generation in which every node was last reached.
+	 */
+	private int[] reached = new int[0];
+
+	/**
+	 * The generation in which every node was last expanded.
+	 */
+	private int[] closed = new int[0];
+
+	/**
+	 * The length of the shortest known path to every reached node.
+	 */
+	private int[] costs = new int[0];
+
+	/**
+	 * The node every reached node was reached from, or -1 if it was reached
+	 * from the starting square.
+	 */
+	private int[] parents = new int[0];
+
+	/**
+	 * The generation in which the distance from every node to the
+	 * destination was last set.
+	 */
+	private int[] leaving = new int[0];
+
+	/**
+	 * The distance from every node in the chunk of the destination to the
+	 * destination.
+	 */
+	private int[] remaining = new int[0];
+
+	/**
+	 * The open set as a binary heap of keys holding an estimated cost and a
+	 * node.
+	 */
+	private long[] heap = new long[INITIAL_CAPACITY];
+
+	/**
+	 * The amount of entries in the open set.
+	 */
+	private int heapSize;
+
+	/**
+	 * The generation of the current search.
+	 */
+	private int generation;
+
+	/**
+	 * The amount of nodes the last search expanded.
+	 */
+	private int expanded;
+
+	/**
+	 * Calculates the first leg of a path between two different squares.
+	 *
+	 * @param graph
+	 *            The entrances and chunks of the board.
+	 * @param from
+	 *            The index of the starting square.
+	 * @param to
+	 *            The index of the destination.
+	 * @return The directions up to the first entrance on the way to the
+	 *         destination, or all the way if it is reached first, or
+	 *         <code>null</code> if no path could be found.
+	 */
+	List<Direction> firstLeg(ChunkGraph graph, int from, int to) {
+		int destination = route(graph, from, to);
+		if (destination < 0) {
+			return null;
+		}
+		int direct = directStep(graph, from, destination);
+		if (direct >= 0) {
+			return Collections.singletonList(BoardGraph.direction(direct));
+		}
+		List<Direction> path = new ArrayList<>();
+		for (int current = destination; current != from;) {
+			int link = stepBack(graph, from, current);
+			path.add(BoardGraph.direction(link % BoardGraph.DIRECTIONS));
+			current = link / BoardGraph.DIRECTIONS;
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Calculates the first step of a path between two different squares,
+	 * without building the first leg.
+	 *
+	 * @param graph
+	 *            The entrances and chunks of the board.
+	 * @param from
+	 *            The index of the starting square.
+	 * @param to
+	 *            The index of the destination.
+	 * @return The ordinal of the direction of the first step, or
+	 *         <code>-1</code> if no path could be found.
+	 */
+	int firstStep(ChunkGraph graph, int from, int to) {
+		int destination = route(graph, from, to);
+		if (destination < 0) {
+			return -1;
+		}
+		int direct = directStep(graph, from, destination);
+		if (direct >= 0) {
+			return direct;
+		}
+		int link;
+		int current = destination;
+		do {
+			link = stepBack(graph, from, current);
+			current = link / BoardGraph.DIRECTIONS;
+		} while (current != from);
+		return link % BoardGraph.DIRECTIONS;
+	}
+
+	/**
+	 * @return The amount of entrances expanded by the last search.
+	 */
+	int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * Searches the best route between two different squares and returns
+	 * where its first leg ends. The distances within the chunk of the
+	 * starting square are left in {@link #local}. The searches within the
+	 * chunks of both squares are charged to the {@link SearchBudget} of the
+	 * current thread as if they covered the whole chunk, and every entrance
+	 * expanded as a single square.
+	 *
+	 * @param graph The entrances and chunks of the board.
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 * @return The index of the square at the end of the first leg, or -1 if
+	 *         no route could be found.
+	 */
+	private int route(ChunkGraph graph, int from, int to) {
+		assert from != to;
+		expanded = 0;
+		if (!graph.isAccessible(to)) {
+			return -1;
+		}
+		int limit = SearchBudget.remaining();
+		int work = 2 * graph.chunkSize();
+		if (work > limit) {
+			SearchBudget.spend(0, true);
+			return -1;
+		}
+		prepare(graph);
+		int stamp = nextGeneration();
+		heapSize = 0;
+
+		graph.localDistances(to, local, queue, true);
+		int toChunk = graph.chunkOf(to);
+		for (int n = graph.firstNode(toChunk); n < graph.lastNode(toChunk);
+				n++) {
+			int distance = local[graph.local(graph.squareOf(n))];
+			if (distance != ChunkGraph.UNREACHABLE) {
+				leaving[n] = stamp;
+				remaining[n] = distance;
+			}
+		}
+		int best = INFINITE;
+		int last = -1;
+		BoardGraph g = graph.getGraph();
+		int fromChunk = graph.chunkOf(from);
+		if (fromChunk == toChunk
+				&& local[graph.local(from)] != ChunkGraph.UNREACHABLE) {
+			best = local[graph.local(from)];
+		}
+
+		graph.localDistances(from, local, queue, false);
+		for (int n = graph.firstNode(fromChunk);
+				n < graph.lastNode(fromChunk); n++) {
+			int distance = local[graph.local(graph.squareOf(n))];
+			if (distance != ChunkGraph.UNREACHABLE) {
+				reach(g, n, distance, -1, to, stamp);
+			}
+		}
+
+		while (heapSize > 0) {
+			int node = pop();
+			if (closed[node] == stamp) {
+				continue;
+			}
+			int cost = costs[node];
+			if (cost + AStarSearch.heuristic(g, graph.squareOf(node), to)
+					>= best) {
+				break;
+			}
+			closed[node] = stamp;
+			expanded++;
+			if (work + expanded >= limit) {
+				SearchBudget.spend(work + expanded, true);
+				return -1;
+			}
+			if (leaving[node] == stamp && cost + remaining[node] < best) {
+				best = cost + remaining[node];
+				last = node;
+			}
+			for (int e = graph.firstEdge(node); e < graph.lastEdge(node); e++) {
+				reach(g, graph.target(e), cost + graph.cost(e), node, to,
+						stamp);
+			}
+		}
+		SearchBudget.spend(work + expanded, false);
+		if (best == INFINITE) {
+			return -1;
+		}
+		return endOfLeg(graph, from, to, last);
+	}
+
+	/**
+	 * Finds where the first leg of the best route ends.
+	 *
+	 * @param graph The entrances and chunks of the board.
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 * @param last The last node of the route, or -1 if the destination is
+	 *            reached within the chunk of the starting square.
+	 * @return The index of the first entrance on the route other than the
+	 *         starting square, or the destination if there is none.
+	 */
+	private int endOfLeg(ChunkGraph graph, int from, int to, int last) {
+		int first = last;
+		int second = -1;
+		while (first >= 0 && parents[first] >= 0) {
+			second = first;
+			first = parents[first];
+		}
+		if (first < 0) {
+			return to;
+		} else if (graph.squareOf(first) != from) {
+			return graph.squareOf(first);
+		} else if (second >= 0) {
+			return graph.squareOf(second);
+		}
+		return to;
+	}
+
+	/**
+	 * @param graph The entrances and chunks of the board.
+	 * @param from The index of the starting square.
+	 * @param destination The index of the end of the first leg.
+	 * @return The ordinal of the direction in which the end of the leg is a
+	 *         neighbour of the starting square, or -1.
+	 */
+	private static int directStep(ChunkGraph graph, int from,
+			int destination) {
+		BoardGraph g = graph.getGraph();
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			if (g.neighbour(from, d) == destination) {
+				return d;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the square before a square on the first leg, using the distances
+	 * within the chunk of the starting square.
+	 *
+	 * @param graph The entrances and chunks of the board.
+	 * @param from The index of the starting square.
+	 * @param current The index of a square on the first leg.
+	 * @return The index of the previous square times four plus the ordinal
+	 *         of the direction from there to the given square.
+	 */
+	private int stepBack(ChunkGraph graph, int from, int current) {
+		BoardGraph g = graph.getGraph();
+		int distance = local[graph.local(current)];
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			int previous = g.neighbour(current, BoardGraph.opposite(d));
+			if (graph.chunkOf(previous) == graph.chunkOf(from)
+					&& graph.localNeighbour(previous, d) == current
+					&& local[graph.local(previous)] == distance - 1) {
+				return previous * BoardGraph.DIRECTIONS + d;
+			}
+		}
+		throw new IllegalStateException("Leg without previous square.");
+	}
+
+	/**
+	 * Records a path to a node if it is shorter than the known one.
+	 *
+	 * @param g The graph of the board.
+	 * @param node The node.
+	 * @param cost The length of the path.
+	 * @param parent The node the path comes from, or -1.
+	 * @param to The index of the destination.
+	 * @param stamp The generation of the current search.
+	 */
+	private void reach(BoardGraph g, int node, int cost, int parent, int to,
+			int stamp) {
+		if (closed[node] == stamp
+				|| (reached[node] == stamp && costs[node] <= cost)) {
+			return;
+		}
+		reached[node] = stamp;
+		costs[node] = cost;
+		parents[node] = parent;
+		int estimate = cost + AStarSearch.heuristic(g, model.squareOf(node),
+				to);
+		push(((long) estimate << COST_SHIFT) | node);
+	}
+
+	private void push(long key) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, heapSize * 2);
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= key) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = key;
+	}
+
+	private int pop() {
+		long result = heap[0];
+		long last = heap[--heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= last) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return (int) (result & NODE_MASK);
+	}
+
+	/**
+	 * Makes sure the buffers can hold every node and chunk of the model.
+	 * Stamps are cleared when a different model is searched.
+	 *
+	 * @param graph The model that is about to be searched.
+	 */
+	private void prepare(ChunkGraph graph) {
+		if (graph == model) {
+			return;
+		}
+		if (local.length < graph.chunkSize()) {
+			local = new int[graph.chunkSize()];
+			queue = new int[graph.chunkSize()];
+		}
+		int nodes = graph.getNodeCount();
+		if (reached.length < nodes) {
+			reached = new int[nodes];
+			closed = new int[nodes];
+			costs = new int[nodes];
+			parents = new int[nodes];
+			leaving = new int[nodes];
+			remaining = new int[nodes];
+		} else {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			Arrays.fill(leaving, 0);
+		}
+		generation = 0;
+		model = graph;
+	}
+
+	/**
+	 * @return A generation that no node has been stamped with yet.
+	 */
+	private int nextGeneration() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			Arrays.fill(leaving, 0);
+			generation = 0;
+		}
+		return ++generation;
+	}
+}
@@ -0,0 +1,527 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * An incremental path planner based on D* Lite. Instead of searching from
+ * scratch every time it is asked for a path, a planner keeps the distances
+ * it computed and only repairs the ones that changed since the last query:
+ * when the traveller moved, when the destination moved or when a square
+ * became accessible or inaccessible.
+ * <p>
+ * The distances are computed backwards, from the destination towards the
+ * traveller, so a traveller following its path costs almost nothing to
+ * replan. When the destination moves to a neighbouring square, the distance
+ * to the new destination is at most one more than the distance to the old
+ * one. The planner therefore stores all distances relative to an offset that
+ * grows by one with every such move, so that only the distances that shrink
+ * have to be updated. Moves to squares further away start a new search.
+ * </p>
+ * <p>
+ * Accessibility of squares is cached. Call {@link #squareChanged(Square)}
+ * when a square becomes accessible or inaccessible. A planner keeps state for
+ * a single traveller and is not thread safe.
+ * </p>
+ */
+public final class IncrementalPlanner {
+
+	/**
+	 * The distance of squares from which the destination cannot be reached.
+	 */
+	private static final int INFINITE = Integer.MAX_VALUE / 4;
+
+	/**
+	 * The amount of bits the primary key is shifted in a queue key.
+	 */
+	private static final int KEY_SHIFT = 32;
+
+	/**
+	 * The value that turns a signed secondary key into an unsigned one with
+	 * the same order.
+	 */
+	private static final long SIGN_FLIP = 0x80000000L;
+
+	/**
+	 * The mask of the secondary key in a queue key.
+	 */
+	private static final long KEY_MASK = 0xFFFFFFFFL;
+
+	/**
+	 * The cached accessibility of a square that has not been looked up.
+	 */
+	private static final byte UNKNOWN = 0;
+
+	/**
+	 * The cached accessibility of a square the traveller may occupy.
+	 */
+	private static final byte OPEN = 1;
+
+	/**
+	 * The cached accessibility of a square the traveller may not occupy.
+	 */
+	private static final byte CLOSED = 2;
+
+	/**
+	 * The traveller this planner plans for.
+	 */
+	private final Unit traveller;
+
+	/**
+	 * The graph the state is kept for.
+	 */
+	private BoardGraph graph;
+
+	/**
+	 * The distance from every square to the destination, minus the offset.
+	 */
+	private int[] distances = new int[0];
+
+	/**
+	 * The distance every square should have according to its neighbours,
+	 * minus the offset.
+	 */
+	private int[] lookahead = new int[0];
+
+	/**
+	 * The cached accessibility of every square.
+	 */
+	private byte[] access = new byte[0];
+
+	/**
+	 * The position of every square in the queue plus one, or zero.
+	 */
+	private int[] positions = new int[0];
+
+	/**
+	 * The inconsistent squares, ordered as a binary heap.
+	 */
+	private int[] queue = new int[0];
+
+	/**
+	 * The keys of the squares in the queue.
+	 */
+	private long[] keys = new long[0];
+
+	/**
+	 * The amount of squares in the queue.
+	 */
+	private int queueSize;
+
+	/**
+	 * The index of the square of the traveller.
+	 */
+	private int start = -1;
+
+	/**
+	 * The index of the destination.
+	 */
+	private int goal = -1;
+
+	/**
+	 * The amount of times the destination moved to a neighbouring square.
+	 */
+	private int offset;
+
+	/**
+	 * The correction of the keys for the distance the traveller moved.
+	 */
+	private int keyModifier;
+
+	/**
+	 * The amount of squares expanded by the last query.
+	 */
+	private int expanded;
+
+	/**
+	 * Creates a new planner.
+	 *
+	 * @param traveller
+	 *            The traveller whose paths will be planned.
+	 */
+	public IncrementalPlanner(Unit traveller) {
+		this.traveller = traveller;
+	}
+
+	/**
+	 * Plans the path from a square to a destination and returns its first
+	 * step.
+	 *
+	 * @param from
+	 *            The square of the traveller.
+	 * @param to
+	 *            The destination.
+	 * @return The first step of a shortest path, or <code>null</code> if the
+	 *         traveller is at the destination or cannot reach it.
+	 */
+	public Direction nextStep(Square from, Square to) {
+		if (!plan(from, to) || start == goal) {
+			return null;
+		}
+		return BoardGraph.direction(bestExit(start));
+	}
+
+	/**
+	 * Plans the shortest path from a square to a destination.
+	 *
+	 * @param from
+	 *            The square of the traveller.
+	 * @param to
+	 *            The destination.
+	 * @return The shortest path to the destination or <code>null</code> if no
+	 *         such path could be found. When the destination is the current
+	 *         square, an empty list is returned.
+	 */
+	public List<Direction> shortestPath(Square from, Square to) {
+		if (!plan(from, to)) {
+			return null;
+		}
+		Direction[] path = new Direction[distances[start] + offset];
+		int current = start;
+		for (int i = 0; i < path.length; i++) {
+			int exit = bestExit(current);
+			path[i] = BoardGraph.direction(exit);
+			current = graph.neighbour(current, exit);
+		}
+		return Arrays.asList(path);
+	}
+
+	/**
+	 * Tells the planner that a square may have become accessible or
+	 * inaccessible to its traveller.
+	 *
+	 * @param square
+	 *            The square that changed.
+	 */
+	public void squareChanged(Square square) {
+		if (graph == null) {
+			return;
+		}
+		int index = graph.indexOf(square);
+		if (index < 0) {
+			return;
+		}
+		access[index] = UNKNOWN;
+		updatePredecessors(index);
+	}
+
+	/**
+	 * @return The amount of squares expanded by the last query.
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * Brings the distances up to date for a traveller and a destination.
+	 *
+	 * @param from The square of the traveller.
+	 * @param to The destination.
+	 * @return <code>true</code> iff the destination can be reached and
+	 *         planning was not stopped by the {@link SearchBudget}.
+	 */
+	private boolean plan(Square from, Square to) {
+		expanded = 0;
+		Board board = from.getBoard();
+		if (board == null) {
+			return false;
+		}
+		BoardGraph current = board.getGraph();
+		int source = current.indexOf(from);
+		int destination = current.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return false;
+		}
+		if (current != graph) {
+			reset(current, source, destination);
+		} else {
+			if (destination != goal) {
+				moveGoal(destination);
+			}
+			if (source != start) {
+				keyModifier += AStarSearch.heuristic(graph, start, source);
+				start = source;
+			}
+		}
+		return computeShortestPath() && distances[start] < INFINITE;
+	}
+
+	/**
+	 * Moves the destination. A move to a neighbouring square keeps the
+	 * current distances as an upper bound; any other move starts over.
+	 *
+	 * @param destination The index of the new destination.
+	 */
+	private void moveGoal(int destination) {
+		if (!adjacent(goal, destination)) {
+			reset(graph, start, destination);
+			return;
+		}
+		int previous = goal;
+		offset++;
+		goal = destination;
+		updateVertex(previous);
+		updateVertex(destination);
+	}
+
+	/**
+	 * @param a The index of a square.
+	 * @param b The index of another square.
+	 * @return <code>true</code> iff one square is linked to the other.
+	 */
+	private boolean adjacent(int a, int b) {
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			if (graph.neighbour(a, d) == b && graph.neighbour(b,
+					BoardGraph.opposite(d)) == a) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Discards all state and starts a new search.
+	 *
+	 * @param g The graph to search.
+	 * @param source The index of the square of the traveller.
+	 * @param destination The index of the destination.
+	 */
+	private void reset(BoardGraph g, int source, int destination) {
+		int size = g.size();
+		if (distances.length != size) {
+			distances = new int[size];
+			lookahead = new int[size];
+			access = new byte[size];
+			positions = new int[size];
+			queue = new int[size];
+			keys = new long[size];
+		}
+		if (g != graph) {
+			Arrays.fill(access, UNKNOWN);
+		}
+		Arrays.fill(distances, INFINITE);
+		Arrays.fill(lookahead, INFINITE);
+		Arrays.fill(positions, 0);
+		queueSize = 0;
+		graph = g;
+		start = source;
+		goal = destination;
+		offset = 0;
+		keyModifier = 0;
+		lookahead[goal] = 0;
+		insert(goal, key(goal));
+	}
+
+	/**
+	 * Expands inconsistent squares until the distance of the traveller's
+	 * square is correct. When the {@link SearchBudget} of the current thread
+	 * is spent first, the remaining squares stay queued and are expanded by
+	 * the next query.
+	 *
+	 * @return <code>true</code> iff the distance of the traveller's square
+	 *         is correct.
+	 */
+	private boolean computeShortestPath() {
+		int limit = SearchBudget.remaining();
+		while (queueSize > 0 && (keys[0] < key(start)
+				|| lookahead[start] != distances[start])) {
+			if (expanded >= limit) {
+				SearchBudget.spend(expanded, true);
+				return false;
+			}
+			int square = queue[0];
+			long oldKey = keys[0];
+			long newKey = key(square);
+			expanded++;
+			if (oldKey < newKey) {
+				update(square, newKey);
+			} else if (distances[square] > lookahead[square]) {
+				distances[square] = lookahead[square];
+				remove(square);
+				updatePredecessors(square);
+			} else {
+				distances[square] = INFINITE;
+				updateVertex(square);
+				updatePredecessors(square);
+			}
+		}
+		SearchBudget.spend(expanded, false);
+		return true;
+	}
+
+	/**
+	 * Recomputes the lookahead of every square linked to the given one.
+	 *
+	 * @param square The index of a square whose distance changed.
+	 */
+	private void updatePredecessors(int square) {
+		int last = graph.incomingCount(square);
+		for (int k = 0; k < last; k++) {
+			updateVertex(graph.incomingLink(square, k)
+					/ BoardGraph.DIRECTIONS);
+		}
+	}
+
+	/**
+	 * Recomputes the lookahead of a square from its neighbours and queues it
+	 * if it is inconsistent.
+	 *
+	 * @param square The index of the square.
+	 */
+	private void updateVertex(int square) {
+		if (square == goal) {
+			lookahead[square] = -offset;
+		} else {
+			int best = INFINITE;
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				int next = graph.neighbour(square, d);
+				if (distances[next] < INFINITE && isOpen(next)) {
+					best = Math.min(best, distances[next] + 1);
+				}
+			}
+			lookahead[square] = best;
+		}
+		if (distances[square] != lookahead[square]) {
+			if (positions[square] == 0) {
+				insert(square, key(square));
+			} else {
+				update(square, key(square));
+			}
+		} else if (positions[square] != 0) {
+			remove(square);
+		}
+	}
+
+	/**
+	 * @param square The index of a square with a known distance.
+	 * @return The ordinal of the exit to the neighbour closest to the
+	 *         destination.
+	 */
+	private int bestExit(int square) {
+		int exit = -1;
+		int best = INFINITE;
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			int next = graph.neighbour(square, d);
+			if (distances[next] < best && isOpen(next)) {
+				best = distances[next];
+				exit = d;
+			}
+		}
+		assert exit >= 0;
+		return exit;
+	}
+
+	/**
+	 * @param square The index of a square.
+	 * @return <code>true</code> iff the traveller may occupy the square.
+	 */
+	private boolean isOpen(int square) {
+		if (access[square] == UNKNOWN) {
+			access[square] = graph.squareAt(square).isAccessibleTo(traveller)
+					? OPEN : CLOSED;
+		}
+		return access[square] == OPEN;
+	}
+
+	/**
+	 * Computes the key of a square: the estimated length of a path from the
+	 * traveller through the square, followed by its distance.
+	 *
+	 * @param square The index of the square.
+	 * @return The key, comparable as a signed long.
+	 */
+	private long key(int square) {
+		int distance = Math.min(distances[square], lookahead[square]);
+		int estimate = distance + AStarSearch.heuristic(graph, start, square)
+				+ keyModifier;
+		return ((long) estimate << KEY_SHIFT)
+				| ((distance & KEY_MASK) ^ SIGN_FLIP);
+	}
+
+	private void insert(int square, long key) {
+		int i = queueSize++;
+		queue[i] = square;
+		keys[i] = key;
+		positions[square] = i + 1;
+		siftUp(i);
+	}
+
+	private void update(int square, long key) {
+		int i = positions[square] - 1;
+		long old = keys[i];
+		keys[i] = key;
+		if (key < old) {
+			siftUp(i);
+		} else {
+			siftDown(i);
+		}
+	}
+
+	private void remove(int square) {
+		int i = positions[square] - 1;
+		positions[square] = 0;
+		queueSize--;
+		if (i == queueSize) {
+			return;
+		}
+		queue[i] = queue[queueSize];
+		keys[i] = keys[queueSize];
+		positions[queue[i]] = i + 1;
+		siftUp(i);
+		siftDown(positions[queue[i]] - 1);
+	}
+
+	private void siftUp(int index) {
+		int i = index;
+		int square = queue[i];
+		long key = keys[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		place(square, key, i);
+	}
+
+	private void siftDown(int index) {
+		int i = index;
+		int square = queue[i];
+		long key = keys[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= queueSize) {
+				break;
+			}
+			if (child + 1 < queueSize && keys[child + 1] < keys[child]) {
+				child++;
+			}
+			if (keys[child] >= key) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		place(square, key, i);
+	}
+
+	private void move(int from, int to) {
+		queue[to] = queue[from];
+		keys[to] = keys[from];
+		positions[queue[to]] = to + 1;
+	}
+
+	private void place(int square, long key, int i) {
+		queue[i] = square;
+		keys[i] = key;
+		positions[square] = i + 1;
+	}
+}
@@ -1,9 +1,9 @@
 package nl.tudelft.jpacman.npc.ghost;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
+import nl.tudelft.jpacman.board.BoardGraph;
 import nl.tudelft.jpacman.board.Direction;
 import nl.tudelft.jpacman.board.Square;
 import nl.tudelft.jpacman.board.Unit;
@@ -67,6 +67,11 @@ public class Inky extends Ghost {
 	 */
 	private static final int SLOW_MOVE_INTERVAL = 500;
 
+	/**
+	 * The position of this ghost on the cached path it follows.
+	 */
+	private final PathCache.Cursor route = new PathCache.Cursor();
+
 	/**
 	 * Creates a new "Inky", a.k.a. Bashful.
 	 * 
@@ -109,9 +114,9 @@ public class Inky extends Ghost {
 	 * <p>
 	 * <b>Implementation:</b> by lack of a coordinate system there is a
 	 * workaround: first determine the square of Blinky (A) and the square 2
-	 * squares away from Pac-Man (B). Then determine the shortest path from A to
-	 * B regardless of terrain and walk that same path from B. This is the
-	 * destination.
+	 * squares away from Pac-Man (B). Then determine the first step from B
+	 * towards A regardless of terrain and step away from B the other way,
+	 * along the line from A through B. This is the destination.
 	 * </p>
 	 */
 	// CHECKSTYLE:OFF To keep this more readable.
@@ -121,6 +126,11 @@ public class Inky extends Ghost {
 			return randomMoveAtCrossroads();
 		}
 
+		Direction corridor = corridorMove();
+		if (corridor != null) {
+			return corridor;
+		}
+
 		Unit blinky = Navigation.findNearest(Blinky.class, getSquare());
 		if (blinky == null) {
 			return randomMove();
@@ -138,22 +148,22 @@ public class Inky extends Ghost {
 		}
 
 		Square destination = playerDestination;
-		List<Direction> firstHalf = Navigation.shortestPath(blinky.getSquare(),
-				playerDestination, null);
-		if (firstHalf == null) {
-			return randomMove();
-		}
-
-		for (Direction d : firstHalf) {
-			destination = playerDestination.getSquareAt(d);
+		if (blinky.getSquare() != playerDestination) {
+			Direction back = Navigation.firstStep(playerDestination,
+					blinky.getSquare(), null);
+			if (back == null) {
+				return fallbackMove();
+			}
+			destination = playerDestination.getSquareAt(BoardGraph.direction(
+					BoardGraph.opposite(back.ordinal())));
 		}
 
-		List<Direction> path = Navigation.shortestPath(getSquare(),
-				destination, this);
-		if (path != null && !path.isEmpty()) {
-			return path.get(0);
+		Direction step = getLevel().getPathCache().next(route,
+				getSquare(), destination, this);
+		if (step != null) {
+			return step;
 		}
-		return randomMove();
+		return fallbackMove();
 	}
 	// CHECKSTYLE:ON
 }
\ No newline at end of file
@@ -0,0 +1,650 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.BoardObserver;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * A compressed model of a board in which only the junctions are nodes. Most
+ * squares of a maze are part of a corridor: they have exactly two neighbours
+ * a traveller may occupy, so a search never has to choose a direction there.
+ * This graph replaces every corridor by a single weighted edge between the
+ * junctions at its ends, so that a search only branches at crossroads and
+ * dead ends.
+ * <p>
+ * Junctions are identified by the index of their square in the
+ * {@link BoardGraph}. For every corridor square the graph remembers which
+ * corridor it is part of, how far it is from the start of that corridor and
+ * in which direction both ends are, which is enough to turn a path of
+ * junctions back into a path of directions. It also remembers the exits of
+ * every square, so that a traveller in a corridor can continue without
+ * searching at all, see {@link Ghost#corridorMove()}.
+ * </p>
+ * <p>
+ * A graph is installed for a board with {@link #install(Board, Unit, Class)}.
+ * When the board is extended, a new graph is derived from the previous one:
+ * junctions and corridors whose squares kept their neighbours are carried
+ * over, and only the new region and the seam along which it was attached are
+ * walked again.
+ * </p>
+ */
+public final class JunctionGraph implements BoardObserver {
+
+	/**
+	 * The kind of squares a traveller may not occupy.
+	 */
+	static final byte BLOCKED = 0;
+
+	/**
+	 * The kind of squares with exactly two exits, both linked back.
+	 */
+	static final byte CORRIDOR = 1;
+
+	/**
+	 * The kind of squares at which a path may branch or end.
+	 */
+	static final byte JUNCTION = 2;
+
+	/**
+	 * The kind of corridor squares that have not been walked yet.
+	 */
+	private static final byte PENDING = 3;
+
+	/**
+	 * The kind of squares that have not been classified yet.
+	 */
+	private static final byte UNKNOWN = 4;
+
+	/**
+	 * The graphs installed for each board.
+	 */
+	private static final Map<Board, JunctionGraph> GRAPHS =
+			Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * The graph of the board this model was built for.
+	 */
+	private final BoardGraph graph;
+
+	/**
+	 * The unit whose access to squares this model was built for.
+	 */
+	private final Unit representative;
+
+	/**
+	 * The type of travellers this model applies to.
+	 */
+	private final Class<? extends Unit> travellerType;
+
+	/**
+	 * Whether the representative may occupy every square.
+	 */
+	private final boolean[] accessible;
+
+	/**
+	 * Whether a square has a link to or from a neighbour that is not linked
+	 * back, as happens along the seam of an extended board.
+	 */
+	private final boolean[] oneWay;
+
+	/**
+	 * The kind of every square.
+	 */
+	private final byte[] kinds;
+
+	/**
+	 * The directions in which a traveller may leave every square, with bit
+	 * <code>d</code> set for the direction with ordinal <code>d</code>.
+	 */
+	private final byte[] exits;
+
+	/**
+	 * The corridor every corridor square is part of, or -1.
+	 */
+	private final int[] corridorOf;
+
+	/**
+	 * The distance from every corridor square to the start of its corridor.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * The ordinal of the direction towards the start of the corridor.
+	 */
+	private final byte[] towardsStart;
+
+	/**
+	 * The ordinal of the direction towards the end of the corridor.
+	 */
+	private final byte[] towardsEnd;
+
+	/**
+	 * The junction at the start of every corridor.
+	 */
+	private int[] corridorStart;
+
+	/**
+	 * The junction at the end of every corridor.
+	 */
+	private int[] corridorEnd;
+
+	/**
+	 * The distance between the junctions of every corridor.
+	 */
+	private int[] corridorLength;
+
+	/**
+	 * The amount of corridors.
+	 */
+	private int corridors;
+
+	/**
+	 * The amount of junctions.
+	 */
+	private int junctions;
+
+	/**
+	 * The amount of squares that had to be classified when building this
+	 * model.
+	 */
+	private int classified;
+
+	/**
+	 * Builds the model of a board from scratch.
+	 *
+	 * @param graph The graph of the board.
+	 * @param traveller The unit whose access to squares the model is built for.
+	 * @param type The type of travellers the model applies to.
+	 */
+	private JunctionGraph(BoardGraph graph, Unit traveller,
+			Class<? extends Unit> type) {
+		this(graph, traveller, type, null);
+	}
+
+	/**
+	 * Builds the model of a board, reusing what is still valid of the model
+	 * of its previous layout.
+	 *
+	 * @param graph The graph of the board.
+	 * @param traveller The unit whose access to squares the model is built for.
+	 * @param type The type of travellers the model applies to.
+	 * @param previous The model of the previous layout, or <code>null</code>.
+	 */
+	private JunctionGraph(BoardGraph graph, Unit traveller,
+			Class<? extends Unit> type, JunctionGraph previous) {
+		this.graph = graph;
+		this.representative = traveller;
+		this.travellerType = type;
+		int size = graph.size();
+		this.accessible = new boolean[size];
+		this.oneWay = new boolean[size];
+		this.kinds = new byte[size];
+		this.exits = new byte[size];
+		this.corridorOf = new int[size];
+		this.offsets = new int[size];
+		this.towardsStart = new byte[size];
+		this.towardsEnd = new byte[size];
+		int capacity = Math.max(1, size / 2);
+		this.corridorStart = new int[capacity];
+		this.corridorEnd = new int[capacity];
+		this.corridorLength = new int[capacity];
+		Arrays.fill(kinds, UNKNOWN);
+		Arrays.fill(corridorOf, -1);
+
+		findOneWayLinks();
+		boolean[] known = new boolean[size];
+		if (previous != null) {
+			carryOver(previous, known);
+		}
+		for (int i = 0; i < size; i++) {
+			if (!known[i]) {
+				accessible[i] = graph.squareAt(i).isAccessibleTo(traveller);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (accessible[i]) {
+				exits[i] = exitsOf(i);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (kinds[i] == UNKNOWN) {
+				classify(i);
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (kinds[i] == PENDING) {
+				walkCorridorOf(i);
+			}
+		}
+	}
+
+	/**
+	 * Marks the squares with a link that is not linked back. Such squares are
+	 * always junctions, so that a corridor can only be entered at its ends
+	 * and can be walked both ways.
+	 */
+	private void findOneWayLinks() {
+		for (int i = 0; i < graph.size(); i++) {
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				int neighbour = graph.neighbour(i, d);
+				if (graph.neighbour(neighbour, BoardGraph.opposite(d)) != i) {
+					oneWay[i] = true;
+					oneWay[neighbour] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the junctions and corridors of the previous layout whose
+	 * squares, and the neighbours of those squares, are still linked the same
+	 * way.
+	 *
+	 * @param previous The model of the previous layout.
+	 * @param known Set for every square whose accessibility was copied.
+	 */
+	private void carryOver(JunctionGraph previous, boolean[] known) {
+		BoardGraph old = previous.graph;
+		int oldSize = old.size();
+		int[] map = new int[oldSize];
+		for (int i = 0; i < oldSize; i++) {
+			map[i] = graph.indexOf(old.squareAt(i));
+			if (map[i] >= 0) {
+				accessible[map[i]] = previous.accessible[i];
+				known[map[i]] = true;
+			}
+		}
+		boolean[] dirty = new boolean[oldSize];
+		for (int i = 0; i < oldSize; i++) {
+			dirty[i] = map[i] < 0;
+			for (int d = 0; d < BoardGraph.DIRECTIONS && !dirty[i]; d++) {
+				dirty[i] = map[old.neighbour(i, d)]
+						!= graph.neighbour(map[i], d);
+			}
+		}
+		boolean[] affected = new boolean[oldSize];
+		for (int i = 0; i < oldSize; i++) {
+			affected[i] = dirty[i];
+			for (int d = 0; d < BoardGraph.DIRECTIONS && !affected[i]; d++) {
+				affected[i] = dirty[old.neighbour(i, d)];
+			}
+			affected[i] |= map[i] >= 0 && oneWay[map[i]];
+		}
+		dirty = affected;
+		boolean[] kept = new boolean[previous.corridors];
+		for (int c = 0; c < previous.corridors; c++) {
+			kept[c] = !dirty[previous.corridorStart[c]]
+					&& !dirty[previous.corridorEnd[c]];
+		}
+		for (int i = 0; i < oldSize; i++) {
+			if (dirty[i] && previous.corridorOf[i] >= 0) {
+				kept[previous.corridorOf[i]] = false;
+			}
+		}
+		int[] renumbered = new int[previous.corridors];
+		for (int c = 0; c < previous.corridors; c++) {
+			renumbered[c] = -1;
+			if (kept[c]) {
+				renumbered[c] = addCorridor(map[previous.corridorStart[c]],
+						map[previous.corridorEnd[c]],
+						previous.corridorLength[c]);
+			}
+		}
+		for (int i = 0; i < oldSize; i++) {
+			if (dirty[i]) {
+				continue;
+			}
+			int j = map[i];
+			byte kind = previous.kinds[i];
+			if (kind == BLOCKED) {
+				kinds[j] = BLOCKED;
+			} else if (kind == JUNCTION) {
+				kinds[j] = JUNCTION;
+				junctions++;
+			} else if (kept[previous.corridorOf[i]]) {
+				kinds[j] = CORRIDOR;
+				corridorOf[j] = renumbered[previous.corridorOf[i]];
+				offsets[j] = previous.offsets[i];
+				towardsStart[j] = previous.towardsStart[i];
+				towardsEnd[j] = previous.towardsEnd[i];
+			}
+		}
+	}
+
+	/**
+	 * @param index The index of an accessible square.
+	 * @return The mask of the directions of its accessible neighbours.
+	 */
+	private byte exitsOf(int index) {
+		int mask = 0;
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			if (accessible[graph.neighbour(index, d)]) {
+				mask |= 1 << d;
+			}
+		}
+		return (byte) mask;
+	}
+
+	/**
+	 * Determines whether a square is blocked, a junction or part of a
+	 * corridor, by counting its exits.
+	 *
+	 * @param index The index of the square.
+	 */
+	private void classify(int index) {
+		classified++;
+		if (!accessible[index]) {
+			kinds[index] = BLOCKED;
+			return;
+		}
+		if (Integer.bitCount(exits[index]) == 2 && !oneWay[index]) {
+			kinds[index] = PENDING;
+		} else {
+			kinds[index] = JUNCTION;
+			junctions++;
+		}
+	}
+
+	/**
+	 * Walks the corridor a pending square is part of. The corridor is
+	 * followed backwards until a junction is found, from which it is then
+	 * walked forwards. A corridor that forms a loop without any junction gets
+	 * one of its squares promoted to a junction.
+	 *
+	 * @param index The index of a pending square.
+	 */
+	private void walkCorridorOf(int index) {
+		int direction = exit(index, -1);
+		int current = index;
+		do {
+			current = graph.neighbour(current, direction);
+			if (kinds[current] == JUNCTION) {
+				walk(current, BoardGraph.opposite(direction));
+				return;
+			}
+			direction = exit(current, BoardGraph.opposite(direction));
+		} while (current != index);
+		kinds[index] = JUNCTION;
+		junctions++;
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			if (accessible[graph.neighbour(index, d)]) {
+				walk(index, d);
+			}
+		}
+	}
+
+	/**
+	 * Walks a corridor starting at a junction, recording for every square
+	 * where it is on the corridor.
+	 *
+	 * @param start The index of the junction.
+	 * @param exit The ordinal of the direction in which the corridor leaves
+	 *            the junction.
+	 */
+	private void walk(int start, int exit) {
+		int current = graph.neighbour(start, exit);
+		if (kinds[current] != PENDING) {
+			return;
+		}
+		int corridor = addCorridor(start, -1, 0);
+		int direction = exit;
+		int offset = 1;
+		while (kinds[current] == PENDING) {
+			int back = BoardGraph.opposite(direction);
+			kinds[current] = CORRIDOR;
+			corridorOf[current] = corridor;
+			offsets[current] = offset;
+			towardsStart[current] = (byte) back;
+			direction = exit(current, back);
+			towardsEnd[current] = (byte) direction;
+			current = graph.neighbour(current, direction);
+			offset++;
+		}
+		assert kinds[current] == JUNCTION;
+		corridorEnd[corridor] = current;
+		corridorLength[corridor] = offset;
+	}
+
+	/**
+	 * @param index The index of a square with two exits.
+	 * @param ignored The ordinal of the exit to skip, or -1.
+	 * @return The ordinal of the first other exit.
+	 */
+	private int exit(int index, int ignored) {
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			if (d != ignored && accessible[graph.neighbour(index, d)]) {
+				return d;
+			}
+		}
+		throw new IllegalStateException("Corridor square without exit.");
+	}
+
+	private int addCorridor(int start, int end, int length) {
+		if (corridors == corridorStart.length) {
+			corridorStart = Arrays.copyOf(corridorStart, corridors * 2);
+			corridorEnd = Arrays.copyOf(corridorEnd, corridors * 2);
+			corridorLength = Arrays.copyOf(corridorLength, corridors * 2);
+		}
+		corridorStart[corridors] = start;
+		corridorEnd[corridors] = end;
+		corridorLength[corridors] = length;
+		return corridors++;
+	}
+
+	/**
+	 * Builds the model of a board and installs it, so that {@link Navigation}
+	 * will use it for the given type of travellers.
+	 *
+	 * @param board
+	 *            The board to model.
+	 * @param traveller
+	 *            A unit whose access to squares is representative for all
+	 *            travellers of the given type.
+	 * @param type
+	 *            The type of travellers the model applies to.
+	 * @return The installed model, or <code>null</code> if the board cannot
+	 *         be navigated.
+	 */
+	public static JunctionGraph install(Board board, Unit traveller,
+			Class<? extends Unit> type) {
+		assert type.isInstance(traveller);
+		BoardGraph graph = board.getGraph();
+		if (graph == null) {
+			return null;
+		}
+		JunctionGraph model = new JunctionGraph(graph, traveller, type);
+		JunctionGraph previous = GRAPHS.put(board, model);
+		if (previous != null) {
+			board.removeObserver(previous);
+		}
+		board.addObserver(model);
+		return model;
+	}
+
+	/**
+	 * Returns the model installed for a board.
+	 *
+	 * @param board The board.
+	 * @return The model of the current layout of the board, or
+	 *         <code>null</code> if none has been installed.
+	 */
+	public static JunctionGraph forBoard(Board board) {
+		JunctionGraph model = GRAPHS.get(board);
+		if (model == null || model.graph.getRevision() != board.getRevision()) {
+			return null;
+		}
+		return model;
+	}
+
+	/**
+	 * Removes the model installed for a board, if any.
+	 *
+	 * @param board The board that should no longer be modelled.
+	 */
+	public static void uninstall(Board board) {
+		JunctionGraph model = GRAPHS.remove(board);
+		if (model != null) {
+			board.removeObserver(model);
+		}
+	}
+
+	/**
+	 * Replaces this model by one of the new layout of the board, reusing
+	 * the parts of the board that did not change.
+	 */
+	@Override
+	public void layoutChanged(Board board) {
+		JunctionGraph next = new JunctionGraph(board.getGraph(),
+				representative, travellerType, this);
+		board.removeObserver(this);
+		if (GRAPHS.replace(board, this, next)) {
+			board.addObserver(next);
+		}
+	}
+
+	/**
+	 * @param traveller A traveller, or <code>null</code>.
+	 * @return <code>true</code> iff this model describes the paths of the
+	 *         traveller.
+	 */
+	public boolean appliesTo(Unit traveller) {
+		return travellerType.isInstance(traveller);
+	}
+
+	/**
+	 * @return The graph of the board this model was built for.
+	 */
+	public BoardGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return The amount of junctions.
+	 */
+	public int getJunctionCount() {
+		return junctions;
+	}
+
+	/**
+	 * @return The amount of corridors between junctions.
+	 */
+	public int getCorridorCount() {
+		return corridors;
+	}
+
+	/**
+	 * @return The amount of squares that were classified when this model
+	 *         was built, as opposed to carried over from the previous layout.
+	 */
+	public int getClassifiedSquares() {
+		return classified;
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return {@link #BLOCKED}, {@link #CORRIDOR} or {@link #JUNCTION}.
+	 */
+	byte kind(int index) {
+		return kinds[index];
+	}
+
+	/**
+	 * @param index The index of a square.
+	 * @return The directions in which a traveller may leave the square, with
+	 *         bit <code>d</code> set for the direction with ordinal
+	 *         <code>d</code>.
+	 */
+	int exits(int index) {
+		return exits[index];
+	}
+
+	/**
+	 * Determines how a traveller that is heading in a direction continues
+	 * along a corridor. It keeps its direction where it can, and otherwise
+	 * follows the bend of the corridor rather than turning back.
+	 *
+	 * @param index The index of a square.
+	 * @param heading The ordinal of the direction the traveller is heading.
+	 * @return The ordinal of the direction in which to continue, or
+	 *         <code>-1</code> if the square is not part of a corridor and the
+	 *         traveller has to choose.
+	 */
+	int corridorExit(int index, int heading) {
+		if (kinds[index] != CORRIDOR) {
+			return -1;
+		}
+		int mask = exits[index];
+		if ((mask & 1 << heading) != 0) {
+			return heading;
+		}
+		int back = BoardGraph.opposite(heading);
+		for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+			if (d != back && (mask & 1 << d) != 0) {
+				return d;
+			}
+		}
+		return back;
+	}
+
+	/**
+	 * @param index The index of a corridor square.
+	 * @return The corridor the square is part of.
+	 */
+	int corridorOf(int index) {
+		return corridorOf[index];
+	}
+
+	/**
+	 * @param index The index of a corridor square.
+	 * @return The distance to the start of its corridor.
+	 */
+	int offset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * @param index The index of a corridor square.
+	 * @return The ordinal of the direction towards the start of its corridor.
+	 */
+	int towardsStart(int index) {
+		return towardsStart[index];
+	}
+
+	/**
+	 * @param index The index of a corridor square.
+	 * @return The ordinal of the direction towards the end of its corridor.
+	 */
+	int towardsEnd(int index) {
+		return towardsEnd[index];
+	}
+
+	/**
+	 * @param corridor A corridor.
+	 * @return The junction at its start.
+	 */
+	int start(int corridor) {
+		return corridorStart[corridor];
+	}
+
+	/**
+	 * @param corridor A corridor.
+	 * @return The junction at its end.
+	 */
+	int end(int corridor) {
+		return corridorEnd[corridor];
+	}
+
+	/**
+	 * @param corridor A corridor.
+	 * @return The distance between its junctions.
+	 */
+	int length(int corridor) {
+		return corridorLength[corridor];
+	}
+}
@@ -0,0 +1,380 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+
+/**
+ * A Dijkstra search over the junctions of a {@link JunctionGraph}. Corridors
+ * are crossed in a single step, and the path of junctions that is found is
+ * expanded back into the directions of every square on the way.
+ * <p>
+ * All bookkeeping is kept in arrays indexed like the {@link BoardGraph} and
+ * reused between searches. Instances are not thread safe; {@link Navigation}
+ * keeps one per thread.
+ * </p>
+ */
+final class JunctionSearch {
+
+	/**
+	 * The cost of paths that have not been found.
+	 */
+	private static final int INFINITE = Integer.MAX_VALUE;
+
+	/**
+	 * The amount of bits the cost is shifted in a heap key.
+	 */
+	private static final int COST_SHIFT = 32;
+
+	/**
+	 * The mask of the square in a heap key.
+	 */
+	private static final long SQUARE_MASK = 0xFFFFFFFFL;
+
+	/**
+	 * The initial capacity of the open set.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The graph the buffers are currently prepared for.
+	 */
+	private BoardGraph graph;
+
+	/**
+	 * The generation in which every junction was last reached.
+	 */
+	private int[] reached = new int[0];
+
+	/**
+	 * The generation in which every junction was last expanded.
+	 */
+	private int[] closed = new int[0];
+
+	/**
+	 * The length of the shortest known path to every reached junction.
+	 */
+	private int[] costs = new int[0];
+
+	/**
+	 * The junction every reached junction was reached from, or -1 if it was
+	 * reached from the starting square directly.
+	 */
+	private int[] parents = new int[0];
+
+	/**
+	 * The ordinal of the direction in which the parent of every reached
+	 * junction was left, or in which the starting square was left.
+	 */
+	private byte[] exits = new byte[0];
+
+	/**
+	 * The open set as a binary heap of keys holding a cost and a square.
+	 */
+	private long[] heap = new long[INITIAL_CAPACITY];
+
+	/**
+	 * The amount of entries in the open set.
+	 */
+	private int heapSize;
+
+	/**
+	 * The generation of the current search.
+	 */
+	private int generation;
+
+	/**
+	 * The amount of junctions the last search expanded.
+	 */
+	private int expanded;
+
+	/**
+	 * The length of the best path found so far.
+	 */
+	private int best;
+
+	/**
+	 * The last junction on the best path, or -1 if the best path stays in
+	 * the corridor of the starting square.
+	 */
+	private int lastJunction;
+
+	/**
+	 * The ordinal of the direction in which the last junction is left, or
+	 * the starting square if the path stays in its corridor.
+	 */
+	private int lastExit;
+
+	/**
+	 * Calculates the shortest path between two different squares.
+	 *
+	 * @param model
+	 *            The junctions and corridors of the board.
+	 * @param from
+	 *            The index of the starting square, which must not be blocked.
+	 * @param to
+	 *            The index of the destination.
+	 * @return The shortest path to the destination or <code>null</code> if no
+	 *         such path could be found.
+	 */
+	List<Direction> shortestPath(JunctionGraph model, int from, int to) {
+		assert from != to;
+		assert model.kind(from) != JunctionGraph.BLOCKED;
+		if (model.kind(to) == JunctionGraph.BLOCKED) {
+			return null;
+		}
+		search(model, from, to);
+		if (best == INFINITE) {
+			return null;
+		}
+		return expand(model, from);
+	}
+
+	/**
+	 * @return The amount of junctions expanded by the last search.
+	 */
+	int getExpanded() {
+		return expanded;
+	}
+
+	/**
+	 * Runs the search until no shorter path to the destination can be
+	 * found.
+	 *
+	 * @param model The junctions and corridors of the board.
+	 * @param from The index of the starting square.
+	 * @param to The index of the destination.
+	 */
+	private void search(JunctionGraph model, int from, int to) {
+		BoardGraph g = model.getGraph();
+		prepare(g);
+		int stamp = nextGeneration();
+		heapSize = 0;
+		expanded = 0;
+		best = INFINITE;
+		lastJunction = -1;
+		boolean toCorridor = model.kind(to) == JunctionGraph.CORRIDOR;
+		int targetCorridor = toCorridor ? model.corridorOf(to) : -1;
+
+		if (model.kind(from) == JunctionGraph.JUNCTION) {
+			reach(from, 0, -1, -1, stamp);
+		} else {
+			int corridor = model.corridorOf(from);
+			if (corridor == targetCorridor) {
+				int difference = model.offset(to) - model.offset(from);
+				best = Math.abs(difference);
+				lastExit = difference < 0 ? model.towardsStart(from)
+						: model.towardsEnd(from);
+			}
+			reach(model.start(corridor), model.offset(from), -1,
+					model.towardsStart(from), stamp);
+			reach(model.end(corridor), model.length(corridor)
+					- model.offset(from), -1, model.towardsEnd(from), stamp);
+		}
+
+		while (heapSize > 0) {
+			int junction = pop();
+			if (closed[junction] == stamp) {
+				continue;
+			}
+			int cost = costs[junction];
+			if (cost >= best) {
+				return;
+			}
+			closed[junction] = stamp;
+			expanded++;
+			if (junction == to) {
+				best = cost;
+				lastJunction = junction;
+				return;
+			}
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				int next = g.neighbour(junction, d);
+				byte kind = model.kind(next);
+				if (kind == JunctionGraph.JUNCTION) {
+					reach(next, cost + 1, junction, d, stamp);
+				} else if (kind == JunctionGraph.CORRIDOR) {
+					int corridor = model.corridorOf(next);
+					int length = model.length(corridor);
+					boolean fromStart = model.towardsStart(next)
+							== BoardGraph.opposite(d);
+					if (corridor == targetCorridor) {
+						int remaining = fromStart ? model.offset(to)
+								: length - model.offset(to);
+						if (cost + remaining < best) {
+							best = cost + remaining;
+							lastJunction = junction;
+							lastExit = d;
+						}
+					}
+					int other = fromStart ? model.end(corridor)
+							: model.start(corridor);
+					reach(other, cost + length, junction, d, stamp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Turns the best path into directions by walking it square by square.
+	 *
+	 * @param model The junctions and corridors of the board.
+	 * @param from The index of the starting square.
+	 * @return The directions of the best path.
+	 */
+	private List<Direction> expand(JunctionGraph model, int from) {
+		int junctionsOnPath = 0;
+		for (int j = lastJunction; j >= 0; j = parents[j]) {
+			junctionsOnPath++;
+		}
+		int[] chain = new int[junctionsOnPath];
+		int i = junctionsOnPath;
+		for (int j = lastJunction; j >= 0; j = parents[j]) {
+			chain[--i] = j;
+		}
+
+		Direction[] path = new Direction[best];
+		int nextJunction = 0;
+		int direction;
+		if (junctionsOnPath == 0) {
+			direction = lastExit;
+		} else if (chain[0] == from) {
+			direction = leave(chain, 0);
+			nextJunction = 1;
+		} else {
+			direction = exits[chain[0]];
+		}
+		BoardGraph g = model.getGraph();
+		int current = from;
+		for (int step = 0; step < best; step++) {
+			path[step] = BoardGraph.direction(direction);
+			current = g.neighbour(current, direction);
+			if (step == best - 1) {
+				break;
+			}
+			if (model.kind(current) == JunctionGraph.JUNCTION) {
+				assert current == chain[nextJunction];
+				direction = leave(chain, nextJunction);
+				nextJunction++;
+			} else if (model.towardsStart(current)
+					== BoardGraph.opposite(direction)) {
+				direction = model.towardsEnd(current);
+			} else {
+				direction = model.towardsStart(current);
+			}
+		}
+		return Arrays.asList(path);
+	}
+
+	/**
+	 * @param chain The junctions on the best path, in order.
+	 * @param position The position of a junction in the chain.
+	 * @return The ordinal of the direction in which the junction is left.
+	 */
+	private int leave(int[] chain, int position) {
+		if (position + 1 < chain.length) {
+			return exits[chain[position + 1]];
+		}
+		return lastExit;
+	}
+
+	/**
+	 * Records a path to a junction if it is shorter than the known one.
+	 *
+	 * @param junction The index of the junction.
+	 * @param cost The length of the path.
+	 * @param parent The junction the path comes from, or -1.
+	 * @param exit The ordinal of the direction in which the parent, or the
+	 *            starting square, is left.
+	 * @param stamp The generation of the current search.
+	 */
+	private void reach(int junction, int cost, int parent, int exit,
+			int stamp) {
+		if (closed[junction] == stamp
+				|| (reached[junction] == stamp && costs[junction] <= cost)) {
+			return;
+		}
+		reached[junction] = stamp;
+		costs[junction] = cost;
+		parents[junction] = parent;
+		exits[junction] = (byte) exit;
+		push(((long) cost << COST_SHIFT) | junction);
+	}
+
+	private void push(long key) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, heapSize * 2);
+		}
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heap[parent] <= key) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = key;
+	}
+
+	private int pop() {
+		long result = heap[0];
+		long last = heap[--heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= last) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return (int) (result & SQUARE_MASK);
+	}
+
+	/**
+	 * Makes sure the buffers can hold every square of the graph. Stamps are
+	 * cleared when a different graph is searched.
+	 *
+	 * @param g The graph that is about to be searched.
+	 */
+	private void prepare(BoardGraph g) {
+		if (g == graph) {
+			return;
+		}
+		int size = g.size();
+		if (reached.length < size) {
+			reached = new int[size];
+			closed = new int[size];
+			costs = new int[size];
+			parents = new int[size];
+			exits = new byte[size];
+		} else {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+		}
+		generation = 0;
+		graph = g;
+	}
+
+	/**
+	 * @return A generation that no junction has been stamped with yet.
+	 */
+	private int nextGeneration() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			generation = 0;
+		}
+		return ++generation;
+	}
+}
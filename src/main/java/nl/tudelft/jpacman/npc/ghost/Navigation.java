@@ -1,12 +1,19 @@
 package nl.tudelft.jpacman.npc.ghost;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
 import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.SpatialIndex;
 import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.TorusGeometry;
 import nl.tudelft.jpacman.board.Unit;
 
 /**
@@ -16,14 +23,46 @@ import nl.tudelft.jpacman.board.Unit;
  */
 public final class Navigation {
 
+	/**
+	 * The distance to squares that cannot be reached.
+	 */
+	public static final int UNREACHABLE = -1;
+
+	/**
+	 * The search buffers of every thread that navigates, so that searches
+	 * by different ghosts never share state.
+	 */
+	private static final ThreadLocal<BreadthFirstSearch> SEARCH =
+			ThreadLocal.withInitial(BreadthFirstSearch::new);
+
+	/**
+	 * The A* buffers of every thread that navigates.
+	 */
+	private static final ThreadLocal<AStarSearch> A_STAR =
+			ThreadLocal.withInitial(AStarSearch::new);
+
+	/**
+	 * The junction search buffers of every thread that navigates.
+	 */
+	private static final ThreadLocal<JunctionSearch> JUNCTIONS =
+			ThreadLocal.withInitial(JunctionSearch::new);
+
+	/**
+	 * The hierarchical search buffers of every thread that navigates.
+	 */
+	private static final ThreadLocal<HierarchicalSearch> CHUNKS =
+			ThreadLocal.withInitial(HierarchicalSearch::new);
+
 	private Navigation() {
 	}
 	
 	/**
-	 * Calculates the shortest path. This is done by BFS. This search ensures
+	 * Calculates the shortest path. This is done by BFS over the
+	 * {@link BoardGraph} of the board both squares are on. This search ensures
 	 * the traveller is allowed to occupy the squares on the way, or returns the
 	 * shortest path to the square regardless of terrain if no traveller is
-	 * specified.
+	 * specified. Such terrain-free paths are read from the
+	 * {@link TorusGeometry} of the board instead when it wraps around.
 	 * 
 	 * @param from
 	 *            The starting square.
@@ -43,38 +82,408 @@ public final class Navigation {
 		if (from == to) {
 			return new ArrayList<>();
 		}
+		if (traveller == null) {
+			List<Direction> path = geometricPath(from, to);
+			if (path != null) {
+				return path;
+			}
+		}
+		BoardGraph graph = graphOf(from);
+		if (graph == null) {
+			return null;
+		}
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		List<Direction> path = tablePath(graph, source, destination,
+				traveller);
+		if (path != null) {
+			return path;
+		}
+		return SEARCH.get().shortestPath(graph, source, destination,
+				traveller);
+	}
 
-		List<Node> targets = new ArrayList<>();
-		Set<Square> visited = new HashSet<>();
-		targets.add(new Node(null, from, null));
-		while (!targets.isEmpty()) {
-			Node n = targets.remove(0);
-			Square s = n.getSquare();
-			if (s == to) {
-				return n.getPath();
+	/**
+	 * Calculates the shortest path with an A* search. The search is guided
+	 * towards the destination by the Manhattan distance on the board, taking
+	 * into account that the edges of the board wrap around. It finds paths
+	 * just as long as {@link #shortestPath(Square, Square, Unit)}, but
+	 * expands far fewer squares when the destination is close by on a large
+	 * board. Terrain-free paths are read from the {@link TorusGeometry} of
+	 * the board when it wraps around.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination. If
+	 *            traveller is set to <code>null</code>, this method will ignore
+	 *            terrain and find the shortest path whether it can actually be
+	 *            reached or not.
+	 * @return The shortest path to the destination or <code>null</code> if no
+	 *         such path could be found. When the destination is the current
+	 *         square, an empty list is returned.
+	 */
+	public static List<Direction> aStarPath(Square from, Square to,
+			Unit traveller) {
+		if (from == to) {
+			return new ArrayList<>();
+		}
+		if (traveller == null) {
+			List<Direction> path = geometricPath(from, to);
+			if (path != null) {
+				return path;
 			}
-			visited.add(s);
-			addNewTargets(traveller, targets, visited, n, s);
 		}
-		return null;
+		BoardGraph graph = graphOf(from);
+		if (graph == null) {
+			return null;
+		}
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		List<Direction> path = tablePath(graph, source, destination,
+				traveller);
+		if (path != null) {
+			return path;
+		}
+		return A_STAR.get().shortestPath(graph, source, destination,
+				traveller);
+	}
+
+	/**
+	 * Calculates the shortest path over the {@link JunctionGraph} installed
+	 * for the board, which only branches at junctions and crosses corridors
+	 * in a single step. The path of junctions is expanded back into a
+	 * direction for every square. When the board has a {@link DistanceTable}
+	 * for the traveller the path is read from that instead, and when no
+	 * junction graph applies to the traveller this falls back to
+	 * {@link #aStarPath(Square, Square, Unit)}.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The shortest path to the destination or <code>null</code> if no
+	 *         such path could be found. When the destination is the current
+	 *         square, an empty list is returned.
+	 */
+	public static List<Direction> junctionPath(Square from, Square to,
+			Unit traveller) {
+		if (from == to) {
+			return new ArrayList<>();
+		}
+		Board board = from.getBoard();
+		JunctionGraph model = board == null || traveller == null ? null
+				: JunctionGraph.forBoard(board);
+		if (model == null || !model.appliesTo(traveller)) {
+			return aStarPath(from, to, traveller);
+		}
+		BoardGraph graph = model.getGraph();
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		List<Direction> path = tablePath(graph, source, destination,
+				traveller);
+		if (path != null) {
+			return path;
+		}
+		if (model.kind(source) == JunctionGraph.BLOCKED) {
+			return A_STAR.get().shortestPath(graph, source, destination,
+					traveller);
+		}
+		return JUNCTIONS.get().shortestPath(model, source, destination);
+	}
+
+	/**
+	 * Calculates the first part of a path over the {@link ChunkGraph}
+	 * installed for the board. The route is planned from map to map over the
+	 * entrances between them, and only the part up to the first entrance is
+	 * returned, so the cost of a query grows with the distance to the
+	 * destination rather than with the size of the board. The route may be a
+	 * few squares longer than the shortest one. When the board has a
+	 * {@link DistanceTable} for the traveller the whole shortest path is read
+	 * from that instead, and when no chunk graph applies to the traveller
+	 * this falls back to {@link #aStarPath(Square, Square, Unit)}.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The first directions of a path to the destination, ending at
+	 *         an entrance or the destination, or <code>null</code> if no
+	 *         such path could be found. When the destination is the current
+	 *         square, an empty list is returned.
+	 */
+	public static List<Direction> hierarchicalPath(Square from, Square to,
+			Unit traveller) {
+		if (from == to) {
+			return new ArrayList<>();
+		}
+		Board board = from.getBoard();
+		ChunkGraph model = board == null || traveller == null ? null
+				: ChunkGraph.forBoard(board);
+		if (model == null || !model.appliesTo(traveller)) {
+			return aStarPath(from, to, traveller);
+		}
+		BoardGraph graph = model.getGraph();
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		List<Direction> path = tablePath(graph, source, destination,
+				traveller);
+		if (path != null) {
+			return path;
+		}
+		return CHUNKS.get().firstLeg(model, source, destination);
 	}
 
-	private static void addNewTargets(Unit traveller, List<Node> targets,
-			Set<Square> visited, Node n, Square s) {
-		for (Direction d : Direction.values()) {
-			Square target = s.getSquareAt(d);
-			if (!visited.contains(target)
-					&& (traveller == null || target
-							.isAccessibleTo(traveller))) {
-				targets.add(new Node(d, target, n));
+	/**
+	 * Calculates the length of the shortest path, without building the path.
+	 * The length is read from the {@link TorusGeometry} of the board when no
+	 * traveller is specified, from the {@link DistanceTable} when one is
+	 * installed for the traveller, and found with an A* search otherwise.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The length of the shortest path to the destination, or
+	 *         {@link #UNREACHABLE} if no such path could be found.
+	 */
+	public static int distance(Square from, Square to, Unit traveller) {
+		if (from == to) {
+			return 0;
+		}
+		Board board = from.getBoard();
+		if (board == null) {
+			return UNREACHABLE;
+		}
+		if (traveller == null && to.getBoard() == board) {
+			TorusGeometry geometry = board.getTorusGeometry();
+			if (geometry != null) {
+				return geometry.distance(from, to);
+			}
+		}
+		BoardGraph graph = board.getGraph();
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return UNREACHABLE;
+		}
+		DistanceTable table = tableFor(graph, board, traveller);
+		if (table != null) {
+			return table.distance(source, destination);
+		}
+		return A_STAR.get().distance(graph, source, destination, traveller);
+	}
+
+	/**
+	 * Calculates the first step of the shortest path, without building the
+	 * path. The step is found the same way as
+	 * {@link #distance(Square, Square, Unit)} finds the length.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The first direction of the shortest path to the destination, or
+	 *         <code>null</code> if the destination is the current square or
+	 *         no such path could be found.
+	 */
+	public static Direction firstStep(Square from, Square to, Unit traveller) {
+		if (from == to) {
+			return null;
+		}
+		Board board = from.getBoard();
+		if (board == null) {
+			return null;
+		}
+		if (traveller == null && to.getBoard() == board) {
+			TorusGeometry geometry = board.getTorusGeometry();
+			if (geometry != null) {
+				return geometry.firstStep(from, to);
 			}
 		}
+		BoardGraph graph = board.getGraph();
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		DistanceTable table = tableFor(graph, board, traveller);
+		if (table != null) {
+			return table.firstStep(source, destination);
+		}
+		return stepOf(A_STAR.get().firstStep(graph, source, destination,
+				traveller));
+	}
+
+	/**
+	 * Calculates the first step of a path over the {@link ChunkGraph}
+	 * installed for the board, without building the first leg. The step is
+	 * the first direction of {@link #hierarchicalPath(Square, Square, Unit)},
+	 * and falls back the same way to {@link DistanceTable} and A* queries.
+	 *
+	 * @param from
+	 *            The starting square.
+	 * @param to
+	 *            The destination.
+	 * @param traveller
+	 *            The traveller attempting to reach the destination, or
+	 *            <code>null</code> to ignore terrain.
+	 * @return The first direction of a path to the destination, or
+	 *         <code>null</code> if the destination is the current square or
+	 *         no such path could be found.
+	 */
+	public static Direction hierarchicalStep(Square from, Square to,
+			Unit traveller) {
+		if (from == to) {
+			return null;
+		}
+		Board board = from.getBoard();
+		ChunkGraph model = board == null || traveller == null ? null
+				: ChunkGraph.forBoard(board);
+		if (model == null || !model.appliesTo(traveller)) {
+			return firstStep(from, to, traveller);
+		}
+		BoardGraph graph = model.getGraph();
+		int source = graph.indexOf(from);
+		int destination = graph.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		DistanceTable table = tableFor(graph, board, traveller);
+		if (table != null) {
+			return table.firstStep(source, destination);
+		}
+		return stepOf(CHUNKS.get().firstStep(model, source, destination));
+	}
+
+	/**
+	 * @param ordinal The ordinal of a direction, or -1.
+	 * @return The direction, or <code>null</code> for -1.
+	 */
+	private static Direction stepOf(int ordinal) {
+		if (ordinal < 0) {
+			return null;
+		}
+		return BoardGraph.direction(ordinal);
+	}
+
+	/**
+	 * @param graph The graph of the board.
+	 * @param board The board.
+	 * @param traveller The traveller, or <code>null</code>.
+	 * @return The {@link DistanceTable} of the board if it is installed for
+	 *         the traveller and still matches the graph, or <code>null</code>.
+	 */
+	private static DistanceTable tableFor(BoardGraph graph, Board board,
+			Unit traveller) {
+		if (traveller == null) {
+			return null;
+		}
+		DistanceTable table = DistanceTable.forBoard(board);
+		if (table == null || table.getGraph() != graph
+				|| !table.appliesTo(traveller)) {
+			return null;
+		}
+		return table;
+	}
+
+	/**
+	 * Reads the shortest path from the {@link DistanceTable} of the board, if
+	 * one is installed for the traveller and still matches the graph.
+	 *
+	 * @param graph The graph of the board.
+	 * @param source The index of the starting square.
+	 * @param destination The index of the destination.
+	 * @param traveller The traveller, or <code>null</code>.
+	 * @return The shortest path, or <code>null</code> if the table cannot
+	 *         answer the query or the destination cannot be reached.
+	 */
+	private static List<Direction> tablePath(BoardGraph graph, int source,
+			int destination, Unit traveller) {
+		DistanceTable table = tableFor(graph,
+				graph.squareAt(source).getBoard(), traveller);
+		if (table == null) {
+			return null;
+		}
+		int length = table.distance(source, destination);
+		if (length <= 0) {
+			return null;
+		}
+		Direction[] path = new Direction[length];
+		int current = source;
+		for (int i = 0; i < length; i++) {
+			Direction step = table.firstStep(current, destination);
+			path[i] = step;
+			current = graph.neighbour(current, step.ordinal());
+		}
+		return Arrays.asList(path);
+	}
+
+	/**
+	 * Reads a terrain-free path from the {@link TorusGeometry} of the board.
+	 *
+	 * @param from The starting square.
+	 * @param to The destination.
+	 * @return The shortest path regardless of terrain, or <code>null</code>
+	 *         if the board is not a torus or the squares are not on the same
+	 *         board.
+	 */
+	private static List<Direction> geometricPath(Square from, Square to) {
+		Board board = from.getBoard();
+		if (board == null || to.getBoard() != board) {
+			return null;
+		}
+		TorusGeometry geometry = board.getTorusGeometry();
+		if (geometry == null) {
+			return null;
+		}
+		return geometry.path(from, to);
 	}
 
 	/**
-	 * Finds the nearest unit of the given type and returns its location. This
-	 * method will perform a breadth first search starting from the given
-	 * square.
+	 * @param square A square.
+	 * @return The graph of the board the square is on, or <code>null</code>
+	 *         if it is not on a board.
+	 */
+	private static BoardGraph graphOf(Square square) {
+		Board board = square.getBoard();
+		if (board == null) {
+			return null;
+		}
+		return board.getGraph();
+	}
+
+	/**
+	 * Finds the nearest unit of the given type and returns its location. The
+	 * unit is looked up in the {@link SpatialIndex} of the board; for squares
+	 * that are not on a board this method will perform a breadth first search
+	 * starting from the given square.
 	 * 
 	 * @param type
 	 *            The type of unit to search for.
@@ -85,21 +494,25 @@ public final class Navigation {
 	 */
 	public static Unit findNearest(Class<? extends Unit> type,
 			Square currentLocation) {
-		List<Square> toDo = new ArrayList<>();
-		Set<Square> visited = new HashSet<>();
+		Board board = currentLocation.getBoard();
+		if (board != null) {
+			return board.getSpatialIndex().nearest(type, currentLocation);
+		}
+		Queue<Square> toDo = new ArrayDeque<>();
+		Set<Square> seen = new HashSet<>();
 
 		toDo.add(currentLocation);
+		seen.add(currentLocation);
 
 		while (!toDo.isEmpty()) {
-			Square square = toDo.remove(0);
+			Square square = toDo.remove();
 			Unit unit = findUnit(type, square);
 			if (unit != null) {
 				return unit;
 			}
-			visited.add(square);
 			for (Direction d : Direction.values()) {
 				Square newTarget = square.getSquareAt(d);
-				if (!visited.contains(newTarget) && !toDo.contains(newTarget)) {
+				if (newTarget != null && seen.add(newTarget)) {
 					toDo.add(newTarget);
 				}
 			}
@@ -115,86 +528,6 @@ public final class Navigation {
 	 *         <code>null</code> of none does.
 	 */
 	public static Unit findUnit(Class<? extends Unit> type, Square square) {
-		for (Unit u : square.getOccupants()) {
-			if (type.isInstance(u)) {
-				return u;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * Helper class to keep track of the path.
-	 * 
-	 * @author Jeroen Roosen 
-	 */
-	private static final class Node {
-
-		/**
-		 * The direction for this node, which is <code>null</code> for the root
-		 * node.
-		 */
-		private final Direction direction;
-
-		/**
-		 * The parent node, which is <code>null</code> for the root node.
-		 */
-		private final Node parent;
-
-		/**
-		 * The square associated with this node.
-		 */
-		private final Square square;
-
-		/**
-		 * Creates a new node.
-		 * @param d The direction, which is <code>null</code>
-		 * or the root node.
-		 * @param s The square.
-		 * @param p The parent node, which is <code>null</code>
-		 *  for the root node.
-		 */
-		private Node(Direction d, Square s, Node p) {
-			this.direction = d;
-			this.square = s;
-			this.parent = p;
-		}
-
-		/**
-		 * @return The direction for this node, or <code>null</code>
-		 * if this node is a root node.
-		 */
-		private Direction getDirection() {
-			return direction;
-		}
-
-		/**
-		 * @return The square for this node.
-		 */
-		private Square getSquare() {
-			return square;
-		}
-
-		/**
-		 * @return The parent node, or <code>null</code> if this node is a root
-		 *         node.
-		 */
-		private Node getParent() {
-			return parent;
-		}
-
-		/**
-		 * Returns the list of values from the root of the tree to this node.
-		 * 
-		 * @return The list of values from the root of the tree to this node.
-		 */
-		private List<Direction> getPath() {
-			if (getParent() == null) {
-				return new ArrayList<>();
-			}
-			List<Direction> path = parent.getPath();
-			path.add(getDirection());
-			return path;
-		}
+		return square.firstOccupant(type);
 	}
 }
@@ -0,0 +1,346 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+
+/**
+ * A cache of the paths planned between pairs of squares, shared by the
+ * ghosts of a level. A path is planned with
+ * {@link Navigation#hierarchicalPath(Square, Square, Unit)} and stored
+ * packed at two bits per direction, keyed by its starting square, its
+ * destination and the class of the traveller, as travellers of the same
+ * class may occupy the same squares.
+ * <p>
+ * A traveller follows a path with a {@link Cursor}, taking a limited amount
+ * of steps before planning again, so that it keeps up with a moving
+ * destination without planning on every move. Paths are dropped when the
+ * layout of the board changes and when a cursor finds that the next square
+ * on a path can no longer be occupied.
+ * </p>
+ */
+public final class PathCache {
+
+	/**
+	 * The amount of steps a cursor follows a path before planning again,
+	 * unless specified otherwise.
+	 */
+	public static final int DEFAULT_STEPS = 4;
+
+	/**
+	 * The largest amount of paths kept per class of traveller; beyond that
+	 * all its paths are dropped.
+	 */
+	private static final int MAXIMUM_PATHS = 4096;
+
+	/**
+	 * The amount of bits of a packed direction.
+	 */
+	private static final int BITS_PER_STEP = 2;
+
+	/**
+	 * The amount of directions packed in a word.
+	 */
+	private static final int STEPS_PER_WORD = Long.SIZE / BITS_PER_STEP;
+
+	/**
+	 * The mask of a packed direction.
+	 */
+	private static final long STEP_MASK = 3L;
+
+	/**
+	 * The paths of every class of traveller, keyed by starting square and
+	 * destination.
+	 */
+	private final Map<Class<?>, Map<Long, Path>> paths =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * The amount of steps a cursor follows a path before planning again.
+	 */
+	private final int steps;
+
+	/**
+	 * The graph all cached paths are on.
+	 */
+	private volatile BoardGraph graph;
+
+	/**
+	 * The amount of paths that were found in the cache.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * The amount of paths that had to be planned.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates an empty cache whose cursors take {@link #DEFAULT_STEPS}
+	 * steps before planning again.
+	 */
+	public PathCache() {
+		this(DEFAULT_STEPS);
+	}
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param steps
+	 *            The amount of steps a cursor follows a path before planning
+	 *            again.
+	 */
+	public PathCache(int steps) {
+		assert steps > 0;
+		this.steps = steps;
+	}
+
+	/**
+	 * Returns the next step of a traveller towards a destination. The cursor
+	 * keeps following the path it followed before as long as that path leads
+	 * to the same destination, the traveller took its previous step and it
+	 * has not taken the maximum amount of steps; otherwise the path from the
+	 * current square is read from the cache, or planned and cached.
+	 *
+	 * @param cursor
+	 *            The position of the traveller on the path it follows.
+	 * @param from
+	 *            The square of the traveller.
+	 * @param to
+	 *            The destination.
+	 * @param traveller
+	 *            The traveller.
+	 * @return The next step, or <code>null</code> if the traveller is on the
+	 *         destination or cannot reach it.
+	 */
+	public Direction next(Cursor cursor, Square from, Square to,
+			Unit traveller) {
+		if (cursor.path != null && cursor.destination == to
+				&& cursor.expected == from && cursor.taken < steps) {
+			Direction step = cursor.advance(traveller);
+			if (step != null) {
+				return step;
+			}
+		}
+		cursor.path = null;
+		for (int attempt = 0; attempt < 2; attempt++) {
+			Path path = lookup(from, to, traveller);
+			if (path == null) {
+				return null;
+			}
+			cursor.path = path;
+			cursor.position = 0;
+			cursor.taken = 0;
+			cursor.expected = from;
+			cursor.destination = to;
+			Direction step = cursor.advance(traveller);
+			if (step != null) {
+				return step;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Drops all paths.
+	 */
+	public void clear() {
+		for (Map<Long, Path> cached : paths.values()) {
+			for (Path path : cached.values()) {
+				path.valid = false;
+			}
+		}
+		paths.clear();
+	}
+
+	/**
+	 * @return The amount of paths that were found in the cache.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return The amount of paths that had to be planned.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return The amount of paths currently cached.
+	 */
+	public int size() {
+		int result = 0;
+		for (Map<Long, Path> cached : paths.values()) {
+			result += cached.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a path from the cache, or plans and caches it.
+	 *
+	 * @param from The starting square.
+	 * @param to The destination.
+	 * @param traveller The traveller.
+	 * @return The path, or <code>null</code> if the destination cannot be
+	 *         reached or is the starting square. A path planned after the
+	 *         {@link SearchBudget} ran out may only lead part of the way and
+	 *         is not cached.
+	 */
+	private Path lookup(Square from, Square to, Unit traveller) {
+		Board board = from.getBoard();
+		if (board == null || from == to) {
+			return null;
+		}
+		BoardGraph current = board.getGraph();
+		if (current != graph) {
+			synchronized (this) {
+				if (current != graph) {
+					clear();
+					graph = current;
+				}
+			}
+		}
+		int source = current.indexOf(from);
+		int destination = current.indexOf(to);
+		if (source < 0 || destination < 0) {
+			return null;
+		}
+		Map<Long, Path> cached = paths.computeIfAbsent(traveller.getClass(),
+				c -> new ConcurrentHashMap<>());
+		Long key = (long) source * current.size() + destination;
+		Path path = cached.get(key);
+		if (path != null && path.valid) {
+			hits.incrementAndGet();
+			return path;
+		}
+		misses.incrementAndGet();
+		List<Direction> directions = Navigation.hierarchicalPath(from, to,
+				traveller);
+		if (directions == null || directions.isEmpty()) {
+			return null;
+		}
+		path = new Path(current, directions);
+		if (SearchBudget.isCurrentExhausted()) {
+			return path;
+		}
+		if (cached.size() >= MAXIMUM_PATHS) {
+			cached.clear();
+		}
+		cached.put(key, path);
+		return path;
+	}
+
+	/**
+	 * A path packed at two bits per direction.
+	 */
+	private static final class Path {
+
+		/**
+		 * The graph of the board the path is on.
+		 */
+		private final BoardGraph graph;
+
+		/**
+		 * The ordinals of the directions, packed from the lowest bits up.
+		 */
+		private final long[] words;
+
+		/**
+		 * The amount of directions.
+		 */
+		private final int length;
+
+		/**
+		 * Whether the path may still be followed.
+		 */
+		private volatile boolean valid = true;
+
+		private Path(BoardGraph graph, List<Direction> directions) {
+			this.graph = graph;
+			this.length = directions.size();
+			this.words = new long[(length + STEPS_PER_WORD - 1)
+					/ STEPS_PER_WORD];
+			for (int i = 0; i < length; i++) {
+				words[i / STEPS_PER_WORD] |= (long) directions.get(i)
+						.ordinal() << (i % STEPS_PER_WORD * BITS_PER_STEP);
+			}
+		}
+
+		/**
+		 * @param i The position of a step on the path.
+		 * @return The ordinal of the direction of that step.
+		 */
+		private int step(int i) {
+			return (int) (words[i / STEPS_PER_WORD]
+					>>> (i % STEPS_PER_WORD * BITS_PER_STEP) & STEP_MASK);
+		}
+	}
+
+	/**
+	 * The position of a traveller on the path it follows. Every traveller
+	 * needs a cursor of its own.
+	 */
+	public static final class Cursor {
+
+		/**
+		 * The path being followed, or <code>null</code>.
+		 */
+		private Path path;
+
+		/**
+		 * The position of the next step on the path.
+		 */
+		private int position;
+
+		/**
+		 * The amount of steps taken since the path was read.
+		 */
+		private int taken;
+
+		/**
+		 * The square the traveller should be on before the next step.
+		 */
+		private Square expected;
+
+		/**
+		 * The destination of the path being followed.
+		 */
+		private Square destination;
+
+		/**
+		 * Takes the next step on the path, if the path is still valid and the
+		 * traveller may occupy the square it leads to.
+		 *
+		 * @param traveller The traveller.
+		 * @return The next step, or <code>null</code> if the path cannot be
+		 *         followed any further.
+		 */
+		private Direction advance(Unit traveller) {
+			if (!path.valid || position >= path.length
+					|| expected.getBoard() == null
+					|| expected.getBoard().getGraph() != path.graph) {
+				return null;
+			}
+			Direction step = BoardGraph.direction(path.step(position));
+			Square next = expected.getSquareAt(step);
+			if (!next.isAccessibleTo(traveller)) {
+				path.valid = false;
+				return null;
+			}
+			position++;
+			taken++;
+			expected = next;
+			return step;
+		}
+	}
+}
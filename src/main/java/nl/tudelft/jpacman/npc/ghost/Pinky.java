@@ -1,6 +1,5 @@
 package nl.tudelft.jpacman.npc.ghost;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -73,6 +72,12 @@ public class Pinky extends Ghost {
 	 */
 	private static final int SLOW_MOVE_INTERVAL = 500;
 
+	/**
+	 * The planner that keeps the path to the square ahead of Pac-Man up to
+	 * date while both move.
+	 */
+	private final IncrementalPlanner planner = new IncrementalPlanner(this);
+
 	/**
 	 * Creates a new "Pinky", a.k.a. "Speedy".
 	 * 
@@ -114,22 +119,53 @@ public class Pinky extends Ghost {
 			return randomMoveAtCrossroads();
 		}
 
+		Direction corridor = corridorMove();
+		if (corridor != null) {
+			return corridor;
+		}
+
 		Unit player = Navigation.findNearest(Player.class, getSquare());
 		if (player == null) {
 			return randomMove();
 		}
 
+		Direction step = planner.nextStep(getSquare(), ahead(player));
+		if (step != null) {
+			return step;
+		}
+		return fallbackMove();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>
+	 * Pinky heads for the square four squares ahead of Pac-Man, unless she
+	 * is feared.
+	 * </p>
+	 */
+	@Override
+	protected Square chaseTarget() {
+		if (this.getFearedMode()) {
+			return null;
+		}
+		Unit player = Navigation.findNearest(Player.class, getSquare());
+		if (player == null) {
+			return null;
+		}
+		return ahead(player);
+	}
+
+	/**
+	 * @param player Pac-Man.
+	 * @return The square four squares ahead of Pac-Man.
+	 */
+	private static Square ahead(Unit player) {
 		Direction targetDirection = player.getDirection();
 		Square destination = player.getSquare();
 		for (int i = 0; i < SQUARES_AHEAD; i++) {
 			destination = destination.getSquareAt(targetDirection);
 		}
-
-		List<Direction> path = Navigation.shortestPath(getSquare(),
-				destination, this);
-		if (path != null && !path.isEmpty()) {
-			return path.get(0);
-		}
-		return randomMove();
+		return destination;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.util.function.Supplier;
+
+/**
+ * A limit on the amount of squares the searches of a single decision may
+ * expand. While a decision runs with a budget, the searches of
+ * {@link Navigation}, the {@link FlowField}, the {@link IncrementalPlanner}
+ * and the {@link PathCache} on the same thread stop once the budget is
+ * spent. A search that is stopped answers with the best it found so far
+ * where that makes sense, such as a path towards the square closest to the
+ * destination, and otherwise finds nothing, so that the ghost falls back to
+ * a random move.
+ * <p>
+ * The budget is counted in squares rather than in time, so that the work of
+ * a decision is bounded regardless of the size of the board while its
+ * outcome stays the same from one run to the next.
+ * </p>
+ */
+public final class SearchBudget {
+
+	/**
+	 * The budget of the decision running on every thread, if any.
+	 */
+	private static final ThreadLocal<SearchBudget> CURRENT =
+			new ThreadLocal<>();
+
+	/**
+	 * The amount of squares the searches may expand.
+	 */
+	private final int squares;
+
+	/**
+	 * The amount of squares expanded so far.
+	 */
+	private int spent;
+
+	/**
+	 * Whether a search was stopped because the budget was spent.
+	 */
+	private boolean exhausted;
+
+	/**
+	 * Creates a budget.
+	 *
+	 * @param squares
+	 *            The amount of squares the searches may expand.
+	 */
+	public SearchBudget(int squares) {
+		assert squares > 0;
+		this.squares = squares;
+	}
+
+	/**
+	 * Runs a decision within this budget on the current thread.
+	 *
+	 * @param <T> The type of the decision.
+	 * @param decision
+	 *            The decision to run.
+	 * @return The outcome of the decision.
+	 */
+	public <T> T run(Supplier<T> decision) {
+		SearchBudget previous = CURRENT.get();
+		CURRENT.set(this);
+		try {
+			return decision.get();
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> iff a search was stopped because this budget
+	 *         was spent.
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	/**
+	 * @return The amount of squares expanded within this budget.
+	 */
+	public int getSpent() {
+		return spent;
+	}
+
+	/**
+	 * @return The amount of squares a search on the current thread may still
+	 *         expand, or {@link Integer#MAX_VALUE} if no budget applies.
+	 */
+	static int remaining() {
+		SearchBudget budget = CURRENT.get();
+		if (budget == null) {
+			return Integer.MAX_VALUE;
+		}
+		return Math.max(budget.squares - budget.spent, 0);
+	}
+
+	/**
+	 * Charges the work of a search to the budget of the current thread, if
+	 * any.
+	 *
+	 * @param expanded The amount of squares the search expanded.
+	 * @param stopped Whether the search was stopped for lack of budget.
+	 */
+	static void spend(int expanded, boolean stopped) {
+		SearchBudget budget = CURRENT.get();
+		if (budget != null) {
+			budget.spent += expanded;
+			budget.exhausted |= stopped;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> iff a search of the decision running on the
+	 *         current thread was stopped for lack of budget.
+	 */
+	static boolean isCurrentExhausted() {
+		SearchBudget budget = CURRENT.get();
+		return budget != null && budget.exhausted;
+	}
+}
@@ -9,11 +9,9 @@ import javax.swing.JPanel;
 
 import nl.tudelft.jpacman.Launcher;
 import nl.tudelft.jpacman.board.Board;
-import nl.tudelft.jpacman.board.Direction;
 import nl.tudelft.jpacman.board.Square;
 import nl.tudelft.jpacman.board.Unit;
 import nl.tudelft.jpacman.game.Game;
-import nl.tudelft.jpacman.level.Level;
 import nl.tudelft.jpacman.level.Player;
 import nl.tudelft.jpacman.level.Bridge;
 
@@ -69,8 +67,8 @@ class BoardPanel extends JPanel {
 
 		Board board = game.getLevel().getBoard();
 
-		int w = board.getWidth() * SQUARE_SIZE;
-		int h = board.getHeight() * SQUARE_SIZE;
+		int w = board.getWidthOfOneMap() * SQUARE_SIZE;
+		int h = board.getHeightOfOneMap() * SQUARE_SIZE;
 
 		Dimension size = new Dimension(w, h);
 		setMinimumSize(size);
@@ -113,7 +111,9 @@ class BoardPanel extends JPanel {
 	}
 
 	/**
-	 * Renders the board on the given graphics context to the given dimensions.
+	 * Renders the part of the board around the player on the given graphics
+	 * context to the given dimensions. The board is grown by the
+	 * {@link nl.tudelft.jpacman.level.WorldStreamer} of the level, not here.
 	 * @param board The board to render.
 	 * @param g The graphics context to draw on.
 	 * @param window The dimensions to scale the rendered board to.
@@ -123,43 +123,33 @@ class BoardPanel extends JPanel {
 		int cellH;
 		if(this.first)
 		{
-			this.scalex = board.getWidth();
-			this.scaley = board.getHeight();
+			this.scalex = board.getWidthOfOneMap();
+			this.scaley = board.getHeightOfOneMap();
 			this.first = false;
 		}
 		cellW = window.width / this.scalex;
 		cellH = window.height / this.scaley;
 		Player pl = this.game.getPlayers().get(0);
-		Square posPlayer = pl.getSquare();
 
 		g.setColor(BACKGROUND_COLOR);
 		g.fillRect(0, 0, window.width, window.height);
 
-		int X = posPlayer.getCoordX();
-		int Y = posPlayer.getCoordY();
-		for (int y = Y-15; y < Y+6; y++)
-		{
-			for (int x = X-11; x < X+12; x++)
+		synchronized (board) {
+			Square posPlayer = pl.getSquare();
+			int X = posPlayer.getCoordX();
+			int Y = posPlayer.getCoordY();
+			for (int y = Y-15; y < Y+6; y++)
 			{
-				int cellX = ((this.scalex/2 - posPlayer.getCoordX()) + x) * cellW;
-				int cellY = ((((int) (this.scaley/1.4)) - posPlayer.getCoordY()) + y) * cellH;
-				Square square = board.squareAt(x, y);
-				render(square, g, cellX, cellY, cellW, cellH);
-			}
-		}
-		Level lvl = Level.getLevel();
-		if(lvl.isInProgress()) {
-			if (posPlayer.getCoordX() > board.getWidth() - 13) {
-				board.extend(Direction.EAST);
-			}
-			if (posPlayer.getCoordX() < 13) {
-				board.extend(Direction.WEST);
-			}
-			if (posPlayer.getCoordY() > board.getHeight() - 12) {
-				board.extend(Direction.SOUTH);
-			}
-			if (posPlayer.getCoordY() < 18) {
-				board.extend(Direction.NORTH);
+				for (int x = X-11; x < X+12; x++)
+				{
+					if (!board.withinBorders(x, y)) {
+						continue;
+					}
+					int cellX = ((this.scalex/2 - X) + x) * cellW;
+					int cellY = ((((int) (this.scaley/1.4)) - Y) + y) * cellH;
+					Square square = board.squareAt(x, y);
+					render(square, g, cellX, cellY, cellW, cellH);
+				}
 			}
 		}
 	}
@@ -0,0 +1,193 @@
+package nl.tudelft.jpacman.board;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that chunks are stitched to their neighbours along the seams only,
+ * and that the squares get the coordinates of their place in the world.
+ */
+public class ChunkedWorldTest {
+
+	private static final int WIDTH = 3;
+
+	private static final int HEIGHT = 2;
+
+	private Board board;
+
+	private ChunkedWorld world;
+
+	/**
+	 * Creates a world of a single chunk.
+	 */
+	@Before
+	public void setUp() {
+		board = new Board(chunk());
+		world = new ChunkedWorld(board, WIDTH, HEIGHT);
+	}
+
+	/**
+	 * Verifies that the squares along the seam of two chunks are linked both
+	 * ways, and that the outer edges wrap around within their chunk.
+	 */
+	@Test
+	public void testSeams() {
+		Square[][] west = chunk();
+		Square[][] east = chunk();
+		world.add(0, 0, west);
+		world.add(1, 0, east);
+		world.place();
+
+		for (int y = 0; y < HEIGHT; y++) {
+			assertSame(east[0][y], west[WIDTH - 1][y].getSquareAt(Direction.EAST));
+			assertSame(west[WIDTH - 1][y], east[0][y].getSquareAt(Direction.WEST));
+			assertSame(west[WIDTH - 1][y], west[0][y].getSquareAt(Direction.WEST));
+			assertSame(east[0][y], east[WIDTH - 1][y].getSquareAt(Direction.EAST));
+		}
+		assertSame(west[2][0], west[1][0].getSquareAt(Direction.EAST));
+		assertSame(west[1][1], west[1][0].getSquareAt(Direction.SOUTH));
+		assertEquals(2, world.size());
+		assertEquals(2 * WIDTH, world.getWidth());
+		assertSame(east[1][1], world.squareAt(WIDTH + 1, 1));
+		assertEquals(WIDTH + 1, east[1][1].getCoordX());
+		assertSame(board, east[1][1].getBoard());
+	}
+
+	/**
+	 * Verifies that adding a chunk on the left moves the coordinates of the
+	 * squares already present, and that the grid follows.
+	 */
+	@Test
+	public void testAddOnTheLeft() {
+		Square[][] first = chunk();
+		Square[][] second = chunk();
+		world.add(0, 0, first);
+		world.add(-1, 0, second);
+		world.place();
+
+		assertEquals(WIDTH, first[0][1].getCoordX());
+		assertEquals(1, first[0][1].getCoordY());
+		assertEquals(0, second[0][0].getCoordX());
+		Square[][] grid = world.layout().toGrid();
+		assertSame(first[2][1], grid[WIDTH + 2][1]);
+		assertSame(second[2][1], grid[2][1]);
+	}
+
+	/**
+	 * Verifies that rows can be wrapped around both ways, and an outer edge
+	 * one way.
+	 */
+	@Test
+	public void testWrap() {
+		Square[][] left = chunk();
+		Square[][] right = chunk();
+		world.add(0, 0, left);
+		world.add(1, 0, right);
+		world.wrapRows(0, 0);
+		assertSame(left[0][1], right[WIDTH - 1][1].getSquareAt(Direction.EAST));
+		assertSame(right[WIDTH - 1][1], left[0][1].getSquareAt(Direction.WEST));
+
+		world.add(0, 1, chunk());
+		world.add(1, 1, chunk());
+		world.wrapEdge(Direction.NORTH);
+		Square below = world.squareAt(WIDTH + 1, HEIGHT);
+		Square bottom = world.squareAt(WIDTH + 1, 2 * HEIGHT - 1);
+		assertSame(right[1][HEIGHT - 1], below.getSquareAt(Direction.NORTH));
+		assertSame(bottom, right[1][0].getSquareAt(Direction.NORTH));
+		assertSame(below, bottom.getSquareAt(Direction.SOUTH));
+	}
+
+	/**
+	 * Verifies that a grid is cut into chunks when it fits, and becomes a
+	 * single chunk otherwise.
+	 */
+	@Test
+	public void testCut() {
+		Square[][] grid = new Square[2 * WIDTH][2 * HEIGHT];
+		for (int x = 0; x < grid.length; x++) {
+			for (int y = 0; y < grid[x].length; y++) {
+				grid[x][y] = new BasicSquare();
+			}
+		}
+		grid[WIDTH - 1][0].link(grid[WIDTH][0], Direction.EAST);
+		ChunkedWorld cut = ChunkedWorld.of(board, grid, WIDTH, HEIGHT);
+		assertEquals(4, cut.size());
+		assertSame(grid[WIDTH][0], grid[WIDTH - 1][0].getSquareAt(Direction.EAST));
+		assertEquals(WIDTH + 1, grid[WIDTH + 1][HEIGHT].getCoordX());
+		assertEquals(HEIGHT, grid[WIDTH + 1][HEIGHT].getCoordY());
+
+		assertEquals(1, ChunkedWorld.of(board, grid, WIDTH + 1, HEIGHT).size());
+	}
+
+	/**
+	 * Verifies that a board grown chunk by chunk has the same graph as one
+	 * built from scratch, and indexes the units of the new chunks.
+	 */
+	@Test
+	public void testGrowBoard() {
+		BoardGraph graph = board.getGraph();
+		Square[][] east = chunk();
+		new BasicUnit().occupy(east[1][1]);
+		board.extend(Direction.EAST, () -> east);
+		board.extend(Direction.NORTH, ChunkedWorldTest::chunk);
+		board.extend(Direction.WEST, ChunkedWorldTest::chunk);
+
+		BoardGraph grown = board.getGraph();
+		assertNotSame(graph, grown);
+		assertEquals(board.getRevision(), grown.getRevision());
+		BoardGraph built = BoardGraph.of(board.getLayout(),
+				board.getRevision());
+		assertEquals(built.size(), grown.size());
+		assertTrue(built.jumpsAtChunkEdges());
+		assertTrue(grown.jumpsAtChunkEdges());
+		for (int i = 0; i < built.size(); i++) {
+			assertSame(built.squareAt(i), grown.squareAt(i));
+			assertEquals(built.getX(i), grown.getX(i));
+			assertEquals(built.getY(i), grown.getY(i));
+			Set<Integer> incoming = new HashSet<>();
+			for (int k = 0; k < built.incomingCount(i); k++) {
+				incoming.add(built.incomingLink(i, k));
+			}
+			Set<Integer> grownIncoming = new HashSet<>();
+			for (int k = 0; k < grown.incomingCount(i); k++) {
+				grownIncoming.add(grown.incomingLink(i, k));
+			}
+			assertEquals(incoming, grownIncoming);
+			for (int d = 0; d < BoardGraph.DIRECTIONS; d++) {
+				assertEquals(built.neighbour(i, d), grown.neighbour(i, d));
+			}
+		}
+		SpatialIndex units = board.getSpatialIndex();
+		assertSame(east[1][1], units.nearest(BasicUnit.class,
+				board.squareAt(0, 0)).getSquare());
+		int x = east[1][1].getCoordX();
+		int y = east[1][1].getCoordY();
+		for (int round = 0; round < 2; round++) {
+			assertEquals(1, units.count(BasicUnit.class));
+			assertEquals(1, units.count(BasicUnit.class, x, y, 1, 1));
+			assertEquals(1, units.count(BasicUnit.class, 0, 0,
+					board.getWidth(), board.getHeight()));
+			assertEquals(0, units.count(BasicUnit.class, x - 1, 0, 1,
+					board.getHeight()));
+			units.tally(BasicUnit.class);
+		}
+	}
+
+	private static Square[][] chunk() {
+		Square[][] squares = new Square[WIDTH][HEIGHT];
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				squares[x][y] = new BasicSquare();
+			}
+		}
+		return squares;
+	}
+}
@@ -0,0 +1,181 @@
+package nl.tudelft.jpacman.board;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the answers of a {@link SpatialIndex} against those of looking at
+ * every unit, while units occupy and leave squares.
+ */
+@SuppressWarnings("magicnumber")
+public class SpatialIndexTest {
+
+	private static final int WIDTH = 37;
+
+	private static final int HEIGHT = 29;
+
+	private Board board;
+
+	private SpatialIndex index;
+
+	private final List<Unit> units = new ArrayList<>();
+
+	/**
+	 * Sets up an empty board that is not a multiple of the cell size.
+	 */
+	@Before
+	public void setUp() {
+		Square[][] grid = new Square[WIDTH][HEIGHT];
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				grid[x][y] = new BasicSquare();
+			}
+		}
+		board = new Board(grid);
+		index = board.getSpatialIndex();
+	}
+
+	/**
+	 * Verifies that an empty board has no nearest unit.
+	 */
+	@Test
+	public void testEmpty() {
+		assertNull(index.nearest(Unit.class, board.squareAt(3, 4)));
+		assertEquals(0, index.within(Unit.class, board.squareAt(3, 4), 100)
+				.size());
+		assertEquals(0, index.count(Unit.class, 0, 0, WIDTH, HEIGHT));
+	}
+
+	/**
+	 * Verifies that a unit on a board before the index was built is found.
+	 */
+	@Test
+	public void testExistingOccupant() {
+		Square[][] grid = {{new BasicSquare(), new BasicSquare()}};
+		Unit unit = new BasicUnit();
+		unit.occupy(grid[0][1]);
+		Board small = new Board(grid);
+		assertSame(unit, small.getSpatialIndex().nearest(Unit.class,
+				grid[0][0]));
+	}
+
+	/**
+	 * Verifies the queries while units move around and leave the board.
+	 */
+	@Test
+	public void testQueries() {
+		Random random = new Random(42);
+		for (int i = 0; i < 60; i++) {
+			Unit unit = i % 3 == 0 ? new OtherUnit() : new BasicUnit();
+			unit.occupy(randomSquare(random));
+			units.add(unit);
+		}
+		for (int round = 0; round < 50; round++) {
+			Unit unit = units.get(random.nextInt(units.size()));
+			if (round % 7 == 0) {
+				unit.leaveSquare();
+			} else {
+				unit.occupy(randomSquare(random));
+			}
+			Square center = randomSquare(random);
+			assertQueries(Unit.class, center, random.nextInt(20));
+			assertQueries(OtherUnit.class, center, random.nextInt(20));
+		}
+	}
+
+	/**
+	 * Verifies the counts of a tallied type in rectangles and on the whole
+	 * board while units move around, and after the board grows.
+	 */
+	@Test
+	public void testTally() {
+		Random random = new Random(7);
+		for (int i = 0; i < 90; i++) {
+			Unit unit = i % 2 == 0 ? new OtherUnit() : new BasicUnit();
+			unit.occupy(randomSquare(random));
+			units.add(unit);
+		}
+		index.tally(OtherUnit.class);
+		for (int round = 0; round < 50; round++) {
+			Unit unit = units.get(random.nextInt(units.size()));
+			if (round % 5 == 0) {
+				unit.leaveSquare();
+			} else {
+				unit.occupy(randomSquare(random));
+			}
+			assertQueries(OtherUnit.class, randomSquare(random),
+					random.nextInt(20));
+		}
+		int before = index.count(OtherUnit.class);
+
+		Square[][] grown = new Square[WIDTH + 11][HEIGHT];
+		for (int x = 0; x < grown.length; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				grown[x][y] = x < WIDTH ? board.squareAt(x, y)
+						: new BasicSquare();
+			}
+		}
+		board.setPositions(grown);
+		board.setBoard(grown);
+		assertEquals(before, index.count(OtherUnit.class));
+		assertEquals(before, index.count(OtherUnit.class, 0, 0,
+				grown.length, HEIGHT));
+		Unit added = new OtherUnit();
+		added.occupy(board.squareAt(WIDTH + 5, 3));
+		assertEquals(before + 1, index.count(OtherUnit.class));
+		assertEquals(1, index.count(OtherUnit.class, WIDTH, 0, 11, HEIGHT));
+	}
+
+	private void assertQueries(Class<? extends Unit> type, Square center,
+			int radius) {
+		int nearest = Integer.MAX_VALUE;
+		int within = 0;
+		int counted = 0;
+		int x = center.getCoordX() - radius;
+		int y = center.getCoordY() - radius / 2;
+		for (Unit unit : units) {
+			Square square = unit.getSquare();
+			if (square == null || !type.isInstance(unit)) {
+				continue;
+			}
+			int distance = distance(center, square);
+			nearest = Math.min(nearest, distance);
+			if (distance <= radius) {
+				within++;
+			}
+			if (square.getCoordX() >= x && square.getCoordX() < x + radius
+					&& square.getCoordY() >= y
+					&& square.getCoordY() < y + radius) {
+				counted++;
+			}
+		}
+		Unit found = index.nearest(type, center);
+		assertEquals(nearest, distance(center, found.getSquare()));
+		assertEquals(within, index.within(type, center, radius).size());
+		assertEquals(counted, index.count(type, x, y, radius, radius));
+	}
+
+	private Square randomSquare(Random random) {
+		return board.squareAt(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+	}
+
+	private static int distance(Square a, Square b) {
+		int dx = Math.abs(a.getCoordX() - b.getCoordX());
+		int dy = Math.abs(a.getCoordY() - b.getCoordY());
+		return Math.min(dx, WIDTH - dx) + Math.min(dy, HEIGHT - dy);
+	}
+
+	/**
+	 * A unit of a more specific type.
+	 */
+	private static final class OtherUnit extends BasicUnit {
+	}
+}
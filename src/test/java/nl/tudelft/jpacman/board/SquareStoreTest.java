@@ -0,0 +1,126 @@
+package nl.tudelft.jpacman.board;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that squares keep their state when they become views on the store
+ * of a board, and when the grid of the board is replaced.
+ */
+public class SquareStoreTest {
+
+	private static final int WIDTH = 3;
+
+	private static final int HEIGHT = 2;
+
+	private Square[][] grid;
+
+	/**
+	 * Creates a grid of squares that are not on a board yet.
+	 */
+	@Before
+	public void setUp() {
+		grid = new Square[WIDTH][HEIGHT];
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				grid[x][y] = new BasicSquare();
+			}
+		}
+	}
+
+	/**
+	 * Verifies that links, occupants and coordinates made before the board
+	 * is created are kept, and that the squares know their board.
+	 */
+	@Test
+	public void testAttach() {
+		Unit first = mock(Unit.class);
+		Unit second = mock(Unit.class);
+		grid[1][1].put(first);
+		grid[1][1].put(second);
+		grid[0][0].link(grid[2][1], Direction.WEST);
+
+		Board board = new Board(grid);
+
+		assertSame(board, grid[1][1].getBoard());
+		assertSame(grid[2][1], board.squareAt(0, 0).getSquareAt(Direction.WEST));
+		assertNull(grid[0][0].getSquareAt(Direction.EAST));
+		assertArrayEquals(new Object[] {first, second},
+				grid[1][1].getOccupants().toArray());
+		assertEquals(2, grid[2][1].getCoordX());
+		assertEquals(1, grid[2][1].getCoordY());
+
+		grid[1][1].remove(first);
+		assertArrayEquals(new Object[] {second},
+				grid[1][1].getOccupants().toArray());
+		assertFalse(grid[1][1].put(second));
+	}
+
+	/**
+	 * Verifies that a square linked from a grid that is being replaced can
+	 * still be reached, and that all squares move to the new store.
+	 */
+	@Test
+	public void testReplaceGrid() {
+		Board board = new Board(grid);
+		Square outside = new BasicSquare();
+		grid[2][0].link(outside, Direction.EAST);
+		assertSame(outside, grid[2][0].getSquareAt(Direction.EAST));
+
+		Square[][] grown = new Square[WIDTH + 1][];
+		System.arraycopy(grid, 0, grown, 0, WIDTH);
+		grown[WIDTH] = new Square[] {outside, new BasicSquare()};
+		board.setBoard(grown);
+
+		assertSame(outside, grid[2][0].getSquareAt(Direction.EAST));
+		assertSame(board, outside.getBoard());
+		assertSame(outside, board.squareAt(WIDTH, 0));
+	}
+
+	/**
+	 * Verifies that walls and ground squares take their accessibility from
+	 * their terrain.
+	 */
+	@Test
+	public void testTerrain() {
+		BoardFactory factory = new BoardFactory(new PacManSprites());
+		Unit unit = mock(Unit.class);
+		assertTrue(factory.createGround().isAccessibleTo(unit));
+		assertFalse(factory.createWall().isAccessibleTo(unit));
+	}
+
+	/**
+	 * Verifies that squares off the board share a store per terrain until
+	 * they get state of their own, and keep their terrain when they do.
+	 */
+	@Test
+	public void testDetached() {
+		BoardFactory factory = new BoardFactory(new PacManSprites());
+		Square ground = factory.createGround();
+		Square other = factory.createGround();
+		Square wall = factory.createWall();
+		assertTrue(ground.isViewOn(other.store()));
+		assertTrue(ground.store().isDetached());
+		assertTrue(wall.store().isDetached());
+		assertNull(ground.getSquareAt(Direction.NORTH));
+		assertTrue(ground.getOccupants().isEmpty());
+
+		Unit unit = mock(Unit.class);
+		ground.put(unit);
+		assertFalse(ground.store().isDetached());
+		assertEquals(1, ground.getOccupants().size());
+		assertTrue(other.getOccupants().isEmpty());
+		assertTrue(ground.isAccessibleTo(unit));
+		assertFalse(wall.isAccessibleTo(unit));
+	}
+}
@@ -1,10 +1,19 @@
 package nl.tudelft.jpacman.board;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.tudelft.jpacman.level.Pellet;
+import nl.tudelft.jpacman.level.Player;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -72,4 +81,44 @@ public class SquareTest {
 		assertTrue(square.getCoordX() == 1);
 		assertTrue(square.getCoordY() == 2);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Assert that a list of occupants is a snapshot that does not follow
+	 * later arrivals and departures.
+	 */
+	@Test
+	public void testSnapshot() {
+		Unit o1 = mock(Unit.class);
+		Unit o2 = mock(Unit.class);
+		square.put(o1);
+		List<Unit> before = square.getOccupants();
+		square.put(o2);
+		square.remove(o1);
+
+		assertArrayEquals(new Object[] { o1 }, before.toArray());
+		assertArrayEquals(new Object[] { o2 }, square.getOccupants().toArray());
+	}
+
+	/**
+	 * Assert that the occupants are visited oldest first, and that the
+	 * oldest occupant of a type is found.
+	 */
+	@Test
+	public void testForEachAndFirstOccupant() {
+		Unit pellet = mock(Pellet.class);
+		Unit first = mock(Player.class);
+		Unit second = mock(Player.class);
+		square.put(pellet);
+		square.put(first);
+		square.put(second);
+
+		List<Unit> visited = new ArrayList<>();
+		square.forEachOccupant(visited::add);
+		assertEquals(square.getOccupants(), visited);
+		assertSame(first, square.firstOccupant(Player.class));
+		assertSame(pellet, square.firstOccupant(Unit.class));
+
+		square.remove(pellet);
+		assertNull(square.firstOccupant(Pellet.class));
+	}
+}
@@ -0,0 +1,114 @@
+package nl.tudelft.jpacman.level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.PacmanConfigurationException;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.npc.ghost.GhostFactory;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that a chunk stamped from a template has the squares and pellets
+ * of the parsed map, without touching the launcher.
+ */
+public class ChunkTemplateTest {
+
+	private static final String RESOURCE = "/boardExtendedAdd1.txt";
+
+	private BoardFactory squares;
+
+	private LevelFactory units;
+
+	/**
+	 * Creates the factories.
+	 */
+	@Before
+	public void setUp() {
+		PacManSprites sprites = new PacManSprites();
+		squares = new BoardFactory(sprites);
+		units = new LevelFactory(sprites, new GhostFactory(sprites));
+	}
+
+	/**
+	 * Verifies that a stamped chunk matches the level parsed from the same
+	 * map, square by square.
+	 *
+	 * @throws IOException if the map cannot be read.
+	 */
+	@Test
+	public void testSameAsParsed() throws IOException {
+		Launcher launcher = new Launcher();
+		launcher.setBoardToUse("/board.txt");
+		Board parsed = new MapParser(units, squares).parseMap(
+				getClass().getResourceAsStream(RESOURCE)).getBoard();
+		ChunkTemplate template = ChunkTemplate.forResource(RESOURCE);
+		assertSame(template, ChunkTemplate.forResource(RESOURCE));
+		assertEquals(parsed.getWidth(), template.getWidth());
+		assertEquals(parsed.getHeight(), template.getHeight());
+
+		int superPellets = Pellet.superPelletLeft;
+		Square[][] chunk = template.stamp(squares, units);
+		Unit unit = mock(Unit.class);
+		int pellets = 0;
+		for (int x = 0; x < template.getWidth(); x++) {
+			for (int y = 0; y < template.getHeight(); y++) {
+				Square expected = parsed.squareAt(x, y);
+				assertEquals(expected.isAccessibleTo(unit),
+						chunk[x][y].isAccessibleTo(unit));
+				assertEquals(expected.getOccupants().size(),
+						chunk[x][y].getOccupants().size());
+				pellets += chunk[x][y].getOccupants().size();
+			}
+		}
+		assertEquals(parsed.getSpatialIndex().count(Pellet.class), pellets);
+		assertEquals(superPellets + 1, Pellet.superPelletLeft);
+		assertNotSame(chunk[0][0], template.stamp(squares, units)[0][0]);
+		assertEquals("/board.txt", launcher.getBoardToUse());
+	}
+
+	/**
+	 * Verifies that a chunk is made on the launcher without changing the
+	 * board it uses.
+	 */
+	@Test
+	public void testLauncherUnchanged() {
+		Launcher launcher = new Launcher();
+		launcher.setBoardToUse("/boardExtendedBase.txt");
+		Square[][] chunk = launcher.makeChunk(RESOURCE);
+		assertEquals(ChunkTemplate.forResource(RESOURCE).getWidth(),
+				chunk.length);
+		assertEquals("/boardExtendedBase.txt", launcher.getBoardToUse());
+	}
+
+	/**
+	 * Verifies that squares needing a level, such as ghosts, are refused.
+	 */
+	@Test(expected = PacmanConfigurationException.class)
+	public void testGhostRefused() {
+		ChunkTemplate.parse(Arrays.asList("#.#", "#G#"));
+	}
+
+	/**
+	 * Verifies that only the first section of a map is read.
+	 */
+	@Test
+	public void testFirstSection() {
+		ChunkTemplate template = ChunkTemplate.parse(Arrays.asList("#. ",
+				"o##", "---", "1 1"));
+		assertEquals(3, template.getWidth());
+		assertEquals(2, template.getHeight());
+	}
+}
@@ -0,0 +1,162 @@
+package nl.tudelft.jpacman.level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.npc.ghost.Ghost;
+import nl.tudelft.jpacman.npc.ghost.GhostFactory;
+import nl.tudelft.jpacman.sprite.AnimatedSprite;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that ghosts are put in the band of their distance to the nearest
+ * player, and that ghosts far away move less often and without searching.
+ */
+@SuppressWarnings("magicnumber")
+public class DetailBandsTest {
+
+	private static final long INTERVAL = 100;
+
+	private final DetailBands bands = new DetailBands(
+			new DetailBands.Band(3, 1, true),
+			new DetailBands.Band(8, 2, true),
+			new DetailBands.Band(Integer.MAX_VALUE, 4, false));
+
+	private Board board;
+
+	private Unit player;
+
+	private List<Unit> players;
+
+	/**
+	 * Reads a board that wraps around, with the player in its corner.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		new Launcher().setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		MapParser parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+		board = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		player = mock(Unit.class);
+		when(player.getSquare()).thenReturn(board.squareAt(1, 1));
+		players = Collections.singletonList(player);
+	}
+
+	/**
+	 * Verifies the band of squares at several distances from the player,
+	 * and that a square is promoted as the player comes near.
+	 */
+	@Test
+	public void testBandOf() {
+		List<DetailBands.Band> all = bands.getBands();
+		assertSame(all.get(0), bands.bandOf(board.squareAt(1, 1), players));
+		assertSame(all.get(1), bands.bandOf(board.squareAt(4, 3), players));
+		assertSame(all.get(2), bands.bandOf(board.squareAt(11, 9), players));
+
+		when(player.getSquare()).thenReturn(board.squareAt(10, 9));
+		assertSame(all.get(0), bands.bandOf(board.squareAt(11, 9), players));
+		assertSame(all.get(2), bands.bandOf(board.squareAt(11, 9),
+				Collections.<Unit>emptyList()));
+	}
+
+	/**
+	 * Verifies that a ghost near the player searches at its own pace, while
+	 * a ghost far away moves a quarter as often without searching, and that
+	 * the time this saves is reported.
+	 */
+	@Test
+	public void testFarGhostDoesNotSearch() {
+		Ghost near = ghostNear(1, 2);
+		Ghost far = ghostNear(11, 9);
+		AtomicInteger searches = new AtomicInteger();
+
+		for (int i = 0; i < 3; i++) {
+			bands.decide(near, players, () -> {
+				searches.incrementAndGet();
+				sleep();
+				return null;
+			});
+		}
+		assertEquals(INTERVAL, bands.interval(near, players));
+		assertEquals(3, searches.get());
+
+		Direction move = bands.decide(far, players, () -> {
+			searches.incrementAndGet();
+			return null;
+		});
+		assertNotNull(move);
+		assertTrue(far.getSquare().getSquareAt(move).isAccessibleTo(far));
+		assertEquals(4 * INTERVAL, bands.interval(far, players));
+		assertEquals(3, searches.get());
+
+		DetailBands.Band farBand = bands.getBands().get(2);
+		assertEquals(1, farBand.getDecisions());
+		assertEquals(3, farBand.getSkipped());
+		assertEquals(0, bands.savedNanos(bands.getBands().get(0)));
+		assertTrue(bands.savedNanos(farBand) > 0);
+		assertEquals(3, bands.report().split("\n").length);
+	}
+
+	private Ghost ghostNear(int x, int y) {
+		Ghost ghost = new Wanderer();
+		for (int i = y * board.getWidth() + x;; i++) {
+			Square square = board.squareAt(i % board.getWidth(),
+					i / board.getWidth());
+			if (square.isAccessibleTo(ghost)) {
+				ghost.occupy(square);
+				return ghost;
+			}
+		}
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A ghost with a fixed interval that does not decide on its own.
+	 */
+	private static final class Wanderer extends Ghost {
+
+		private Wanderer() {
+			super(new EnumMap<>(Direction.class), mock(AnimatedSprite.class));
+		}
+
+		@Override
+		public long getInterval() {
+			return INTERVAL;
+		}
+
+		@Override
+		public Direction nextMove() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package nl.tudelft.jpacman.level;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.npc.NPC;
+import nl.tudelft.jpacman.npc.ghost.Blinky;
+import nl.tudelft.jpacman.npc.ghost.Clyde;
+import nl.tudelft.jpacman.npc.ghost.Ghost;
+import nl.tudelft.jpacman.npc.ghost.GhostFactory;
+import nl.tudelft.jpacman.npc.ghost.Inky;
+import nl.tudelft.jpacman.npc.ghost.Pinky;
+import nl.tudelft.jpacman.sprite.AnimatedSprite;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+import nl.tudelft.jpacman.sprite.Sprite;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies that planning the moves of ghosts in parallel leads to the same
+ * moves as planning them one after the other.
+ */
+@SuppressWarnings("magicnumber")
+public class GhostPlannerTest {
+
+	private static final int GHOSTS = 12;
+
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	private MapParser parser;
+
+	/**
+	 * Sets up a parser for boards without sprites for ghosts.
+	 */
+	@Before
+	public void setUp() {
+		new Launcher().setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+	}
+
+	/**
+	 * Stops the pool.
+	 */
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Verifies that two identical levels whose ghosts are seeded alike make
+	 * the same moves, whether planned in parallel or sequentially, each
+	 * using the flow field of its own level.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testParallelMatchesSequential() throws IOException {
+		Level parallel = createLevel();
+		Level sequential = createLevel();
+		List<Ghost> parallelGhosts = new ArrayList<>(parallel.getGhosts()
+				.keySet());
+		List<Ghost> sequentialGhosts = new ArrayList<>(sequential
+				.getGhosts().keySet());
+		GhostPlanner planner = new GhostPlanner(parallel, pool);
+		planner.seed(7);
+		GhostPlanner reference = new GhostPlanner(sequential, pool);
+		reference.seed(7);
+
+		for (int round = 0; round < 40; round++) {
+			Direction[] expected = reference.planSequentially(
+					sequentialGhosts);
+			Direction[] actual = planner.plan(parallelGhosts);
+			assertArrayEquals(expected, actual);
+			apply(sequentialGhosts, expected);
+			apply(parallelGhosts, actual);
+		}
+		assertTrue(parallel.getFlowField().getSearches() > 0);
+		assertTrue(sequential.getFlowField().getSearches() > 0);
+	}
+
+	/**
+	 * Verifies that a budget too small for all ghosts is given to a few of
+	 * them in turn, the same way whether planned in parallel or
+	 * sequentially, while the others move without searching.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testSmallBudgetTakesTurns() throws IOException {
+		Level parallel = createLevel();
+		Level sequential = createLevel();
+		parallel.setSearchBudget(128);
+		sequential.setSearchBudget(128);
+		List<Ghost> parallelGhosts = new ArrayList<>(parallel.getGhosts()
+				.keySet());
+		List<Ghost> sequentialGhosts = new ArrayList<>(sequential
+				.getGhosts().keySet());
+		GhostPlanner planner = new GhostPlanner(parallel, pool);
+		planner.seed(7);
+		GhostPlanner reference = new GhostPlanner(sequential, pool);
+		reference.seed(7);
+
+		for (int round = 0; round < 12; round++) {
+			Direction[] expected = reference.planSequentially(
+					sequentialGhosts);
+			Direction[] actual = planner.plan(parallelGhosts);
+			assertArrayEquals(expected, actual);
+			apply(sequentialGhosts, expected);
+			apply(parallelGhosts, actual);
+		}
+		assertTrue(parallel.getBudgetHits() >= 12 * (GHOSTS - 2));
+		assertEquals(parallel.getBudgetHits(), sequential.getBudgetHits());
+	}
+
+	/**
+	 * Verifies that ghosts only decide once their interval has passed.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testTick() throws IOException {
+		Level level = createLevel();
+		GhostPlanner planner = new GhostPlanner(level, pool);
+		assertEquals(0, planner.tick(0));
+		assertEquals(0, planner.tick(1));
+		assertEquals(GHOSTS, planner.tick(10000));
+		assertEquals(0, planner.tick(10001));
+	}
+
+	/**
+	 * Verifies that every tick is timed, and that the timings can be reset.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testTimings() throws IOException {
+		GhostPlanner planner = new GhostPlanner(createLevel(), pool);
+		planner.tick(0);
+		planner.tick(10000);
+		assertEquals(2, planner.getTicks());
+		assertTrue(planner.getLongestTickNanos() >= planner
+				.getMeanTickNanos());
+		assertTrue(planner.report().startsWith(GHOSTS + " ghosts, 2 ticks"));
+		planner.resetTimings();
+		assertEquals(0, planner.getTicks());
+		assertEquals(0, planner.getMeanTickNanos());
+	}
+
+	private Level createLevel() throws IOException {
+		Board board = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		List<NPC> ghosts = new ArrayList<>();
+		int index = 0;
+		for (int i = 0; i < GHOSTS; i++) {
+			Ghost ghost = createGhost(i);
+			Square square;
+			do {
+				index = (index + 37) % (board.getWidth() * board.getHeight());
+				square = board.squareAt(index % board.getWidth(),
+						index / board.getWidth());
+			} while (!square.isAccessibleTo(ghost));
+			ghost.occupy(square);
+			ghosts.add(ghost);
+		}
+		Level level = new Level(board, ghosts,
+				Lists.newArrayList(board.squareAt(1, 1)),
+				mock(CollisionMap.class));
+		level.registerPlayer(new Player(new EnumMap<>(Direction.class),
+				mock(AnimatedSprite.class)));
+		return level;
+	}
+
+	private static Ghost createGhost(int i) {
+		EnumMap<Direction, Sprite> sprites = new EnumMap<>(Direction.class);
+		AnimatedSprite explosion = mock(AnimatedSprite.class);
+		switch (i % 4) {
+			case 0:
+				return new Blinky(sprites, explosion);
+			case 1:
+				return new Inky(sprites, explosion);
+			case 2:
+				return new Pinky(sprites, explosion);
+			default:
+				return new Clyde(sprites, explosion);
+		}
+	}
+
+	private static void apply(List<Ghost> ghosts, Direction[] moves) {
+		for (int i = 0; i < moves.length; i++) {
+			Ghost ghost = ghosts.get(i);
+			if (moves[i] == null) {
+				continue;
+			}
+			Square next = ghost.getSquare().getSquareAt(moves[i]);
+			if (next.isAccessibleTo(ghost)) {
+				ghost.occupy(next);
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package nl.tudelft.jpacman.level;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+/**
+ * Stress benchmark of a {@link Swarm}. This is not a unit test; run its main
+ * method on the test class path after <code>mvn test-compile</code>. The
+ * amounts of ghosts can be passed as arguments, e.g. <code>1000 4000</code>.
+ * Every swarm runs for a few seconds at the regular tick rate, after which
+ * the timings of its ticks are printed, so that the cost of a tick can be
+ * followed as the swarm grows.
+ */
+@SuppressWarnings({"magicnumber", "PMD.SystemPrintln"})
+public final class SwarmBenchmark {
+
+	/**
+	 * The amounts of ghosts measured when no arguments are given.
+	 */
+	private static final String[] DEFAULT_GHOSTS = {"250", "1000", "2000",
+			"4000"};
+
+	/**
+	 * The time the ghosts move before the ticks are timed, in milliseconds.
+	 */
+	private static final long WARM_UP = 2000;
+
+	/**
+	 * The time the ticks are timed, in milliseconds.
+	 */
+	private static final long MEASUREMENT = 5000;
+
+	private SwarmBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args The amounts of ghosts to measure.
+	 * @throws InterruptedException if the benchmark is interrupted.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String[] amounts = args.length == 0 ? DEFAULT_GHOSTS : args;
+		Launcher launcher = new Launcher();
+		PlayerFactory players = new PlayerFactory(new PacManSprites());
+		for (String amount : amounts) {
+			launcher.setBoardToUse("/boardExtendedBase.txt");
+			Level level = launcher.makeLevel();
+			GhostPlanner planner = Swarm.configure(level,
+					Integer.parseInt(amount), 42);
+			level.registerPlayer(players.createPacMan());
+			level.start();
+			Thread.sleep(WARM_UP);
+			planner.resetTimings();
+			Thread.sleep(MEASUREMENT);
+			System.out.println(planner.report());
+			level.stop();
+			DetailBands bands = level.getDetailBands();
+			System.out.print(bands.report());
+		}
+		System.exit(0);
+	}
+}
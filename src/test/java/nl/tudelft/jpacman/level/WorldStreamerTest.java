@@ -0,0 +1,131 @@
+package nl.tudelft.jpacman.level;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that the streamer prepares maps for the edge the player is
+ * heading for, and extends the board with them once the player is near.
+ */
+@SuppressWarnings("magicnumber")
+public class WorldStreamerTest {
+
+	private Level level;
+
+	private Board board;
+
+	private volatile Square square;
+
+	private volatile Direction heading = Direction.EAST;
+
+	private volatile boolean broken;
+
+	private WorldStreamer streamer;
+
+	/**
+	 * Starts an infinite level with a player that does not move by itself,
+	 * on a square and heading set by the tests.
+	 */
+	@Before
+	public void setUp() {
+		Launcher launcher = new Launcher();
+		launcher.setBoardToUse("/boardExtendedBase.txt");
+		level = launcher.makeLevel();
+		board = level.getBoard();
+		square = board.squareAt(11, 15);
+		Player player = mock(Player.class);
+		when(player.getSquare()).thenAnswer(invocation -> {
+			if (broken) {
+				throw new IllegalStateException("broken player");
+			}
+			return square;
+		});
+		when(player.getDirection()).thenAnswer(invocation -> heading);
+		level.registerPlayer(player);
+		streamer = new WorldStreamer(level);
+		level.start();
+	}
+
+	/**
+	 * Stops the level.
+	 */
+	@After
+	public void tearDown() {
+		if (level != null) {
+			level.stop();
+		}
+	}
+
+	/**
+	 * Verifies that a player near an edge gets the board extended at once,
+	 * even without prepared maps.
+	 */
+	@Test
+	public void testExtendNearEdge() {
+		int height = board.getHeight();
+		streamer.step();
+		assertEquals(2 * height, board.getHeight());
+		assertEquals(1, streamer.getExtensions());
+		assertEquals(1, streamer.getMisses());
+	}
+
+	/**
+	 * Verifies that an exception during a step is not thrown on, so that
+	 * the schedule of the streamer keeps running.
+	 */
+	@Test
+	public void testSurvivesException() {
+		int height = board.getHeight();
+		broken = true;
+		streamer.step();
+		assertEquals(height, board.getHeight());
+		broken = false;
+		streamer.step();
+		assertEquals(2 * height, board.getHeight());
+	}
+
+	/**
+	 * Verifies that maps are prepared only for the edge the player is
+	 * heading for, and that the extension uses them.
+	 */
+	@Test
+	public void testPrepareAhead() {
+		board.extend(Direction.EAST);
+		board.extend(Direction.WEST);
+		board.extend(Direction.NORTH);
+		board.extend(Direction.SOUTH);
+		int width = board.getWidth();
+		int y = board.getHeight() / 2;
+		int ahead = WorldStreamer.margin(Direction.EAST)
+				+ WorldStreamer.LOOKAHEAD + 5;
+		square = board.squareAt(width - 1 - ahead, y);
+
+		heading = Direction.WEST;
+		streamer.step();
+		assertEquals(0, streamer.prepared());
+
+		heading = Direction.EAST;
+		int needed = board.mapsToExtend();
+		for (int i = 0; i <= needed; i++) {
+			streamer.step();
+		}
+		assertEquals(needed, streamer.prepared());
+		assertEquals(width, board.getWidth());
+
+		square = board.squareAt(width - 2, y);
+		streamer.step();
+		assertEquals(2 * width, board.getWidth());
+		assertEquals(0, streamer.prepared());
+		assertEquals(0, streamer.getMisses());
+	}
+}
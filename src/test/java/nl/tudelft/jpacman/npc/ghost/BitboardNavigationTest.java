@@ -0,0 +1,102 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies that {@link BitboardNavigation} computes the same distances as a
+ * regular breadth first search.
+ */
+@SuppressWarnings("magicnumber")
+public class BitboardNavigationTest {
+
+	/**
+	 * Map parser used to construct boards.
+	 */
+	private MapParser parser;
+
+	/**
+	 * Set up the map parser.
+	 */
+	@Before
+	public void setUp() {
+		Launcher launcher = new Launcher();
+		launcher.setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		parser = new MapParser(new LevelFactory(sprites, new GhostFactory(
+				sprites)), new BoardFactory(sprites));
+	}
+
+	/**
+	 * Verifies the distances on a small board, including the squares that
+	 * are only reachable by wrapping around the edges.
+	 */
+	@Test
+	public void testSmallBoard() {
+		Board b = parser.parseMap(
+				Lists.newArrayList("#####", "  #  ", "#####")).getBoard();
+		int[] distances = BitboardNavigation.distances(b.squareAt(1, 1),
+				mock(Unit.class));
+		int u = BitboardNavigation.UNREACHABLE;
+		assertArrayEquals(new int[] {u, u, u, u, u, 1, 0, u, 3, 2, u, u, u,
+				u, u}, distances);
+	}
+
+	/**
+	 * Verifies that a board wider than a single word is handled correctly
+	 * at the word boundaries and at the edges.
+	 */
+	@Test
+	public void testWideBoard() {
+		StringBuilder row = new StringBuilder();
+		for (int i = 0; i < 130; i++) {
+			row.append(i % 64 == 63 ? '#' : ' ');
+		}
+		Board b = parser.parseMap(Lists.newArrayList(row.toString()))
+				.getBoard();
+		assertSameAsBreadthFirst(b.getGraph(), mock(Unit.class));
+		assertSameAsBreadthFirst(b.getGraph(), null);
+	}
+
+	/**
+	 * Verifies the distances from every square of a shipped map.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testShippedMap() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		assertSameAsBreadthFirst(b.getGraph(), mock(Unit.class));
+	}
+
+	private static void assertSameAsBreadthFirst(BoardGraph graph,
+			Unit traveller) {
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] expected = new int[graph.size()];
+		int[] actual = new int[graph.size()];
+		for (int i = 0; i < graph.size(); i++) {
+			bfs.distances(graph, i, traveller, expected);
+			BitboardNavigation.distances(graph, i, traveller, actual);
+			assertArrayEquals(expected, actual);
+		}
+		assertEquals(graph.size(), actual.length);
+	}
+}
@@ -0,0 +1,141 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that following the legs of hierarchical paths over a
+ * {@link ChunkGraph} leads to the destination along a nearly shortest path.
+ */
+@SuppressWarnings("magicnumber")
+public class ChunkGraphTest {
+
+	/**
+	 * The unit travelling the board.
+	 */
+	private Unit traveller;
+
+	/**
+	 * The board under test, made of several maps.
+	 */
+	private Board board;
+
+	/**
+	 * Set up a board of two by two maps.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		new Launcher().setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		MapParser parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+		board = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard();
+		traveller = mock(Unit.class);
+	}
+
+	/**
+	 * Removes the model of the board.
+	 */
+	@After
+	public void tearDown() {
+		ChunkGraph.uninstall(board);
+	}
+
+	/**
+	 * Verifies that the paths between many pairs of squares reach their
+	 * destination and are nearly as short as the shortest ones.
+	 */
+	@Test
+	public void testPathsReachDestination() {
+		board.extend(Direction.EAST);
+		board.extend(Direction.SOUTH);
+		ChunkGraph model = ChunkGraph.install(board, traveller, Unit.class);
+		assertEquals(4, model.getChunkCount());
+		assertPathsReachDestination();
+	}
+
+	/**
+	 * Verifies that extending the board replaces the model, carrying over
+	 * chunks that did not change.
+	 */
+	@Test
+	public void testExtend() {
+		ChunkGraph before = ChunkGraph.install(board, traveller, Unit.class);
+		board.extend(Direction.EAST);
+		board.extend(Direction.EAST);
+
+		ChunkGraph after = ChunkGraph.forBoard(board);
+		assertNotNull(after);
+		assertNotSame(before, after);
+		assertEquals(4, after.getChunkCount());
+		assertTrue(after.getReusedChunks() > 0);
+		assertPathsReachDestination();
+
+		ChunkGraph fresh = ChunkGraph.install(board, traveller, Unit.class);
+		assertEquals(fresh.getNodeCount(), after.getNodeCount());
+		assertEquals(0, fresh.getReusedChunks());
+	}
+
+	private void assertPathsReachDestination() {
+		BoardGraph graph = board.getGraph();
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] expected = new int[graph.size()];
+		for (int from = 0; from < graph.size(); from += 29) {
+			Square source = graph.squareAt(from);
+			if (!source.isAccessibleTo(traveller)) {
+				continue;
+			}
+			bfs.distances(graph, from, traveller, expected);
+			for (int to = 0; to < graph.size(); to += 11) {
+				Square destination = graph.squareAt(to);
+				if (expected[to] < 0) {
+					assertNull(Navigation.hierarchicalPath(source,
+							destination, traveller));
+					continue;
+				}
+				int length = 0;
+				Square square = source;
+				while (square != destination) {
+					List<Direction> leg = Navigation.hierarchicalPath(square,
+							destination, traveller);
+					assertNotNull(leg);
+					assertTrue(!leg.isEmpty());
+					assertEquals(leg.get(0), Navigation.hierarchicalStep(
+							square, destination, traveller));
+					for (Direction d : leg) {
+						square = square.getSquareAt(d);
+						assertTrue(square.isAccessibleTo(traveller));
+						length++;
+					}
+					assertTrue(length <= 2 * expected[to]);
+				}
+				assertTrue(length <= expected[to] + 12);
+			}
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.AnimatedSprite;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that the {@link CooperativePlanner} leads many ghosts to a shared
+ * target without putting two of them on the same square, at a lower cost
+ * than searching for every ghost on its own.
+ */
+@SuppressWarnings("magicnumber")
+public class CooperativePlannerTest {
+
+	private static final int GHOSTS = 60;
+
+	private BoardGraph graph;
+
+	private Square target;
+
+	private final List<Ghost> ghosts = new ArrayList<>();
+
+	/**
+	 * Places the ghosts on a board of three maps, spread out, all chasing the
+	 * same square.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		new Launcher().setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		MapParser parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+		Board board = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		board.extend(Direction.EAST);
+		board.extend(Direction.EAST);
+		graph = board.getGraph();
+		target = board.squareAt(1, 1);
+		for (int i = graph.size() - 1; i >= 0 && ghosts.size() < GHOSTS; i -= 7) {
+			Square square = graph.squareAt(i);
+			if (square.isAccessibleTo(null) && square != target
+					&& !occupied(square)) {
+				Ghost ghost = new Chaser();
+				ghost.occupy(square);
+				ghosts.add(ghost);
+			}
+		}
+	}
+
+	/**
+	 * Verifies that the ghosts close in on the target while never ending up
+	 * on the same square, and that they share a single distance field.
+	 */
+	@Test
+	public void testNoCollisions() {
+		CooperativePlanner planner = new CooperativePlanner();
+		int before = totalDistance();
+		for (int round = 0; round < 20; round++) {
+			Direction[] moves = planner.plan(ghosts);
+			for (int i = 0; i < moves.length; i++) {
+				if (moves[i] != null) {
+					Ghost ghost = ghosts.get(i);
+					Square next = ghost.getSquare().getSquareAt(moves[i]);
+					assertTrue(next.isAccessibleTo(ghost));
+					ghost.occupy(next);
+				}
+			}
+			Set<Square> occupied = new HashSet<>();
+			for (Ghost ghost : ghosts) {
+				assertTrue(occupied.add(ghost.getSquare()));
+			}
+		}
+		assertEquals(1, planner.getFieldSearches());
+		assertTrue(totalDistance() < before);
+	}
+
+	/**
+	 * Verifies that planning all ghosts together expands fewer squares than
+	 * an independent shortest path search for every ghost.
+	 */
+	@Test
+	public void testCheaperThanIndependentSearches() {
+		AStarSearch search = new AStarSearch();
+		long independent = 0;
+		int destination = graph.indexOf(target);
+		for (Ghost ghost : ghosts) {
+			search.shortestPath(graph, graph.indexOf(ghost.getSquare()),
+					destination, ghost);
+			independent += search.getExpanded();
+		}
+		CooperativePlanner planner = new CooperativePlanner();
+		planner.plan(ghosts);
+		assertTrue(planner.getExpanded() < independent);
+	}
+
+	private boolean occupied(Square square) {
+		for (Unit unit : square.getOccupants()) {
+			if (unit instanceof Ghost) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int totalDistance() {
+		int total = 0;
+		for (Ghost ghost : ghosts) {
+			total += Navigation.distance(ghost.getSquare(), target, ghost);
+		}
+		return total;
+	}
+
+	/**
+	 * A ghost that always heads for the target.
+	 */
+	private final class Chaser extends Ghost {
+
+		private Chaser() {
+			super(new EnumMap<>(Direction.class), mock(AnimatedSprite.class));
+		}
+
+		@Override
+		public long getInterval() {
+			return 0;
+		}
+
+		@Override
+		public Direction nextMove() {
+			return null;
+		}
+
+		@Override
+		protected Square chaseTarget() {
+			return target;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+import nl.tudelft.jpacman.sprite.Sprite;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies that the {@link DangerMap} finds the nearest ghost of every
+ * square, and that updating it for single steps gives the same map as
+ * computing it from scratch.
+ */
+@SuppressWarnings("magicnumber")
+public class DangerMapTest {
+
+	private MapParser parser;
+
+	private final List<Unit> ghosts = new ArrayList<>();
+
+	/**
+	 * Sets up the map parser.
+	 */
+	@Before
+	public void setUp() {
+		new Launcher().setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+	}
+
+	/**
+	 * Verifies the distances and nearest ghosts along a corridor, where the
+	 * first ghost wins a tie.
+	 */
+	@Test
+	public void testCorridor() {
+		Board board = parser.parseMap(Lists.newArrayList("#########",
+				"#       #", "#########")).getBoard();
+		Unit first = ghostOn(board.squareAt(1, 1));
+		Unit second = ghostOn(board.squareAt(5, 1));
+		DangerMap map = new DangerMap(() -> ghosts);
+
+		assertEquals(0, map.distance(board.squareAt(1, 1)));
+		assertEquals(2, map.distance(board.squareAt(3, 1)));
+		assertSame(first, map.nearest(board.squareAt(3, 1)));
+		assertSame(second, map.nearest(board.squareAt(4, 1)));
+		assertEquals(2, map.distance(board.squareAt(7, 1)));
+		assertEquals(DangerMap.UNREACHABLE, map.distance(board.squareAt(0,
+				0)));
+		assertNull(map.nearest(board.squareAt(0, 0)));
+
+		second.occupy(board.squareAt(6, 1));
+		assertEquals(2, map.distance(board.squareAt(3, 1)));
+		assertSame(first, map.nearest(board.squareAt(3, 1)));
+		assertEquals(2, map.distance(board.squareAt(4, 1)));
+		assertSame(second, map.nearest(board.squareAt(4, 1)));
+		assertEquals(1, map.distance(board.squareAt(7, 1)));
+		assertEquals(1, map.getRebuilds());
+		assertEquals(1, map.getUpdates());
+	}
+
+	/**
+	 * Verifies that a map updated while ghosts walk around at random stays
+	 * the same as a map computed from scratch, also when ghosts meet.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testSameAsFromScratch() throws IOException {
+		Board board = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		BoardGraph graph = board.getGraph();
+		Random random = new Random(42);
+		for (int i = 0; ghosts.size() < 6; i = (i + 53) % graph.size()) {
+			if (graph.squareAt(i).isAccessibleTo(null)) {
+				ghostOn(graph.squareAt(i));
+			}
+		}
+		DangerMap map = new DangerMap(() -> ghosts);
+		map.distance(graph.squareAt(0));
+
+		for (int round = 0; round < 200; round++) {
+			for (Unit ghost : ghosts) {
+				if (random.nextInt(3) == 0) {
+					continue;
+				}
+				Square next = ghost.getSquare().getSquareAt(
+						Direction.values()[random.nextInt(4)]);
+				if (next.isAccessibleTo(ghost)) {
+					ghost.occupy(next);
+				}
+			}
+			DangerMap expected = new DangerMap(() -> ghosts);
+			for (int i = 0; i < graph.size(); i++) {
+				Square square = graph.squareAt(i);
+				assertEquals(expected.distance(square), map.distance(square));
+				assertSame(expected.nearest(square), map.nearest(square));
+			}
+		}
+		assertEquals(1, map.getRebuilds());
+		assertTrue(map.getUpdates() > 200);
+	}
+
+	/**
+	 * Verifies that the ghosts are only asked for again after a unit moved.
+	 */
+	@Test
+	public void testReadsWithoutMoves() {
+		Board board = parser.parseMap(Lists.newArrayList("#########",
+				"#       #", "#########")).getBoard();
+		Unit ghost = ghostOn(board.squareAt(1, 1));
+		int[] asked = new int[1];
+		DangerMap map = new DangerMap(() -> {
+			asked[0]++;
+			return ghosts;
+		});
+
+		assertEquals(3, map.distance(board.squareAt(4, 1)));
+		assertEquals(2, map.distance(board.squareAt(3, 1)));
+		assertEquals(1, asked[0]);
+		ghost.occupy(board.squareAt(2, 1));
+		assertEquals(2, map.distance(board.squareAt(4, 1)));
+		assertEquals(1, map.distance(board.squareAt(3, 1)));
+		assertEquals(2, asked[0]);
+		assertEquals(1, map.getUpdates());
+	}
+
+	private Unit ghostOn(Square square) {
+		Unit ghost = new Marker();
+		ghost.occupy(square);
+		ghosts.add(ghost);
+		return ghost;
+	}
+
+	/**
+	 * A unit standing in for a ghost.
+	 */
+	private static final class Marker extends Unit {
+
+		@Override
+		public Sprite getSprite() {
+			return null;
+		}
+	}
+}
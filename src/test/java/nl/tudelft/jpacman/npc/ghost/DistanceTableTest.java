@@ -0,0 +1,121 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that the {@link DistanceTable} agrees with a breadth first search
+ * and is discarded when the board changes.
+ */
+public class DistanceTableTest {
+
+	/**
+	 * Map parser used to construct boards.
+	 */
+	private MapParser parser;
+
+	/**
+	 * Set up the map parser.
+	 */
+	@Before
+	public void setUp() {
+		Launcher launcher = new Launcher();
+		launcher.setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		parser = new MapParser(new LevelFactory(sprites, new GhostFactory(
+				sprites)), new BoardFactory(sprites));
+	}
+
+	/**
+	 * Verifies the distance and first step between every pair of squares of
+	 * a shipped map.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testSameAsBreadthFirst() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard();
+		Unit traveller = mock(Unit.class);
+		DistanceTable table = DistanceTable.install(b, traveller, Unit.class);
+		assertNotNull(table);
+		BoardGraph graph = b.getGraph();
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] expected = new int[graph.size()];
+		for (int from = 0; from < graph.size(); from++) {
+			bfs.distances(graph, from, traveller, expected);
+			for (int to = 0; to < graph.size(); to++) {
+				assertEquals(expected[to], table.distance(from, to));
+				Direction step = table.firstStep(from, to);
+				if (expected[to] > 0) {
+					int next = graph.neighbour(from, step.ordinal());
+					bfs.distances(graph, next, traveller, expected);
+					assertEquals(table.distance(from, to) - 1, expected[to]);
+					bfs.distances(graph, from, traveller, expected);
+				} else {
+					assertNull(step);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies that {@link Navigation} uses the table for matching
+	 * travellers and that it finds paths of the same length.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testNavigationUsesTable() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard();
+		Unit traveller = mock(Unit.class);
+		DistanceTable.install(b, traveller, Unit.class);
+		List<Direction> path = Navigation.shortestPath(b.squareAt(1, 1),
+				b.squareAt(b.getWidth() - 2, b.getHeight() - 2), traveller);
+		DistanceTable.invalidate(b);
+		List<Direction> searched = Navigation.shortestPath(b.squareAt(1, 1),
+				b.squareAt(b.getWidth() - 2, b.getHeight() - 2), traveller);
+		assertNotNull(path);
+		assertEquals(searched.size(), path.size());
+	}
+
+	/**
+	 * Verifies that replacing the squares of a board discards its table.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testInvalidatedOnLayoutChange() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard();
+		DistanceTable table = DistanceTable.install(b, mock(Unit.class),
+				Unit.class);
+		assertSame(table, DistanceTable.forBoard(b));
+		Board other = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		b.setBoard(other.getBoard());
+		assertNull(DistanceTable.forBoard(b));
+		assertTrue(!table.isValid());
+	}
+}
@@ -0,0 +1,152 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+import nl.tudelft.jpacman.sprite.Sprite;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies that the {@link FlowField} leads to its target along shortest
+ * paths and only searches again when the target moves.
+ */
+@SuppressWarnings("magicnumber")
+public class FlowFieldTest {
+
+	/**
+	 * Map parser used to construct boards.
+	 */
+	private MapParser parser;
+
+	/**
+	 * The unit the fields lead to.
+	 */
+	private Unit target;
+
+	/**
+	 * The unit following the fields.
+	 */
+	private Unit traveller;
+
+	/**
+	 * Set up the map parser and the units.
+	 */
+	@Before
+	public void setUp() {
+		Launcher launcher = new Launcher();
+		launcher.setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		parser = new MapParser(new LevelFactory(sprites, new GhostFactory(
+				sprites)), new BoardFactory(sprites));
+		target = new Marker();
+		traveller = mock(Unit.class);
+	}
+
+	/**
+	 * Verifies that the distance and step from every square agree with a
+	 * shortest path search.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testSameAsShortestPath() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		target.occupy(b.squareAt(1, 1));
+		FlowField field = new FlowField();
+		for (int x = 0; x < b.getWidth(); x++) {
+			for (int y = 0; y < b.getHeight(); y++) {
+				Square from = b.squareAt(x, y);
+				List<Direction> path = Navigation.shortestPath(from,
+						target.getSquare(), traveller);
+				if (path == null) {
+					assertEquals(FlowField.UNREACHABLE,
+							field.distance(target, from, traveller));
+					assertNull(field.step(target, from, traveller));
+					continue;
+				}
+				assertEquals(path.size(), field.distance(target, from,
+						traveller));
+				Direction step = field.step(target, from, traveller);
+				if (path.isEmpty()) {
+					assertNull(step);
+				} else {
+					assertEquals(path.size() - 1, field.distance(target,
+							from.getSquareAt(step), traveller));
+				}
+			}
+		}
+		assertEquals(1, field.getSearches());
+	}
+
+	/**
+	 * Verifies that the field follows its target over several moves.
+	 */
+	@Test
+	public void testTargetMoves() {
+		Board b = parser.parseMap(Lists.newArrayList("#######", "#     #",
+				"#######")).getBoard();
+		FlowField field = new FlowField();
+		target.occupy(b.squareAt(1, 1));
+		assertEquals(Direction.WEST, field.step(target, b.squareAt(5, 1),
+				traveller));
+		assertEquals(4, field.distance(target, b.squareAt(5, 1), traveller));
+		target.occupy(b.squareAt(4, 1));
+		assertEquals(Direction.WEST, field.step(target, b.squareAt(5, 1),
+				traveller));
+		assertEquals(1, field.distance(target, b.squareAt(5, 1), traveller));
+		assertEquals(Direction.EAST, field.step(target, b.squareAt(1, 1),
+				traveller));
+		target.occupy(b.squareAt(2, 1));
+		assertEquals(3, field.distance(target, b.squareAt(5, 1), traveller));
+		assertEquals(1, field.distance(target, b.squareAt(1, 1), traveller));
+		assertEquals(0, field.distance(target, b.squareAt(2, 1), traveller));
+		assertEquals(3, field.getSearches());
+	}
+
+	/**
+	 * Verifies that a lookup gives the step and the distance of the same
+	 * field.
+	 */
+	@Test
+	public void testLookup() {
+		Board b = parser.parseMap(Lists.newArrayList("#######", "#     #",
+				"#######")).getBoard();
+		FlowField field = new FlowField();
+		target.occupy(b.squareAt(2, 1));
+		FlowField.Step step = field.lookup(target, b.squareAt(5, 1),
+				traveller);
+		assertEquals(Direction.WEST, step.getDirection());
+		assertEquals(3, step.getDistance());
+		assertNull(field.lookup(target, b.squareAt(2, 1), traveller));
+		assertEquals(1, field.getSearches());
+	}
+
+	/**
+	 * A unit without a sprite.
+	 */
+	private static final class Marker extends Unit {
+
+		@Override
+		public Sprite getSprite() {
+			return null;
+		}
+	}
+}
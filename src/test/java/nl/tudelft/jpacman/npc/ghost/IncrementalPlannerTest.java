@@ -0,0 +1,178 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+import nl.tudelft.jpacman.sprite.Sprite;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that the {@link IncrementalPlanner} keeps finding shortest paths
+ * while the traveller, its destination and the terrain change.
+ */
+@SuppressWarnings("magicnumber")
+public class IncrementalPlannerTest {
+
+	/**
+	 * The unit travelling the boards.
+	 */
+	private Unit traveller;
+
+	/**
+	 * The planner under test.
+	 */
+	private IncrementalPlanner planner;
+
+	/**
+	 * Set up the traveller and its planner.
+	 */
+	@Before
+	public void setUp() {
+		new Launcher().setBoardToUse("/board.txt");
+		traveller = mock(Unit.class);
+		planner = new IncrementalPlanner(traveller);
+	}
+
+	/**
+	 * Chases a randomly walking destination and verifies every path against
+	 * a breadth first search, which expands far more squares in total.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testChase() throws IOException {
+		PacManSprites sprites = new PacManSprites();
+		MapParser parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+		BoardGraph graph = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard().getGraph();
+		Random random = new Random(42);
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int chaser = accessibleSquare(graph, random);
+		int goal = accessibleSquare(graph, random);
+		long bfsExpanded = 0;
+		long plannerExpanded = 0;
+		for (int move = 0; move < 300; move++) {
+			if (move % 100 == 50) {
+				goal = accessibleSquare(graph, random);
+			} else {
+				int next = graph.neighbour(goal,
+						random.nextInt(BoardGraph.DIRECTIONS));
+				if (graph.squareAt(next).isAccessibleTo(traveller)) {
+					goal = next;
+				}
+			}
+			List<Direction> expected = bfs.shortestPath(graph, chaser, goal,
+					traveller);
+			bfsExpanded += bfs.getExpanded();
+			if (expected == null) {
+				assertNull(planner.shortestPath(graph.squareAt(chaser),
+						graph.squareAt(goal)));
+				continue;
+			}
+			List<Direction> path = assertPath(graph.squareAt(chaser),
+					graph.squareAt(goal));
+			plannerExpanded += planner.getExpanded();
+			assertEquals(expected.size(), path.size());
+			if (!path.isEmpty() && move % 3 != 0) {
+				chaser = graph.neighbour(chaser, path.get(0).ordinal());
+			}
+		}
+		assertTrue(plannerExpanded < bfsExpanded);
+	}
+
+	/**
+	 * Verifies that blocking and opening a square on the path is repaired.
+	 */
+	@Test
+	public void testSquareChanged() {
+		String[] rows = {"#######", "#     #", "# ### #", "#     #",
+				"#######"};
+		Cell[][] grid = new Cell[rows[0].length()][rows.length];
+		for (int y = 0; y < rows.length; y++) {
+			for (int x = 0; x < rows[y].length(); x++) {
+				grid[x][y] = new Cell(rows[y].charAt(x) == ' ');
+			}
+		}
+		Board board = new BoardFactory(null).createBoard(grid);
+		Square from = board.squareAt(1, 1);
+		Square to = board.squareAt(5, 1);
+		assertEquals(4, assertPath(from, to).size());
+
+		grid[3][1].accessible = false;
+		planner.squareChanged(grid[3][1]);
+		assertEquals(8, assertPath(from, to).size());
+
+		grid[1][2].accessible = false;
+		planner.squareChanged(grid[1][2]);
+		assertNull(planner.shortestPath(from, to));
+		assertNull(planner.nextStep(from, to));
+
+		grid[3][1].accessible = true;
+		planner.squareChanged(grid[3][1]);
+		assertEquals(4, assertPath(from, to).size());
+		assertEquals(Direction.EAST, planner.nextStep(from, to));
+	}
+
+	private List<Direction> assertPath(Square from, Square to) {
+		List<Direction> path = planner.shortestPath(from, to);
+		assertNotNull(path);
+		Square square = from;
+		for (Direction d : path) {
+			square = square.getSquareAt(d);
+			assertTrue(square.isAccessibleTo(traveller));
+		}
+		assertEquals(to, square);
+		return path;
+	}
+
+	private int accessibleSquare(BoardGraph graph, Random random) {
+		while (true) {
+			int index = random.nextInt(graph.size());
+			if (graph.squareAt(index).isAccessibleTo(traveller)) {
+				return index;
+			}
+		}
+	}
+
+	/**
+	 * A square whose accessibility can be changed.
+	 */
+	private static final class Cell extends Square {
+
+		private boolean accessible;
+
+		private Cell(boolean isAccessible) {
+			this.accessible = isAccessible;
+		}
+
+		@Override
+		public boolean isAccessibleTo(Unit unit) {
+			return accessible;
+		}
+
+		@Override
+		public Sprite getSprite() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Verifies that searches over the {@link JunctionGraph} find shortest paths
+ * and that the graph follows the board when it is extended.
+ */
+@SuppressWarnings("magicnumber")
+public class JunctionGraphTest {
+
+	/**
+	 * Map parser used to construct boards.
+	 */
+	private MapParser parser;
+
+	/**
+	 * The unit travelling the boards.
+	 */
+	private Unit traveller;
+
+	/**
+	 * Set up the map parser.
+	 */
+	@Before
+	public void setUp() {
+		Launcher launcher = new Launcher();
+		launcher.setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		parser = new MapParser(new LevelFactory(sprites, new GhostFactory(
+				sprites)), new BoardFactory(sprites));
+		traveller = mock(Unit.class);
+	}
+
+	/**
+	 * Verifies that only squares with other than two exits are junctions.
+	 */
+	@Test
+	public void testCorridorIsCompressed() {
+		Board b = parser.parseMap(Lists.newArrayList("#######", "#     #",
+				"### ###", "#######")).getBoard();
+		JunctionGraph model = JunctionGraph.install(b, traveller, Unit.class);
+		assertEquals(4, model.getJunctionCount());
+		assertEquals(2, model.getCorridorCount());
+		JunctionGraph.uninstall(b);
+	}
+
+	/**
+	 * Verifies that a traveller in a corridor keeps its direction, follows
+	 * the bends of the corridor and has to choose only at junctions.
+	 */
+	@Test
+	public void testCorridorExit() {
+		Board b = parser.parseMap(Lists.newArrayList("#####", "#   #",
+				"### #", "#####")).getBoard();
+		JunctionGraph model = JunctionGraph.install(b, traveller, Unit.class);
+		BoardGraph graph = model.getGraph();
+		int east = Direction.EAST.ordinal();
+		int south = Direction.SOUTH.ordinal();
+		int west = Direction.WEST.ordinal();
+		int bend = graph.index(3, 1);
+		assertEquals(1 << south | 1 << west, model.exits(bend));
+		assertEquals(east, model.corridorExit(graph.index(2, 1), east));
+		assertEquals(west, model.corridorExit(graph.index(2, 1), west));
+		assertEquals(south, model.corridorExit(bend, east));
+		assertEquals(west, model.corridorExit(bend, Direction.NORTH
+				.ordinal()));
+		assertEquals(-1, model.corridorExit(graph.index(1, 1), east));
+		assertEquals(-1, model.corridorExit(graph.index(3, 2), south));
+		JunctionGraph.uninstall(b);
+	}
+
+	/**
+	 * Verifies that a loop without any junction can still be searched.
+	 */
+	@Test
+	public void testLoop() {
+		Board b = parser.parseMap(Lists.newArrayList("#####", "#   #",
+				"# # #", "#   #", "#####")).getBoard();
+		JunctionGraph.install(b, traveller, Unit.class);
+		assertPathsAreShortest(b);
+		JunctionGraph.uninstall(b);
+	}
+
+	/**
+	 * Verifies the paths between many pairs of squares of a shipped map.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testShippedMap() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		JunctionGraph model = JunctionGraph.install(b, traveller, Unit.class);
+		assertTrue(model.getJunctionCount() < b.getGraph().size() / 2);
+		assertPathsAreShortest(b);
+		JunctionGraph.uninstall(b);
+	}
+
+	/**
+	 * Verifies that extending the board derives a new graph that only
+	 * classifies the new region and its seam, and which equals a graph built
+	 * from scratch.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testExtend() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard();
+		JunctionGraph before = JunctionGraph.install(b, traveller,
+				Unit.class);
+		int oldSize = b.getGraph().size();
+		b.extend(Direction.EAST);
+
+		JunctionGraph after = JunctionGraph.forBoard(b);
+		assertNotNull(after);
+		assertNotSame(before, after);
+		assertTrue(after.getClassifiedSquares() < b.getGraph().size()
+				- oldSize / 2);
+		assertPathsAreShortest(b);
+
+		JunctionGraph fresh = JunctionGraph.install(b, traveller, Unit.class);
+		assertEquals(fresh.getJunctionCount(), after.getJunctionCount());
+		assertEquals(fresh.getCorridorCount(), after.getCorridorCount());
+		assertSame(fresh, JunctionGraph.forBoard(b));
+		JunctionGraph.uninstall(b);
+		assertNull(JunctionGraph.forBoard(b));
+	}
+
+	private void assertPathsAreShortest(Board b) {
+		BoardGraph graph = b.getGraph();
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] expected = new int[graph.size()];
+		for (int from = 0; from < graph.size(); from += 7) {
+			bfs.distances(graph, from, traveller, expected);
+			for (int to = 0; to < graph.size(); to++) {
+				Square source = graph.squareAt(from);
+				Square destination = graph.squareAt(to);
+				if (!source.isAccessibleTo(traveller)) {
+					continue;
+				}
+				List<Direction> path = Navigation.junctionPath(source,
+						destination, traveller);
+				if (expected[to] < 0) {
+					assertNull(path);
+					continue;
+				}
+				assertEquals(expected[to], path.size());
+				Square square = source;
+				for (Direction d : path) {
+					square = square.getSquareAt(d);
+					assertTrue(square.isAccessibleTo(traveller));
+				}
+				assertSame(destination, square);
+			}
+		}
+	}
+}
@@ -0,0 +1,464 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.sprite.Sprite;
+
+/**
+ * Micro benchmark comparing the navigation engines on generated boards. This
+ * is not a unit test; run its main method on the test class path after
+ * <code>mvn test-compile</code>. The board sizes can be passed as arguments,
+ * e.g. <code>21x23 256x256</code>; the largest default board needs a heap of
+ * a few gigabytes. Every size also runs a chase of a randomly walking target
+ * to compare how many squares the engines expand per move, and compares the
+ * memory allocated by path queries with that of distance and first step
+ * queries. Finally it measures on the shipped maps how much searching is
+ * saved by choosing a direction at junctions only.
+ */
+@SuppressWarnings({"magicnumber", "PMD.SystemPrintln"})
+public final class NavigationBenchmark {
+
+	/**
+	 * The board sizes measured when no arguments are given.
+	 */
+	private static final String[] DEFAULT_SIZES = {"21x23", "256x256",
+			"1024x1024", "4096x4096"};
+
+	/**
+	 * The fraction of squares that are walls on a generated board.
+	 */
+	private static final double WALL_DENSITY = 0.25;
+
+	/**
+	 * The minimum time a single measurement takes, in nanoseconds.
+	 */
+	private static final long MEASUREMENT_TIME = 1000000000L;
+
+	/**
+	 * The width of the chunks of the hierarchical search, that of a map.
+	 */
+	private static final int CHUNK_WIDTH = 23;
+
+	/**
+	 * The height of the chunks of the hierarchical search, that of a map.
+	 */
+	private static final int CHUNK_HEIGHT = 20;
+
+	/**
+	 * The amount of moves of a chase.
+	 */
+	private static final int CHASE_MOVES = 200;
+
+	/**
+	 * One in this many moves the target of a chase turns.
+	 */
+	private static final int TURN_CHANCE = 8;
+
+	/**
+	 * One in this many moves the chaser waits, so the target can get away.
+	 */
+	private static final int CHASER_PAUSE = 3;
+
+	/**
+	 * The amount of queries over which allocations are averaged.
+	 */
+	private static final int ALLOCATION_QUERIES = 10000;
+
+	/**
+	 * The maps shipped with the game.
+	 */
+	private static final String[] SHIPPED_MAPS = {"/board.txt",
+			"/boardExtendedBase.txt", "/boardExtendedAdd1.txt",
+			"/boardExtendedAdd2.txt", "/boardExtendedAdd3.txt",
+			"/boardExtendedAdd4.txt"};
+
+	/**
+	 * The amount of moves of a chase on a shipped map.
+	 */
+	private static final int MAP_CHASE_MOVES = 10000;
+
+	private NavigationBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args The board sizes to measure, as <code>WIDTHxHEIGHT</code>.
+	 * @throws IOException if a shipped map cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		String[] sizes = args.length == 0 ? DEFAULT_SIZES : args;
+		Unit traveller = new Traveller();
+		for (String size : sizes) {
+			String[] dimensions = size.split("x");
+			Board board = generate(Integer.parseInt(dimensions[0]),
+					Integer.parseInt(dimensions[1]));
+			BoardGraph graph = board.getGraph();
+			int source = graph.index(graph.getWidth() / 2,
+					graph.getHeight() / 2);
+			int[] distances = new int[graph.size()];
+			BreadthFirstSearch bfs = new BreadthFirstSearch();
+
+			double bfsTime = measure(() -> bfs.distances(graph, source,
+					traveller, distances));
+			double bitboardTime = measure(() -> BitboardNavigation.distances(
+					graph, source, traveller, distances));
+			System.out.println(String.format(Locale.ROOT,
+					"%-10s distance map  bfs: %12.3f us/op  bitboard: %12.3f us/op",
+					size, bfsTime / 1000, bitboardTime / 1000));
+
+			int target = graph.index((graph.getWidth() / 2 + 10)
+					% graph.getWidth(), (graph.getHeight() / 2 + 10)
+					% graph.getHeight());
+			AStarSearch aStar = new AStarSearch();
+			bfsTime = measure(() -> bfs.shortestPath(graph, source, target,
+					traveller));
+			double aStarTime = measure(() -> aStar.shortestPath(graph,
+					source, target, traveller));
+			System.out.println(String.format(Locale.ROOT,
+					"%-10s point to point  bfs: %12.3f us/op (%d expanded)"
+					+ "  a*: %12.3f us/op (%d expanded)", size,
+					bfsTime / 1000, bfs.getExpanded(), aStarTime / 1000,
+					aStar.getExpanded()));
+
+			long start = System.nanoTime();
+			ChunkGraph chunks = new ChunkGraph(graph, traveller, Unit.class,
+					CHUNK_WIDTH, CHUNK_HEIGHT, null);
+			long built = System.nanoTime() - start;
+			int far = accessibleFrom(graph, graph.index(
+					graph.getWidth() * 3 / 4, graph.getHeight() / 2),
+					traveller);
+			HierarchicalSearch hierarchical = new HierarchicalSearch();
+			bfsTime = measure(() -> bfs.shortestPath(graph, source, far,
+					traveller));
+			double hierarchicalTime = measure(() -> hierarchical.firstLeg(
+					chunks, source, far));
+			System.out.println(String.format(Locale.ROOT,
+					"%-10s far target  bfs: %12.3f us/op (%d expanded)"
+					+ "  first leg: %12.3f us/op (%d entrances expanded,"
+					+ " built in %d ms)", size, bfsTime / 1000,
+					bfs.getExpanded(), hierarchicalTime / 1000,
+					hierarchical.getExpanded(), built / 1000000));
+
+			chase(size, graph, source, far, traveller);
+			allocations(size, graph.squareAt(source), graph.squareAt(
+					accessibleFrom(graph, target, traveller)), traveller);
+		}
+		for (String map : SHIPPED_MAPS) {
+			junctionsOnly(map, read(map), traveller);
+		}
+	}
+
+	/**
+	 * Reports how many searches a chaser needs on a map when it searches on
+	 * every move, compared to when it follows corridors and only searches
+	 * at junctions, as the ghosts do.
+	 *
+	 * @param name The name of the map.
+	 * @param board The board of the map.
+	 * @param traveller The unit that travels the board.
+	 */
+	private static void junctionsOnly(String name, Board board,
+			Unit traveller) {
+		JunctionGraph model = JunctionGraph.install(board, traveller,
+				Unit.class);
+		BoardGraph graph = model.getGraph();
+		int accessible = 0;
+		int corridor = 0;
+		for (int i = 0; i < graph.size(); i++) {
+			if (model.kind(i) != JunctionGraph.BLOCKED) {
+				accessible++;
+			}
+			if (model.kind(i) == JunctionGraph.CORRIDOR) {
+				corridor++;
+			}
+		}
+		int start = accessibleFrom(graph, 0, traveller);
+		int goal = accessibleFrom(graph, graph.size() / 2, traveller);
+		long[] everyMove = chaseOnMap(graph, null, start, goal, traveller);
+		long[] atJunctions = chaseOnMap(graph, model, start, goal,
+				traveller);
+		JunctionGraph.uninstall(board);
+		System.out.println(String.format(Locale.ROOT,
+				"%-24s %4.1f%% corridor squares  every move: %5d searches"
+				+ " %7.1f expanded/move  junctions only: %5d searches"
+				+ " %7.1f expanded/move", name,
+				100.0 * corridor / accessible, everyMove[0],
+				(double) everyMove[1] / MAP_CHASE_MOVES, atJunctions[0],
+				(double) atJunctions[1] / MAP_CHASE_MOVES));
+	}
+
+	/**
+	 * Lets a chaser follow a randomly walking target on a map.
+	 *
+	 * @param graph The graph of the board.
+	 * @param model The junction graph if the chaser follows corridors
+	 *            without searching, or <code>null</code>.
+	 * @param source The index of the square the chaser starts on.
+	 * @param target The index of the square the target starts on.
+	 * @param traveller The unit that travels the board.
+	 * @return The amount of searches and the amount of squares they
+	 *         expanded.
+	 */
+	private static long[] chaseOnMap(BoardGraph graph, JunctionGraph model,
+			int source, int target, Unit traveller) {
+		Random random = new Random(graph.size());
+		AStarSearch aStar = new AStarSearch();
+		long searches = 0;
+		long expanded = 0;
+		int chaser = source;
+		int goal = target;
+		int heading = 0;
+		int chaserHeading = 0;
+		for (int move = 0; move < MAP_CHASE_MOVES; move++) {
+			int next = graph.neighbour(goal, heading);
+			if (random.nextInt(TURN_CHANCE) == 0
+					|| !graph.squareAt(next).isAccessibleTo(traveller)) {
+				heading = random.nextInt(BoardGraph.DIRECTIONS);
+			} else {
+				goal = next;
+			}
+			int step = model == null ? -1 : model.corridorExit(chaser,
+					chaserHeading);
+			if (step < 0 && chaser != goal) {
+				step = aStar.firstStep(graph, chaser, goal, traveller);
+				searches++;
+				expanded += aStar.getExpanded();
+			}
+			if (step >= 0 && move % CHASER_PAUSE != 0) {
+				chaser = graph.neighbour(chaser, step);
+				chaserHeading = step;
+			}
+		}
+		return new long[] {searches, expanded};
+	}
+
+	/**
+	 * Reads a shipped map, turning walls into inaccessible squares and
+	 * everything else into accessible ones.
+	 *
+	 * @param name The name of the resource.
+	 * @return The board of the map.
+	 * @throws IOException if the map cannot be read.
+	 */
+	private static Board read(String name) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				NavigationBenchmark.class.getResourceAsStream(name),
+				"UTF-8"))) {
+			String line = reader.readLine();
+			while (line != null) {
+				if (!line.isEmpty()) {
+					lines.add(line);
+				}
+				line = reader.readLine();
+			}
+		}
+		Square[][] grid = new Square[lines.get(0).length()][lines.size()];
+		for (int x = 0; x < grid.length; x++) {
+			for (int y = 0; y < grid[x].length; y++) {
+				grid[x][y] = new Cell(lines.get(y).charAt(x) != '#');
+			}
+		}
+		return new BoardFactory(null).createBoard(grid);
+	}
+
+	/**
+	 * Reports how many bytes a path query, a first step query and a distance
+	 * query between the same squares allocate on average.
+	 *
+	 * @param size The name of the board size.
+	 * @param from The starting square.
+	 * @param to The destination.
+	 * @param traveller The unit that travels the board.
+	 */
+	private static void allocations(String size, Square from, Square to,
+			Unit traveller) {
+		double path = allocated(() -> Navigation.aStarPath(from, to,
+				traveller).get(0));
+		double step = allocated(() -> Navigation.firstStep(from, to,
+				traveller));
+		double distance = allocated(() -> Navigation.distance(from, to,
+				traveller));
+		System.out.println(String.format(Locale.ROOT,
+				"%-10s allocations  path: %10.1f  first step: %10.1f  "
+				+ "distance: %10.1f bytes/query", size, path, step,
+				distance));
+	}
+
+	/**
+	 * Measures the memory allocated by an operation after warming it up.
+	 *
+	 * @param operation The operation to measure.
+	 * @return The average amount of bytes a single run allocates on the
+	 *         current thread.
+	 */
+	private static double allocated(Runnable operation) {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory
+						.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for (int i = 0; i < ALLOCATION_QUERIES; i++) {
+			operation.run();
+		}
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < ALLOCATION_QUERIES; i++) {
+			operation.run();
+		}
+		long after = threads.getThreadAllocatedBytes(thread);
+		return (double) (after - before) / ALLOCATION_QUERIES;
+	}
+
+	/**
+	 * @param graph The graph of a board.
+	 * @param index The index of a square.
+	 * @param traveller The unit that travels the board.
+	 * @return The index of the first square from the given one onwards that
+	 *         the traveller may occupy.
+	 */
+	private static int accessibleFrom(BoardGraph graph, int index,
+			Unit traveller) {
+		int result = index;
+		while (!graph.squareAt(result).isAccessibleTo(traveller)) {
+			result = (result + 1) % graph.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Lets a traveller chase a slightly faster target that runs around at
+	 * random, and reports how many squares every engine expands per move to find the
+	 * next step.
+	 *
+	 * @param size The name of the board size.
+	 * @param graph The graph of the board.
+	 * @param source The index of the square the chaser starts on.
+	 * @param target The index of the square the target starts on.
+	 * @param traveller The unit that travels the board.
+	 */
+	private static void chase(String size, BoardGraph graph, int source,
+			int target, Unit traveller) {
+		Random random = new Random(graph.size());
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		AStarSearch aStar = new AStarSearch();
+		IncrementalPlanner planner = new IncrementalPlanner(traveller);
+		long bfsExpanded = 0;
+		long aStarExpanded = 0;
+		long plannerExpanded = 0;
+		int chaser = source;
+		int goal = target;
+		int heading = 0;
+		for (int move = 0; move < CHASE_MOVES; move++) {
+			int next = graph.neighbour(goal, heading);
+			if (random.nextInt(TURN_CHANCE) == 0
+					|| !graph.squareAt(next).isAccessibleTo(traveller)) {
+				heading = random.nextInt(BoardGraph.DIRECTIONS);
+			} else {
+				goal = next;
+			}
+			bfs.shortestPath(graph, chaser, goal, traveller);
+			bfsExpanded += bfs.getExpanded();
+			aStar.shortestPath(graph, chaser, goal, traveller);
+			aStarExpanded += aStar.getExpanded();
+			Direction step = planner.nextStep(graph.squareAt(chaser),
+					graph.squareAt(goal));
+			plannerExpanded += planner.getExpanded();
+			if (step != null && move % CHASER_PAUSE != 0) {
+				chaser = graph.neighbour(chaser, step.ordinal());
+			}
+		}
+		System.out.println(String.format(Locale.ROOT,
+				"%-10s moving target  bfs: %10.1f  a*: %10.1f  "
+				+ "incremental: %10.1f expanded/move", size,
+				(double) bfsExpanded / CHASE_MOVES,
+				(double) aStarExpanded / CHASE_MOVES,
+				(double) plannerExpanded / CHASE_MOVES));
+	}
+
+	/**
+	 * Measures the average time of an operation after warming it up.
+	 *
+	 * @param operation The operation to measure.
+	 * @return The average time of a single run in nanoseconds.
+	 */
+	static double measure(Runnable operation) {
+		run(operation, MEASUREMENT_TIME);
+		return run(operation, MEASUREMENT_TIME);
+	}
+
+	private static double run(Runnable operation, long duration) {
+		long start = System.nanoTime();
+		long runs = 0;
+		long elapsed;
+		do {
+			operation.run();
+			runs++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < duration);
+		return (double) elapsed / runs;
+	}
+
+	/**
+	 * Generates a board with randomly placed walls.
+	 *
+	 * @param width The width of the board.
+	 * @param height The height of the board.
+	 * @return A new board.
+	 */
+	static Board generate(int width, int height) {
+		Random random = new Random(width * 31L + height);
+		Square[][] grid = new Square[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				grid[x][y] = new Cell(random.nextDouble() >= WALL_DENSITY);
+			}
+		}
+		return new BoardFactory(null).createBoard(grid);
+	}
+
+	/**
+	 * A square without sprite, to keep generated boards small.
+	 */
+	private static final class Cell extends Square {
+
+		private final boolean accessible;
+
+		private Cell(boolean isAccessible) {
+			this.accessible = isAccessible;
+		}
+
+		@Override
+		public boolean isAccessibleTo(Unit unit) {
+			return accessible;
+		}
+
+		@Override
+		public Sprite getSprite() {
+			return null;
+		}
+	}
+
+	/**
+	 * A unit that travels the generated boards.
+	 */
+	private static final class Traveller extends Unit {
+
+		@Override
+		public Sprite getSprite() {
+			return null;
+		}
+	}
+}
@@ -4,10 +4,12 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import nl.tudelft.jpacman.Launcher;
 import nl.tudelft.jpacman.board.*;
+import nl.tudelft.jpacman.level.ChunkTemplate;
 import nl.tudelft.jpacman.level.LevelFactory;
 import nl.tudelft.jpacman.level.MapParser;
 import nl.tudelft.jpacman.level.Pellet;
@@ -16,6 +18,7 @@ import nl.tudelft.jpacman.sprite.PacManSprites;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 
 /**
@@ -118,6 +121,240 @@ public class NavigationTest {
 				path.toArray(new Direction[] {}));
 	}
 
+	/**
+	 * Verifies that the search follows the links at the edges of the board.
+	 */
+	@Test
+	public void testWrapAroundPath() {
+		Board b = parser.parseMap(
+				Lists.newArrayList("#####", "  #  ", "#####")).getBoard();
+		Square s1 = b.squareAt(1, 1);
+		Square s2 = b.squareAt(3, 1);
+		List<Direction> path = Navigation
+				.shortestPath(s1, s2, mock(Unit.class));
+		assertArrayEquals(new Direction[] { Direction.WEST, Direction.WEST,
+				Direction.WEST }, path.toArray(new Direction[] {}));
+	}
+
+	/**
+	 * Verifies that searches reusing the same buffers do not see the squares
+	 * visited by earlier searches.
+	 */
+	@Test
+	public void testRepeatedSearches() {
+		Board b = parser.parseMap(
+				Lists.newArrayList("#####", "#   #", "# # #", "#   #", "#####"))
+				.getBoard();
+		Unit traveller = mock(Unit.class);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(4, Navigation.shortestPath(b.squareAt(1, 1),
+					b.squareAt(3, 3), traveller).size());
+			assertEquals(2, Navigation.shortestPath(b.squareAt(3, 3),
+					b.squareAt(1, 3), traveller).size());
+		}
+	}
+
+	/**
+	 * Verifies that A* finds paths exactly as long as the breadth first
+	 * search on one of the shipped maps.
+	 *
+	 * @throws IOException if board reading fails.
+	 */
+	@Test
+	public void testAStarSameLength() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard();
+		BoardGraph graph = b.getGraph();
+		Unit traveller = mock(Unit.class);
+		for (int from = 0; from < graph.size(); from += 7) {
+			for (int to = 0; to < graph.size(); to += 5) {
+				List<Direction> expected = Navigation.shortestPath(
+						graph.squareAt(from), graph.squareAt(to), traveller);
+				List<Direction> actual = Navigation.aStarPath(
+						graph.squareAt(from), graph.squareAt(to), traveller);
+				if (expected == null) {
+					assertNull(actual);
+				} else {
+					assertEquals(expected.size(), actual.size());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies that paths on an extended board, whose seam is linked in one
+	 * direction only, follow the links and are as short as the distances
+	 * found by a breadth first search.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testExtendedBoard() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd2.txt")).getBoard();
+		b.extend(Direction.EAST);
+		BoardGraph graph = b.getGraph();
+		assertFalse(graph.isTorus());
+		assertNull(b.getTorusGeometry());
+		Unit traveller = mock(Unit.class);
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] distances = new int[graph.size()];
+		for (int from = 0; from < graph.size(); from += 11) {
+			bfs.distances(graph, from, traveller, distances);
+			for (int to = 0; to < graph.size(); to += 3) {
+				Square source = graph.squareAt(from);
+				Square destination = graph.squareAt(to);
+				List<Direction> path = Navigation.shortestPath(source,
+						destination, traveller);
+				List<Direction> aStar = Navigation.aStarPath(source,
+						destination, traveller);
+				if (distances[to] < 0) {
+					assertNull(path);
+					assertNull(aStar);
+					continue;
+				}
+				assertEquals(distances[to], path.size());
+				assertEquals(distances[to], aStar.size());
+				Square square = source;
+				for (Direction d : aStar) {
+					square = square.getSquareAt(d);
+				}
+				assertSame(destination, square);
+			}
+		}
+	}
+
+	/**
+	 * Verifies that distance and first step queries agree with the shortest
+	 * paths on an extended board.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testDistanceAndFirstStep() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		b.extend(Direction.SOUTH);
+		BoardGraph graph = b.getGraph();
+		Unit traveller = mock(Unit.class);
+		for (int from = 0; from < graph.size(); from += 13) {
+			Square source = graph.squareAt(from);
+			for (int to = 0; to < graph.size(); to += 7) {
+				Square destination = graph.squareAt(to);
+				List<Direction> path = Navigation.shortestPath(source,
+						destination, traveller);
+				int distance = Navigation.distance(source, destination,
+						traveller);
+				Direction step = Navigation.firstStep(source, destination,
+						traveller);
+				if (path == null) {
+					assertEquals(Navigation.UNREACHABLE, distance);
+					assertNull(step);
+				} else if (path.isEmpty()) {
+					assertEquals(0, distance);
+					assertNull(step);
+				} else {
+					assertEquals(path.size(), distance);
+					assertEquals(distance - 1, Navigation.distance(
+							source.getSquareAt(step), destination, traveller));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies that terrain-free paths and first steps read from the
+	 * geometry of a board are the same as those of a breadth first search,
+	 * and lead to the destination.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Test
+	public void testTorusGeometry() throws IOException {
+		Board b = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		BoardGraph graph = b.getGraph();
+		TorusGeometry geometry = b.getTorusGeometry();
+		assertNotNull(geometry);
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] distances = new int[graph.size()];
+		for (int from = 0; from < graph.size(); from += 5) {
+			bfs.distances(graph, from, null, distances);
+			Square source = graph.squareAt(from);
+			for (int to = 0; to < graph.size(); to++) {
+				Square destination = graph.squareAt(to);
+				List<Direction> path = Navigation.shortestPath(source,
+						destination, null);
+				assertEquals(bfs.shortestPath(graph, from, to, null), path);
+				assertEquals(distances[to], path.size());
+				assertEquals(distances[to], geometry.distance(source,
+						destination));
+				assertEquals(path.isEmpty() ? null : path.get(0),
+						Navigation.firstStep(source, destination, null));
+				Square square = source;
+				for (Direction d : path) {
+					square = square.getSquareAt(d);
+				}
+				assertSame(destination, square);
+			}
+		}
+	}
+
+	/**
+	 * Verifies that A* expands fewer squares than the breadth first search
+	 * when the destination is close by on a large board.
+	 */
+	@Test
+	public void testAStarExpandsFewer() {
+		List<String> rows = new ArrayList<>();
+		for (int y = 0; y < 60; y++) {
+			rows.add(Strings.repeat(" ", 60));
+		}
+		BoardGraph graph = parser.parseMap(rows).getBoard().getGraph();
+		Unit traveller = mock(Unit.class);
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		AStarSearch aStar = new AStarSearch();
+		int from = graph.index(10, 10);
+		int to = graph.index(20, 15);
+
+		assertEquals(15, bfs.shortestPath(graph, from, to, traveller).size());
+		assertEquals(15, aStar.shortestPath(graph, from, to, traveller).size());
+		assertTrue(aStar.getExpanded() * 10 < bfs.getExpanded());
+	}
+
+	/**
+	 * Verifies that A* still expands fewer squares than the breadth first
+	 * search on an extended board, whose links only jump at its edges.
+	 */
+	@Test
+	public void testAStarExpandsFewerWhenExtended() {
+		List<String> rows = new ArrayList<>();
+		for (int y = 0; y < 30; y++) {
+			rows.add(Strings.repeat(" ", 30));
+		}
+		Board b = parser.parseMap(rows).getBoard();
+		PacManSprites sprites = new PacManSprites();
+		BoardFactory squares = new BoardFactory(sprites);
+		LevelFactory units = new LevelFactory(sprites, new GhostFactory(
+				sprites));
+		ChunkTemplate open = ChunkTemplate.parse(rows);
+		b.extend(Direction.EAST, () -> open.stamp(squares, units));
+		b.extend(Direction.SOUTH, () -> open.stamp(squares, units));
+		BoardGraph graph = b.getGraph();
+		assertFalse(graph.isTorus());
+		assertTrue(graph.jumpsAtChunkEdges());
+		Unit traveller = mock(Unit.class);
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		AStarSearch aStar = new AStarSearch();
+		int from = graph.index(10, 10);
+		int to = graph.index(40, 15);
+
+		int length = bfs.shortestPath(graph, from, to, traveller).size();
+		assertEquals(length, aStar.shortestPath(graph, from, to, traveller)
+				.size());
+		assertTrue(aStar.getExpanded() * 4 < bfs.getExpanded());
+	}
+
 	/**
 	 * Verifies that the nearest object is detected.
 	 */
@@ -0,0 +1,147 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that travellers following cached paths reach their destination,
+ * share paths and stop following paths that became invalid.
+ */
+@SuppressWarnings("magicnumber")
+public class PathCacheTest {
+
+	private Board board;
+
+	private Unit traveller;
+
+	/**
+	 * Reads a board of a single map.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		new Launcher().setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		MapParser parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+		board = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		traveller = mock(Unit.class);
+	}
+
+	/**
+	 * Verifies that long packed paths are followed to the destination along
+	 * a shortest path, on a board whose seam is linked one way.
+	 */
+	@Test
+	public void testFollowToDestination() {
+		board.extend(Direction.EAST);
+		BoardGraph graph = board.getGraph();
+		PathCache cache = new PathCache(Integer.MAX_VALUE);
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] distances = new int[graph.size()];
+		boolean longPath = false;
+		for (int from = 0; from < graph.size(); from += 37) {
+			if (!graph.squareAt(from).isAccessibleTo(traveller)) {
+				continue;
+			}
+			bfs.distances(graph, from, traveller, distances);
+			for (int to = 0; to < graph.size(); to += 23) {
+				Square destination = graph.squareAt(to);
+				PathCache.Cursor cursor = new PathCache.Cursor();
+				Square square = graph.squareAt(from);
+				if (distances[to] <= 0) {
+					assertNull(cache.next(cursor, square, destination,
+							traveller));
+					continue;
+				}
+				for (int i = 0; i < distances[to]; i++) {
+					Direction step = cache.next(cursor, square, destination,
+							traveller);
+					assertNotNull(step);
+					square = square.getSquareAt(step);
+				}
+				assertEquals(destination, square);
+				longPath |= distances[to] > 32;
+			}
+		}
+		assertTrue(longPath);
+	}
+
+	/**
+	 * Verifies that a cursor plans again after the maximum amount of steps,
+	 * and that paths from the same square are shared.
+	 */
+	@Test
+	public void testReplanAndShare() {
+		BoardGraph graph = board.getGraph();
+		PathCache cache = new PathCache(2);
+		Square from = graph.squareAt(accessible(graph, 0));
+		Square to = graph.squareAt(accessible(graph, graph.size() / 2));
+
+		PathCache.Cursor first = new PathCache.Cursor();
+		Square square = from;
+		for (int i = 0; i < 3; i++) {
+			square = square.getSquareAt(cache.next(first, square, to,
+					traveller));
+		}
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		cache.next(new PathCache.Cursor(), from, to, traveller);
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.size());
+	}
+
+	/**
+	 * Verifies that a cursor stops following its path when the destination
+	 * changes, and that all paths are dropped when the board is extended.
+	 */
+	@Test
+	public void testInvalidation() {
+		BoardGraph graph = board.getGraph();
+		PathCache cache = new PathCache();
+		Square from = graph.squareAt(accessible(graph, 0));
+		Square to = graph.squareAt(accessible(graph, graph.size() / 2));
+		PathCache.Cursor cursor = new PathCache.Cursor();
+		Square next = from.getSquareAt(cache.next(cursor, from, to,
+				traveller));
+		assertEquals(1, cache.size());
+
+		cache.next(cursor, next, from, traveller);
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.size());
+		board.extend(Direction.SOUTH);
+		cache.next(new PathCache.Cursor(), from, to, traveller);
+		assertEquals(3, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	private int accessible(BoardGraph graph, int index) {
+		int result = index;
+		while (!graph.squareAt(result).isAccessibleTo(traveller)) {
+			result++;
+		}
+		return result;
+	}
+}
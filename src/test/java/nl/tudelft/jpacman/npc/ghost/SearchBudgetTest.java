@@ -0,0 +1,211 @@
+package nl.tudelft.jpacman.npc.ghost;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.List;
+
+import nl.tudelft.jpacman.Launcher;
+import nl.tudelft.jpacman.board.Board;
+import nl.tudelft.jpacman.board.BoardFactory;
+import nl.tudelft.jpacman.board.BoardGraph;
+import nl.tudelft.jpacman.board.Direction;
+import nl.tudelft.jpacman.board.Square;
+import nl.tudelft.jpacman.board.Unit;
+import nl.tudelft.jpacman.level.LevelFactory;
+import nl.tudelft.jpacman.level.MapParser;
+import nl.tudelft.jpacman.sprite.PacManSprites;
+import nl.tudelft.jpacman.sprite.Sprite;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that searches stop once the {@link SearchBudget} of a decision is
+ * spent, and answer with the best they found so far.
+ */
+@SuppressWarnings("magicnumber")
+public class SearchBudgetTest {
+
+	private static final int BUDGET = 4;
+
+	private Board board;
+
+	private Unit traveller;
+
+	private Square from;
+
+	private Square to;
+
+	/**
+	 * Reads a board of a single map and picks a square in its corner and
+	 * one in its middle.
+	 *
+	 * @throws IOException if the board cannot be read.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		new Launcher().setBoardToUse("/board.txt");
+		PacManSprites sprites = new PacManSprites();
+		MapParser parser = new MapParser(new LevelFactory(sprites,
+				new GhostFactory(sprites)), new BoardFactory(sprites));
+		board = parser.parseMap(getClass().getResourceAsStream(
+				"/boardExtendedAdd1.txt")).getBoard();
+		traveller = mock(Unit.class);
+		from = board.squareAt(1, 1);
+		to = board.squareAt(11, 7);
+	}
+
+	/**
+	 * Verifies that decisions without a budget are not limited.
+	 */
+	@Test
+	public void testUnlimited() {
+		assertNotNull(Navigation.aStarPath(from, to, traveller));
+		SearchBudget budget = new SearchBudget(1000000);
+		assertNotNull(budget.run(() -> Navigation.aStarPath(from, to,
+				traveller)));
+		assertFalse(budget.isExhausted());
+		assertTrue(budget.getSpent() > 0);
+	}
+
+	/**
+	 * Verifies that a search out of budget returns part of the way towards
+	 * the square closest to the destination.
+	 */
+	@Test
+	public void testPartialPath() {
+		List<Direction> full = Navigation.aStarPath(from, to, traveller);
+		SearchBudget budget = new SearchBudget(BUDGET);
+		List<Direction> partial = budget.run(() -> Navigation.aStarPath(
+				from, to, traveller));
+		assertTrue(budget.isExhausted());
+		assertEquals(BUDGET, budget.getSpent());
+		assertNotNull(partial);
+		assertFalse(partial.isEmpty());
+		assertTrue(partial.size() < full.size());
+
+		Square square = from;
+		for (Direction step : partial) {
+			square = square.getSquareAt(step);
+			assertTrue(square.isAccessibleTo(traveller));
+		}
+		assertTrue(manhattan(square, to) < manhattan(from, to));
+		assertEquals(partial.get(0), new SearchBudget(BUDGET).run(
+				() -> Navigation.firstStep(from, to, traveller)));
+	}
+
+	/**
+	 * Verifies that a flow field is not built when the budget cannot cover
+	 * the board, and that the distance is unknown rather than wrong. A field
+	 * prepared bit by bit can be read within the budget, also after the
+	 * target moved on.
+	 */
+	@Test
+	public void testFlowFieldOutOfBudget() {
+		Unit target = new Marker();
+		target.occupy(to);
+		FlowField field = new FlowField();
+		SearchBudget budget = new SearchBudget(BUDGET);
+		assertNull(budget.run(() -> field.step(target, from, traveller)));
+		assertTrue(budget.isExhausted());
+		int distance = new SearchBudget(BUDGET).run(
+				() -> Navigation.distance(from, to, traveller));
+		assertEquals(Navigation.UNREACHABLE, distance);
+
+		int calls = 0;
+		int spent;
+		do {
+			spent = field.prepare(target, traveller, BUDGET);
+			assertTrue(spent <= BUDGET);
+			calls++;
+		} while (spent > 0);
+		assertTrue(calls > 1);
+		assertEquals(1, field.getSearches());
+		Direction step = field.step(target, from, traveller);
+		assertNotNull(step);
+		budget = new SearchBudget(BUDGET);
+		assertEquals(step, budget.run(() -> field.step(target, from,
+				traveller)));
+		assertFalse(budget.isExhausted());
+
+		target.occupy(findNeighbour(to));
+		budget = new SearchBudget(BUDGET);
+		assertEquals(step, budget.run(() -> field.step(target, from,
+				traveller)));
+		assertFalse(budget.isExhausted());
+		assertEquals(1, field.getSearches());
+	}
+
+	/**
+	 * Verifies that a distance map cut short by the budget is reported as
+	 * incomplete.
+	 */
+	@Test
+	public void testDistancesOutOfBudget() {
+		BoardGraph graph = board.getGraph();
+		BreadthFirstSearch bfs = new BreadthFirstSearch();
+		int[] distances = new int[graph.size()];
+		int source = graph.indexOf(from);
+		assertTrue(bfs.distances(graph, source, traveller, distances));
+		assertFalse(new SearchBudget(BUDGET).run(() -> bfs.distances(graph,
+				source, traveller, distances)));
+	}
+
+	/**
+	 * Verifies that the incremental planner resumes an interrupted search
+	 * on the next query instead of starting over.
+	 */
+	@Test
+	public void testPlannerResumes() {
+		IncrementalPlanner planner = new IncrementalPlanner(traveller);
+		Direction expected = new IncrementalPlanner(traveller).nextStep(from,
+				to);
+		Direction step = null;
+		int queries = 0;
+		while (step == null) {
+			SearchBudget budget = new SearchBudget(BUDGET);
+			step = budget.run(() -> planner.nextStep(from, to));
+			assertTrue(budget.getSpent() <= BUDGET);
+			queries++;
+			assertTrue(queries < board.getWidth() * board.getHeight());
+		}
+		assertTrue(queries > 1);
+		assertEquals(expected, step);
+	}
+
+	private Square findNeighbour(Square square) {
+		for (Direction direction : Direction.values()) {
+			Square next = square.getSquareAt(direction);
+			if (next.isAccessibleTo(traveller)) {
+				return next;
+			}
+		}
+		throw new IllegalStateException("No neighbour of " + square);
+	}
+
+	private int manhattan(Square a, Square b) {
+		BoardGraph graph = board.getGraph();
+		int first = graph.indexOf(a);
+		int second = graph.indexOf(b);
+		return Math.abs(graph.getX(first) - graph.getX(second))
+				+ Math.abs(graph.getY(first) - graph.getY(second));
+	}
+
+
+	/**
+	 * A unit that marks the target of a flow field.
+	 */
+	private static final class Marker extends Unit {
+
+		@Override
+		public Sprite getSprite() {
+			return null;
+		}
+	}
+}